@@ -0,0 +1,123 @@
+package com.etheller.warsmash;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Random;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.etheller.warsmash.parsers.w3x.wpm.War3MapWpm;
+import com.etheller.warsmash.util.WarsmashConstants;
+import com.etheller.warsmash.viewer5.handlers.w3x.environment.PathingGrid;
+import com.etheller.warsmash.viewer5.handlers.w3x.environment.PathingGrid.MovementType;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.CSimulation;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.CWorldCollision;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.behaviors.CBehaviorMove;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing.CFlowFieldCache;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing.CHierarchicalPathfinder;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing.CPathfindingProcessor;
+
+public class PathfindingSpeedBenchmark {
+	private static final int GRID_SIZE = 256;
+	private static final int OBSTACLES = 400;
+	private static final int NUMBER_OF_PATHS = 500;
+	private static final int RUNS = 3;
+	private static final long SEED = 0x5EED;
+
+	public static void main(final String[] args) throws IOException {
+		// only the grid A* search is measured, without the shortcuts that skip it
+		WarsmashConstants.ENABLE_HIERARCHICAL_PATHFINDING = false;
+		WarsmashConstants.ENABLE_FLOW_FIELD_PATHFINDING = false;
+		WarsmashConstants.ENABLE_JUMP_POINT_SEARCH = false;
+
+		final Random random = new Random(SEED);
+		final PathingGrid pathingGrid = createPathingGrid(random);
+		final float[] starts = new float[NUMBER_OF_PATHS * 2];
+		final float[] goals = new float[NUMBER_OF_PATHS * 2];
+		for (int i = 0; i < NUMBER_OF_PATHS; i++) {
+			randomPathablePoint(random, pathingGrid, starts, i * 2);
+			randomPathablePoint(random, pathingGrid, goals, i * 2);
+		}
+
+		final PrintStream out = System.out;
+		long bestTime = Long.MAX_VALUE;
+		long iterations = 0;
+		int pathsFound = 0;
+		for (int run = 0; run < RUNS; run++) {
+			final CPathfindingProcessor processor = new CPathfindingProcessor(pathingGrid,
+					new CWorldCollision(new Rectangle(0, 0, GRID_SIZE * 32, GRID_SIZE * 32), 64),
+					new CHierarchicalPathfinder(pathingGrid), new CFlowFieldCache(pathingGrid));
+			final PathCounter pathCounter = new PathCounter();
+			// the processor logs every job it starts
+			System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+			final long time = System.nanoTime();
+			for (int i = 0; i < NUMBER_OF_PATHS; i++) {
+				processor.findNaiveSlowPath(null, null, starts[i * 2], starts[(i * 2) + 1],
+						new Point2D.Float(goals[i * 2], goals[(i * 2) + 1]), MovementType.FOOT, 16, true, pathCounter,
+						CPathfindingProcessor.JobPriority.PLAYER_ORDER);
+			}
+			while (processor.getQueueDepth() > 0) {
+				processor.update(null);
+			}
+			bestTime = Math.min(bestTime, System.nanoTime() - time);
+			System.setOut(out);
+			iterations = processor.getTotalIterations();
+			pathsFound = pathCounter.pathsFound;
+		}
+		final double seconds = bestTime / 1e9;
+		System.out.println(NUMBER_OF_PATHS + " paths on " + GRID_SIZE + "x" + GRID_SIZE + " cells ("
+				+ pathsFound + " found, " + iterations + " heap polls): " + (bestTime / 1000000) + " ms");
+		System.out.println("Paths per second: " + (int) (NUMBER_OF_PATHS / seconds));
+		System.out.println("Heap polls per second: " + (long) (iterations / seconds));
+	}
+
+	private static PathingGrid createPathingGrid(final Random random) throws IOException {
+		final War3MapWpm terrainPathing = new War3MapWpm(null);
+		terrainPathing.getSize()[0] = GRID_SIZE;
+		terrainPathing.getSize()[1] = GRID_SIZE;
+		final short[] pathing = new short[GRID_SIZE * GRID_SIZE];
+		for (int i = 0; i < OBSTACLES; i++) {
+			final int width = 2 + random.nextInt(12);
+			final int height = 2 + random.nextInt(12);
+			final int x = random.nextInt(GRID_SIZE - width);
+			final int y = random.nextInt(GRID_SIZE - height);
+			for (int j = y; j < (y + height); j++) {
+				for (int k = x; k < (x + width); k++) {
+					pathing[(j * GRID_SIZE) + k] = PathingGrid.PathingFlags.UNWALKABLE;
+				}
+			}
+		}
+		terrainPathing.setPathing(pathing);
+		return new PathingGrid(terrainPathing, new float[] { 0, 0 });
+	}
+
+	private static void randomPathablePoint(final Random random, final PathingGrid pathingGrid, final float[] points,
+			final int index) {
+		float x;
+		float y;
+		do {
+			x = 64 + (random.nextFloat() * ((GRID_SIZE * 32) - 128));
+			y = 64 + (random.nextFloat() * ((GRID_SIZE * 32) - 128));
+		}
+		while (!pathingGrid.isPathable(x, y, MovementType.FOOT, 16));
+		points[index] = x;
+		points[index + 1] = y;
+	}
+
+	private static final class PathCounter extends CBehaviorMove {
+		private int pathsFound;
+
+		private PathCounter() {
+			super(null);
+		}
+
+		@Override
+		public void pathFound(final List<Point2D.Float> waypoints, final CSimulation simulation) {
+			if (!waypoints.isEmpty()) {
+				this.pathsFound++;
+			}
+		}
+	}
+}
@@ -2,6 +2,7 @@ package com.etheller.warsmash;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintWriter;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
@@ -24,6 +25,8 @@ import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.utils.viewport.ExtendViewport;
+import com.etheller.interpreter.ast.debug.JassProfiler;
+import com.etheller.interpreter.ast.util.JassSettings;
 import com.etheller.warsmash.datasources.CascDataSourceDescriptor;
 import com.etheller.warsmash.datasources.CompoundDataSource;
 import com.etheller.warsmash.datasources.CompoundDataSourceDescriptor;
@@ -318,6 +321,10 @@ public class WarsmashGdxMapScreen implements InputProcessor, Screen {
 
 	@Override
 	public void dispose() {
+		if (JassSettings.REPORT_TRIGGER_METRICS && (this.commonEnv != null)) {
+			this.commonEnv.printTriggerMetrics(20);
+			this.commonEnv.printLiveHandleCounts();
+		}
 		this.meleeUI.dispose();
 		this.batch.dispose();
 		this.viewer.getGameUI().dispose();
@@ -340,6 +347,11 @@ public class WarsmashGdxMapScreen implements InputProcessor, Screen {
 		if ((keycode == Input.Keys.B) && Gdx.input.isKeyPressed(Input.Keys.CONTROL_LEFT)) {
 			Gdx.input.setCursorCatched(!Gdx.input.isCursorCatched());
 		}
+		if ((keycode == Input.Keys.P) && Gdx.input.isKeyPressed(Input.Keys.CONTROL_LEFT)
+				&& (this.commonEnv != null)) {
+			toggleJassProfiler();
+			return true;
+		}
 		if (keycode == Input.Keys.ENTER) {
 			if (Gdx.input.isKeyPressed(Input.Keys.ALT_LEFT) || Gdx.input.isKeyPressed(Input.Keys.ALT_RIGHT)) {
 				WarsmashUtils.toggleFullScreen();
@@ -350,6 +362,25 @@ public class WarsmashGdxMapScreen implements InputProcessor, Screen {
 		return true;
 	}
 
+	private void toggleJassProfiler() {
+		final JassProfiler profiler = this.commonEnv.getProfiler();
+		if (!profiler.isEnabled()) {
+			profiler.reset();
+			profiler.setEnabled(true);
+			System.out.println("JASS profiler started");
+			return;
+		}
+		profiler.setEnabled(false);
+		profiler.printReport(System.out, 20);
+		try (PrintWriter writer = new PrintWriter(JassSettings.PROFILE_FILE, "UTF-8")) {
+			profiler.writeCollapsedStacks(writer);
+			System.out.println("JASS profile written to " + JassSettings.PROFILE_FILE);
+		}
+		catch (final IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	@Override
 	public boolean keyUp(final int keycode) {
 		this.meleeUI.keyUp(keycode);
@@ -0,0 +1,61 @@
+package com.etheller.warsmash.datasources;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+/**
+ * Lets several threads read from a data source that is not thread safe, such as
+ * an MPQ. Streams are read in full while the lock is held, so that the threads
+ * only wait for each other while reading files and not while parsing them.
+ */
+public class SynchronizedDataSource implements DataSource {
+	private final DataSource dataSource;
+
+	public SynchronizedDataSource(final DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	@Override
+	public synchronized File getFile(final String filepath) throws IOException {
+		return this.dataSource.getFile(filepath);
+	}
+
+	@Override
+	public synchronized File getDirectory(final String filepath) throws IOException {
+		return this.dataSource.getDirectory(filepath);
+	}
+
+	@Override
+	public synchronized ByteBuffer read(final String path) throws IOException {
+		return this.dataSource.read(path);
+	}
+
+	@Override
+	public synchronized InputStream getResourceAsStream(final String filepath) throws IOException {
+		try (InputStream stream = this.dataSource.getResourceAsStream(filepath)) {
+			if (stream == null) {
+				return null;
+			}
+			return new ByteArrayInputStream(stream.readAllBytes());
+		}
+	}
+
+	@Override
+	public synchronized boolean has(final String filepath) {
+		return this.dataSource.has(filepath);
+	}
+
+	@Override
+	public synchronized Collection<String> getListfile() {
+		return this.dataSource.getListfile();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.dataSource.close();
+	}
+}
@@ -264,6 +264,12 @@ public class WarsmashClient implements ServerToClientListener, GameTurnManager {
 		this.writer.send();
 	}
 
+	@Override
+	public void stateChecksum(final int gameTurnTick, final long checksum) {
+		this.writer.stateChecksum(gameTurnTick, checksum);
+		this.writer.send();
+	}
+
 	@Override
 	public void heartbeat() {
 		// Not doing anything here at the moment. The act of the server sending us that
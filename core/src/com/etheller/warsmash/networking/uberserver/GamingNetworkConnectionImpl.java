@@ -129,9 +129,10 @@ public class GamingNetworkConnectionImpl implements GamingNetworkConnection {
 
 	@Override
 	public void createGame(final long sessionToken, final String gameName, final String mapName, final int totalSlots,
-			final LobbyGameSpeed gameSpeed, final HostedGameVisibility visibility, long mapChecksum) {
+			final LobbyGameSpeed gameSpeed, final HostedGameVisibility visibility, long mapChecksum,
+			final byte[] mapHash) {
 		this.gamingNetworkClientToServerWriter.createGame(sessionToken, gameName, mapName, totalSlots, gameSpeed,
-				visibility, mapChecksum);
+				visibility, mapChecksum, mapHash);
 	}
 
 	@Override
@@ -2,6 +2,7 @@ package com.etheller.warsmash.parsers.jass;
 
 import java.awt.geom.Point2D;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -21,7 +22,11 @@ import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.viewport.Viewport;
 import com.etheller.interpreter.JassLexer;
 import com.etheller.interpreter.JassParser;
+import com.etheller.interpreter.ast.bytecode.JassThread;
+import com.etheller.interpreter.ast.cache.JassProgramCache;
+import com.etheller.interpreter.ast.cache.JassProgramLoader;
 import com.etheller.interpreter.ast.debug.JassException;
+import com.etheller.interpreter.ast.debug.JassProfiler;
 import com.etheller.interpreter.ast.function.JassFunction;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
@@ -42,7 +47,6 @@ import com.etheller.interpreter.ast.value.StringJassValue;
 import com.etheller.interpreter.ast.value.visitor.BooleanJassValueVisitor;
 import com.etheller.interpreter.ast.value.visitor.IntegerJassValueVisitor;
 import com.etheller.interpreter.ast.value.visitor.JassFunctionJassValueVisitor;
-import com.etheller.interpreter.ast.value.visitor.JassTypeGettingValueVisitor;
 import com.etheller.interpreter.ast.value.visitor.ObjectJassValueVisitor;
 import com.etheller.interpreter.ast.value.visitor.RealJassValueVisitor;
 import com.etheller.interpreter.ast.value.visitor.StringJassValueVisitor;
@@ -61,6 +65,7 @@ import com.etheller.warsmash.parsers.jass.triggers.BoolExprCondition;
 import com.etheller.warsmash.parsers.jass.triggers.BoolExprFilter;
 import com.etheller.warsmash.parsers.jass.triggers.BoolExprNot;
 import com.etheller.warsmash.parsers.jass.triggers.BoolExprOr;
+import com.etheller.warsmash.parsers.jass.triggers.CLocation;
 import com.etheller.warsmash.parsers.jass.triggers.TriggerAction;
 import com.etheller.warsmash.parsers.jass.triggers.TriggerCondition;
 import com.etheller.warsmash.parsers.jass.triggers.UnitGroup;
@@ -87,6 +92,7 @@ import com.etheller.warsmash.viewer5.handlers.w3x.simulation.CUnitEnumFunction;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.CUnitType;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.CUpgradeType;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.CWidget;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.HandleIdAllocator;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.abilities.CAbility;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.abilities.GetAbilityByRawcodeVisitor;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.abilities.generic.AbstractGenericAliasedAbility;
@@ -136,6 +142,7 @@ import com.etheller.warsmash.viewer5.handlers.w3x.simulation.state.CGameState;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.state.CUnitState;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.timers.CTimer;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.timers.CTimerJass;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.timers.CTimerJassThread;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.timers.CTimerNativeEvent;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.trigger.JassGameEventsWar3;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.trigger.enumtypes.CAttackTypeJass;
@@ -177,46 +184,7 @@ public class Jass2 {
 		final JassProgramVisitor jassProgramVisitor = new JassProgramVisitor();
 		final CommonEnvironment environment = new CommonEnvironment(jassProgramVisitor, dataSource, uiViewport, uiScene,
 				war3MapViewer, meleeUI);
-		for (String jassFilePath : files) {
-			if (!dataSource.has(jassFilePath)) {
-				jassFilePath = jassFilePath
-						.substring(Math.max(jassFilePath.lastIndexOf('/'), jassFilePath.lastIndexOf('\\')) + 1);
-			}
-			final String jassFile = jassFilePath;
-			try {
-				JassLexer lexer;
-				try {
-					lexer = new JassLexer(CharStreams.fromStream(dataSource.getResourceAsStream(jassFile)));
-				}
-				catch (final IOException e) {
-					throw new RuntimeException(e);
-				}
-				final JassParser parser = new JassParser(new CommonTokenStream(lexer));
-//				parser.removeErrorListener(ConsoleErrorListener.INSTANCE);
-				parser.addErrorListener(new BaseErrorListener() {
-					@Override
-					public void syntaxError(final Recognizer<?, ?> recognizer, final Object offendingSymbol,
-							final int line, final int charPositionInLine, final String msg,
-							final RecognitionException e) {
-						if (!REPORT_SYNTAX_ERRORS) {
-							return;
-						}
-
-						final String sourceName = String.format("%s:%d:%d: ", jassFile, line, charPositionInLine);
-
-						System.err.println(sourceName + "line " + line + ":" + charPositionInLine + " " + msg);
-						throw new IllegalStateException(
-								sourceName + "line " + line + ":" + charPositionInLine + " " + msg);
-					}
-				});
-				jassProgramVisitor.setCurrentFileName(jassFile);
-				jassProgramVisitor.visit(parser.program());
-			}
-			catch (final Exception e) {
-				e.printStackTrace();
-			}
-		}
-		jassProgramVisitor.getJassNativeManager().checkUnregisteredNatives();
+		loadScripts(dataSource, jassProgramVisitor, true, findScripts(dataSource, files));
 		return environment;
 	}
 
@@ -226,46 +194,7 @@ public class Jass2 {
 		final JassProgramVisitor jassProgramVisitor = new JassProgramVisitor();
 		final ConfigEnvironment environment = new ConfigEnvironment(jassProgramVisitor, dataSource, uiViewport, uiScene,
 				gameUI, mapConfig);
-		for (String jassFilePath : files) {
-			if (!dataSource.has(jassFilePath)) {
-				jassFilePath = jassFilePath
-						.substring(Math.max(jassFilePath.lastIndexOf('/'), jassFilePath.lastIndexOf('\\')) + 1);
-			}
-			final String jassFile = jassFilePath;
-			try {
-				JassLexer lexer;
-				try {
-					lexer = new JassLexer(CharStreams.fromStream(dataSource.getResourceAsStream(jassFile)));
-				}
-				catch (final IOException e) {
-					throw new RuntimeException(e);
-				}
-				final JassParser parser = new JassParser(new CommonTokenStream(lexer));
-//				parser.removeErrorListener(ConsoleErrorListener.INSTANCE);
-				parser.addErrorListener(new BaseErrorListener() {
-					@Override
-					public void syntaxError(final Recognizer<?, ?> recognizer, final Object offendingSymbol,
-							final int line, final int charPositionInLine, final String msg,
-							final RecognitionException e) {
-						if (!REPORT_SYNTAX_ERRORS) {
-							return;
-						}
-
-						final String sourceName = String.format("%s:%d:%d: ", jassFile, line, charPositionInLine);
-
-						System.err.println(sourceName + "line " + line + ":" + charPositionInLine + " " + msg);
-						throw new IllegalStateException(
-								sourceName + "line " + line + ":" + charPositionInLine + " " + msg);
-					}
-				});
-				jassProgramVisitor.setCurrentFileName(jassFile);
-				jassProgramVisitor.visit(parser.program());
-			}
-			catch (final Exception e) {
-				e.printStackTrace();
-			}
-		}
-		jassProgramVisitor.getJassNativeManager().checkUnregisteredNatives();
+		loadScripts(dataSource, jassProgramVisitor, true, findScripts(dataSource, files));
 		return environment;
 	}
 
@@ -275,39 +204,58 @@ public class Jass2 {
 		final JassProgramVisitor jassProgramVisitor = new JassProgramVisitor();
 		final JUIEnvironment environment = new JUIEnvironment(jassProgramVisitor, dataSource, uiViewport, uiScene,
 				war3MapViewer, rootFrameListener);
-		for (final String jassFile : files) {
-			try {
-				JassLexer lexer;
-				try {
-					lexer = new JassLexer(CharStreams.fromStream(dataSource.getResourceAsStream(jassFile)));
-				}
-				catch (final IOException e) {
-					throw new RuntimeException(e);
-				}
-				final JassParser parser = new JassParser(new CommonTokenStream(lexer));
-//				parser.removeErrorListener(ConsoleErrorListener.INSTANCE);
-				parser.addErrorListener(new BaseErrorListener() {
-					@Override
-					public void syntaxError(final Recognizer<?, ?> recognizer, final Object offendingSymbol,
-							final int line, final int charPositionInLine, final String msg,
-							final RecognitionException e) {
-						if (!REPORT_SYNTAX_ERRORS) {
-							return;
-						}
+		loadScripts(dataSource, jassProgramVisitor, false, files);
+		return environment;
+	}
 
-						final String sourceName = String.format("%s:%d:%d: ", jassFile, line, charPositionInLine);
+	/**
+	 * Scripts that are not at their path in the data source are looked up by
+	 * their file name alone, such as a war3map.j at the root of the map.
+	 */
+	private static String[] findScripts(final DataSource dataSource, final String... files) {
+		final String[] jassFiles = new String[files.length];
+		for (int i = 0; i < files.length; i++) {
+			String jassFilePath = files[i];
+			if (!dataSource.has(jassFilePath)) {
+				jassFilePath = jassFilePath
+						.substring(Math.max(jassFilePath.lastIndexOf('/'), jassFilePath.lastIndexOf('\\')) + 1);
+			}
+			jassFiles[i] = jassFilePath;
+		}
+		return jassFiles;
+	}
 
-						System.err.println(sourceName + "line " + line + ":" + charPositionInLine + " " + msg);
-					}
-				});
-				jassProgramVisitor.visit(parser.program());
+	/**
+	 * Parses the scripts at the same time and defines them in order, see
+	 * {@link JassProgramLoader}.
+	 *
+	 * @param failOnSyntaxErrors whether a script with a syntax error is skipped
+	 *                           instead of defining the parts that parsed
+	 */
+	private static void loadScripts(final DataSource dataSource, final JassProgramVisitor jassProgramVisitor,
+			final boolean failOnSyntaxErrors, final String... files) {
+		final JassProgramLoader programLoader = new JassProgramLoader(
+				new JassProgramCache(JassSettings.PROGRAM_CACHE_DIRECTORY));
+		programLoader.load(jassProgramVisitor, (jassFile) -> {
+			try (InputStream stream = dataSource.getResourceAsStream(jassFile)) {
+				return stream.readAllBytes();
 			}
-			catch (final Exception e) {
-				e.printStackTrace();
+		}, (jassFile) -> new BaseErrorListener() {
+			@Override
+			public void syntaxError(final Recognizer<?, ?> recognizer, final Object offendingSymbol, final int line,
+					final int charPositionInLine, final String msg, final RecognitionException e) {
+				if (!REPORT_SYNTAX_ERRORS) {
+					return;
+				}
+
+				final String sourceName = String.format("%s:%d:%d: ", jassFile, line, charPositionInLine);
+
+				System.err.println(sourceName + "line " + line + ":" + charPositionInLine + " " + msg);
+				if (failOnSyntaxErrors) {
+					throw new IllegalStateException(sourceName + "line " + line + ":" + charPositionInLine + " " + msg);
+				}
 			}
-		}
-		jassProgramVisitor.getJassNativeManager().checkUnregisteredNatives();
-		return environment;
+		}, files);
 	}
 
 	public static interface RootFrameListener {
@@ -455,7 +403,7 @@ public class Jass2 {
 						final int r = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
 						final int g = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
 						final int b = arguments.get(3).visit(IntegerJassValueVisitor.getInstance());
-						return new IntegerJassValue(a | (b << 8) | (g << 16) | (r << 24));
+						return IntegerJassValue.of(a | (b << 8) | (g << 16) | (r << 24));
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("FramePositionBounds",
 					(arguments, globalScope, triggerScope) -> {
@@ -468,8 +416,9 @@ public class Jass2 {
 						final String fieldName = arguments.get(0).visit(StringJassValueVisitor.getInstance());
 						return new StringJassValue(JUIEnvironment.this.skin.getField(fieldName));
 					});
+			// UI scripts have no simulation, so their triggers get IDs of their own
 			setupTriggerAPI(jassProgramVisitor, triggerType, triggerActionType, triggerConditionType, boolExprType,
-					conditionFuncType, filterType, eventidType);
+					conditionFuncType, filterType, eventidType, new HandleIdAllocator());
 		}
 	}
 
@@ -608,7 +557,7 @@ public class Jass2 {
 				final String idString = arguments.get(0).visit(StringJassValueVisitor.getInstance());
 				final CUnitType unitTypeTmp = CommonEnvironment.this.simulation.getUnitData()
 						.getUnitTypeByJassLegacyName(idString);
-				return new IntegerJassValue((unitTypeTmp == null) ? 0 : unitTypeTmp.getTypeId().getValue());
+				return IntegerJassValue.of((unitTypeTmp == null) ? 0 : unitTypeTmp.getTypeId().getValue());
 			});
 			jassProgramVisitor.getJassNativeManager().createNative("UnitId2String",
 					(arguments, globalScope, triggerScope) -> {
@@ -621,7 +570,7 @@ public class Jass2 {
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("AbilityId",
 					(arguments, globalScope, triggerScope) -> {
-						return new IntegerJassValue(0);
+						return IntegerJassValue.of(0);
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("AbilityId2String",
 					(arguments, globalScope, triggerScope) -> {
@@ -641,7 +590,7 @@ public class Jass2 {
 						final CAbility ability = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
 						if (ability instanceof AbstractGenericAliasedAbility) {
 							final AbstractGenericAliasedAbility aliasedAbility = (AbstractGenericAliasedAbility) ability;
-							return new IntegerJassValue(aliasedAbility.getAlias().getValue());
+							return IntegerJassValue.of(aliasedAbility.getAlias().getValue());
 						}
 						return IntegerJassValue.ZERO;
 					});
@@ -693,14 +642,20 @@ public class Jass2 {
 			//
 			jassProgramVisitor.getJassNativeManager().createNative("CreateTimer",
 					(arguments, globalScope, triggerScope) -> {
-						return new HandleJassValue(timerType, new CTimerJass(globalScope,
-								CommonEnvironment.this.simulation.getHandleIdAllocator().createId()));
+						final HandleIdAllocator handleIdAllocator = CommonEnvironment.this.simulation
+								.getHandleIdAllocator();
+						final CTimerJass timer = new CTimerJass(globalScope, handleIdAllocator.createId());
+						handleIdAllocator.register(timer.getHandleId(), timer);
+						return new HandleJassValue(timerType, timer);
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("DestroyTimer",
 					(arguments, globalScope, triggerScope) -> {
 						final CTimerJass timer = arguments.get(0)
 								.visit(ObjectJassValueVisitor.<CTimerJass>getInstance());
-						CommonEnvironment.this.simulation.unregisterTimer(timer);
+						if (timer != null) {
+							CommonEnvironment.this.simulation.unregisterTimer(timer);
+							CommonEnvironment.this.simulation.getHandleIdAllocator().free(timer.getHandleId(), timer);
+						}
 						return null;
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("TimerStart",
@@ -755,21 +710,23 @@ public class Jass2 {
 			// ============================================================================
 			// Group API
 			//
-			jassProgramVisitor.getJassNativeManager().createNative("CreateGroup", new JassFunction() {
-				int stupidGroupHandleId = 0x100000;
-
-				@Override
-				public JassValue call(final List<JassValue> arguments, final GlobalScope globalScope,
-						final TriggerExecutionScope triggerScope) {
-					return new HandleJassValue(groupType, new UnitGroup(this.stupidGroupHandleId++));
-				}
-			});
+			jassProgramVisitor.getJassNativeManager().createNative("CreateGroup",
+					(arguments, globalScope, triggerScope) -> {
+						final HandleIdAllocator handleIdAllocator = CommonEnvironment.this.simulation
+								.getHandleIdAllocator();
+						final UnitGroup group = new UnitGroup(handleIdAllocator.createId());
+						handleIdAllocator.register(group.getHandleId(), group);
+						return new HandleJassValue(groupType, group);
+					});
 			jassProgramVisitor.getJassNativeManager().createNative("DestroyGroup",
 					(arguments, globalScope, triggerScope) -> {
 						final List<CUnit> group = arguments.get(0)
 								.visit(ObjectJassValueVisitor.<List<CUnit>>getInstance());
-						System.err.println(
-								"DestroyGroup called but in Java we don't have a destructor, so we need to unregister later when that is implemented");
+						if (group instanceof UnitGroup) {
+							group.clear();
+							CommonEnvironment.this.simulation.getHandleIdAllocator()
+									.free(((UnitGroup) group).getHandleId(), group);
+						}
 						return null;
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GroupAddUnit",
@@ -1118,14 +1075,13 @@ public class Jass2 {
 								});
 						return null;
 					});
-			jassProgramVisitor.getJassNativeManager().createNative("GroupEnumUnitsInRange",
-					(arguments, globalScope, triggerScope) -> {
-						final List<CUnit> group = arguments.get(0)
-								.visit(ObjectJassValueVisitor.<List<CUnit>>getInstance());
-						final float x = arguments.get(1).visit(RealJassValueVisitor.getInstance()).floatValue();
-						final float y = arguments.get(2).visit(RealJassValueVisitor.getInstance()).floatValue();
-						final float radius = arguments.get(3).visit(RealJassValueVisitor.getInstance()).floatValue();
-						final TriggerBooleanExpression filter = nullable(arguments, 4,
+			jassProgramVisitor.getJassNativeManager().createNative5("GroupEnumUnitsInRange",
+					(whichGroup, xValue, yValue, radiusValue, filterValue, globalScope, triggerScope) -> {
+						final List<CUnit> group = whichGroup.visit(ObjectJassValueVisitor.<List<CUnit>>getInstance());
+						final float x = xValue.visit(RealJassValueVisitor.getInstance()).floatValue();
+						final float y = yValue.visit(RealJassValueVisitor.getInstance()).floatValue();
+						final float radius = radiusValue.visit(RealJassValueVisitor.getInstance()).floatValue();
+						final TriggerBooleanExpression filter = nullable(filterValue,
 								ObjectJassValueVisitor.<TriggerBooleanExpression>getInstance());
 						CommonEnvironment.this.simulation.getWorldCollision().enumUnitsInRect(
 								tempRect.set(x - radius, y - radius, radius * 2, radius * 2), (unit) -> {
@@ -1680,14 +1636,16 @@ public class Jass2 {
 					(arguments, globalScope, triggerScope) -> {
 						final float x = arguments.get(0).visit(RealJassValueVisitor.getInstance()).floatValue();
 						final float y = arguments.get(1).visit(RealJassValueVisitor.getInstance()).floatValue();
-						return new HandleJassValue(locationType, new Point2D.Double(x, y));
+						return new HandleJassValue(locationType, CommonEnvironment.this.createLocation(x, y));
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("RemoveLocation",
 					(arguments, globalScope, triggerScope) -> {
 						final Point2D.Double whichLocation = arguments.get(0)
 								.visit(ObjectJassValueVisitor.<Point2D.Double>getInstance());
-						System.err.println(
-								"RemoveRect called but in Java we don't have a destructor, so we need to unregister later when that is implemented");
+						if (whichLocation instanceof CLocation) {
+							CommonEnvironment.this.simulation.getHandleIdAllocator()
+									.free(((CLocation) whichLocation).getHandleId(), whichLocation);
+						}
 						return null;
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("MoveLocation",
@@ -1759,14 +1717,14 @@ public class Jass2 {
 			// Native trigger interface
 			//
 			setupTriggerAPI(jassProgramVisitor, triggerType, triggeractionType, triggerconditionType, boolexprType,
-					conditionfuncType, filterfuncType, eventidType);
-			jassProgramVisitor.getJassNativeManager().createNative("GetFilterUnit",
-					(arguments, globalScope, triggerScope) -> {
+					conditionfuncType, filterfuncType, eventidType, this.simulation.getHandleIdAllocator());
+			jassProgramVisitor.getJassNativeManager().createNative0("GetFilterUnit",
+					(globalScope, triggerScope) -> {
 						return new HandleJassValue(unitType,
 								((CommonTriggerExecutionScope) triggerScope).getFilterUnit());
 					});
-			jassProgramVisitor.getJassNativeManager().createNative("GetEnumUnit",
-					(arguments, globalScope, triggerScope) -> {
+			jassProgramVisitor.getJassNativeManager().createNative0("GetEnumUnit",
+					(globalScope, triggerScope) -> {
 						return new HandleJassValue(unitType,
 								((CommonTriggerExecutionScope) triggerScope).getEnumUnit());
 					});
@@ -2128,7 +2086,7 @@ public class Jass2 {
 						switch (gameState) {
 						case DISCONNECTED:
 						case DIVINE_INTERVENTION:
-							return new IntegerJassValue(0); // TODO
+							return IntegerJassValue.of(0); // TODO
 						}
 						throw new IllegalArgumentException("Not an integer game state: " + gameState);
 					});
@@ -2209,7 +2167,7 @@ public class Jass2 {
 						final int level = arguments.get(0).visit(IntegerJassValueVisitor.getInstance());
 						final War3ID randomItemId = CommonEnvironment.this.simulation.getItemData()
 								.chooseRandomItem(level, CommonEnvironment.this.simulation.getSeededRandom());
-						return new IntegerJassValue(randomItemId == null ? 0 : randomItemId.getValue());
+						return IntegerJassValue.of(randomItemId == null ? 0 : randomItemId.getValue());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("ChooseRandomItemEx",
 					(arguments, globalScope, triggerScope) -> {
@@ -2217,7 +2175,7 @@ public class Jass2 {
 						final int level = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
 						final War3ID randomItemId = CommonEnvironment.this.simulation.getItemData().chooseRandomItem(
 								whichType, level, CommonEnvironment.this.simulation.getSeededRandom());
-						return new IntegerJassValue(randomItemId == null ? 0 : randomItemId.getValue());
+						return IntegerJassValue.of(randomItemId == null ? 0 : randomItemId.getValue());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("CreateDestructable",
 					(arguments, globalScope, triggerScope) -> {
@@ -2363,7 +2321,7 @@ public class Jass2 {
 			jassProgramVisitor.getJassNativeManager().createNative("GetResourceAmount",
 					(arguments, globalScope, triggerScope) -> {
 						final CUnit whichUnit = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
-						return new IntegerJassValue(whichUnit.getGold());
+						return IntegerJassValue.of(whichUnit.getGold());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("SetUnitState",
 					(arguments, globalScope, triggerScope) -> {
@@ -2379,10 +2337,11 @@ public class Jass2 {
 						}
 						return null;
 					});
-			jassProgramVisitor.getJassNativeManager().createNative("GetUnitState",
-					(arguments, globalScope, triggerScope) -> {
-						final CUnit whichUnit = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
-						final CUnitState whichUnitState = arguments.get(1).visit(ObjectJassValueVisitor.getInstance());
+			jassProgramVisitor.getJassNativeManager().createNative2("GetUnitState",
+					(whichUnitValue, whichUnitStateValue, globalScope, triggerScope) -> {
+						final CUnit whichUnit = whichUnitValue.visit(ObjectJassValueVisitor.getInstance());
+						final CUnitState whichUnitState = whichUnitStateValue
+								.visit(ObjectJassValueVisitor.getInstance());
 						if (whichUnit == null) {
 							return RealJassValue.ZERO;
 						}
@@ -2431,7 +2390,7 @@ public class Jass2 {
 						final CPlayer player = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
 						final CPlayerState whichPlayerState = arguments.get(1)
 								.visit(ObjectJassValueVisitor.getInstance());
-						return new IntegerJassValue(
+						return IntegerJassValue.of(
 								player.getPlayerState(CommonEnvironment.this.simulation, whichPlayerState));
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetPlayerTechResearched",
@@ -2446,7 +2405,7 @@ public class Jass2 {
 						final CPlayer player = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
 						final int techIdRawcode = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
 						final boolean specificOnly = arguments.get(2).visit(BooleanJassValueVisitor.getInstance());
-						return new IntegerJassValue(player.getTechtreeUnlocked(new War3ID(techIdRawcode)));
+						return IntegerJassValue.of(player.getTechtreeUnlocked(new War3ID(techIdRawcode)));
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("SetPlayerTechResearched",
 					(arguments, globalScope, triggerScope) -> {
@@ -2486,7 +2445,7 @@ public class Jass2 {
 					(arguments, globalScope, triggerScope) -> {
 						final CPlayer player = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
 						final int techIdRawcode = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
-						return new IntegerJassValue(player.getTechtreeMaxAllowed(new War3ID(techIdRawcode)));
+						return IntegerJassValue.of(player.getTechtreeMaxAllowed(new War3ID(techIdRawcode)));
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("IsFogEnabled",
 					(arguments, globalScope, triggerScope) -> {
@@ -2707,7 +2666,7 @@ public class Jass2 {
 								highBound = lowBound;
 							}
 						}
-						return new IntegerJassValue(
+						return IntegerJassValue.of(
 								CommonEnvironment.this.simulation.getSeededRandom().nextInt((highBound - lowBound) + 1)
 										+ lowBound);
 					});
@@ -2721,25 +2680,25 @@ public class Jass2 {
 						final CWidget whichWidget = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
 						return new RealJassValue(whichWidget.getY());
 					});
-			jassProgramVisitor.getJassNativeManager().createNative("GetUnitX",
-					(arguments, globalScope, triggerScope) -> {
-						final CUnit whichWidget = nullable(arguments, 0, ObjectJassValueVisitor.getInstance());
+			jassProgramVisitor.getJassNativeManager().createNative1("GetUnitX",
+					(whichUnitValue, globalScope, triggerScope) -> {
+						final CUnit whichWidget = nullable(whichUnitValue, ObjectJassValueVisitor.getInstance());
 						return new RealJassValue(whichWidget == null ? 0 : whichWidget.getX());
 					});
-			jassProgramVisitor.getJassNativeManager().createNative("GetUnitY",
-					(arguments, globalScope, triggerScope) -> {
-						final CUnit whichWidget = nullable(arguments, 0, ObjectJassValueVisitor.getInstance());
+			jassProgramVisitor.getJassNativeManager().createNative1("GetUnitY",
+					(whichUnitValue, globalScope, triggerScope) -> {
+						final CUnit whichWidget = nullable(whichUnitValue, ObjectJassValueVisitor.getInstance());
 						return new RealJassValue(whichWidget == null ? 0 : whichWidget.getY());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetUnitPointValue",
 					(arguments, globalScope, triggerScope) -> {
 						final CUnit whichWidget = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
-						return new IntegerJassValue(whichWidget.getUnitType().getPointValue());
+						return IntegerJassValue.of(whichWidget.getUnitType().getPointValue());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetUnitPointValueByType",
 					(arguments, globalScope, triggerScope) -> {
 						final int rawcode = arguments.get(0).visit(IntegerJassValueVisitor.getInstance());
-						return new IntegerJassValue(CommonEnvironment.this.simulation.getUnitData()
+						return IntegerJassValue.of(CommonEnvironment.this.simulation.getUnitData()
 								.getUnitType(new War3ID(rawcode)).getPointValue());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetItemX",
@@ -2756,16 +2715,16 @@ public class Jass2 {
 					(arguments, globalScope, triggerScope) -> {
 						final CItem whichWidget = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
 						return new HandleJassValue(locationType,
-								new Point2D.Double(whichWidget.getX(), whichWidget.getY()));
+								CommonEnvironment.this.createLocation(whichWidget.getX(), whichWidget.getY()));
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetUnitLoc",
 					(arguments, globalScope, triggerScope) -> {
 						final CUnit whichWidget = nullable(arguments, 0, ObjectJassValueVisitor.getInstance());
 						if (whichWidget == null) {
-							return new HandleJassValue(locationType, new Point2D.Double(0, 0));
+							return new HandleJassValue(locationType, CommonEnvironment.this.createLocation(0, 0));
 						}
 						return new HandleJassValue(locationType,
-								new Point2D.Double(whichWidget.getX(), whichWidget.getY()));
+								CommonEnvironment.this.createLocation(whichWidget.getX(), whichWidget.getY()));
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetUnitAbilityLevel",
 					(arguments, globalScope, triggerScope) -> {
@@ -2777,7 +2736,7 @@ public class Jass2 {
 						final CAbility ability = whichWidget
 								.getAbility(GetAbilityByRawcodeVisitor.getInstance().reset(new War3ID(rawcode)));
 						// TODO below code is very stupid!!
-						return new IntegerJassValue(ability == null ? 0 : 1);
+						return IntegerJassValue.of(ability == null ? 0 : 1);
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("IncUnitAbilityLevel",
 					(arguments, globalScope, triggerScope) -> {
@@ -2791,11 +2750,11 @@ public class Jass2 {
 									CommonEnvironment.this.simulation.getAbilityData().createAbility(war3id,
 											CommonEnvironment.this.simulation.getHandleIdAllocator().createId()));
 							// TODO below code is very stupid!!
-							return new IntegerJassValue(1);
+							return IntegerJassValue.of(1);
 						}
 						else {
 							// TODO below code is very stupid!!
-							return new IntegerJassValue(1);
+							return IntegerJassValue.of(1);
 						}
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetPlayerHandicap",
@@ -2803,19 +2762,26 @@ public class Jass2 {
 						final CPlayer whichPlayer = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
 						return new RealJassValue(whichPlayer.getHandicap());
 					});
-			jassProgramVisitor.getJassNativeManager().createNative("GetHandleId",
-					(arguments, globalScope, triggerScope) -> {
-						final CHandle whichHandle = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+			jassProgramVisitor.getJassNativeManager().createNative1("GetHandleId",
+					(whichHandleValue, globalScope, triggerScope) -> {
+						final CHandle whichHandle = whichHandleValue.visit(ObjectJassValueVisitor.getInstance());
 						if (whichHandle == null) {
 							return IntegerJassValue.ZERO;
 						}
-						return new IntegerJassValue(whichHandle.getHandleId());
+						return IntegerJassValue.of(whichHandle.getHandleId());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("TriggerSleepAction",
 					(arguments, globalScope, triggerScope) -> {
 						final double time = arguments.get(0).visit(RealJassValueVisitor.getInstance());
 						if (time != 0) {
-							throw new JassException(globalScope, "Needs to sleep " + time, null);
+							final JassThread thread = globalScope.getVirtualMachine().suspend();
+							if (thread == null) {
+								throw new JassException(globalScope, "Needs to sleep " + time, null);
+							}
+							// like the game, a sleep lasts at least until the next step
+							final CTimer resumeTimer = new CTimerJassThread(globalScope, thread);
+							resumeTimer.setTimeoutTime(Math.max((float) time, WarsmashConstants.SIMULATION_STEP_TIME));
+							resumeTimer.start(CommonEnvironment.this.simulation);
 						}
 						return null;
 					});
@@ -2824,15 +2790,16 @@ public class Jass2 {
 						final String modelName = arguments.get(0).visit(StringJassValueVisitor.getInstance());
 						final CWidget targetWidget = arguments.get(1).visit(ObjectJassValueVisitor.getInstance());
 						final String attachPointName = arguments.get(2).visit(StringJassValueVisitor.getInstance());
-						return new HandleJassValue(effectType,
-								war3MapViewer.addSpecialEffectTarget(modelName, targetWidget, attachPointName));
+						return new HandleJassValue(effectType, CommonEnvironment.this.registerEffect(
+								war3MapViewer.addSpecialEffectTarget(modelName, targetWidget, attachPointName)));
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("AddSpecialEffectLoc",
 					(arguments, globalScope, triggerScope) -> {
 						final String modelName = arguments.get(0).visit(StringJassValueVisitor.getInstance());
 						final Point2D.Double positionLoc = arguments.get(1).visit(ObjectJassValueVisitor.getInstance());
-						return new HandleJassValue(effectType, war3MapViewer.addSpecialEffect(modelName,
-								(float) positionLoc.x, (float) positionLoc.y, 0 /* facing */));
+						return new HandleJassValue(effectType,
+								CommonEnvironment.this.registerEffect(war3MapViewer.addSpecialEffect(modelName,
+										(float) positionLoc.x, (float) positionLoc.y, 0 /* facing */)));
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("AddSpellEffectById",
 					(arguments, globalScope, triggerScope) -> {
@@ -2841,8 +2808,9 @@ public class Jass2 {
 								.visit(ObjectJassValueVisitor.getInstance());
 						final double x = arguments.get(2).visit(RealJassValueVisitor.getInstance());
 						final double y = arguments.get(3).visit(RealJassValueVisitor.getInstance());
-						return new HandleJassValue(effectType, war3MapViewer.spawnSpellEffectEx((float) x, (float) y,
-								0 /* facing */, new War3ID(rawcode), whichEffectType, 0));
+						return new HandleJassValue(effectType,
+								CommonEnvironment.this.registerEffect(war3MapViewer.spawnSpellEffectEx((float) x,
+										(float) y, 0 /* facing */, new War3ID(rawcode), whichEffectType, 0)));
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("AddLightning",
 					(arguments, globalScope, triggerScope) -> {
@@ -2942,7 +2910,10 @@ public class Jass2 {
 			jassProgramVisitor.getJassNativeManager().createNative("DestroyEffect",
 					(arguments, globalScope, triggerScope) -> {
 						final RenderSpellEffect fx = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
-						fx.setKillWhenDone(true);
+						if (fx != null) {
+							fx.setKillWhenDone(true);
+							CommonEnvironment.this.simulation.getHandleIdAllocator().free(fx.getHandleId(), fx);
+						}
 						return null;
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("SetItemInvulnerable",
@@ -3118,12 +3089,12 @@ public class Jass2 {
 			jassProgramVisitor.getJassNativeManager().createNative("LeaderboardGetItemCount",
 					(arguments, globalScope, triggerScope) -> {
 						// TODO NYI
-						return new IntegerJassValue(0);
+						return IntegerJassValue.of(0);
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("LeaderboardGetPlayerIndex",
 					(arguments, globalScope, triggerScope) -> {
 						// TODO NYI
-						return new IntegerJassValue(0);
+						return IntegerJassValue.of(0);
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("SetUnitInvulnerable",
 					(arguments, globalScope, triggerScope) -> {
@@ -3215,7 +3186,7 @@ public class Jass2 {
 						if (whichUnit == null) {
 							return IntegerJassValue.ZERO;
 						}
-						return new IntegerJassValue(whichUnit.getTriggerEditorCustomValue());
+						return IntegerJassValue.of(whichUnit.getTriggerEditorCustomValue());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("SetUnitUserData",
 					(arguments, globalScope, triggerScope) -> {
@@ -3306,17 +3277,17 @@ public class Jass2 {
 					(arguments, globalScope, triggerScope) -> {
 						final CUnit whichUnit = nullable(arguments, 0, ObjectJassValueVisitor.getInstance());
 						if (whichUnit == null) {
-							return new IntegerJassValue(0);
+							return IntegerJassValue.of(0);
 						}
-						return new IntegerJassValue(whichUnit.getTypeId().getValue());
+						return IntegerJassValue.of(whichUnit.getTypeId().getValue());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetItemTypeId",
 					(arguments, globalScope, triggerScope) -> {
 						final CItem whichItem = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
 						if (whichItem == null) {
-							return new IntegerJassValue(0);
+							return IntegerJassValue.of(0);
 						}
-						return new IntegerJassValue(whichItem.getTypeId().getValue());
+						return IntegerJassValue.of(whichItem.getTypeId().getValue());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetItemType",
 					(arguments, globalScope, triggerScope) -> {
@@ -3330,9 +3301,9 @@ public class Jass2 {
 					(arguments, globalScope, triggerScope) -> {
 						final CItem whichItem = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
 						if (whichItem == null) {
-							return new IntegerJassValue(0);
+							return IntegerJassValue.of(0);
 						}
-						return new IntegerJassValue(whichItem.getItemType().getLevel());
+						return IntegerJassValue.of(whichItem.getItemType().getLevel());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetOwningPlayer",
 					(arguments, globalScope, triggerScope) -> {
@@ -3363,8 +3334,8 @@ public class Jass2 {
 						return new HandleJassValue(unitType,
 								((CommonTriggerExecutionScope) triggerScope).getKillingUnit());
 					});
-			jassProgramVisitor.getJassNativeManager().createNative("GetTriggerUnit",
-					(arguments, globalScope, triggerScope) -> {
+			jassProgramVisitor.getJassNativeManager().createNative0("GetTriggerUnit",
+					(globalScope, triggerScope) -> {
 						return new HandleJassValue(unitType,
 								((CommonTriggerExecutionScope) triggerScope).getTriggeringUnit());
 					});
@@ -3395,7 +3366,7 @@ public class Jass2 {
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetIssuedOrderId",
 					(arguments, globalScope, triggerScope) -> {
-						return new IntegerJassValue(((CommonTriggerExecutionScope) triggerScope).getIssuedOrderId());
+						return IntegerJassValue.of(((CommonTriggerExecutionScope) triggerScope).getIssuedOrderId());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetOrderPointX",
 					(arguments, globalScope, triggerScope) -> {
@@ -3408,7 +3379,7 @@ public class Jass2 {
 			jassProgramVisitor.getJassNativeManager().createNative("GetOrderPointLoc",
 					(arguments, globalScope, triggerScope) -> {
 						final CommonTriggerExecutionScope commonTriggerExecutionScope = (CommonTriggerExecutionScope) triggerScope;
-						final Point2D.Double jassLocation = new Point2D.Double(
+						final Point2D.Double jassLocation = CommonEnvironment.this.createLocation(
 								commonTriggerExecutionScope.getOrderPointX(),
 								commonTriggerExecutionScope.getOrderPointY());
 						return new HandleJassValue(locationType, jassLocation);
@@ -3447,7 +3418,8 @@ public class Jass2 {
 					(arguments, globalScope, triggerScope) -> {
 						final AbilityPointTarget spellTargetPoint = ((CommonTriggerExecutionScope) triggerScope)
 								.getSpellTargetPoint();
-						final Point2D.Double jassLocation = new Point2D.Double(spellTargetPoint.x, spellTargetPoint.y);
+						final Point2D.Double jassLocation = CommonEnvironment.this.createLocation(spellTargetPoint.x,
+								spellTargetPoint.y);
 						return new HandleJassValue(locationType, jassLocation);
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetSpellTargetX",
@@ -3467,12 +3439,12 @@ public class Jass2 {
 						final AbilityPointTarget spellTargetPoint = ((CommonTriggerExecutionScope) triggerScope)
 								.getSpellTargetPoint();
 						return new HandleJassValue(locationType,
-								new Point2D.Double(spellTargetPoint.x, spellTargetPoint.y));
+								CommonEnvironment.this.createLocation(spellTargetPoint.x, spellTargetPoint.y));
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetSpellAbilityId",
 					(arguments, globalScope, triggerScope) -> {
 						final War3ID spellAbilityId = ((CommonTriggerExecutionScope) triggerScope).getSpellAbilityId();
-						return new IntegerJassValue(spellAbilityId == null ? 0 : spellAbilityId.getValue());
+						return IntegerJassValue.of(spellAbilityId == null ? 0 : spellAbilityId.getValue());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetEnumPlayer",
 					(arguments, globalScope, triggerScope) -> {
@@ -3491,7 +3463,7 @@ public class Jass2 {
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetResearched",
 					(arguments, globalScope, triggerScope) -> {
-						return new IntegerJassValue(((CommonTriggerExecutionScope) triggerScope).getResearched());
+						return IntegerJassValue.of(((CommonTriggerExecutionScope) triggerScope).getResearched());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetTrainedUnit",
 					(arguments, globalScope, triggerScope) -> {
@@ -3500,7 +3472,7 @@ public class Jass2 {
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetTrainedUnitType",
 					(arguments, globalScope, triggerScope) -> {
-						return new IntegerJassValue(((CommonTriggerExecutionScope) triggerScope).getTrainedUnitType());
+						return IntegerJassValue.of(((CommonTriggerExecutionScope) triggerScope).getTrainedUnitType());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetUnitRallyPoint",
 					(arguments, globalScope, triggerScope) -> {
@@ -3519,7 +3491,7 @@ public class Jass2 {
 						else {
 							x = y = 0;
 						}
-						return new HandleJassValue(locationType, new Point2D.Double(x, y));
+						return new HandleJassValue(locationType, CommonEnvironment.this.createLocation(x, y));
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetUnitRallyUnit",
 					(arguments, globalScope, triggerScope) -> {
@@ -3607,7 +3579,7 @@ public class Jass2 {
 						else {
 							orderId = 0;
 						}
-						return new IntegerJassValue(orderId);
+						return IntegerJassValue.of(orderId);
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("SetBlightLoc",
 					(arguments, globalScope, triggerScope) -> {
@@ -3648,84 +3620,223 @@ public class Jass2 {
 					(arguments, globalScope, triggerScope) -> {
 						return new HandleJassValue(hashtableType, new CHashtable());
 					});
-			jassProgramVisitor.getJassNativeManager().createNative("SaveInteger", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveReal", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveBoolean", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveStr", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SavePlayerHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveWidgetHandle", new SaveHashtableValueFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveInteger",
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						table.saveInteger(parentKey, childKey,
+								arguments.get(3).visit(IntegerJassValueVisitor.getInstance()));
+						return null;
+					});
+			jassProgramVisitor.getJassNativeManager().createNative("SaveReal",
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						table.saveReal(parentKey, childKey, arguments.get(3).visit(RealJassValueVisitor.getInstance()));
+						return null;
+					});
+			jassProgramVisitor.getJassNativeManager().createNative("SaveBoolean",
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						table.saveBoolean(parentKey, childKey,
+								arguments.get(3).visit(BooleanJassValueVisitor.getInstance()));
+						return null;
+					});
+			jassProgramVisitor.getJassNativeManager().createNative("SaveStr",
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						final JassValue value = arguments.get(3);
+						if (value == null) {
+							table.removeSavedString(parentKey, childKey);
+						}
+						else {
+							table.saveString(parentKey, childKey, value.visit(StringJassValueVisitor.getInstance()));
+						}
+						return null;
+					});
+			jassProgramVisitor.getJassNativeManager().createNative("SavePlayerHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveWidgetHandle", new SaveHashtableHandleFunc());
 			jassProgramVisitor.getJassNativeManager().createNative("SaveDestructableHandle",
-					new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveItemHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveUnitHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveAbilityHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveTimerHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveTriggerHandle", new SaveHashtableValueFunc());
+					new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveItemHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveUnitHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveAbilityHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveTimerHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveTriggerHandle", new SaveHashtableHandleFunc());
 			jassProgramVisitor.getJassNativeManager().createNative("SaveTriggerConditionHandle",
-					new SaveHashtableValueFunc());
+					new SaveHashtableHandleFunc());
 			jassProgramVisitor.getJassNativeManager().createNative("SaveTriggerActionHandle",
-					new SaveHashtableValueFunc());
+					new SaveHashtableHandleFunc());
 			jassProgramVisitor.getJassNativeManager().createNative("SaveTriggerEventHandle",
-					new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveForceHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveGroupHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveLocationHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveRectHandle", new SaveHashtableValueFunc());
+					new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveForceHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveGroupHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveLocationHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveRectHandle", new SaveHashtableHandleFunc());
 			jassProgramVisitor.getJassNativeManager().createNative("SaveBooleanExprHandle",
-					new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveSoundHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveEffectHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveUnitPoolHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveItemPoolHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveQuestHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveQuestItemHandle", new SaveHashtableValueFunc());
+					new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveSoundHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveEffectHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveUnitPoolHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveItemPoolHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveQuestHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveQuestItemHandle", new SaveHashtableHandleFunc());
 			jassProgramVisitor.getJassNativeManager().createNative("SaveDefeatConditionHandle",
-					new SaveHashtableValueFunc());
+					new SaveHashtableHandleFunc());
 			jassProgramVisitor.getJassNativeManager().createNative("SaveTimerDialogHandle",
-					new SaveHashtableValueFunc());
+					new SaveHashtableHandleFunc());
 			jassProgramVisitor.getJassNativeManager().createNative("SaveLeaderboardHandle",
-					new SaveHashtableValueFunc());
+					new SaveHashtableHandleFunc());
 			jassProgramVisitor.getJassNativeManager().createNative("SaveMultiboardHandle",
-					new SaveHashtableValueFunc());
+					new SaveHashtableHandleFunc());
 			jassProgramVisitor.getJassNativeManager().createNative("SaveMultiboardItemHandle",
-					new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveTrackableHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveDialogHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveButtonHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveTextTagHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveLightningHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveImageHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveUbersplatHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveRegionHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveFogStateHandle", new SaveHashtableValueFunc());
+					new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveTrackableHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveDialogHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveButtonHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveTextTagHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveLightningHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveImageHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveUbersplatHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveRegionHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveFogStateHandle", new SaveHashtableHandleFunc());
 			jassProgramVisitor.getJassNativeManager().createNative("SaveFogModifierHandle",
-					new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveAgentHandle", new SaveHashtableValueFunc());
-			jassProgramVisitor.getJassNativeManager().createNative("SaveHashtableHandle", new SaveHashtableValueFunc());
+					new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveAgentHandle", new SaveHashtableHandleFunc());
+			jassProgramVisitor.getJassNativeManager().createNative("SaveHashtableHandle", new SaveHashtableHandleFunc());
 
 			jassProgramVisitor.getJassNativeManager().createNative("LoadInteger",
-					new LoadHashtableValueFunc(IntegerJassValue.ZERO));
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						return IntegerJassValue.of(table.loadInteger(parentKey, childKey));
+					});
 			jassProgramVisitor.getJassNativeManager().createNative("LoadReal",
-					new LoadHashtableValueFunc(RealJassValue.ZERO));
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						return new RealJassValue(table.loadReal(parentKey, childKey));
+					});
 			jassProgramVisitor.getJassNativeManager().createNative("LoadBoolean",
-					new LoadHashtableValueFunc(BooleanJassValue.FALSE));
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						return BooleanJassValue.of(table.loadBoolean(parentKey, childKey));
+					});
 			jassProgramVisitor.getJassNativeManager().createNative("LoadStr",
-					new LoadHashtableValueFunc(StringJassValue.EMPTY_STRING));
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						final String value = table.loadString(parentKey, childKey);
+						if (value == null) {
+							return StringJassValue.EMPTY_STRING;
+						}
+						return StringJassValue.of(value);
+					});
 			jassProgramVisitor.getJassNativeManager().createNative("LoadTriggerHandle",
-					new LoadHashtableValueFunc(new HandleJassValue(triggerType, null)));
+					new LoadHashtableHandleFunc(new HandleJassValue(triggerType, null)));
 			jassProgramVisitor.getJassNativeManager().createNative("LoadSoundHandle",
-					new LoadHashtableValueFunc(new HandleJassValue(soundType, null)));
+					new LoadHashtableHandleFunc(new HandleJassValue(soundType, null)));
 
 			jassProgramVisitor.getJassNativeManager().createNative("HaveSavedInteger",
-					new HaveSavedHashtableValueFunc(JassType.INTEGER));
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						return BooleanJassValue.of(table.haveSavedInteger(parentKey, childKey));
+					});
 			jassProgramVisitor.getJassNativeManager().createNative("HaveSavedReal",
-					new HaveSavedHashtableValueFunc(JassType.REAL));
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						return BooleanJassValue.of(table.haveSavedReal(parentKey, childKey));
+					});
 			jassProgramVisitor.getJassNativeManager().createNative("HaveSavedBoolean",
-					new HaveSavedHashtableValueFunc(JassType.BOOLEAN));
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						return BooleanJassValue.of(table.haveSavedBoolean(parentKey, childKey));
+					});
 			jassProgramVisitor.getJassNativeManager().createNative("HaveSavedString",
-					new HaveSavedHashtableValueFunc(JassType.STRING));
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						return BooleanJassValue.of(table.haveSavedString(parentKey, childKey));
+					});
 			jassProgramVisitor.getJassNativeManager().createNative("HaveSavedHandle",
-					new HaveSavedHashtableValueFunc(agentType));
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						return BooleanJassValue.of(table.haveSavedHandle(parentKey, childKey));
+					});
+
+			jassProgramVisitor.getJassNativeManager().createNative("RemoveSavedInteger",
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						table.removeSavedInteger(parentKey, childKey);
+						return null;
+					});
+			jassProgramVisitor.getJassNativeManager().createNative("RemoveSavedReal",
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						table.removeSavedReal(parentKey, childKey);
+						return null;
+					});
+			jassProgramVisitor.getJassNativeManager().createNative("RemoveSavedBoolean",
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						table.removeSavedBoolean(parentKey, childKey);
+						return null;
+					});
+			jassProgramVisitor.getJassNativeManager().createNative("RemoveSavedString",
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						table.removeSavedString(parentKey, childKey);
+						return null;
+					});
+			jassProgramVisitor.getJassNativeManager().createNative("RemoveSavedHandle",
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+						table.removeSavedHandle(parentKey, childKey);
+						return null;
+					});
+			jassProgramVisitor.getJassNativeManager().createNative("FlushParentHashtable",
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						table.flushParent();
+						return null;
+					});
+			jassProgramVisitor.getJassNativeManager().createNative("FlushChildHashtable",
+					(arguments, globalScope, triggerScope) -> {
+						final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
+						final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+						table.flushChild(parentKey);
+						return null;
+					});
 
 			jassProgramVisitor.getJassNativeManager().createNative("GetExpiredTimer",
 					(arguments, globalScope, triggerScope) -> {
@@ -3745,7 +3856,7 @@ public class Jass2 {
 								}
 							}
 						}
-						return new IntegerJassValue(count);
+						return IntegerJassValue.of(count);
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetPlayerTypedUnitCount",
 					(arguments, globalScope, triggerScope) -> {
@@ -3769,7 +3880,7 @@ public class Jass2 {
 								}
 							}
 						}
-						return new IntegerJassValue(count);
+						return IntegerJassValue.of(count);
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("IsUnitEnemy",
 					(arguments, globalScope, triggerScope) -> {
@@ -3920,12 +4031,12 @@ public class Jass2 {
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetSpellAbilityOrderId",
 					(arguments, globalScope, triggerScope) -> {
-						return new IntegerJassValue(
+						return IntegerJassValue.of(
 								((CommonTriggerExecutionScope) triggerScope).getSpellAbilityOrderId());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetSpellAbilityOrderButton",
 					(arguments, globalScope, triggerScope) -> {
-						return new IntegerJassValue(
+						return IntegerJassValue.of(
 								((CommonTriggerExecutionScope) triggerScope).getSpellAbilityOrderId());
 					});
 			jassProgramVisitor.getJassNativeManager().createNative("GetSpellTargetType",
@@ -4259,6 +4370,34 @@ public class Jass2 {
 						"Exception on Line " + this.jassProgramVisitor.getGlobals().getLineNumber(), exc);
 			}
 		}
+
+		public void printTriggerMetrics(final int limit) {
+			this.jassProgramVisitor.getGlobals().printTriggerMetrics(limit);
+		}
+
+		public JassProfiler getProfiler() {
+			return this.jassProgramVisitor.getGlobals().getProfiler();
+		}
+
+		public void printLiveHandleCounts() {
+			this.simulation.getHandleIdAllocator().printLiveHandleCounts(System.out);
+		}
+
+		private CLocation createLocation(final double x, final double y) {
+			final HandleIdAllocator handleIdAllocator = this.simulation.getHandleIdAllocator();
+			final CLocation location = new CLocation(handleIdAllocator.createId(), x, y);
+			handleIdAllocator.register(location.getHandleId(), location);
+			return location;
+		}
+
+		private RenderSpellEffect registerEffect(final RenderSpellEffect effect) {
+			if (effect != null) {
+				final HandleIdAllocator handleIdAllocator = this.simulation.getHandleIdAllocator();
+				effect.setHandleId(handleIdAllocator.createId());
+				handleIdAllocator.register(effect.getHandleId(), effect);
+			}
+			return effect;
+		}
 	}
 
 	public static final class ConfigEnvironment {
@@ -4405,18 +4544,24 @@ public class Jass2 {
 	private static void setupTriggerAPI(final JassProgramVisitor jassProgramVisitor, final HandleJassType triggerType,
 			final HandleJassType triggeractionType, final HandleJassType triggerconditionType,
 			final HandleJassType boolexprType, final HandleJassType conditionfuncType,
-			final HandleJassType filterfuncType, final HandleJassType eventidType) {
+			final HandleJassType filterfuncType, final HandleJassType eventidType,
+			final HandleIdAllocator handleIdAllocator) {
 		// ============================================================================
 		// Native trigger interface
 		//
 		jassProgramVisitor.getJassNativeManager().createNative("CreateTrigger",
 				(arguments, globalScope, triggerScope) -> {
-					return new HandleJassValue(triggerType, new Trigger());
+					final Trigger trigger = globalScope.createTrigger(handleIdAllocator.createId());
+					handleIdAllocator.register(trigger.getHandleId(), trigger);
+					return new HandleJassValue(triggerType, trigger);
 				});
 		jassProgramVisitor.getJassNativeManager().createNative("DestroyTrigger",
 				(arguments, globalScope, triggerScope) -> {
 					final Trigger trigger = arguments.get(0).visit(ObjectJassValueVisitor.<Trigger>getInstance());
-					trigger.destroy();
+					if (trigger != null) {
+						globalScope.destroyTrigger(trigger);
+						handleIdAllocator.free(trigger.getHandleId(), trigger);
+					}
 					return null;
 				});
 		jassProgramVisitor.getJassNativeManager().createNative("ResetTrigger",
@@ -4466,12 +4611,12 @@ public class Jass2 {
 		jassProgramVisitor.getJassNativeManager().createNative("GetTriggerEvalCount",
 				(arguments, globalScope, triggerScope) -> {
 					final Trigger trigger = arguments.get(0).visit(ObjectJassValueVisitor.<Trigger>getInstance());
-					return new IntegerJassValue(trigger.getEvalCount());
+					return IntegerJassValue.of(trigger.getEvalCount());
 				});
 		jassProgramVisitor.getJassNativeManager().createNative("GetTriggerExecCount",
 				(arguments, globalScope, triggerScope) -> {
 					final Trigger trigger = arguments.get(0).visit(ObjectJassValueVisitor.<Trigger>getInstance());
-					return new IntegerJassValue(trigger.getExecCount());
+					return IntegerJassValue.of(trigger.getExecCount());
 				});
 		jassProgramVisitor.getJassNativeManager().createNative("ExecuteFunc",
 				(arguments, globalScope, triggerScope) -> {
@@ -4578,7 +4723,10 @@ public class Jass2 {
 
 	private static <T> T nullable(final List<JassValue> arguments, final int index,
 			final ObjectJassValueVisitor<T> visitor) {
-		final JassValue arg = arguments.get(index);
+		return nullable(arguments.get(index), visitor);
+	}
+
+	private static <T> T nullable(final JassValue arg, final ObjectJassValueVisitor<T> visitor) {
 		if (arg == null) {
 			return null;
 		}
@@ -4645,22 +4793,28 @@ public class Jass2 {
 		}
 	}
 
-	private static final class SaveHashtableValueFunc implements JassFunction {
+	private static final class SaveHashtableHandleFunc implements JassFunction {
 		@Override
 		public JassValue call(final List<JassValue> arguments, final GlobalScope globalScope,
 				final TriggerExecutionScope triggerScope) {
 			final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
-			final Integer parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
-			final Integer childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
-			table.save(parentKey, childKey, arguments.get(3));
+			final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+			final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+			final JassValue value = arguments.get(3);
+			if (value == null) {
+				table.removeSavedHandle(parentKey, childKey);
+			}
+			else {
+				table.saveHandle(parentKey, childKey, value);
+			}
 			return null;
 		}
 	}
 
-	private static final class LoadHashtableValueFunc implements JassFunction {
+	private static final class LoadHashtableHandleFunc implements JassFunction {
 		private final JassValue nullValue;
 
-		public LoadHashtableValueFunc(final JassValue nullValue) {
+		public LoadHashtableHandleFunc(final JassValue nullValue) {
 			this.nullValue = nullValue;
 		}
 
@@ -4668,9 +4822,9 @@ public class Jass2 {
 		public JassValue call(final List<JassValue> arguments, final GlobalScope globalScope,
 				final TriggerExecutionScope triggerScope) {
 			final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
-			final Integer parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
-			final Integer childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
-			final Object loadedValue = table.load(parentKey, childKey);
+			final int parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
+			final int childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
+			final Object loadedValue = table.loadHandle(parentKey, childKey);
 			if (loadedValue == null) {
 				return this.nullValue;
 			}
@@ -4678,33 +4832,6 @@ public class Jass2 {
 		}
 	}
 
-	private static final class HaveSavedHashtableValueFunc implements JassFunction {
-		private final JassType jassType;
-
-		public HaveSavedHashtableValueFunc(final JassType jassType) {
-			this.jassType = jassType;
-		}
-
-		@Override
-		public JassValue call(final List<JassValue> arguments, final GlobalScope globalScope,
-				final TriggerExecutionScope triggerScope) {
-			final CHashtable table = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
-			final Integer parentKey = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
-			final Integer childKey = arguments.get(2).visit(IntegerJassValueVisitor.getInstance());
-			final Object loadedValue = table.load(parentKey, childKey);
-			if (loadedValue != null) {
-				if (loadedValue instanceof JassValue) {
-					final JassValue loadedJassValue = (JassValue) loadedValue;
-					final JassType type = loadedJassValue.visit(JassTypeGettingValueVisitor.getInstance());
-					if (this.jassType.isAssignableFrom(type)) {
-						return BooleanJassValue.TRUE;
-					}
-				}
-			}
-			return BooleanJassValue.FALSE;
-		}
-	}
-
 	private static void registerConfigNatives(final JassProgramVisitor jassProgramVisitor,
 			final War3MapConfig mapConfig, final HandleJassType startlocprioType, final HandleJassType gametypeType,
 			final HandleJassType placementType, final HandleJassType gamespeedType,
@@ -4771,7 +4898,7 @@ public class Jass2 {
 				(arguments, globalScope, triggerScope) -> {
 					final Integer whichStartLoc = arguments.get(0).visit(IntegerJassValueVisitor.getInstance());
 					final Integer prioSlotIndex = arguments.get(1).visit(IntegerJassValueVisitor.getInstance());
-					return new IntegerJassValue(
+					return IntegerJassValue.of(
 							mapConfig.getStartLoc(whichStartLoc).getOtherStartIndices()[prioSlotIndex]);
 				});
 		jassProgramVisitor.getJassNativeManager().createNative("GetStartLocPrio",
@@ -4830,10 +4957,10 @@ public class Jass2 {
 					return null;
 				});
 		jassProgramVisitor.getJassNativeManager().createNative("GetTeams", (arguments, globalScope, triggerScope) -> {
-			return new IntegerJassValue(mapConfig.getTeamCount());
+			return IntegerJassValue.of(mapConfig.getTeamCount());
 		});
 		jassProgramVisitor.getJassNativeManager().createNative("GetPlayers", (arguments, globalScope, triggerScope) -> {
-			return new IntegerJassValue(mapConfig.getPlayerCount());
+			return IntegerJassValue.of(mapConfig.getPlayerCount());
 		});
 		jassProgramVisitor.getJassNativeManager().createNative("IsGameTypeSupported",
 				(arguments, globalScope, triggerScope) -> {
@@ -5000,13 +5127,13 @@ public class Jass2 {
 				(arguments, globalScope, triggerScope) -> {
 					final CPlayerJass player = arguments.get(0)
 							.visit(ObjectJassValueVisitor.<CPlayerJass>getInstance());
-					return new IntegerJassValue(player.getTeam());
+					return IntegerJassValue.of(player.getTeam());
 				});
 		jassProgramVisitor.getJassNativeManager().createNative("GetPlayerStartLocation",
 				(arguments, globalScope, triggerScope) -> {
 					final CPlayerJass player = arguments.get(0)
 							.visit(ObjectJassValueVisitor.<CPlayerJass>getInstance());
-					return new IntegerJassValue(player.getStartLocationIndex());
+					return IntegerJassValue.of(player.getStartLocationIndex());
 				});
 		jassProgramVisitor.getJassNativeManager().createNative("GetPlayerColor",
 				(arguments, globalScope, triggerScope) -> {
@@ -5040,7 +5167,7 @@ public class Jass2 {
 							.visit(ObjectJassValueVisitor.<CPlayerJass>getInstance());
 					final CPlayerState whichResource = arguments.get(2)
 							.visit(ObjectJassValueVisitor.<CPlayerState>getInstance());
-					return new IntegerJassValue(player.getTaxRate(otherPlayer.getId(), whichResource));
+					return IntegerJassValue.of(player.getTaxRate(otherPlayer.getId(), whichResource));
 				});
 		jassProgramVisitor.getJassNativeManager().createNative("IsPlayerRacePrefSet",
 				(arguments, globalScope, triggerScope) -> {
@@ -5064,32 +5191,32 @@ public class Jass2 {
 		jassProgramVisitor.getJassNativeManager().createNative("GetPlayerId",
 				(arguments, globalScope, triggerScope) -> {
 					final CPlayerJass whichPlayer = arguments.get(0).visit(ObjectJassValueVisitor.getInstance());
-					return (whichPlayer == null) ? new IntegerJassValue(-1) : new IntegerJassValue(whichPlayer.getId());
+					return (whichPlayer == null) ? IntegerJassValue.of(-1) : IntegerJassValue.of(whichPlayer.getId());
 				});
 
 		jassProgramVisitor.getJassNativeManager().createNative("GetPlayerNeutralAggressive",
 				(arguments, globalScope, triggerScope) -> {
-					return new IntegerJassValue(WarsmashConstants.MAX_PLAYERS - 4);
+					return IntegerJassValue.of(WarsmashConstants.MAX_PLAYERS - 4);
 				});
 		jassProgramVisitor.getJassNativeManager().createNative("GetBJPlayerNeutralVictim",
 				(arguments, globalScope, triggerScope) -> {
-					return new IntegerJassValue(WarsmashConstants.MAX_PLAYERS - 3);
+					return IntegerJassValue.of(WarsmashConstants.MAX_PLAYERS - 3);
 				});
 		jassProgramVisitor.getJassNativeManager().createNative("GetBJPlayerNeutralExtra",
 				(arguments, globalScope, triggerScope) -> {
-					return new IntegerJassValue(WarsmashConstants.MAX_PLAYERS - 2);
+					return IntegerJassValue.of(WarsmashConstants.MAX_PLAYERS - 2);
 				});
 		jassProgramVisitor.getJassNativeManager().createNative("GetPlayerNeutralPassive",
 				(arguments, globalScope, triggerScope) -> {
-					return new IntegerJassValue(WarsmashConstants.MAX_PLAYERS - 1);
+					return IntegerJassValue.of(WarsmashConstants.MAX_PLAYERS - 1);
 				});
 		jassProgramVisitor.getJassNativeManager().createNative("GetBJMaxPlayers",
 				(arguments, globalScope, triggerScope) -> {
-					return new IntegerJassValue(WarsmashConstants.MAX_PLAYERS - 4);
+					return IntegerJassValue.of(WarsmashConstants.MAX_PLAYERS - 4);
 				});
 		jassProgramVisitor.getJassNativeManager().createNative("GetBJMaxPlayerSlots",
 				(arguments, globalScope, triggerScope) -> {
-					return new IntegerJassValue(WarsmashConstants.MAX_PLAYERS);
+					return IntegerJassValue.of(WarsmashConstants.MAX_PLAYERS);
 				});
 	}
 
@@ -5346,7 +5473,7 @@ public class Jass2 {
 		jassProgramVisitor.getJassNativeManager().createNative("OrderId", (arguments, globalScope, triggerScope) -> {
 			final String idString = arguments.get(0).visit(StringJassValueVisitor.getInstance());
 			final int orderId = OrderIdUtils.getOrderId(idString);
-			return new IntegerJassValue(orderId);
+			return IntegerJassValue.of(orderId);
 		});
 		jassProgramVisitor.getJassNativeManager().createNative("OrderId2String",
 				(arguments, globalScope, triggerScope) -> {
@@ -5430,7 +5557,7 @@ public class Jass2 {
 		});
 		jassProgramVisitor.getJassNativeManager().createNative("R2I", (arguments, globalScope, triggerScope) -> {
 			final Double r = arguments.get(0).visit(RealJassValueVisitor.getInstance());
-			return new IntegerJassValue(r.intValue());
+			return IntegerJassValue.of(r.intValue());
 		});
 		jassProgramVisitor.getJassNativeManager().createNative("I2S", (arguments, globalScope, triggerScope) -> {
 			final Integer i = arguments.get(0).visit(IntegerJassValueVisitor.getInstance());
@@ -5450,10 +5577,10 @@ public class Jass2 {
 			final String s = arguments.get(0).visit(StringJassValueVisitor.getInstance());
 			try {
 				final int intValue = Integer.parseInt(s);
-				return new IntegerJassValue(intValue);
+				return IntegerJassValue.of(intValue);
 			}
 			catch (final Exception exc) {
-				return new IntegerJassValue(0);
+				return IntegerJassValue.of(0);
 			}
 		});
 		jassProgramVisitor.getJassNativeManager().createNative("S2R", (arguments, globalScope, triggerScope) -> {
@@ -5487,7 +5614,7 @@ public class Jass2 {
 		jassProgramVisitor.getJassNativeManager().createNative("StringLength",
 				(arguments, globalScope, triggerScope) -> {
 					final String s = arguments.get(0).visit(StringJassValueVisitor.getInstance());
-					return new IntegerJassValue(s.length());
+					return IntegerJassValue.of(s.length());
 				});
 		jassProgramVisitor.getJassNativeManager().createNative("StringCase", (arguments, globalScope, triggerScope) -> {
 			final String s = arguments.get(0).visit(StringJassValueVisitor.getInstance());
@@ -5496,7 +5623,7 @@ public class Jass2 {
 		});
 		jassProgramVisitor.getJassNativeManager().createNative("StringHash", (arguments, globalScope, triggerScope) -> {
 			final String s = arguments.get(0).visit(StringJassValueVisitor.getInstance());
-			return new IntegerJassValue(s.hashCode());
+			return IntegerJassValue.of(s.hashCode());
 		});
 		jassProgramVisitor.getJassNativeManager().createNative("GetLocalizedString",
 				(arguments, globalScope, triggerScope) -> {
@@ -5516,7 +5643,7 @@ public class Jass2 {
 					if (key.equals(decoratedString)) {
 						System.err.println("GetLocalizedHotkey: NOT FOUND: " + key);
 					}
-					return new IntegerJassValue(decoratedString.charAt(0));
+					return IntegerJassValue.of(decoratedString.charAt(0));
 				});
 	}
 }
@@ -0,0 +1,24 @@
+package com.etheller.warsmash.parsers.jass.triggers;
+
+import java.awt.geom.Point2D;
+
+import com.etheller.interpreter.ast.util.CHandle;
+
+/**
+ * A JASS location. It is still a point, so natives that take a location don't
+ * need to know about it.
+ */
+public class CLocation extends Point2D.Double implements CHandle {
+	private final int handleId;
+
+	public CLocation(final int handleId, final double x, final double y) {
+		super(x, y);
+		this.handleId = handleId;
+	}
+
+	@Override
+	public int getHandleId() {
+		return this.handleId;
+	}
+
+}
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.zip.Checksum;
@@ -202,4 +203,23 @@ public class War3Map implements DataSource {
 			throw new IllegalStateException(e);
 		}
 	}
+
+	public byte[] computeDigest(final MessageDigest digest) {
+		final SeekableByteChannel inputChannel = getInternalMpqContentsDataSource().getInputChannel();
+		try {
+			final ByteBuffer byteBuffer = ByteBuffer.allocate(8 * 1024);
+			inputChannel.position(0);
+			byteBuffer.clear();
+			digest.reset();
+			while (inputChannel.read(byteBuffer) != -1) {
+				byteBuffer.flip();
+				digest.update(byteBuffer);
+				byteBuffer.clear();
+			}
+			return digest.digest();
+		}
+		catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
 }
@@ -1,18 +1,26 @@
 package com.etheller.warsmash.parsers.w3x.objectdata;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.etheller.warsmash.datasources.DataSource;
+import com.etheller.warsmash.datasources.SynchronizedDataSource;
 import com.etheller.warsmash.units.DataTable;
 import com.etheller.warsmash.units.StandardObjectData;
 import com.etheller.warsmash.units.StandardObjectData.WarcraftData;
 import com.etheller.warsmash.units.custom.ObjectDataChangeEntry;
+import com.etheller.warsmash.units.custom.ObjectMap;
 import com.etheller.warsmash.units.custom.WTS;
 import com.etheller.warsmash.units.custom.WTSFile;
 import com.etheller.warsmash.units.custom.War3ObjectDataChangeset;
@@ -129,25 +137,45 @@ public final class Warcraft3MapObjectData {
 		return load(dataSource, inlineWTS, wts, campaignWTS);
 	}
 
+	/**
+	 * Reads the standard data tables and the changesets of the map at the same
+	 * time on a fork-join pool, then puts them together on the calling thread in
+	 * a fixed order, so the result does not depend on which file is read first.
+	 * Files are still read from the data source one at a time, see
+	 * {@link SynchronizedDataSource}.
+	 */
 	public static Warcraft3MapObjectData load(final DataSource dataSource, final boolean inlineWTS, final WTS wts,
 			final WTS campaignWTS) throws IOException {
+		final long loadStartTime = System.nanoTime();
+		final DataSource source = new SynchronizedDataSource(dataSource);
+		final AtomicLong standardNanos = new AtomicLong();
+		final AtomicLong changesetNanos = new AtomicLong();
 
-		final StandardObjectData standardObjectData = new StandardObjectData(dataSource);
-		final WarcraftData standardUnits = standardObjectData.getStandardUnits();
-		final WarcraftData standardItems = standardObjectData.getStandardItems();
-		final WarcraftData standardDoodads = standardObjectData.getStandardDoodads();
-		final WarcraftData standardDestructables = standardObjectData.getStandardDestructables();
-		final WarcraftData abilities = standardObjectData.getStandardAbilities();
-		final WarcraftData standardAbilityBuffs = standardObjectData.getStandardAbilityBuffs();
-		final WarcraftData standardUpgrades = standardObjectData.getStandardUpgrades();
+		final StandardObjectData standardObjectData = new StandardObjectData(source);
+		final ForkJoinTask<WarcraftData> standardUnits = fork(standardNanos, standardObjectData::getStandardUnits);
+		final ForkJoinTask<WarcraftData> standardItems = fork(standardNanos, standardObjectData::getStandardItems);
+		final ForkJoinTask<WarcraftData> standardDoodads = fork(standardNanos,
+				standardObjectData::getStandardDoodads);
+		final ForkJoinTask<WarcraftData> standardDestructables = fork(standardNanos,
+				standardObjectData::getStandardDestructables);
+		final ForkJoinTask<WarcraftData> abilities = fork(standardNanos, standardObjectData::getStandardAbilities);
+		final ForkJoinTask<WarcraftData> standardAbilityBuffs = fork(standardNanos,
+				standardObjectData::getStandardAbilityBuffs);
+		final ForkJoinTask<WarcraftData> standardUpgrades = fork(standardNanos,
+				standardObjectData::getStandardUpgrades);
 
-		final DataTable standardUnitMeta = standardObjectData.getStandardUnitMeta();
-		final DataTable standardDoodadMeta = standardObjectData.getStandardDoodadMeta();
-		final DataTable standardDestructableMeta = standardObjectData.getStandardDestructableMeta();
-		final DataTable abilityMeta = standardObjectData.getStandardAbilityMeta();
-		final DataTable standardAbilityBuffMeta = standardObjectData.getStandardAbilityBuffMeta();
-		final DataTable standardUpgradeMeta = standardObjectData.getStandardUpgradeMeta();
-		final DataTable standardUpgradeEffectMeta = standardObjectData.getStandardUpgradeEffectMeta();
+		final ForkJoinTask<DataTable> standardUnitMeta = fork(standardNanos, standardObjectData::getStandardUnitMeta);
+		final ForkJoinTask<DataTable> standardDoodadMeta = fork(standardNanos,
+				standardObjectData::getStandardDoodadMeta);
+		final ForkJoinTask<DataTable> standardDestructableMeta = fork(standardNanos,
+				standardObjectData::getStandardDestructableMeta);
+		final ForkJoinTask<DataTable> abilityMeta = fork(standardNanos, standardObjectData::getStandardAbilityMeta);
+		final ForkJoinTask<DataTable> standardAbilityBuffMeta = fork(standardNanos,
+				standardObjectData::getStandardAbilityBuffMeta);
+		final ForkJoinTask<DataTable> standardUpgradeMeta = fork(standardNanos,
+				standardObjectData::getStandardUpgradeMeta);
+		final ForkJoinTask<DataTable> standardUpgradeEffectMeta = fork(standardNanos,
+				standardObjectData::getStandardUpgradeEffectMeta);
 
 		final War3ObjectDataChangeset unitChangeset = new War3ObjectDataChangeset('u');
 		final War3ObjectDataChangeset itemChangeset = new War3ObjectDataChangeset('t');
@@ -157,133 +185,142 @@ public final class Warcraft3MapObjectData {
 		final War3ObjectDataChangeset buffChangeset = new War3ObjectDataChangeset('h');
 		final War3ObjectDataChangeset upgradeChangeset = new War3ObjectDataChangeset('q');
 
-		if (dataSource.has("war3map.w3u")) {
-			unitChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3map.w3u")), wts,
-					inlineWTS);
-			// push unit changes to items.... as a Reign of Chaos support...
-			Iterator<Entry<War3ID, ObjectDataChangeEntry>> entryIterator = unitChangeset.getOriginal().iterator();
-			while (entryIterator.hasNext()) {
-				final Entry<War3ID, ObjectDataChangeEntry> entry = entryIterator.next();
-				final String rawcodeString = entry.toString();
-				final String oldIdString = entry.getValue().getOldId().toString();
-				if ((standardUnits.get(oldIdString) == null) && (standardItems.get(oldIdString) != null)) {
-					itemChangeset.getOriginal().put(entry.getKey(), entry.getValue());
-					entryIterator.remove();
-				}
+		// the items in war3map.w3u go before the ones in war3map.w3t, so units and
+		// items are loaded by one task
+		final ForkJoinTask<Void> unitAndItemChangesets = fork(changesetNanos, () -> {
+			if (loadChangeset(source, unitChangeset, "war3map.w3u", wts, inlineWTS)) {
+				// push unit changes to items.... as a Reign of Chaos support...
+				moveItems(unitChangeset.getOriginal(), itemChangeset.getOriginal(), standardUnits.join(),
+						standardItems.join());
+				moveItems(unitChangeset.getCustom(), itemChangeset.getCustom(), standardUnits.join(),
+						standardItems.join());
 			}
-			entryIterator = unitChangeset.getCustom().iterator();
-			while (entryIterator.hasNext()) {
-				final Entry<War3ID, ObjectDataChangeEntry> entry = entryIterator.next();
-				final String rawcodeString = entry.toString();
-				final String oldIdString = entry.getValue().getOldId().toString();
-				if ((standardUnits.get(oldIdString) == null) && (standardItems.get(oldIdString) != null)) {
-					itemChangeset.getCustom().put(entry.getKey(), entry.getValue());
-					entryIterator.remove();
-				}
-			}
-		}
-		if (dataSource.has("war3mapSkin.w3u")) {
-			unitChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3mapSkin.w3u")), wts,
-					inlineWTS);
-		}
-		if (dataSource.has("war3campaign.w3u")) {
-			unitChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3campaign.w3u")),
-					campaignWTS, inlineWTS);
-		}
-		// ================== REMOVE LATER =====================
-		if (dataSource.has("war3mod.w3u")) {
-			unitChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3mod.w3u")), wts,
-					inlineWTS);
-		}
-		// =====================================================
-		if (dataSource.has("war3map.w3t")) {
-			itemChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3map.w3t")), wts,
-					inlineWTS);
-		}
-		if (dataSource.has("war3mapSkin.w3t")) {
-			itemChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3mapSkin.w3t")), wts,
-					inlineWTS);
-		}
-		if (dataSource.has("war3campaign.w3t")) {
-			itemChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3campaign.w3t")),
-					campaignWTS, inlineWTS);
-		}
-		if (dataSource.has("war3map.w3d")) {
-			doodadChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3map.w3d")), wts,
-					inlineWTS);
-		}
-		if (dataSource.has("war3campaign.w3d")) {
-			doodadChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3campaign.w3d")),
-					campaignWTS, inlineWTS);
-		}
-		if (dataSource.has("war3map.w3b")) {
-			destructableChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3map.w3b")),
-					wts, inlineWTS);
-		}
-		if (dataSource.has("war3mapSkin.w3b")) {
-			destructableChangeset.load(
-					new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3mapSkin.w3b")), wts, inlineWTS);
-		}
-		if (dataSource.has("war3campaign.w3b")) {
-			destructableChangeset.load(
-					new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3campaign.w3b")), campaignWTS,
-					inlineWTS);
-		}
-		if (dataSource.has("war3map.w3a")) {
-			abilityChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3map.w3a")), wts,
-					inlineWTS);
-		}
-		if (dataSource.has("war3mapSkin.w3a")) {
-			abilityChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3mapSkin.w3a")),
-					wts, inlineWTS);
-		}
-		if (dataSource.has("war3campaign.w3a")) {
-			abilityChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3campaign.w3a")),
-					campaignWTS, inlineWTS);
-		}
-		if (dataSource.has("war3map.w3h")) {
-			buffChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3map.w3h")), wts,
-					inlineWTS);
-		}
-		if (dataSource.has("war3mapSkin.w3h")) {
-			buffChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3mapSkin.w3h")), wts,
-					inlineWTS);
-		}
-		if (dataSource.has("war3campaign.w3h")) {
-			buffChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3campaign.w3h")),
-					campaignWTS, inlineWTS);
-		}
-		if (dataSource.has("war3map.w3q")) {
-			upgradeChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3map.w3q")), wts,
-					inlineWTS);
-		}
-		if (dataSource.has("war3mapSkin.w3q")) {
-			upgradeChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3mapSkin.w3q")),
-					wts, inlineWTS);
-		}
-		if (dataSource.has("war3campaign.w3q")) {
-			upgradeChangeset.load(new LittleEndianDataInputStream(dataSource.getResourceAsStream("war3campaign.w3q")),
-					campaignWTS, inlineWTS);
-		}
+			loadChangeset(source, unitChangeset, "war3mapSkin.w3u", wts, inlineWTS);
+			loadChangeset(source, unitChangeset, "war3campaign.w3u", campaignWTS, inlineWTS);
+			// ================== REMOVE LATER =====================
+			loadChangeset(source, unitChangeset, "war3mod.w3u", wts, inlineWTS);
+			// =====================================================
+			loadChangeset(source, itemChangeset, "war3map.w3t", wts, inlineWTS);
+			loadChangeset(source, itemChangeset, "war3mapSkin.w3t", wts, inlineWTS);
+			loadChangeset(source, itemChangeset, "war3campaign.w3t", campaignWTS, inlineWTS);
+			return null;
+		});
+		final ForkJoinTask<Void> doodadChangesets = fork(changesetNanos, () -> {
+			loadChangeset(source, doodadChangeset, "war3map.w3d", wts, inlineWTS);
+			loadChangeset(source, doodadChangeset, "war3campaign.w3d", campaignWTS, inlineWTS);
+			return null;
+		});
+		final ForkJoinTask<Void> destructableChangesets = fork(changesetNanos, () -> {
+			loadChangeset(source, destructableChangeset, "war3map.w3b", wts, inlineWTS);
+			loadChangeset(source, destructableChangeset, "war3mapSkin.w3b", wts, inlineWTS);
+			loadChangeset(source, destructableChangeset, "war3campaign.w3b", campaignWTS, inlineWTS);
+			return null;
+		});
+		final ForkJoinTask<Void> abilityChangesets = fork(changesetNanos, () -> {
+			loadChangeset(source, abilityChangeset, "war3map.w3a", wts, inlineWTS);
+			loadChangeset(source, abilityChangeset, "war3mapSkin.w3a", wts, inlineWTS);
+			loadChangeset(source, abilityChangeset, "war3campaign.w3a", campaignWTS, inlineWTS);
+			return null;
+		});
+		final ForkJoinTask<Void> buffChangesets = fork(changesetNanos, () -> {
+			loadChangeset(source, buffChangeset, "war3map.w3h", wts, inlineWTS);
+			loadChangeset(source, buffChangeset, "war3mapSkin.w3h", wts, inlineWTS);
+			loadChangeset(source, buffChangeset, "war3campaign.w3h", campaignWTS, inlineWTS);
+			return null;
+		});
+		final ForkJoinTask<Void> upgradeChangesets = fork(changesetNanos, () -> {
+			loadChangeset(source, upgradeChangeset, "war3map.w3q", wts, inlineWTS);
+			loadChangeset(source, upgradeChangeset, "war3mapSkin.w3q", wts, inlineWTS);
+			loadChangeset(source, upgradeChangeset, "war3campaign.w3q", campaignWTS, inlineWTS);
+			return null;
+		});
+		join(unitAndItemChangesets);
+		join(doodadChangesets);
+		join(destructableChangesets);
+		join(abilityChangesets);
+		join(buffChangesets);
+		join(upgradeChangesets);
 
 		final WorldEditStrings worldEditStrings = standardObjectData.getWorldEditStrings();
 		final MutableObjectData unitData = new MutableObjectData(worldEditStrings, WorldEditorDataType.UNITS,
-				standardUnits, standardUnitMeta, unitChangeset);
+				join(standardUnits), join(standardUnitMeta), unitChangeset);
 		final MutableObjectData itemData = new MutableObjectData(worldEditStrings, WorldEditorDataType.ITEM,
-				standardItems, standardUnitMeta, itemChangeset);
+				join(standardItems), join(standardUnitMeta), itemChangeset);
 		final MutableObjectData doodadData = new MutableObjectData(worldEditStrings, WorldEditorDataType.DOODADS,
-				standardDoodads, standardDoodadMeta, doodadChangeset);
+				join(standardDoodads), join(standardDoodadMeta), doodadChangeset);
 		final MutableObjectData destructableData = new MutableObjectData(worldEditStrings,
-				WorldEditorDataType.DESTRUCTIBLES, standardDestructables, standardDestructableMeta,
+				WorldEditorDataType.DESTRUCTIBLES, join(standardDestructables), join(standardDestructableMeta),
 				destructableChangeset);
 		final MutableObjectData abilityData = new MutableObjectData(worldEditStrings, WorldEditorDataType.ABILITIES,
-				abilities, abilityMeta, abilityChangeset);
+				join(abilities), join(abilityMeta), abilityChangeset);
 		final MutableObjectData buffData = new MutableObjectData(worldEditStrings, WorldEditorDataType.BUFFS_EFFECTS,
-				standardAbilityBuffs, standardAbilityBuffMeta, buffChangeset);
+				join(standardAbilityBuffs), join(standardAbilityBuffMeta), buffChangeset);
 		final MutableObjectData upgradeData = new MutableObjectData(worldEditStrings, WorldEditorDataType.UPGRADES,
-				standardUpgrades, standardUpgradeMeta, upgradeChangeset);
+				join(standardUpgrades), join(standardUpgradeMeta), upgradeChangeset);
+		final Warcraft3MapObjectData objectData = new Warcraft3MapObjectData(unitData, itemData, destructableData,
+				doodadData, abilityData, buffData, upgradeData, join(standardUpgradeEffectMeta), wts);
+
+		System.out.println("Loaded object data in " + ((System.nanoTime() - loadStartTime) / 1000000)
+				+ " ms: standard data " + (standardNanos.get() / 1000000) + " ms, map changesets "
+				+ (changesetNanos.get() / 1000000) + " ms, on " + ForkJoinPool.commonPool().getParallelism()
+				+ " threads");
+		return objectData;
+	}
+
+	/**
+	 * @return whether the data source had the file
+	 */
+	private static boolean loadChangeset(final DataSource source, final War3ObjectDataChangeset changeset,
+			final String file, final WTS wts, final boolean inlineWTS) throws IOException {
+		if (!source.has(file)) {
+			return false;
+		}
+		changeset.load(new LittleEndianDataInputStream(source.getResourceAsStream(file)), wts, inlineWTS);
+		return true;
+	}
+
+	private static void moveItems(final ObjectMap units, final ObjectMap items, final WarcraftData standardUnits,
+			final WarcraftData standardItems) {
+		final Iterator<Entry<War3ID, ObjectDataChangeEntry>> entryIterator = units.iterator();
+		while (entryIterator.hasNext()) {
+			final Entry<War3ID, ObjectDataChangeEntry> entry = entryIterator.next();
+			final String oldIdString = entry.getValue().getOldId().toString();
+			if ((standardUnits.get(oldIdString) == null) && (standardItems.get(oldIdString) != null)) {
+				items.put(entry.getKey(), entry.getValue());
+				entryIterator.remove();
+			}
+		}
+	}
+
+	private static <T> ForkJoinTask<T> fork(final AtomicLong nanos, final Callable<T> task) {
+		return ForkJoinPool.commonPool().submit(() -> {
+			final long startTime = System.nanoTime();
+			try {
+				return task.call();
+			}
+			finally {
+				nanos.addAndGet(System.nanoTime() - startTime);
+			}
+		});
+	}
 
-		return new Warcraft3MapObjectData(unitData, itemData, destructableData, doodadData, abilityData, buffData,
-				upgradeData, standardUpgradeEffectMeta, wts);
+	private static <T> T join(final ForkJoinTask<T> task) throws IOException {
+		try {
+			return task.get();
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,315 @@
+package com.etheller.warsmash.util;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.badlogic.gdx.math.Rectangle;
+
+/**
+ * Spatial index over a fixed grid of square cells covering the map. Every
+ * object is listed in each cell its bounds overlap. Cell lists and object
+ * records live in primitive arrays that are recycled, so moving an object only
+ * allocates when the arrays have to grow, and a move that stays within the same
+ * cells only updates the bounds.
+ *
+ * Unlike {@link Quadtree}, each object is reported at most once per intersect
+ * call. The matching objects are collected before the intersector is called, so
+ * the intersector may add, move or remove objects (or intersect again); objects
+ * it removes before they are reached are not reported. Bounds outside the map
+ * are clamped to the edge cells.
+ */
+public class SpatialHashGrid<T> implements SpatialIndex<T> {
+	private static final int NONE = -1;
+
+	private final float minX;
+	private final float minY;
+	private final float cellSize;
+	private final int columns;
+	private final int rows;
+	private final int[] cellHeads;
+	private final Map<T, Integer> objectToSlot = new IdentityHashMap<>();
+
+	// per object slot:
+	private Object[] slotObjects;
+	private Rectangle[] slotBounds;
+	private int[] slotGenerations;
+	private int[] slotQueryStamps;
+	private int[] slotCellMinX;
+	private int[] slotCellMinY;
+	private int[] slotCellMaxX;
+	private int[] slotCellMaxY;
+	private int[] slotFirstEntry;
+	private int slotHighWater = 0;
+	private int[] freeSlots;
+	private int freeSlotCount = 0;
+
+	// per (object, cell) entry, linked both within its cell and within its object:
+	private int[] entrySlot;
+	private int[] entryNext;
+	private int[] entryPrevious;
+	private int[] entryCell;
+	private int[] entryNextOfSlot;
+	private int entryHighWater = 0;
+	private int firstFreeEntry = NONE;
+
+	// (slot, generation) pairs found by intersect calls in progress; an intersect
+	// called from inside an intersector pushes its candidates above the caller's
+	private int[] candidates = new int[64];
+	private int candidateCount = 0;
+	private int queryStamp = 0;
+
+	public SpatialHashGrid(final Rectangle bounds, final float cellSize) {
+		this.minX = bounds.x;
+		this.minY = bounds.y;
+		this.cellSize = cellSize;
+		this.columns = Math.max(1, (int) Math.ceil(bounds.width / cellSize));
+		this.rows = Math.max(1, (int) Math.ceil(bounds.height / cellSize));
+		this.cellHeads = new int[this.columns * this.rows];
+		Arrays.fill(this.cellHeads, NONE);
+		growSlots(64);
+		growEntries(128);
+	}
+
+	@Override
+	public void add(final T object, final Rectangle bounds) {
+		final int slot = allocateSlot();
+		this.objectToSlot.put(object, slot);
+		this.slotObjects[slot] = object;
+		this.slotBounds[slot] = bounds;
+		this.slotGenerations[slot]++;
+		this.slotQueryStamps[slot] = 0;
+		setCellRange(slot, bounds);
+		addEntries(slot);
+	}
+
+	@Override
+	public void remove(final T object, final Rectangle bounds) {
+		final Integer slot = this.objectToSlot.remove(object);
+		if (slot == null) {
+			return;
+		}
+		removeEntries(slot);
+		this.slotObjects[slot] = null;
+		this.slotBounds[slot] = null;
+		this.slotGenerations[slot]++;
+		this.freeSlots[this.freeSlotCount++] = slot;
+	}
+
+	@Override
+	public void translate(final T object, final Rectangle prevBoundsToUpdate, final float xShift,
+			final float yShift) {
+		prevBoundsToUpdate.x += xShift;
+		prevBoundsToUpdate.y += yShift;
+		final Integer slotObject = this.objectToSlot.get(object);
+		if (slotObject == null) {
+			add(object, prevBoundsToUpdate);
+			return;
+		}
+		final int slot = slotObject;
+		this.slotBounds[slot] = prevBoundsToUpdate;
+		if ((getCellX(prevBoundsToUpdate.x) != this.slotCellMinX[slot])
+				|| (getCellY(prevBoundsToUpdate.y) != this.slotCellMinY[slot])
+				|| (getCellX(prevBoundsToUpdate.x + prevBoundsToUpdate.width) != this.slotCellMaxX[slot])
+				|| (getCellY(prevBoundsToUpdate.y + prevBoundsToUpdate.height) != this.slotCellMaxY[slot])) {
+			removeEntries(slot);
+			setCellRange(slot, prevBoundsToUpdate);
+			addEntries(slot);
+		}
+	}
+
+	@Override
+	public boolean intersect(final Rectangle bounds, final QuadtreeIntersector<T> intersector) {
+		final int base = this.candidateCount;
+		if (++this.queryStamp == 0) {
+			Arrays.fill(this.slotQueryStamps, 0);
+			this.queryStamp = 1;
+		}
+		final int stamp = this.queryStamp;
+		final int cellMaxX = getCellX(bounds.x + bounds.width);
+		final int cellMaxY = getCellY(bounds.y + bounds.height);
+		for (int cellY = getCellY(bounds.y); cellY <= cellMaxY; cellY++) {
+			for (int cellX = getCellX(bounds.x); cellX <= cellMaxX; cellX++) {
+				final int cell = (cellY * this.columns) + cellX;
+				for (int entry = this.cellHeads[cell]; entry != NONE; entry = this.entryNext[entry]) {
+					final int slot = this.entrySlot[entry];
+					if (this.slotQueryStamps[slot] != stamp) {
+						this.slotQueryStamps[slot] = stamp;
+						if (this.slotBounds[slot].overlaps(bounds)) {
+							pushCandidate(slot);
+						}
+					}
+				}
+			}
+		}
+		return reportCandidates(base, intersector);
+	}
+
+	@Override
+	public boolean intersect(final float x, final float y, final QuadtreeIntersector<T> intersector) {
+		final int base = this.candidateCount;
+		final int cell = (getCellY(y) * this.columns) + getCellX(x);
+		for (int entry = this.cellHeads[cell]; entry != NONE; entry = this.entryNext[entry]) {
+			final int slot = this.entrySlot[entry];
+			if (this.slotBounds[slot].contains(x, y)) {
+				pushCandidate(slot);
+			}
+		}
+		return reportCandidates(base, intersector);
+	}
+
+	public int size() {
+		return this.objectToSlot.size();
+	}
+
+	@SuppressWarnings("unchecked")
+	private boolean reportCandidates(final int base, final QuadtreeIntersector<T> intersector) {
+		try {
+			// candidates may be reallocated by a nested intersect, so don't cache the array
+			for (int i = base; i < this.candidateCount; i += 2) {
+				final int slot = this.candidates[i];
+				if ((this.slotGenerations[slot] == this.candidates[i + 1])
+						&& intersector.onIntersect((T) this.slotObjects[slot])) {
+					return true;
+				}
+			}
+			return false;
+		}
+		finally {
+			this.candidateCount = base;
+		}
+	}
+
+	private void pushCandidate(final int slot) {
+		if ((this.candidateCount + 2) > this.candidates.length) {
+			this.candidates = Arrays.copyOf(this.candidates, this.candidates.length * 2);
+		}
+		this.candidates[this.candidateCount++] = slot;
+		this.candidates[this.candidateCount++] = this.slotGenerations[slot];
+	}
+
+	private int getCellX(final float x) {
+		final int cellX = (int) ((x - this.minX) / this.cellSize);
+		return Math.max(0, Math.min(this.columns - 1, cellX));
+	}
+
+	private int getCellY(final float y) {
+		final int cellY = (int) ((y - this.minY) / this.cellSize);
+		return Math.max(0, Math.min(this.rows - 1, cellY));
+	}
+
+	private void setCellRange(final int slot, final Rectangle bounds) {
+		this.slotCellMinX[slot] = getCellX(bounds.x);
+		this.slotCellMinY[slot] = getCellY(bounds.y);
+		this.slotCellMaxX[slot] = getCellX(bounds.x + bounds.width);
+		this.slotCellMaxY[slot] = getCellY(bounds.y + bounds.height);
+	}
+
+	private void addEntries(final int slot) {
+		int slotEntries = NONE;
+		for (int cellY = this.slotCellMinY[slot]; cellY <= this.slotCellMaxY[slot]; cellY++) {
+			for (int cellX = this.slotCellMinX[slot]; cellX <= this.slotCellMaxX[slot]; cellX++) {
+				final int cell = (cellY * this.columns) + cellX;
+				final int entry = allocateEntry();
+				final int head = this.cellHeads[cell];
+				this.entrySlot[entry] = slot;
+				this.entryCell[entry] = cell;
+				this.entryPrevious[entry] = NONE;
+				this.entryNext[entry] = head;
+				if (head != NONE) {
+					this.entryPrevious[head] = entry;
+				}
+				this.cellHeads[cell] = entry;
+				this.entryNextOfSlot[entry] = slotEntries;
+				slotEntries = entry;
+			}
+		}
+		this.slotFirstEntry[slot] = slotEntries;
+	}
+
+	private void removeEntries(final int slot) {
+		int entry = this.slotFirstEntry[slot];
+		while (entry != NONE) {
+			final int next = this.entryNext[entry];
+			final int previous = this.entryPrevious[entry];
+			if (previous == NONE) {
+				this.cellHeads[this.entryCell[entry]] = next;
+			}
+			else {
+				this.entryNext[previous] = next;
+			}
+			if (next != NONE) {
+				this.entryPrevious[next] = previous;
+			}
+			final int nextOfSlot = this.entryNextOfSlot[entry];
+			this.entryNext[entry] = this.firstFreeEntry;
+			this.firstFreeEntry = entry;
+			entry = nextOfSlot;
+		}
+		this.slotFirstEntry[slot] = NONE;
+	}
+
+	private int allocateSlot() {
+		if (this.freeSlotCount > 0) {
+			return this.freeSlots[--this.freeSlotCount];
+		}
+		if (this.slotHighWater == this.slotObjects.length) {
+			growSlots(this.slotObjects.length * 2);
+		}
+		return this.slotHighWater++;
+	}
+
+	private int allocateEntry() {
+		if (this.firstFreeEntry != NONE) {
+			final int entry = this.firstFreeEntry;
+			this.firstFreeEntry = this.entryNext[entry];
+			return entry;
+		}
+		if (this.entryHighWater == this.entrySlot.length) {
+			growEntries(this.entrySlot.length * 2);
+		}
+		return this.entryHighWater++;
+	}
+
+	private void growSlots(final int capacity) {
+		if (this.slotObjects == null) {
+			this.slotObjects = new Object[capacity];
+			this.slotBounds = new Rectangle[capacity];
+			this.slotGenerations = new int[capacity];
+			this.slotQueryStamps = new int[capacity];
+			this.slotCellMinX = new int[capacity];
+			this.slotCellMinY = new int[capacity];
+			this.slotCellMaxX = new int[capacity];
+			this.slotCellMaxY = new int[capacity];
+			this.slotFirstEntry = new int[capacity];
+			this.freeSlots = new int[capacity];
+			return;
+		}
+		this.slotObjects = Arrays.copyOf(this.slotObjects, capacity);
+		this.slotBounds = Arrays.copyOf(this.slotBounds, capacity);
+		this.slotGenerations = Arrays.copyOf(this.slotGenerations, capacity);
+		this.slotQueryStamps = Arrays.copyOf(this.slotQueryStamps, capacity);
+		this.slotCellMinX = Arrays.copyOf(this.slotCellMinX, capacity);
+		this.slotCellMinY = Arrays.copyOf(this.slotCellMinY, capacity);
+		this.slotCellMaxX = Arrays.copyOf(this.slotCellMaxX, capacity);
+		this.slotCellMaxY = Arrays.copyOf(this.slotCellMaxY, capacity);
+		this.slotFirstEntry = Arrays.copyOf(this.slotFirstEntry, capacity);
+		this.freeSlots = Arrays.copyOf(this.freeSlots, capacity);
+	}
+
+	private void growEntries(final int capacity) {
+		if (this.entrySlot == null) {
+			this.entrySlot = new int[capacity];
+			this.entryNext = new int[capacity];
+			this.entryPrevious = new int[capacity];
+			this.entryCell = new int[capacity];
+			this.entryNextOfSlot = new int[capacity];
+			return;
+		}
+		this.entrySlot = Arrays.copyOf(this.entrySlot, capacity);
+		this.entryNext = Arrays.copyOf(this.entryNext, capacity);
+		this.entryPrevious = Arrays.copyOf(this.entryPrevious, capacity);
+		this.entryCell = Arrays.copyOf(this.entryCell, capacity);
+		this.entryNextOfSlot = Arrays.copyOf(this.entryNextOfSlot, capacity);
+	}
+}
@@ -0,0 +1,33 @@
+package com.etheller.warsmash.util;
+
+import com.badlogic.gdx.math.Rectangle;
+
+/**
+ * Index of objects by their bounding rectangle. The bounds rectangle passed in
+ * is kept by reference, so it must not be modified except through
+ * {@link #translate(Object, Rectangle, float, float)} while the object is in
+ * the index.
+ *
+ * An intersect query may report the same object more than once.
+ */
+public interface SpatialIndex<T> {
+	void add(T object, Rectangle bounds);
+
+	void remove(T object, Rectangle bounds);
+
+	/**
+	 * Moves the object by shifting the given bounds, which must be the bounds it
+	 * was added with.
+	 */
+	void translate(T object, Rectangle prevBoundsToUpdate, float xShift, float yShift);
+
+	/**
+	 * @return true if the intersector asked to stop
+	 */
+	boolean intersect(Rectangle bounds, QuadtreeIntersector<T> intersector);
+
+	/**
+	 * @return true if the intersector asked to stop
+	 */
+	boolean intersect(float x, float y, QuadtreeIntersector<T> intersector);
+}
@@ -0,0 +1,114 @@
+package com.etheller.warsmash.util;
+
+import java.util.Random;
+
+import com.badlogic.gdx.math.Rectangle;
+
+/**
+ * Moves units around a map and queries the units around each of them, once
+ * with the {@link Quadtree} the world collision used to use and once with the
+ * {@link SpatialHashGrid}, and prints the time each took. Every tick moves all
+ * of the units a little, as walking units do, and then runs a range query
+ * around some of them, as acquiring targets does. Both indexes must find the
+ * same units.
+ */
+public class SpatialIndexBenchmark {
+	private static final float MAP_SIZE = 16384;
+	private static final float COLLISION_SIZE = 16;
+	private static final float MAX_STEP = 10;
+	private static final float QUERY_SIZE = 1000;
+	private static final int QUERIES_PER_TICK = 200;
+	private static final int TICKS = 500;
+	private static final int RUNS = 5;
+	private static final long SEED = 0x5EED;
+
+	public static void main(final String[] args) {
+		final int[] unitCounts = { 500, 2000, 8000 };
+		for (final int unitCount : unitCounts) {
+			long quadtreeTime = Long.MAX_VALUE;
+			long spatialHashTime = Long.MAX_VALUE;
+			long quadtreeFound = 0;
+			long spatialHashFound = 0;
+			for (int run = 0; run < RUNS; run++) {
+				final Simulation quadtree = new Simulation(new Quadtree<>(mapBounds()), unitCount);
+				long time = System.nanoTime();
+				quadtreeFound = quadtree.run();
+				quadtreeTime = Math.min(quadtreeTime, System.nanoTime() - time);
+
+				final Simulation spatialHash = new Simulation(
+						new SpatialHashGrid<>(mapBounds(), Math.max(64f, COLLISION_SIZE * 2)), unitCount);
+				time = System.nanoTime();
+				spatialHashFound = spatialHash.run();
+				spatialHashTime = Math.min(spatialHashTime, System.nanoTime() - time);
+			}
+			if (quadtreeFound != spatialHashFound) {
+				throw new IllegalStateException("Found " + quadtreeFound + " units with the quadtree but "
+						+ spatialHashFound + " with the spatial hash grid");
+			}
+			System.out.println(unitCount + " units, " + TICKS + " ticks: quadtree " + (quadtreeTime / 1000000)
+					+ " ms, spatial hash grid " + (spatialHashTime / 1000000) + " ms");
+		}
+	}
+
+	private static Rectangle mapBounds() {
+		return new Rectangle(-MAP_SIZE / 2, -MAP_SIZE / 2, MAP_SIZE, MAP_SIZE);
+	}
+
+	private static final class Unit {
+		private final Rectangle bounds;
+		private int lastQuery = -1;
+
+		private Unit(final Rectangle bounds) {
+			this.bounds = bounds;
+		}
+	}
+
+	private static final class Simulation implements QuadtreeIntersector<Unit> {
+		private final SpatialIndex<Unit> index;
+		private final Unit[] units;
+		private final Random random = new Random(SEED);
+		private final Rectangle queryRect = new Rectangle();
+		private int query;
+		private long found;
+
+		private Simulation(final SpatialIndex<Unit> index, final int unitCount) {
+			this.index = index;
+			this.units = new Unit[unitCount];
+			for (int i = 0; i < unitCount; i++) {
+				final float x = (this.random.nextFloat() - 0.5f) * (MAP_SIZE - 2048);
+				final float y = (this.random.nextFloat() - 0.5f) * (MAP_SIZE - 2048);
+				this.units[i] = new Unit(new Rectangle(x - COLLISION_SIZE, y - COLLISION_SIZE, COLLISION_SIZE * 2,
+						COLLISION_SIZE * 2));
+				index.add(this.units[i], this.units[i].bounds);
+			}
+		}
+
+		private long run() {
+			for (int tick = 0; tick < TICKS; tick++) {
+				for (final Unit unit : this.units) {
+					final float dx = (this.random.nextFloat() - 0.5f) * 2 * MAX_STEP;
+					final float dy = (this.random.nextFloat() - 0.5f) * 2 * MAX_STEP;
+					this.index.translate(unit, unit.bounds, dx, dy);
+				}
+				for (int i = 0; i < QUERIES_PER_TICK; i++) {
+					final Rectangle bounds = this.units[this.random.nextInt(this.units.length)].bounds;
+					this.queryRect.set((bounds.x + COLLISION_SIZE) - (QUERY_SIZE / 2),
+							(bounds.y + COLLISION_SIZE) - (QUERY_SIZE / 2), QUERY_SIZE, QUERY_SIZE);
+					this.query++;
+					this.index.intersect(this.queryRect, this);
+				}
+			}
+			return this.found;
+		}
+
+		@Override
+		public boolean onIntersect(final Unit intersectingObject) {
+			// the quadtree may report a unit more than once
+			if (intersectingObject.lastQuery != this.query) {
+				intersectingObject.lastQuery = this.query;
+				this.found++;
+			}
+			return false;
+		}
+	}
+}
@@ -52,6 +52,34 @@ public class WarsmashConstants {
 
 	public static boolean USE_NINE_ITEM_INVENTORY = true;
 
+	// Long move orders are answered from a cached cluster/portal graph of the
+	// pathing map (HPA*) instead of a full grid A*. Set to false to always use the
+	// full grid search.
+	public static boolean ENABLE_HIERARCHICAL_PATHFINDING = true;
+	// Node expansions each player's pathfinding processor may spend per simulation
+	// step. A search that runs out of budget pauses and resumes on the next step.
+	public static int PATHFINDING_ITERATIONS_PER_TICK = 1500;
+	public static int PATHFINDING_MAX_ITERATIONS_PER_JOB = 20000;
+	// A queued path request that waited this many simulation steps is started
+	// ahead of more urgent ones, so that repaths and AI orders are never starved.
+	public static int PATHFINDING_MAX_JOB_WAIT_TICKS = 40;
+	// When at least this many queued moves of one player target the same pathing
+	// node, they share a flow field instead of searching separately.
+	public static boolean ENABLE_FLOW_FIELD_PATHFINDING = true;
+	public static int FLOW_FIELD_MIN_GROUP_SIZE = 4;
+	// Grid searches to a reachable goal jump across open ground (Jump Point Search)
+	// and only expand every neighbor near units or when no open route exists.
+	public static boolean ENABLE_JUMP_POINT_SEARCH = true;
+	// Unit and destructable collision is indexed with a uniform grid of cells
+	// (SpatialHashGrid) instead of quadtrees, which avoids allocating on every
+	// unit movement step.
+	public static boolean USE_SPATIAL_HASH_COLLISION = true;
+	// Every this many simulation steps, clients of a multiplayer game send a hash of
+	// the simulation state to the server, which reports the first step where the
+	// clients disagree (a desync).
+	public static boolean ENABLE_STATE_CHECKSUM = true;
+	public static int STATE_CHECKSUM_INTERVAL_TICKS = 20;
+
 	public static CRaceManager RACE_MANAGER;
 
 	public static final String[] JASS_FILE_LIST = { "Scripts\\common.j", "Scripts\\Blizzard.j", "Scripts\\war3map.j" };
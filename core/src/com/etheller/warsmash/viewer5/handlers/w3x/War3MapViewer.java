@@ -16,7 +16,6 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -115,6 +114,7 @@ import com.etheller.warsmash.viewer5.handlers.w3x.rendersim.ability.EffectAttach
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.CDestructable;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.CDestructableEnumFunction;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.CItem;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.CSeededRandom;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.CSimulation;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.CUnit;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.CUnitClassification;
@@ -243,7 +243,7 @@ public class War3MapViewer extends AbstractMdxModelViewer {
 
 	private final DynamicShadowManager dynamicShadowManager = new DynamicShadowManager();
 
-	private final Random seededRandom = new Random(1337L);
+	private final CSeededRandom seededRandom = new CSeededRandom(1337L);
 
 	private final Map<String, BufferedImage> filePathToPathingMap = new HashMap<>();
 
@@ -2147,7 +2147,12 @@ public class War3MapViewer extends AbstractMdxModelViewer {
 				if (this.gameTurnManager.getLatestCompletedTurn() >= this.simulation.getGameTurnTick()) {
 					this.updateTime -= WarsmashConstants.SIMULATION_STEP_TIME;
 					this.simulation.update();
-					this.gameTurnManager.turnCompleted(this.simulation.getGameTurnTick());
+					final int gameTurnTick = this.simulation.getGameTurnTick();
+					if (WarsmashConstants.ENABLE_STATE_CHECKSUM
+							&& ((gameTurnTick % WarsmashConstants.STATE_CHECKSUM_INTERVAL_TICKS) == 0)) {
+						this.gameTurnManager.stateChecksum(gameTurnTick, this.simulation.computeStateChecksum());
+					}
+					this.gameTurnManager.turnCompleted(gameTurnTick);
 				}
 				else {
 					if (this.updateTime > (WarsmashConstants.SIMULATION_STEP_TIME * 3)) {
@@ -17,6 +17,7 @@ import com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing.CBuildingPa
 public class PathingGrid {
 	public static final BufferedImage BLANK_PATHING = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
 	private static final Map<String, MovementType> movetpToMovementType = new HashMap<>();
+	private static final int MAX_CLEARANCE = 16;
 	static {
 		for (final MovementType movementType : MovementType.values()) {
 			if (!movementType.typeKey.isEmpty()) {
@@ -30,6 +31,11 @@ public class PathingGrid {
 	private final int[] pathingGridSizes;
 	private final float[] centerOffset;
 	private final List<RemovablePathingMapInstance> dynamicPathingInstances;
+	private final List<DynamicPathingListener> dynamicPathingListeners;
+	// per movement type, the distance in cells from each cell to the nearest cell
+	// that the movement type can't path through (or the edge of the map), capped
+	// at MAX_CLEARANCE; built on first use
+	private final byte[][] clearanceMaps = new byte[MovementType.values().length][];
 
 	public PathingGrid(final War3MapWpm terrainPathing, final float[] centerOffset) {
 		this.centerOffset = centerOffset;
@@ -37,6 +43,23 @@ public class PathingGrid {
 		this.pathingGridSizes = terrainPathing.getSize();
 		this.dynamicPathingOverlay = new short[this.pathingGrid.length];
 		this.dynamicPathingInstances = new ArrayList<>();
+		this.dynamicPathingListeners = new ArrayList<>();
+	}
+
+	public void addDynamicPathingListener(final DynamicPathingListener listener) {
+		this.dynamicPathingListeners.add(listener);
+	}
+
+	public void removeDynamicPathingListener(final DynamicPathingListener listener) {
+		this.dynamicPathingListeners.remove(listener);
+	}
+
+	private void notifyDynamicPathingChanged(final int minCellX, final int minCellY, final int maxCellX,
+			final int maxCellY) {
+		updateClearanceMaps(minCellX, minCellY, maxCellX, maxCellY);
+		for (final DynamicPathingListener listener : this.dynamicPathingListeners) {
+			listener.onDynamicPathingChanged(minCellX, minCellY, maxCellX, maxCellY);
+		}
 	}
 
 	// this blit function is basically copied from HiveWE, maybe remember to mention
@@ -181,6 +204,7 @@ public class PathingGrid {
 				positionY, rotationInput, pathingTextureTga);
 		removablePathingMapInstance.blit();
 		this.dynamicPathingInstances.add(removablePathingMapInstance);
+		removablePathingMapInstance.notifyChanged();
 		return removablePathingMapInstance;
 	}
 
@@ -268,7 +292,98 @@ public class PathingGrid {
 		if (index >= this.pathingGrid.length) {
 			return;
 		}
+		final short previousValue = getCellPathing(cellX, cellY);
 		this.pathingGrid[index] = pathingValue;
+		final short newValue = getCellPathing(cellX, cellY);
+		for (final MovementType movementType : MovementType.values()) {
+			final byte[] clearanceMap = this.clearanceMaps[movementType.ordinal()];
+			if ((clearanceMap != null)
+					&& (movementType.isPathable(previousValue) != movementType.isPathable(newValue))) {
+				updateClearance(movementType, clearanceMap, cellX - MAX_CLEARANCE, cellY - MAX_CLEARANCE,
+						cellX + MAX_CLEARANCE, cellY + MAX_CLEARANCE);
+			}
+		}
+	}
+
+	/**
+	 * @return how many rings of cells around the given cell the movement type can
+	 *         path through, counting the cell itself as the first ring; 0 if the
+	 *         cell itself is blocked or off the map. Values are capped at
+	 *         {@value #MAX_CLEARANCE}.
+	 */
+	public int getClearance(final int cellX, final int cellY, final MovementType movementType) {
+		if ((cellX < 0) || (cellY < 0) || (cellX >= this.pathingGridSizes[0])
+				|| (cellY >= this.pathingGridSizes[1])) {
+			return 0;
+		}
+		byte[] clearanceMap = this.clearanceMaps[movementType.ordinal()];
+		if (clearanceMap == null) {
+			clearanceMap = new byte[this.pathingGrid.length];
+			this.clearanceMaps[movementType.ordinal()] = clearanceMap;
+			updateClearance(movementType, clearanceMap, 0, 0, this.pathingGridSizes[0] - 1,
+					this.pathingGridSizes[1] - 1);
+		}
+		return clearanceMap[(cellY * this.pathingGridSizes[0]) + cellX];
+	}
+
+	private void updateClearanceMaps(final int minCellX, final int minCellY, final int maxCellX,
+			final int maxCellY) {
+		for (final MovementType movementType : MovementType.values()) {
+			final byte[] clearanceMap = this.clearanceMaps[movementType.ordinal()];
+			if (clearanceMap != null) {
+				// cells further than MAX_CLEARANCE from the change can't see it
+				updateClearance(movementType, clearanceMap, minCellX - MAX_CLEARANCE, minCellY - MAX_CLEARANCE,
+						maxCellX + MAX_CLEARANCE, maxCellY + MAX_CLEARANCE);
+			}
+		}
+	}
+
+	/**
+	 * Recomputes the clearance of the cells in the given region with a two pass
+	 * chessboard distance transform. Cells just outside the region keep their
+	 * values and act as its boundary.
+	 */
+	private void updateClearance(final MovementType movementType, final byte[] clearanceMap, final int minCellXInput,
+			final int minCellYInput, final int maxCellXInput, final int maxCellYInput) {
+		final int width = this.pathingGridSizes[0];
+		final int minCellX = Math.max(0, minCellXInput);
+		final int minCellY = Math.max(0, minCellYInput);
+		final int maxCellX = Math.min(width - 1, maxCellXInput);
+		final int maxCellY = Math.min(this.pathingGridSizes[1] - 1, maxCellYInput);
+		for (int y = minCellY; y <= maxCellY; y++) {
+			for (int x = minCellX; x <= maxCellX; x++) {
+				int clearance = 0;
+				if (movementType.isPathable(getCellPathing(x, y))) {
+					clearance = MAX_CLEARANCE;
+					clearance = Math.min(clearance, getStoredClearance(clearanceMap, x - 1, y) + 1);
+					clearance = Math.min(clearance, getStoredClearance(clearanceMap, x - 1, y - 1) + 1);
+					clearance = Math.min(clearance, getStoredClearance(clearanceMap, x, y - 1) + 1);
+					clearance = Math.min(clearance, getStoredClearance(clearanceMap, x + 1, y - 1) + 1);
+				}
+				clearanceMap[(y * width) + x] = (byte) clearance;
+			}
+		}
+		for (int y = maxCellY; y >= minCellY; y--) {
+			for (int x = maxCellX; x >= minCellX; x--) {
+				final int index = (y * width) + x;
+				int clearance = clearanceMap[index];
+				if (clearance != 0) {
+					clearance = Math.min(clearance, getStoredClearance(clearanceMap, x + 1, y) + 1);
+					clearance = Math.min(clearance, getStoredClearance(clearanceMap, x + 1, y + 1) + 1);
+					clearance = Math.min(clearance, getStoredClearance(clearanceMap, x, y + 1) + 1);
+					clearance = Math.min(clearance, getStoredClearance(clearanceMap, x - 1, y + 1) + 1);
+					clearanceMap[index] = (byte) clearance;
+				}
+			}
+		}
+	}
+
+	private int getStoredClearance(final byte[] clearanceMap, final int cellX, final int cellY) {
+		if ((cellX < 0) || (cellY < 0) || (cellX >= this.pathingGridSizes[0])
+				|| (cellY >= this.pathingGridSizes[1])) {
+			return 0;
+		}
+		return clearanceMap[(cellY * this.pathingGridSizes[0]) + cellX];
 	}
 
 	public void setCellBlighted(final int cellX, final int cellY, final boolean blighted) {
@@ -301,6 +416,22 @@ public class PathingGrid {
 			}
 			return pathingType.isPathable(getPathing(unitX, unitY));
 		}
+		if (!contains(unitX, unitY)) {
+			return false;
+		}
+		final int cellX = getCellX(unitX);
+		final int cellY = getCellY(unitY);
+		final int clearance = getClearance(cellX, cellY, pathingType);
+		if (clearance == 0) {
+			return false;
+		}
+		final int reachX = Math.max(cellX - getCellX(unitX - collisionSize), getCellX(unitX + collisionSize) - cellX);
+		final int reachY = Math.max(cellY - getCellY(unitY - collisionSize), getCellY(unitY + collisionSize) - cellY);
+		final int reach = Math.max(reachX, reachY);
+		if (clearance > reach) {
+			// every cell the samples below could land in is known to be pathable
+			return true;
+		}
 		for (int i = -1; i <= 1; i++) {
 			for (int j = -1; j <= 1; j++) {
 				final float unitPathingX = unitX + (i * collisionSize);
@@ -468,6 +599,16 @@ public class PathingGrid {
 		public abstract boolean isPathable(short pathingValue);
 	}
 
+	/**
+	 * Notified when the dynamic pathing overlay (buildings and trees) changes, so
+	 * that anything caching information derived from the pathing grid can update
+	 * the affected region. Bounds are inclusive pathing cell coordinates, clamped to
+	 * the grid.
+	 */
+	public static interface DynamicPathingListener {
+		void onDynamicPathingChanged(int minCellX, int minCellY, int maxCellX, int maxCellY);
+	}
+
 	public static enum PathingType {
 		WALKABLE(PathingFlags.UNWALKABLE), FLYABLE(PathingFlags.UNFLYABLE), BUILDABLE(PathingFlags.UNBUILDABLE),
 		SWIMMABLE(PathingFlags.UNSWIMABLE);
@@ -497,17 +638,34 @@ public class PathingGrid {
 			blitPathingOverlayTexture(this.positionX, this.positionY, this.rotationInput, this.pathingTextureTga);
 		}
 
+		private void notifyChanged() {
+			final int rotation = (this.rotationInput + 450) % 360;
+			final int divW = ((rotation % 180) != 0) ? this.pathingTextureTga.getHeight()
+					: this.pathingTextureTga.getWidth();
+			final int divH = ((rotation % 180) != 0) ? this.pathingTextureTga.getWidth()
+					: this.pathingTextureTga.getHeight();
+			final int minCellX = Math.max(0, getCellX(this.positionX) - (divW / 2));
+			final int minCellY = Math.max(0, getCellY(this.positionY) - (divH / 2));
+			final int maxCellX = Math.min(getWidth() - 1, (getCellX(this.positionX) - (divW / 2)) + (divW - 1));
+			final int maxCellY = Math.min(getHeight() - 1, (getCellY(this.positionY) - (divH / 2)) + (divH - 1));
+			if ((minCellX <= maxCellX) && (minCellY <= maxCellY)) {
+				notifyDynamicPathingChanged(minCellX, minCellY, maxCellX, maxCellY);
+			}
+		}
+
 		public void remove() {
 			PathingGrid.this.dynamicPathingInstances.remove(this);
 			Arrays.fill(PathingGrid.this.dynamicPathingOverlay, (short) 0);
 			for (final RemovablePathingMapInstance instance : PathingGrid.this.dynamicPathingInstances) {
 				instance.blit();
 			}
+			notifyChanged();
 		}
 
 		public void add() {
 			PathingGrid.this.dynamicPathingInstances.add(this);
 			blit();
+			notifyChanged();
 		}
 	}
 }
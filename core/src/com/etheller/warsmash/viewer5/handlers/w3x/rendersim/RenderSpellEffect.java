@@ -3,6 +3,7 @@ package com.etheller.warsmash.viewer5.handlers.w3x.rendersim;
 import java.util.EnumSet;
 import java.util.List;
 
+import com.etheller.interpreter.ast.util.CHandle;
 import com.etheller.warsmash.viewer5.handlers.mdx.MdxComplexInstance;
 import com.etheller.warsmash.viewer5.handlers.mdx.MdxModel;
 import com.etheller.warsmash.viewer5.handlers.mdx.Sequence;
@@ -13,7 +14,7 @@ import com.etheller.warsmash.viewer5.handlers.w3x.IndexedSequence;
 import com.etheller.warsmash.viewer5.handlers.w3x.SequenceUtils;
 import com.etheller.warsmash.viewer5.handlers.w3x.War3MapViewer;
 
-public class RenderSpellEffect implements RenderEffect {
+public class RenderSpellEffect implements RenderEffect, CHandle {
 	public static final PrimaryTag[] DEFAULT_ANIMATION_QUEUE = { PrimaryTag.BIRTH, PrimaryTag.STAND, PrimaryTag.DEATH };
 	public static final PrimaryTag[] STAND_ONLY = { PrimaryTag.STAND };
 	public static final PrimaryTag[] DEATH_ONLY = { PrimaryTag.DEATH };
@@ -24,6 +25,8 @@ public class RenderSpellEffect implements RenderEffect {
 	private int animationQueueIndex;
 	private final List<Sequence> sequences;
 	private boolean killWhenDone = true;
+	// only effects created by scripts have one
+	private int handleId;
 
 	public RenderSpellEffect(final MdxComplexInstance modelInstance, final War3MapViewer war3MapViewer, final float yaw,
 			final PrimaryTag[] animationQueue, final EnumSet<SecondaryTag> requiredAnimationNames) {
@@ -93,6 +96,15 @@ public class RenderSpellEffect implements RenderEffect {
 		applySequence();
 	}
 
+	public void setHandleId(final int handleId) {
+		this.handleId = handleId;
+	}
+
+	@Override
+	public int getHandleId() {
+		return this.handleId;
+	}
+
 	public void setKillWhenDone(final boolean killWhenDone) {
 		this.killWhenDone = killWhenDone;
 		if (killWhenDone) {
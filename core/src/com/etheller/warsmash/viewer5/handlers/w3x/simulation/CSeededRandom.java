@@ -0,0 +1,35 @@
+package com.etheller.warsmash.viewer5.handlers.w3x.simulation;
+
+import java.util.Random;
+
+/**
+ * The simulation's shared random number generator. It keeps a running count
+ * and hash of every value drawn, so the state checksum can tell when two
+ * clients have drawn different numbers or drawn a different number of times.
+ */
+public class CSeededRandom extends Random {
+	private static final long serialVersionUID = 1L;
+
+	private long drawCount;
+	private long drawHash;
+
+	public CSeededRandom(final long seed) {
+		super(seed);
+	}
+
+	@Override
+	protected int next(final int bits) {
+		final int value = super.next(bits);
+		this.drawCount++;
+		this.drawHash = (this.drawHash * 31) + value;
+		return value;
+	}
+
+	public long getDrawCount() {
+		return this.drawCount;
+	}
+
+	public long getDrawHash() {
+		return this.drawHash;
+	}
+}
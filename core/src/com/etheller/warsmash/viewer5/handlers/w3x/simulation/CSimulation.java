@@ -3,13 +3,11 @@ package com.etheller.warsmash.viewer5.handlers.w3x.simulation;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 
@@ -46,6 +44,8 @@ import com.etheller.warsmash.viewer5.handlers.w3x.simulation.data.CDestructableD
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.data.CItemData;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.data.CUnitData;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.data.CUpgradeData;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing.CFlowFieldCache;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing.CHierarchicalPathfinder;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing.CPathfindingProcessor;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.players.CAllianceType;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.players.CPlayer;
@@ -87,14 +87,13 @@ public class CSimulation implements CPlayerAPI {
 	private int gameTurnTick = 0;
 	private final PathingGrid pathingGrid;
 	private final CWorldCollision worldCollision;
+	private final CHierarchicalPathfinder hierarchicalPathfinder;
+	private final CFlowFieldCache flowFieldCache;
 	private final CPathfindingProcessor[] pathfindingProcessors;
 	private final CGameplayConstants gameplayConstants;
-	private final Random seededRandom;
+	private final CSeededRandom seededRandom;
+	private final CSimulationStateChecksum stateChecksum;
 	private float currentGameDayTimeElapsed;
-	private final Map<Integer, CUnit> handleIdToUnit = new HashMap<>();
-	private final Map<Integer, CDestructable> handleIdToDestructable = new HashMap<>();
-	private final Map<Integer, CItem> handleIdToItem = new HashMap<>();
-	private final Map<Integer, CAbility> handleIdToAbility = new HashMap<>();
 	private final LinkedList<CTimer> activeTimers = new LinkedList<>();
 	private final List<CTimer> addedTimers = new ArrayList<>();
 	private final List<CTimer> removedTimers = new ArrayList<>();
@@ -110,7 +109,7 @@ public class CSimulation implements CPlayerAPI {
 			final MutableObjectData parsedItemData, final MutableObjectData parsedDestructableData,
 			final MutableObjectData parsedAbilityData, final MutableObjectData parsedUpgradeData,
 			final DataTable standardUpgradeEffectMeta, final SimulationRenderController simulationRenderController,
-			final PathingGrid pathingGrid, final Rectangle entireMapBounds, final Random seededRandom,
+			final PathingGrid pathingGrid, final Rectangle entireMapBounds, final CSeededRandom seededRandom,
 			final CommandErrorListener commandErrorListener) {
 		this.gameplayConstants = new CGameplayConstants(miscData);
 		this.simulationRenderController = simulationRenderController;
@@ -131,11 +130,15 @@ public class CSimulation implements CPlayerAPI {
 		this.handleIdAllocator = new HandleIdAllocator();
 		this.worldCollision = new CWorldCollision(entireMapBounds, this.gameplayConstants.getMaxCollisionRadius());
 		this.regionManager = new CRegionManager(entireMapBounds, pathingGrid);
+		this.hierarchicalPathfinder = new CHierarchicalPathfinder(pathingGrid);
+		this.flowFieldCache = new CFlowFieldCache(pathingGrid);
 		this.pathfindingProcessors = new CPathfindingProcessor[WarsmashConstants.MAX_PLAYERS];
 		for (int i = 0; i < WarsmashConstants.MAX_PLAYERS; i++) {
-			this.pathfindingProcessors[i] = new CPathfindingProcessor(pathingGrid, this.worldCollision);
+			this.pathfindingProcessors[i] = new CPathfindingProcessor(pathingGrid, this.worldCollision,
+					this.hierarchicalPathfinder, this.flowFieldCache);
 		}
 		this.seededRandom = seededRandom;
+		this.stateChecksum = new CSimulationStateChecksum(this.handleIdAllocator, seededRandom);
 		this.players = new ArrayList<>();
 		this.defaultPlayerUnitOrderExecutors = new ArrayList<>();
 		for (int i = 0; i < WarsmashConstants.MAX_PLAYERS; i++) {
@@ -250,7 +253,8 @@ public class CSimulation implements CPlayerAPI {
 		final CUnit unit = this.unitData.create(this, playerIndex, typeId, x, y, facing, buildingPathingPixelMap,
 				this.handleIdAllocator);
 		this.newUnits.add(unit);
-		this.handleIdToUnit.put(unit.getHandleId(), unit);
+		this.handleIdAllocator.register(unit.getHandleId(), unit);
+		this.stateChecksum.addUnit(unit);
 		return unit;
 	}
 
@@ -258,7 +262,7 @@ public class CSimulation implements CPlayerAPI {
 			final RemovablePathingMapInstance pathingInstance, final RemovablePathingMapInstance pathingInstanceDeath) {
 		final CDestructable dest = this.destructableData.create(this, typeId, x, y, this.handleIdAllocator,
 				pathingInstance, pathingInstanceDeath);
-		this.handleIdToDestructable.put(dest.getHandleId(), dest);
+		this.handleIdAllocator.register(dest.getHandleId(), dest);
 		this.worldCollision.addDestructable(dest);
 		this.destructables.add(dest);
 		dest.setBlighted(dest.checkIsOnBlight(this));
@@ -267,7 +271,7 @@ public class CSimulation implements CPlayerAPI {
 
 	public CItem internalCreateItem(final War3ID alias, final float unitX, final float unitY) {
 		final CItem item = this.itemData.create(this, alias, unitX, unitY, this.handleIdAllocator.createId());
-		this.handleIdToItem.put(item.getHandleId(), item);
+		this.handleIdAllocator.register(item.getHandleId(), item);
 		this.items.add(item);
 		return item;
 	}
@@ -320,19 +324,40 @@ public class CSimulation implements CPlayerAPI {
 	}
 
 	public CUnit getUnit(final int handleId) {
-		return this.handleIdToUnit.get(handleId);
+		final Object handle = this.handleIdAllocator.get(handleId);
+		if (handle instanceof CUnit) {
+			return (CUnit) handle;
+		}
+		return null;
 	}
 
 	public CAbility getAbility(final int handleId) {
-		return this.handleIdToAbility.get(handleId);
+		final Object handle = this.handleIdAllocator.get(handleId);
+		if (handle instanceof CAbility) {
+			return (CAbility) handle;
+		}
+		return null;
 	}
 
 	protected void onAbilityAddedToUnit(final CUnit unit, final CAbility ability) {
-		this.handleIdToAbility.put(ability.getHandleId(), ability);
+		this.handleIdAllocator.register(ability.getHandleId(), ability);
 	}
 
 	protected void onAbilityRemovedFromUnit(final CUnit unit, final CAbility ability) {
-		this.handleIdToAbility.remove(ability.getHandleId());
+		// not freed, as some abilities are added back to the unit later, like those
+		// that an ancient loses when it roots
+		this.handleIdAllocator.unregister(ability.getHandleId());
+	}
+
+	/**
+	 * Frees the handle IDs of a unit that was removed from the game, and of the
+	 * abilities it had.
+	 */
+	private void freeHandleIds(final CUnit unit) {
+		for (final CAbility ability : unit.getAbilities()) {
+			this.handleIdAllocator.free(ability.getHandleId(), ability);
+		}
+		this.handleIdAllocator.free(unit.getHandleId(), unit);
 	}
 
 	public CAttackProjectile createProjectile(final CUnit source, final float launchX, final float launchY,
@@ -371,19 +396,29 @@ public class CSimulation implements CPlayerAPI {
 		return this.pathingGrid;
 	}
 
-	public void findNaiveSlowPath(final CUnit ignoreIntersectionsWithThisUnit,
+	public CPathfindingProcessor.PathfindingJob findNaiveSlowPath(final CUnit ignoreIntersectionsWithThisUnit,
 			final CUnit ignoreIntersectionsWithThisSecondUnit, final float startX, final float startY,
 			final Point2D.Float goal, final PathingGrid.MovementType movementType, final float collisionSize,
-			final boolean allowSmoothing, final CBehaviorMove queueItem) {
+			final boolean allowSmoothing, final CBehaviorMove queueItem,
+			final CPathfindingProcessor.JobPriority priority) {
 		final int playerIndex = queueItem.getUnit().getPlayerIndex();
-		this.pathfindingProcessors[playerIndex].findNaiveSlowPath(ignoreIntersectionsWithThisUnit,
+		return this.pathfindingProcessors[playerIndex].findNaiveSlowPath(ignoreIntersectionsWithThisUnit,
 				ignoreIntersectionsWithThisSecondUnit, startX, startY, goal, movementType, collisionSize,
-				allowSmoothing, queueItem);
+				allowSmoothing, queueItem, priority);
 	}
 
-	public void removeFromPathfindingQueue(final CBehaviorMove behaviorMove) {
+	public void removeFromPathfindingQueue(final CBehaviorMove behaviorMove,
+			final CPathfindingProcessor.PathfindingJob job) {
 		final int playerIndex = behaviorMove.getUnit().getPlayerIndex();
-		this.pathfindingProcessors[playerIndex].removeFromPathfindingQueue(behaviorMove);
+		this.pathfindingProcessors[playerIndex].cancel(job);
+	}
+
+	public CPathfindingProcessor getPathfindingProcessor(final int playerIndex) {
+		return this.pathfindingProcessors[playerIndex];
+	}
+
+	public CFlowFieldCache getFlowFieldCache() {
+		return this.flowFieldCache;
 	}
 
 	protected void updateFogOfWar() {
@@ -402,10 +437,7 @@ public class CSimulation implements CPlayerAPI {
 			final CUnit unit = unitIterator.next();
 			if (unit.update(this)) {
 				unitIterator.remove();
-				for (final CAbility ability : unit.getAbilities()) {
-					this.handleIdToAbility.remove(ability.getHandleId());
-				}
-				this.handleIdToUnit.remove(unit.getHandleId());
+				freeHandleIds(unit);
 				this.simulationRenderController.removeUnit(unit);
 				getPlayerHeroes(unit.getPlayerIndex()).remove(unit);
 				unit.onRemove(this);
@@ -468,10 +500,7 @@ public class CSimulation implements CPlayerAPI {
 		this.newUnits.clear();
 		for (final CUnit unit : this.removedUnits) {
 			this.units.remove(unit);
-			for (final CAbility ability : unit.getAbilities()) {
-				this.handleIdToAbility.remove(ability.getHandleId());
-			}
-			this.handleIdToUnit.remove(unit.getHandleId());
+			freeHandleIds(unit);
 			this.simulationRenderController.removeUnit(unit);
 			getPlayerHeroes(unit.getPlayerIndex()).remove(unit);
 			unit.onRemove(this);
@@ -563,6 +592,14 @@ public class CSimulation implements CPlayerAPI {
 		return this.handleIdAllocator;
 	}
 
+	public CSimulationStateChecksum getStateChecksum() {
+		return this.stateChecksum;
+	}
+
+	public long computeStateChecksum() {
+		return this.stateChecksum.computeChecksum(this.gameTurnTick);
+	}
+
 	public void unitTrainedEvent(final CUnit trainingUnit, final CUnit trainedUnit) {
 		this.simulationRenderController.spawnUnitReadySound(trainedUnit);
 	}
@@ -632,17 +669,9 @@ public class CSimulation implements CPlayerAPI {
 	}
 
 	public CWidget getWidget(final int handleId) {
-		final CUnit unit = this.handleIdToUnit.get(handleId);
-		if (unit != null) {
-			return unit;
-		}
-		final CDestructable destructable = this.handleIdToDestructable.get(handleId);
-		if (destructable != null) {
-			return destructable;
-		}
-		final CItem item = this.handleIdToItem.get(handleId);
-		if (item != null) {
-			return item;
+		final Object handle = this.handleIdAllocator.get(handleId);
+		if (handle instanceof CWidget) {
+			return (CWidget) handle;
 		}
 		return null;
 	}
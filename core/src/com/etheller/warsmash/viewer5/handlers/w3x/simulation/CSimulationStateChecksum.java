@@ -0,0 +1,75 @@
+package com.etheller.warsmash.viewer5.handlers.w3x.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hash of the simulation state that lockstep clients compare to detect a
+ * desync. Each unit contributes a hash of its handle id, position, life and
+ * mana, and the contributions are summed so that their order does not matter.
+ * A unit is only rehashed when it changed since the last checksum, which keeps
+ * the cost proportional to the units that moved or were damaged rather than to
+ * all units on the map.
+ */
+public class CSimulationStateChecksum {
+	private final HandleIdAllocator handleIdAllocator;
+	private final CSeededRandom seededRandom;
+	private final List<CUnit> changedUnits = new ArrayList<>();
+	private long unitSum;
+
+	public CSimulationStateChecksum(final HandleIdAllocator handleIdAllocator, final CSeededRandom seededRandom) {
+		this.handleIdAllocator = handleIdAllocator;
+		this.seededRandom = seededRandom;
+	}
+
+	public void addUnit(final CUnit unit) {
+		unit.setStateChecksum(this);
+	}
+
+	public void removeUnit(final CUnit unit) {
+		if (unit.getStateChecksum() == this) {
+			this.unitSum -= unit.getStateChecksumContribution();
+			unit.setStateChecksum(null);
+		}
+	}
+
+	/**
+	 * Called by a unit the first time its state changes after a checksum.
+	 */
+	public void unitChanged(final CUnit unit) {
+		this.changedUnits.add(unit);
+	}
+
+	public long computeChecksum(final int gameTurnTick) {
+		for (final CUnit unit : this.changedUnits) {
+			final long delta = unit.updateStateChecksumContribution();
+			if (unit.getStateChecksum() == this) {
+				this.unitSum += delta;
+			}
+		}
+		this.changedUnits.clear();
+		long hash = mix(gameTurnTick);
+		hash = mix(hash ^ this.unitSum);
+		hash = mix(hash ^ this.handleIdAllocator.getNextId());
+		hash = mix(hash ^ this.seededRandom.getDrawCount());
+		hash = mix(hash ^ this.seededRandom.getDrawHash());
+		return hash;
+	}
+
+	public static long hashUnit(final int handleId, final float x, final float y, final float life,
+			final float mana) {
+		long hash = mix(handleId);
+		hash = mix(hash ^ Float.floatToIntBits(x));
+		hash = mix(hash ^ Float.floatToIntBits(y));
+		hash = mix(hash ^ Float.floatToIntBits(life));
+		hash = mix(hash ^ Float.floatToIntBits(mana));
+		return hash;
+	}
+
+	private static long mix(long value) {
+		// splitmix64 finalizer
+		value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+		value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+		return value ^ (value >>> 31);
+	}
+}
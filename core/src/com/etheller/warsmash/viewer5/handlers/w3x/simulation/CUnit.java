@@ -126,6 +126,9 @@ public class CUnit extends CWidget {
 	// which fields shouldn't be persisted if we do game state save later
 	private transient CUnitStateNotifier stateNotifier = new CUnitStateNotifier();
 	private transient List<StateListenerUpdate> stateListenersUpdates = new ArrayList<>();
+	private transient CSimulationStateChecksum stateChecksum;
+	private transient long stateChecksumContribution;
+	private transient boolean stateChecksumChanged;
 	private float acquisitionRange;
 	private transient static AutoAttackTargetFinderEnum autoAttackTargetFinderEnum = new AutoAttackTargetFinderEnum();
 
@@ -369,6 +372,7 @@ public class CUnit extends CWidget {
 		}
 		this.maximumLife = this.unitType.getMaxLife();
 		this.life = lifeRatio * this.maximumLife;
+		stateChanged();
 		this.lifeRegen = this.unitType.getLifeRegen();
 		this.manaRegen = this.unitType.getManaRegen();
 		this.flyHeight = this.unitType.getDefaultFlyingHeight();
@@ -414,6 +418,7 @@ public class CUnit extends CWidget {
 	public void setMana(final float mana) {
 		this.mana = mana;
 		this.stateNotifier.manaChanged();
+		stateChanged();
 	}
 
 	public void setMaximumLife(final int maximumLife) {
@@ -745,6 +750,7 @@ public class CUnit extends CWidget {
 							}
 							this.life = lifePlusRegen;
 							this.stateNotifier.lifeChanged();
+							stateChanged();
 						}
 					}
 					if (this.mana < this.maximumMana) {
@@ -754,6 +760,7 @@ public class CUnit extends CWidget {
 						}
 						this.mana = manaPlusRegen;
 						this.stateNotifier.manaChanged();
+						stateChanged();
 					}
 					if (this.currentBehavior != null) {
 						final CBehavior lastBehavior = this.currentBehavior;
@@ -1034,6 +1041,18 @@ public class CUnit extends CWidget {
 		return this.collisionRectangle;
 	}
 
+	@Override
+	protected void setX(final float x) {
+		super.setX(x);
+		stateChanged();
+	}
+
+	@Override
+	protected void setY(final float y) {
+		super.setY(y);
+		stateChanged();
+	}
+
 	public void setX(final float newX, final CWorldCollision collision, final CRegionManager regionManager) {
 		final float prevX = getX();
 		if (!isBuilding()) {
@@ -1215,6 +1234,7 @@ public class CUnit extends CWidget {
 				this.life = this.maximumLife;
 			}
 			this.stateNotifier.lifeChanged();
+			stateChanged();
 		}
 		simulation.unitDamageEvent(this, weaponType, this.unitType.getArmorType());
 		if (!this.invulnerable && isDead()) {
@@ -1363,6 +1383,9 @@ public class CUnit extends CWidget {
 		final List<CWidgetEvent> eventList = getEventList(JassGameEventsWar3.EVENT_UNIT_DEATH);
 		if (eventList != null) {
 			for (final CWidgetEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(this, CommonTriggerExecutionScope.unitDeathScope(JassGameEventsWar3.EVENT_UNIT_DEATH,
 						event.getTrigger(), this, source));
 			}
@@ -1913,6 +1936,7 @@ public class CUnit extends CWidget {
 			kill(simulation, null);
 		}
 		this.stateNotifier.lifeChanged();
+		stateChanged();
 	}
 
 	private boolean queue(final CSimulation game, final War3ID rawcode, final QueueItemType queueItemType) {
@@ -2434,6 +2458,42 @@ public class CUnit extends CWidget {
 			// collected see it as basically worthless
 		}
 		simulation.getWorldCollision().removeUnit(this);
+		simulation.getStateChecksum().removeUnit(this);
+	}
+
+	public CSimulationStateChecksum getStateChecksum() {
+		return this.stateChecksum;
+	}
+
+	public void setStateChecksum(final CSimulationStateChecksum stateChecksum) {
+		this.stateChecksum = stateChecksum;
+		this.stateChecksumContribution = 0;
+		this.stateChecksumChanged = false;
+		stateChanged();
+	}
+
+	public long getStateChecksumContribution() {
+		return this.stateChecksumContribution;
+	}
+
+	/**
+	 * Rehashes the state covered by the checksum.
+	 *
+	 * @return the difference from the previous contribution
+	 */
+	public long updateStateChecksumContribution() {
+		this.stateChecksumChanged = false;
+		final long previous = this.stateChecksumContribution;
+		this.stateChecksumContribution = CSimulationStateChecksum.hashUnit(getHandleId(), getX(), getY(), this.life,
+				this.mana);
+		return this.stateChecksumContribution - previous;
+	}
+
+	private void stateChanged() {
+		if ((this.stateChecksum != null) && !this.stateChecksumChanged) {
+			this.stateChecksumChanged = true;
+			this.stateChecksum.unitChanged(this);
+		}
 	}
 
 	private static enum StateListenerUpdateType {
@@ -2688,6 +2748,9 @@ public class CUnit extends CWidget {
 		final List<CWidgetEvent> eventList = getEventList(JassGameEventsWar3.EVENT_UNIT_PICKUP_ITEM);
 		if (eventList != null) {
 			for (final CWidgetEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(this, CommonTriggerExecutionScope.unitPickupItemScope(
 						JassGameEventsWar3.EVENT_UNIT_PICKUP_ITEM, event.getTrigger(), this, item));
 			}
@@ -2699,6 +2762,9 @@ public class CUnit extends CWidget {
 		final List<CWidgetEvent> eventList = getEventList(JassGameEventsWar3.EVENT_UNIT_ISSUED_ORDER);
 		if (eventList != null) {
 			for (final CWidgetEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(this, CommonTriggerExecutionScope.unitOrderScope(JassGameEventsWar3.EVENT_UNIT_ISSUED_ORDER,
 						event.getTrigger(), this, order.getOrderId()));
 			}
@@ -2711,6 +2777,9 @@ public class CUnit extends CWidget {
 		if (eventList != null) {
 			final AbilityPointTarget target = order.getTarget(game);
 			for (final CWidgetEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(this,
 						CommonTriggerExecutionScope.unitOrderPointScope(
 								JassGameEventsWar3.EVENT_UNIT_ISSUED_POINT_ORDER, event.getTrigger(), this,
@@ -2725,6 +2794,9 @@ public class CUnit extends CWidget {
 		if (eventList != null) {
 			final CWidget target = order.getTarget(game);
 			for (final CWidgetEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(this,
 						CommonTriggerExecutionScope.unitOrderTargetScope(
 								JassGameEventsWar3.EVENT_UNIT_ISSUED_TARGET_ORDER, event.getTrigger(), this,
@@ -2739,6 +2811,9 @@ public class CUnit extends CWidget {
 		final List<CWidgetEvent> eventList = getEventList(JassGameEventsWar3.EVENT_UNIT_CONSTRUCT_FINISH);
 		if (eventList != null) {
 			for (final CWidgetEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(this, CommonTriggerExecutionScope.unitConstructFinishScope(
 						JassGameEventsWar3.EVENT_UNIT_CONSTRUCT_FINISH, event.getTrigger(), this, constructingUnit));
 			}
@@ -2750,6 +2825,9 @@ public class CUnit extends CWidget {
 		final List<CWidgetEvent> eventList = getEventList(JassGameEventsWar3.EVENT_UNIT_TRAIN_FINISH);
 		if (eventList != null) {
 			for (final CWidgetEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(this, CommonTriggerExecutionScope.unitTrainFinishScope(
 						JassGameEventsWar3.EVENT_UNIT_TRAIN_FINISH, event.getTrigger(), this, trainedUnit));
 			}
@@ -2761,6 +2839,9 @@ public class CUnit extends CWidget {
 		final List<CWidgetEvent> eventList = getEventList(JassGameEventsWar3.EVENT_UNIT_RESEARCH_FINISH);
 		if (eventList != null) {
 			for (final CWidgetEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(this, CommonTriggerExecutionScope.unitResearchFinishScope(
 						JassGameEventsWar3.EVENT_UNIT_RESEARCH_FINISH, event.getTrigger(), this, researched));
 			}
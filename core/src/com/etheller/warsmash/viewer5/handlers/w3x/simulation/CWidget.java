@@ -138,6 +138,9 @@ public abstract class CWidget implements AbilityTarget, CHandle {
 		final List<CWidgetEvent> eventList = getEventList(eventType);
 		if (eventList != null) {
 			for (final CWidgetEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(this, eventScopeBuilder.create(eventType, event.getTrigger(), this));
 			}
 		}
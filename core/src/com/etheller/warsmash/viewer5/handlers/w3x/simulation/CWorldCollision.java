@@ -1,42 +1,58 @@
 package com.etheller.warsmash.viewer5.handlers.w3x.simulation;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.badlogic.gdx.math.Rectangle;
 import com.etheller.warsmash.util.Quadtree;
 import com.etheller.warsmash.util.QuadtreeIntersector;
+import com.etheller.warsmash.util.SpatialHashGrid;
+import com.etheller.warsmash.util.SpatialIndex;
+import com.etheller.warsmash.util.WarsmashConstants;
 import com.etheller.warsmash.viewer5.handlers.w3x.environment.PathingGrid.MovementType;
 
 public class CWorldCollision {
 	private static final float MINIMUM_COLLISION_SIZE = 0.001f /* THIS IS TO STOP QUADTREE FROM BUSTING */;
 	private static final Rectangle tempRect = new Rectangle();
-	private final Quadtree<CUnit> deadUnitCollision;
-	private final Quadtree<CUnit> groundUnitCollision;
-	private final Quadtree<CUnit> airUnitCollision;
-	private final Quadtree<CUnit> seaUnitCollision;
-	private final Quadtree<CUnit> buildingUnitCollision;
-	private final Quadtree<CUnit> anyUnitEnumerableCollision;
-	private final Quadtree<CDestructable> destructablesForEnum;
+	private final SpatialIndex<CUnit> deadUnitCollision;
+	private final SpatialIndex<CUnit> groundUnitCollision;
+	private final SpatialIndex<CUnit> airUnitCollision;
+	private final SpatialIndex<CUnit> seaUnitCollision;
+	private final SpatialIndex<CUnit> buildingUnitCollision;
+	private final SpatialIndex<CUnit> anyUnitEnumerableCollision;
+	private final SpatialIndex<CDestructable> destructablesForEnum;
 	private final float maxCollisionRadius;
 	private final AnyUnitExceptTwoIntersector anyUnitExceptTwoIntersector;
-	private final EachUnitOnlyOnceIntersector eachUnitOnlyOnceIntersector;
+	// unit enumerations nest (a callback may kill a unit, which enumerates the units
+	// around it for xp), so every nesting depth has its own intersector
+	private final List<UnitEnumIntersector> unitEnumIntersectors = new ArrayList<>();
+	private int unitEnumDepth = 0;
 	private final DestructableEnumIntersector destructableEnumIntersector;
 
 	public CWorldCollision(final Rectangle entireMapBounds, final float maxCollisionRadius) {
-		this.deadUnitCollision = new Quadtree<>(entireMapBounds);
-		this.groundUnitCollision = new Quadtree<>(entireMapBounds);
-		this.airUnitCollision = new Quadtree<>(entireMapBounds);
-		this.seaUnitCollision = new Quadtree<>(entireMapBounds);
-		this.buildingUnitCollision = new Quadtree<>(entireMapBounds);
-		this.anyUnitEnumerableCollision = new Quadtree<>(entireMapBounds);
-		this.destructablesForEnum = new Quadtree<>(entireMapBounds);
+		this.deadUnitCollision = createSpatialIndex(entireMapBounds, maxCollisionRadius);
+		this.groundUnitCollision = createSpatialIndex(entireMapBounds, maxCollisionRadius);
+		this.airUnitCollision = createSpatialIndex(entireMapBounds, maxCollisionRadius);
+		this.seaUnitCollision = createSpatialIndex(entireMapBounds, maxCollisionRadius);
+		this.buildingUnitCollision = createSpatialIndex(entireMapBounds, maxCollisionRadius);
+		this.anyUnitEnumerableCollision = createSpatialIndex(entireMapBounds, maxCollisionRadius);
+		this.destructablesForEnum = createSpatialIndex(entireMapBounds, maxCollisionRadius);
 		this.maxCollisionRadius = maxCollisionRadius;
 		this.anyUnitExceptTwoIntersector = new AnyUnitExceptTwoIntersector();
-		this.eachUnitOnlyOnceIntersector = new EachUnitOnlyOnceIntersector();
 		this.destructableEnumIntersector = new DestructableEnumIntersector();
 	}
 
+	private static <T> SpatialIndex<T> createSpatialIndex(final Rectangle entireMapBounds,
+			final float maxCollisionRadius) {
+		if (WarsmashConstants.USE_SPATIAL_HASH_COLLISION) {
+			// cells as wide as the largest unit, so a unit is in at most 4 cells
+			return new SpatialHashGrid<>(entireMapBounds, Math.max(64f, maxCollisionRadius * 2));
+		}
+		return new Quadtree<>(entireMapBounds);
+	}
+
 	public void addUnit(final CUnit unit) {
 		Rectangle bounds = unit.getCollisionRectangle();
 		if (bounds == null) {
@@ -136,47 +152,59 @@ public class CWorldCollision {
 	}
 
 	public void enumUnitsInRect(final Rectangle rect, final CUnitEnumFunction callback) {
-		// NOTE: allocation here seems quite wasteful, but when it was a recycled
-		// value there were times this function looped units in rect, killed a few,
-		// then entered the function again to apply xp gain in an area iterated
-		// around the killed units before finishing the other iteration...
-		// and so a recycled allocation did not work
-		final Set<CUnit> intersectedUnits = new HashSet<>();
-		this.anyUnitEnumerableCollision.intersect(rect, (unit) -> {
-			if(unit.isHidden() || !intersectedUnits.add(unit)) {
-				return false;
-			}
-			return callback.call(unit);
-		});
+		final UnitEnumIntersector intersector = pushUnitEnumIntersector();
+		try {
+			this.anyUnitEnumerableCollision.intersect(rect, intersector.reset(callback));
+		}
+		finally {
+			popUnitEnumIntersector(intersector);
+		}
 	}
 
 	public void enumCorpsesInRect(final Rectangle rect, final CUnitEnumFunction callback) {
-		// NOTE: allocation here seems quite wasteful, see note on enumUnitsInRect
-		final Set<CUnit> intersectedUnits = new HashSet<>();
-		this.deadUnitCollision.intersect(rect, (unit) -> {
-			if(unit.isHidden() || !intersectedUnits.add(unit)) {
-				return false;
-			}
-			return callback.call(unit);
-		});
+		final UnitEnumIntersector intersector = pushUnitEnumIntersector();
+		try {
+			this.deadUnitCollision.intersect(rect, intersector.reset(callback));
+		}
+		finally {
+			popUnitEnumIntersector(intersector);
+		}
 	}
 
-	public void enumCorpsesInRange(float x, float y, float radius, final CUnitEnumFunction callback) {
-		enumCorpsesInRect(new Rectangle(x - radius, y - radius, radius * 2, radius * 2), (enumUnit) -> {
-			if (enumUnit.canReach(x, y, radius)) {
-				return callback.call(enumUnit);
-			}
-			return false;
-		});
+	public void enumCorpsesInRange(final float x, final float y, final float radius,
+			final CUnitEnumFunction callback) {
+		final UnitEnumIntersector intersector = pushUnitEnumIntersector();
+		try {
+			final Rectangle rect = intersector.resetInRange(x, y, radius, callback);
+			this.deadUnitCollision.intersect(rect, intersector);
+		}
+		finally {
+			popUnitEnumIntersector(intersector);
+		}
 	}
 
-	public void enumUnitsInRange(float x, float y, float radius, final CUnitEnumFunction callback) {
-		enumUnitsInRect(new Rectangle(x - radius, y - radius, radius * 2, radius * 2), (enumUnit) -> {
-			if (enumUnit.canReach(x, y, radius)) {
-				return callback.call(enumUnit);
-			}
-			return false;
-		});
+	public void enumUnitsInRange(final float x, final float y, final float radius,
+			final CUnitEnumFunction callback) {
+		final UnitEnumIntersector intersector = pushUnitEnumIntersector();
+		try {
+			final Rectangle rect = intersector.resetInRange(x, y, radius, callback);
+			this.anyUnitEnumerableCollision.intersect(rect, intersector);
+		}
+		finally {
+			popUnitEnumIntersector(intersector);
+		}
+	}
+
+	private UnitEnumIntersector pushUnitEnumIntersector() {
+		if (this.unitEnumDepth == this.unitEnumIntersectors.size()) {
+			this.unitEnumIntersectors.add(new UnitEnumIntersector());
+		}
+		return this.unitEnumIntersectors.get(this.unitEnumDepth++);
+	}
+
+	private void popUnitEnumIntersector(final UnitEnumIntersector intersector) {
+		intersector.clear();
+		this.unitEnumDepth--;
 	}
 
 	public void enumBuildingsInRect(final Rectangle rect, final QuadtreeIntersector<CUnit> callback) {
@@ -300,34 +328,61 @@ public class CWorldCollision {
 		}
 	}
 
-	private static final class EachUnitOnlyOnceIntersector implements QuadtreeIntersector<CUnit> {
+	/**
+	 * Reports each visible unit once to the callback, optionally only units within
+	 * range of a point. Instances are pooled per enumeration depth and keep their
+	 * collections between uses, so enumerating does not allocate once the pool has
+	 * warmed up.
+	 */
+	private static final class UnitEnumIntersector implements QuadtreeIntersector<CUnit> {
+		private final Rectangle rect = new Rectangle();
+		private final Map<CUnit, Boolean> intersectedUnitSet = new IdentityHashMap<>();
+		private final List<CUnit> intersectedUnits = new ArrayList<>();
 		private CUnitEnumFunction consumerDelegate;
-		private final Set<CUnit> intersectedUnits = new HashSet<>();
-		private boolean done;
+		private boolean inRange;
+		private float x;
+		private float y;
+		private float radius;
 
-		public EachUnitOnlyOnceIntersector reset(final CUnitEnumFunction consumerDelegate) {
+		public UnitEnumIntersector reset(final CUnitEnumFunction consumerDelegate) {
 			this.consumerDelegate = consumerDelegate;
-			this.intersectedUnits.clear();
-			this.done = false;
+			this.inRange = false;
 			return this;
 		}
 
+		/**
+		 * @return the rectangle to intersect, which bounds the range
+		 */
+		public Rectangle resetInRange(final float x, final float y, final float radius,
+				final CUnitEnumFunction consumerDelegate) {
+			this.consumerDelegate = consumerDelegate;
+			this.inRange = true;
+			this.x = x;
+			this.y = y;
+			this.radius = radius;
+			return this.rect.set(x - radius, y - radius, radius * 2, radius * 2);
+		}
+
+		public void clear() {
+			// removing what we added is cheaper than clear(), which wipes the whole table
+			for (int i = 0; i < this.intersectedUnits.size(); i++) {
+				this.intersectedUnitSet.remove(this.intersectedUnits.get(i));
+			}
+			this.intersectedUnits.clear();
+			this.consumerDelegate = null;
+		}
+
 		@Override
 		public boolean onIntersect(final CUnit intersectingObject) {
-			if (intersectingObject.isHidden()) {
+			if (intersectingObject.isHidden()
+					|| (this.intersectedUnitSet.put(intersectingObject, Boolean.TRUE) != null)) {
 				return false;
 			}
-			if (this.done) {
-				// This check is because we may use the intersector for multiple intersect
-				// calls, see "enumUnitsInRect" and how it uses this intersector first on the
-				// ground unit layer, then the flying unit layer, without recycling
-				return true;
-			}
-			if (this.intersectedUnits.add(intersectingObject)) {
-				this.done = this.consumerDelegate.call(intersectingObject);
-				return this.done;
+			this.intersectedUnits.add(intersectingObject);
+			if (this.inRange && !intersectingObject.canReach(this.x, this.y, this.radius)) {
+				return false;
 			}
-			return false;
+			return this.consumerDelegate.call(intersectingObject);
 		}
 	}
 
@@ -0,0 +1,167 @@
+package com.etheller.warsmash.viewer5.handlers.w3x.simulation;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Random;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.etheller.warsmash.util.War3ID;
+import com.etheller.warsmash.util.WarsmashConstants;
+import com.etheller.warsmash.viewer5.handlers.w3x.environment.PathingGrid.MovementType;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.combat.CRegenType;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.combat.CTargetType;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.combat.CUpgradeClass;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing.CBuildingPathingType;
+
+/**
+ * Checks that {@link CWorldCollision#enumUnitsInRect} and
+ * {@link CWorldCollision#enumUnitsInRange} do not allocate once their pooled
+ * intersectors have warmed up, including when a callback enumerates again, as a
+ * unit dying in a callback does when it gives out experience. Counts the bytes
+ * the thread allocates while they run, with both the spatial hash grid and the
+ * quadtrees, and exits with status 1 if any enumeration allocated.
+ */
+public class CWorldCollisionAllocationTest {
+	private static final int NUMBER_OF_UNITS = 2000;
+	private static final float MAP_SIZE = 16384;
+	private static final int ENUMERATIONS = 20000;
+	private static final int WARMUP_RUNS = 10;
+	private static final long SEED = 0x5EED;
+
+	public static void main(final String[] args) {
+		final boolean useSpatialHashCollision = WarsmashConstants.USE_SPATIAL_HASH_COLLISION;
+		boolean failed = false;
+		try {
+			for (final boolean spatialHash : new boolean[] { true, false }) {
+				WarsmashConstants.USE_SPATIAL_HASH_COLLISION = spatialHash;
+				final Enumerations enumerations = new Enumerations();
+				final String index = spatialHash ? "spatial hash grid" : "quadtree";
+				failed |= report(index, "enumUnitsInRect", measureBytes(enumerations, Enumerations.RECT));
+				failed |= report(index, "enumUnitsInRange", measureBytes(enumerations, Enumerations.RANGE));
+				failed |= report(index, "nested enumUnitsInRange", measureBytes(enumerations, Enumerations.NESTED));
+			}
+		}
+		finally {
+			WarsmashConstants.USE_SPATIAL_HASH_COLLISION = useSpatialHashCollision;
+		}
+		if (failed) {
+			System.err.println("FAILED: enumerating allocated");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	private static boolean report(final String index, final String name, final long bytes) {
+		System.out.println(index + ", " + name + ": " + bytes + " bytes for " + ENUMERATIONS + " enumerations");
+		return bytes > 0;
+	}
+
+	private static long measureBytes(final Enumerations enumerations, final int kind) {
+		final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		final long threadId = Thread.currentThread().getId();
+		long minBytes = Long.MAX_VALUE;
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			final long before = threadBean.getThreadAllocatedBytes(threadId);
+			enumerations.run(kind);
+			minBytes = Math.min(minBytes, threadBean.getThreadAllocatedBytes(threadId) - before);
+		}
+		if (enumerations.unitsFound == 0) {
+			throw new IllegalStateException("No units were enumerated");
+		}
+		return minBytes;
+	}
+
+	private static final class Enumerations implements CUnitEnumFunction {
+		private static final int RECT = 0;
+		private static final int RANGE = 1;
+		private static final int NESTED = 2;
+		private final CWorldCollision worldCollision;
+		private final float[] queryXs = new float[ENUMERATIONS];
+		private final float[] queryYs = new float[ENUMERATIONS];
+		private final Rectangle queryRect = new Rectangle();
+		private final NestedEnumeration nestedEnumeration = new NestedEnumeration();
+		private long unitsFound;
+
+		private Enumerations() {
+			this.worldCollision = new CWorldCollision(
+					new Rectangle(-MAP_SIZE / 2, -MAP_SIZE / 2, MAP_SIZE, MAP_SIZE), 64f);
+			final Random random = new Random(SEED);
+			final CUnitType unitType = createUnitType();
+			for (int i = 0; i < NUMBER_OF_UNITS; i++) {
+				final CUnit unit = new CUnit(i, 0, randomCoordinate(random), randomCoordinate(random), 420,
+						unitType.getTypeId(), 0, 0, 420, 0.25f, 0, 270, unitType);
+				this.worldCollision.addUnit(unit);
+			}
+			for (int i = 0; i < ENUMERATIONS; i++) {
+				this.queryXs[i] = randomCoordinate(random);
+				this.queryYs[i] = randomCoordinate(random);
+			}
+		}
+
+		private void run(final int kind) {
+			for (int i = 0; i < ENUMERATIONS; i++) {
+				final float x = this.queryXs[i];
+				final float y = this.queryYs[i];
+				switch (kind) {
+				case RECT:
+					this.worldCollision.enumUnitsInRect(this.queryRect.set(x - 512, y - 512, 1024, 1024), this);
+					break;
+				case RANGE:
+					this.worldCollision.enumUnitsInRange(x, y, 512, this);
+					break;
+				default:
+					this.worldCollision.enumUnitsInRange(x, y, 512, this.nestedEnumeration);
+					break;
+				}
+			}
+		}
+
+		@Override
+		public boolean call(final CUnit unit) {
+			this.unitsFound++;
+			return false;
+		}
+
+		/**
+		 * Enumerates the units around each unit it is given, two levels deep.
+		 */
+		private final class NestedEnumeration implements CUnitEnumFunction {
+			private int depth = 0;
+
+			@Override
+			public boolean call(final CUnit unit) {
+				Enumerations.this.unitsFound++;
+				if (this.depth < 2) {
+					this.depth++;
+					try {
+						Enumerations.this.worldCollision.enumUnitsInRange(unit.getX(), unit.getY(), 256, this);
+					}
+					finally {
+						this.depth--;
+					}
+				}
+				return false;
+			}
+		}
+	}
+
+	private static float randomCoordinate(final Random random) {
+		return (random.nextFloat() - 0.5f) * (MAP_SIZE - 1024);
+	}
+
+	private static CUnitType createUnitType() {
+		return new CUnitType("Footman", "footman", War3ID.fromString("hfoo"), 420, 0.25f, 0, CRegenType.ALWAYS, 0, 0,
+				270, 2, Collections.emptyList(), false, MovementType.FOOT, 0, 16,
+				EnumSet.noneOf(CUnitClassification.class), Collections.emptyList(), 0, "medium", true, true, null, 60,
+				null, 1, EnumSet.noneOf(CTargetType.class), 500, 0, Collections.emptyList(), Collections.emptyList(),
+				Collections.emptyList(), Collections.emptyList(), new EnumMap<>(CUpgradeClass.class),
+				Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), null, 135, 0, 2, 0, 20,
+				EnumSet.noneOf(CBuildingPathingType.class), EnumSet.noneOf(CBuildingPathingType.class), 60, 0.6f,
+				Collections.emptyList(), Collections.emptyList(), 2, false, 0, 0, 0, 0, 0, 0, null,
+				Collections.emptyList(), Collections.emptyList(), 0, true, 6, false, 100, 0.5f, 0.3f, false, false, 0,
+				1400, 800, false, 0, 0, 0, 0, 0, 0);
+	}
+}
@@ -1,14 +1,144 @@
 package com.etheller.warsmash.viewer5.handlers.w3x.simulation;
 
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
- * This class is not similar to how WC3 allocates handle IDs in any way.
- * Changing this would probably be necessary to support TimerUtils madness,
- * because I forget how it works but I know it uses subtraction on handle IDs.
+ * Allocates handle IDs and finds the object that has one. Like WC3, IDs start
+ * at 0x100000 and the ID of a handle that was freed is the next one given out,
+ * which TimerUtils style scripts that do arithmetic on handle IDs rely on.
+ *
+ * Objects are registered under their ID when they are created and freed when
+ * they are destroyed, so that the number of live handles of each type can be
+ * printed to find maps that leak them. An ID is only recycled by
+ * {@link #free(int, Object)}, never by {@link #unregister(int)}, which is for
+ * objects that may be registered again.
  */
 public class HandleIdAllocator {
-	private int next = 3412532; // bogus number
+	public static final int FIRST_HANDLE_ID = 0x100000;
+	// in the slot of an ID that is waiting to be recycled
+	private static final Object FREED = new Object();
+
+	private Object[] handles = new Object[1024];
+	private int[] freeIds = new int[64];
+	private int freeIdCount;
+	private int next = FIRST_HANDLE_ID;
+	private final Map<Class<?>, int[]> liveCounts = new HashMap<>();
 
 	public int createId() {
+		if (this.freeIdCount > 0) {
+			final int handleId = this.freeIds[--this.freeIdCount];
+			this.handles[handleId - FIRST_HANDLE_ID] = null;
+			return handleId;
+		}
 		return this.next++;
 	}
+
+	/**
+	 * @return the ID that {@link #createId()} will return next, which is part of
+	 *         the state that must match between players
+	 */
+	public int getNextId() {
+		if (this.freeIdCount > 0) {
+			return this.freeIds[this.freeIdCount - 1];
+		}
+		return this.next;
+	}
+
+	public void register(final int handleId, final Object handle) {
+		final int index = handleId - FIRST_HANDLE_ID;
+		if ((index < 0) || (handleId >= this.next)) {
+			return;
+		}
+		if (index >= this.handles.length) {
+			this.handles = Arrays.copyOf(this.handles, Math.max(index + 1, this.handles.length * 2));
+		}
+		final Object previous = this.handles[index];
+		if ((previous != null) && (previous != FREED)) {
+			count(previous, -1);
+		}
+		this.handles[index] = handle;
+		count(handle, 1);
+	}
+
+	/**
+	 * @return the object registered with the ID, or null
+	 */
+	public Object get(final int handleId) {
+		final int index = handleId - FIRST_HANDLE_ID;
+		if ((index < 0) || (index >= this.handles.length)) {
+			return null;
+		}
+		final Object handle = this.handles[index];
+		if (handle == FREED) {
+			return null;
+		}
+		return handle;
+	}
+
+	/**
+	 * Removes the object registered with the ID but keeps the ID reserved.
+	 */
+	public void unregister(final int handleId) {
+		final int index = handleId - FIRST_HANDLE_ID;
+		if ((index < 0) || (index >= this.handles.length)) {
+			return;
+		}
+		final Object handle = this.handles[index];
+		if ((handle != null) && (handle != FREED)) {
+			count(handle, -1);
+			this.handles[index] = null;
+		}
+	}
+
+	/**
+	 * Removes the object registered with the ID, and lets the ID be given to the
+	 * next handle that is created. Nothing is done unless the object is the one
+	 * registered with the ID, so a script that destroys a handle twice does not
+	 * free the ID again, even after it was given to another handle.
+	 */
+	public void free(final int handleId, final Object expected) {
+		final int index = handleId - FIRST_HANDLE_ID;
+		if ((index < 0) || (index >= this.handles.length) || (expected == null)
+				|| (this.handles[index] != expected)) {
+			return;
+		}
+		count(expected, -1);
+		this.handles[index] = FREED;
+		if (this.freeIdCount == this.freeIds.length) {
+			this.freeIds = Arrays.copyOf(this.freeIds, this.freeIdCount * 2);
+		}
+		this.freeIds[this.freeIdCount++] = handleId;
+	}
+
+	public int getLiveHandleCount(final Class<?> type) {
+		final int[] count = this.liveCounts.get(type);
+		return count == null ? 0 : count[0];
+	}
+
+	public void printLiveHandleCounts(final PrintStream out) {
+		final List<Map.Entry<Class<?>, int[]>> counts = new ArrayList<>(this.liveCounts.entrySet());
+		counts.sort((a, b) -> Integer.compare(b.getValue()[0], a.getValue()[0]));
+		out.println("Live handles: " + (this.next - FIRST_HANDLE_ID - this.freeIdCount) + " IDs in use, "
+				+ this.freeIdCount + " free");
+		for (final Map.Entry<Class<?>, int[]> count : counts) {
+			if (count.getValue()[0] > 0) {
+				out.println("  " + count.getKey().getSimpleName() + ": " + count.getValue()[0]);
+			}
+		}
+	}
+
+	private void count(final Object handle, final int delta) {
+		final Class<?> type = handle.getClass();
+		int[] count = this.liveCounts.get(type);
+		if (count == null) {
+			count = new int[1];
+			this.liveCounts.put(type, count);
+		}
+		count[0] += delta;
+	}
 }
@@ -18,7 +18,9 @@ import com.etheller.warsmash.viewer5.handlers.w3x.simulation.CWorldCollision;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.abilities.targeting.AbilityPointTarget;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.abilities.targeting.AbilityTarget;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.abilities.targeting.AbilityTargetVisitor;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing.CFlowField;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing.CPathfindingProcessor;
+import com.etheller.warsmash.viewer5.handlers.w3x.simulation.players.CMapControl;
 
 public class CBehaviorMove implements CBehavior {
 	private static boolean ALWAYS_INTERRUPT_MOVE = false;
@@ -43,6 +45,8 @@ public class CBehaviorMove implements CBehavior {
 	private boolean firstUpdate = true;
 	private boolean disableCollision = false;
 	private boolean pathfindingActive = false;
+	private CPathfindingProcessor.PathfindingJob pathfindingJob;
+	private CFlowField flowField;
 	private boolean firstPathfindJob = false;
 	private boolean pathfindingFailedGiveUp;
 	private int giveUpUntilTurnTick;
@@ -76,6 +80,7 @@ public class CBehaviorMove implements CBehavior {
 		this.firstUpdate = true;
 		this.pathfindingFailedGiveUp = false;
 		this.giveUpUntilTurnTick = 0;
+		releaseFlowField();
 	}
 
 	private void internalResetMove(final int highlightOrderId, final CUnit followUnit) {
@@ -91,6 +96,7 @@ public class CBehaviorMove implements CBehavior {
 		this.firstUpdate = true;
 		this.pathfindingFailedGiveUp = false;
 		this.giveUpUntilTurnTick = 0;
+		releaseFlowField();
 	}
 
 	@Override
@@ -134,8 +140,8 @@ public class CBehaviorMove implements CBehavior {
 					this.target.x = this.followUnit.getX();
 					this.target.y = this.followUnit.getY();
 				}
-				simulation.findNaiveSlowPath(this.unit, this.followUnit, startFloatingX, startFloatingY, this.target,
-						movementType, collisionSize, true, this);
+				this.pathfindingJob = simulation.findNaiveSlowPath(this.unit, this.followUnit, startFloatingX,
+						startFloatingY, this.target, movementType, collisionSize, true, this, getOrderPriority(simulation));
 				this.pathfindingActive = true;
 				this.firstPathfindJob = true;
 			}
@@ -145,10 +151,11 @@ public class CBehaviorMove implements CBehavior {
 			this.target.x = this.followUnit.getX();
 			this.target.y = this.followUnit.getY();
 			if (this.pathfindingActive) {
-				simulation.removeFromPathfindingQueue(this);
+				simulation.removeFromPathfindingQueue(this, this.pathfindingJob);
 			}
-			simulation.findNaiveSlowPath(this.unit, this.followUnit, startFloatingX, startFloatingY, this.target,
-					movementType, collisionSize, this.searchCycles < 4, this);
+			this.pathfindingJob = simulation.findNaiveSlowPath(this.unit, this.followUnit, startFloatingX,
+					startFloatingY, this.target, movementType, collisionSize, this.searchCycles < 4, this,
+					CPathfindingProcessor.JobPriority.REPATH);
 			this.pathfindingActive = true;
 		}
 		float currentTargetX;
@@ -318,8 +325,9 @@ public class CBehaviorMove implements CBehavior {
 						this.target.y = this.followUnit.getY();
 					}
 					if (!this.pathfindingActive) {
-						simulation.findNaiveSlowPath(this.unit, this.followUnit, startFloatingX, startFloatingY,
-								this.target, movementType, collisionSize, this.searchCycles < 4, this);
+						this.pathfindingJob = simulation.findNaiveSlowPath(this.unit, this.followUnit,
+								startFloatingX, startFloatingY, this.target, movementType, collisionSize,
+								this.searchCycles < 4, this, CPathfindingProcessor.JobPriority.REPATH);
 						this.pathfindingActive = true;
 						this.searchCycles++;
 						return this;
@@ -343,7 +351,15 @@ public class CBehaviorMove implements CBehavior {
 		return this;
 	}
 
+	private CPathfindingProcessor.JobPriority getOrderPriority(final CSimulation simulation) {
+		if (simulation.getPlayer(this.unit.getPlayerIndex()).getController() == CMapControl.COMPUTER) {
+			return CPathfindingProcessor.JobPriority.AI_ORDER;
+		}
+		return CPathfindingProcessor.JobPriority.PLAYER_ORDER;
+	}
+
 	private void onMoveGiveUp(final CSimulation simulation) {
+		releaseFlowField();
 		if (this.rangedBehavior != null) {
 			this.rangedBehavior.endMove(simulation, true);
 		}
@@ -389,8 +405,10 @@ public class CBehaviorMove implements CBehavior {
 
 	@Override
 	public void end(final CSimulation game, final boolean interrupted) {
+		releaseFlowField();
 		if (ALWAYS_INTERRUPT_MOVE) {
-			game.removeFromPathfindingQueue(this);
+			game.removeFromPathfindingQueue(this, this.pathfindingJob);
+			this.pathfindingJob = null;
 			this.pathfindingActive = false;
 		}
 		if (this.rangedBehavior != null) {
@@ -402,8 +420,35 @@ public class CBehaviorMove implements CBehavior {
 		return this.unit;
 	}
 
+	/**
+	 * @return true if the job is the one this behavior is waiting on, and not one
+	 *         it has since replaced
+	 */
+	public boolean isPathfindingJob(final CPathfindingProcessor.PathfindingJob job) {
+		return this.pathfindingJob == job;
+	}
+
+	/**
+	 * Called by the pathfinding processor when the path about to be delivered to
+	 * {@link #pathFound(List, CSimulation)} was read from a shared flow field. This
+	 * behavior holds the reference to the field, keeping it cached for re-paths to
+	 * the same goal, until the move ends or is given a new target.
+	 */
+	public void flowFieldAssigned(final CFlowField flowField) {
+		releaseFlowField();
+		this.flowField = flowField;
+	}
+
+	private void releaseFlowField() {
+		if (this.flowField != null) {
+			this.flowField.release();
+			this.flowField = null;
+		}
+	}
+
 	public void pathFound(final List<Point2D.Float> waypoints, final CSimulation simulation) {
 		this.pathfindingActive = false;
+		this.pathfindingJob = null;
 
 		final float prevX = this.unit.getX();
 		final float prevY = this.unit.getY();
@@ -0,0 +1,399 @@
+package com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.etheller.warsmash.viewer5.handlers.w3x.environment.PathingGrid;
+import com.etheller.warsmash.viewer5.handlers.w3x.environment.PathingGrid.MovementType;
+
+/**
+ * Flow field towards one goal node for one movement type and collision size.
+ * The integration field holds the cost from every node to the goal, and the
+ * direction field holds which neighbor to step to next, so any number of units
+ * moving to the same goal can read their path out of one shared field instead
+ * of each running their own search.
+ *
+ * The field is computed with a Dijkstra search outward from the goal, which can
+ * be spread across several simulation ticks with {@link #expand(int, int)}.
+ * The search only goes as far as the movers using the field need: it pauses as
+ * soon as the node a mover starts on is settled, and continues from there when
+ * another mover needs a node further out. Pathability is read from the grid
+ * only when the search first reaches a node. Like
+ * {@link CHierarchicalPathingGraph}, it only considers static pathing and not
+ * units.
+ *
+ * The grid is split into blocks of {@link #BLOCK_SIZE} by {@link #BLOCK_SIZE}
+ * nodes, and the arrays of a block are only allocated when the search first
+ * reaches it, so a field costs memory for the part of the map it explored and
+ * not for the whole grid.
+ */
+public final class CFlowField {
+	private static final float STRAIGHT_COST = 32f;
+	private static final float DIAGONAL_COST = (float) (Math.sqrt(2) * 32);
+	private static final int[] DIRECTION_X = { -1, 0, 1, 1, 1, 0, -1, -1 };
+	private static final int[] DIRECTION_Y = { 1, 1, 1, 0, -1, -1, -1, 0 };
+	private static final byte NO_DIRECTION = -1;
+	private static final byte NODE_UNKNOWN = 0;
+	private static final byte NODE_PATHABLE = 1;
+	private static final byte NODE_BLOCKED = 2;
+	// pathable, and its cost and direction are final
+	private static final byte NODE_SETTLED = 3;
+	private static final int BLOCK_SHIFT = 4;
+	private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+	private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+	private static final int INITIAL_OPEN_SET_CAPACITY = 256;
+
+	private final CFlowFieldCache cache;
+	private final long key;
+	private final PathingGrid pathingGrid;
+	private final MovementType movementType;
+	private final float collisionSize;
+	private final boolean corners;
+	private final CPathfindingProcessor.GridMapping gridMapping;
+	private final int width;
+	private final int height;
+	private final int goalNodeX;
+	private final int goalNodeY;
+	private final int blocksWide;
+	// by block, then by node within the block; null for blocks not reached
+	private final float[][] integrationField;
+	private final byte[][] directionField;
+	private int referenceCount = 0;
+	private boolean stale = false;
+	// nodes whose pathability was read, so a change to the pathing anywhere else
+	// does not affect the field
+	private int exploredMinX = Integer.MAX_VALUE;
+	private int exploredMinY = Integer.MAX_VALUE;
+	private int exploredMaxX = Integer.MIN_VALUE;
+	private int exploredMaxY = Integer.MIN_VALUE;
+
+	// only used while the field is being computed:
+	private byte[][] nodeStates;
+	// binary heap of nodes by cost, with ties broken on the node index. A node is
+	// added again when its cost is lowered, and the older entry is skipped when it
+	// comes out after the node is settled
+	private int[] openSetNodes = new int[INITIAL_OPEN_SET_CAPACITY];
+	private float[] openSetCosts = new float[INITIAL_OPEN_SET_CAPACITY];
+	private int openSetSize = 0;
+	private boolean complete = false;
+
+	CFlowField(final CFlowFieldCache cache, final long key, final PathingGrid pathingGrid,
+			final MovementType movementType, final float collisionSize, final int goalNodeX, final int goalNodeY) {
+		this.cache = cache;
+		this.key = key;
+		this.pathingGrid = pathingGrid;
+		this.movementType = movementType;
+		this.collisionSize = collisionSize;
+		this.corners = CPathfindingProcessor.isCollisionSizeBetterSuitedForCorners(collisionSize);
+		if (this.corners) {
+			this.gridMapping = CPathfindingProcessor.GridMapping.CORNERS;
+			this.width = pathingGrid.getWidth() + 1;
+			this.height = pathingGrid.getHeight() + 1;
+		}
+		else {
+			this.gridMapping = CPathfindingProcessor.GridMapping.CELLS;
+			this.width = pathingGrid.getWidth();
+			this.height = pathingGrid.getHeight();
+		}
+		this.goalNodeX = goalNodeX;
+		this.goalNodeY = goalNodeY;
+		this.blocksWide = (this.width + BLOCK_MASK) >> BLOCK_SHIFT;
+		final int blockCount = this.blocksWide * ((this.height + BLOCK_MASK) >> BLOCK_SHIFT);
+		this.integrationField = new float[blockCount][];
+		this.directionField = new byte[blockCount][];
+		this.nodeStates = new byte[blockCount][];
+		if (isPathable(goalNodeX, goalNodeY)) {
+			setCost(goalNodeX, goalNodeY, 0);
+			pushOpen((goalNodeY * this.width) + goalNodeX, 0);
+		}
+	}
+
+	public long getKey() {
+		return this.key;
+	}
+
+	public MovementType getMovementType() {
+		return this.movementType;
+	}
+
+	public boolean isComplete() {
+		return this.complete;
+	}
+
+	/**
+	 * @return true if the cost and direction of the node that a mover at the
+	 *         given point starts on are final, so that its path can be
+	 *         {@link #trace traced}
+	 */
+	public boolean isReached(final float startX, final float startY) {
+		if (this.complete) {
+			return true;
+		}
+		final int x = this.gridMapping.getX(this.pathingGrid, startX);
+		final int y = this.gridMapping.getY(this.pathingGrid, startY);
+		if ((x < 0) || (y < 0) || (x >= this.width) || (y >= this.height)) {
+			return true;
+		}
+		final byte nodeState = getNodeState(x, y);
+		// a node the search found to be blocked is never reached
+		return (nodeState == NODE_SETTLED) || (nodeState == NODE_BLOCKED);
+	}
+
+	/**
+	 * Continues computing the field until the node that a mover at the given point
+	 * starts on is {@link #isReached(float, float) reached}, or until about the
+	 * given amount of work (nodes expanded or checked for pathability) is done.
+	 *
+	 * @return the work done
+	 */
+	public int expand(final float startX, final float startY, final int iterationBudget) {
+		int iterations = 0;
+		while (!isReached(startX, startY) && (iterations < iterationBudget)) {
+			if (this.openSetSize == 0) {
+				this.complete = true;
+				// scratch data is no longer needed
+				this.openSetNodes = null;
+				this.openSetCosts = null;
+				this.nodeStates = null;
+				break;
+			}
+			final int current = pollOpen();
+			final int x = current % this.width;
+			final int y = current / this.width;
+			if (getNodeState(x, y) == NODE_SETTLED) {
+				// an older entry, from before its cost was lowered
+				continue;
+			}
+			setNodeState(x, y, NODE_SETTLED);
+			iterations++;
+			final float currentCost = getCost(x, y);
+			for (int direction = 0; direction < DIRECTION_X.length; direction++) {
+				final int nextX = x + DIRECTION_X[direction];
+				final int nextY = y + DIRECTION_Y[direction];
+				if ((nextX < 0) || (nextY < 0) || (nextX >= this.width) || (nextY >= this.height)) {
+					continue;
+				}
+				final byte nextState = getNodeState(nextX, nextY);
+				if (nextState == NODE_SETTLED) {
+					continue;
+				}
+				if (nextState == NODE_UNKNOWN) {
+					iterations++;
+				}
+				if (!isPathable(nextX, nextY) || !isPathable(x, nextY) || !isPathable(nextX, y)) {
+					continue;
+				}
+				final float stepCost = ((DIRECTION_X[direction] != 0) && (DIRECTION_Y[direction] != 0))
+						? DIAGONAL_COST
+						: STRAIGHT_COST;
+				final float tentativeScore = currentCost + stepCost;
+				if (tentativeScore < getCost(nextX, nextY)) {
+					setCost(nextX, nextY, tentativeScore);
+					// stepping from next back towards current is the opposite direction
+					this.directionField[getBlock(nextX, nextY)][getIndexInBlock(nextX,
+							nextY)] = (byte) ((direction + 4) % DIRECTION_X.length);
+					pushOpen((nextY * this.width) + nextX, tentativeScore);
+				}
+			}
+		}
+		return iterations;
+	}
+
+	private boolean isPathable(final int x, final int y) {
+		byte nodeState = getNodeState(x, y);
+		if (nodeState == NODE_UNKNOWN) {
+			nodeState = this.pathingGrid.isPathable(getWorldX(x), getWorldY(y), this.movementType,
+					this.collisionSize) ? NODE_PATHABLE : NODE_BLOCKED;
+			setNodeState(x, y, nodeState);
+			this.exploredMinX = Math.min(this.exploredMinX, x);
+			this.exploredMinY = Math.min(this.exploredMinY, y);
+			this.exploredMaxX = Math.max(this.exploredMaxX, x);
+			this.exploredMaxY = Math.max(this.exploredMaxY, y);
+		}
+		return nodeState != NODE_BLOCKED;
+	}
+
+	private int getBlock(final int x, final int y) {
+		return ((y >> BLOCK_SHIFT) * this.blocksWide) + (x >> BLOCK_SHIFT);
+	}
+
+	private static int getIndexInBlock(final int x, final int y) {
+		return ((y & BLOCK_MASK) << BLOCK_SHIFT) | (x & BLOCK_MASK);
+	}
+
+	private byte getNodeState(final int x, final int y) {
+		final byte[] blockStates = this.nodeStates[getBlock(x, y)];
+		return blockStates == null ? NODE_UNKNOWN : blockStates[getIndexInBlock(x, y)];
+	}
+
+	private void setNodeState(final int x, final int y, final byte nodeState) {
+		final int block = getBlock(x, y);
+		if (this.nodeStates[block] == null) {
+			this.nodeStates[block] = new byte[BLOCK_SIZE * BLOCK_SIZE];
+		}
+		this.nodeStates[block][getIndexInBlock(x, y)] = nodeState;
+	}
+
+	private float getCost(final int x, final int y) {
+		final float[] blockCosts = this.integrationField[getBlock(x, y)];
+		return blockCosts == null ? Float.POSITIVE_INFINITY : blockCosts[getIndexInBlock(x, y)];
+	}
+
+	private void setCost(final int x, final int y, final float cost) {
+		final int block = getBlock(x, y);
+		if (this.integrationField[block] == null) {
+			final float[] blockCosts = new float[BLOCK_SIZE * BLOCK_SIZE];
+			Arrays.fill(blockCosts, Float.POSITIVE_INFINITY);
+			this.integrationField[block] = blockCosts;
+			final byte[] blockDirections = new byte[BLOCK_SIZE * BLOCK_SIZE];
+			Arrays.fill(blockDirections, NO_DIRECTION);
+			this.directionField[block] = blockDirections;
+		}
+		this.integrationField[block][getIndexInBlock(x, y)] = cost;
+	}
+
+	private static boolean lessOpen(final int node, final float cost, final int otherNode, final float otherCost) {
+		return (cost < otherCost) || ((cost == otherCost) && (node < otherNode));
+	}
+
+	private void pushOpen(final int node, final float cost) {
+		if (this.openSetSize == this.openSetNodes.length) {
+			this.openSetNodes = Arrays.copyOf(this.openSetNodes, this.openSetSize * 2);
+			this.openSetCosts = Arrays.copyOf(this.openSetCosts, this.openSetSize * 2);
+		}
+		int position = this.openSetSize++;
+		while (position > 0) {
+			final int parentPosition = (position - 1) >>> 1;
+			final int parent = this.openSetNodes[parentPosition];
+			final float parentCost = this.openSetCosts[parentPosition];
+			if (!lessOpen(node, cost, parent, parentCost)) {
+				break;
+			}
+			this.openSetNodes[position] = parent;
+			this.openSetCosts[position] = parentCost;
+			position = parentPosition;
+		}
+		this.openSetNodes[position] = node;
+		this.openSetCosts[position] = cost;
+	}
+
+	private int pollOpen() {
+		final int result = this.openSetNodes[0];
+		final int size = --this.openSetSize;
+		if (size > 0) {
+			final int node = this.openSetNodes[size];
+			final float cost = this.openSetCosts[size];
+			final int half = size >>> 1;
+			int position = 0;
+			while (position < half) {
+				int childPosition = (position << 1) + 1;
+				final int rightPosition = childPosition + 1;
+				if ((rightPosition < size) && lessOpen(this.openSetNodes[rightPosition],
+						this.openSetCosts[rightPosition], this.openSetNodes[childPosition],
+						this.openSetCosts[childPosition])) {
+					childPosition = rightPosition;
+				}
+				if (!lessOpen(this.openSetNodes[childPosition], this.openSetCosts[childPosition], node, cost)) {
+					break;
+				}
+				this.openSetNodes[position] = this.openSetNodes[childPosition];
+				this.openSetCosts[position] = this.openSetCosts[childPosition];
+				position = childPosition;
+			}
+			this.openSetNodes[position] = node;
+			this.openSetCosts[position] = cost;
+		}
+		return result;
+	}
+
+	/**
+	 * Reads a path out of the field, which must have
+	 * {@link #isReached(float, float) reached} the start.
+	 *
+	 * @return the waypoints, ending with the goal, or null if the start is not
+	 *         connected to the goal
+	 */
+	public List<Point2D.Float> trace(final float startX, final float startY, final Point2D.Float goal) {
+		int x = this.gridMapping.getX(this.pathingGrid, startX);
+		int y = this.gridMapping.getY(this.pathingGrid, startY);
+		if ((x < 0) || (y < 0) || (x >= this.width) || (y >= this.height)
+				|| (getCost(x, y) == Float.POSITIVE_INFINITY)) {
+			return null;
+		}
+		final LinkedList<Point2D.Float> totalPath = new LinkedList<>();
+		int previousDirection = NO_DIRECTION;
+		int steps = 0;
+		while ((x != this.goalNodeX) || (y != this.goalNodeY)) {
+			final byte direction = this.directionField[getBlock(x, y)][getIndexInBlock(x, y)];
+			if ((previousDirection != NO_DIRECTION) && (direction != previousDirection)) {
+				// direction changes here, so this node is a corner of the path
+				totalPath.add(new Point2D.Float(getWorldX(x), getWorldY(y)));
+			}
+			x += DIRECTION_X[direction];
+			y += DIRECTION_Y[direction];
+			previousDirection = direction;
+			if (steps++ > (this.width * this.height)) {
+				return null;
+			}
+		}
+		totalPath.add(goal);
+		return totalPath;
+	}
+
+	public float getIntegratedCost(final int nodeX, final int nodeY) {
+		return getCost(nodeX, nodeY);
+	}
+
+	/**
+	 * @return true if a change to the pathing of the given cells could change the
+	 *         pathability of a node that this field has read
+	 */
+	boolean isAffectedBy(final int minCellX, final int minCellY, final int maxCellX, final int maxCellY) {
+		// the pathability of a node samples the cells within its collision size, and
+		// a corner node is at the edge of the cell with the same index
+		final int margin = (int) Math.ceil(this.collisionSize / 32f) + 1;
+		return ((minCellX - margin) <= this.exploredMaxX) && ((maxCellX + margin) >= this.exploredMinX)
+				&& ((minCellY - margin) <= this.exploredMaxY) && ((maxCellY + margin) >= this.exploredMinY);
+	}
+
+	/**
+	 * @return true if the pathing changed after this field was created, so any
+	 *         part of it not yet computed would mix the old and new pathing
+	 */
+	public boolean isStale() {
+		return this.stale;
+	}
+
+	void markStale() {
+		this.stale = true;
+	}
+
+	void acquire() {
+		this.referenceCount++;
+	}
+
+	/**
+	 * Gives up one reference to this field. The field is evicted from its cache
+	 * once no mover references it any more.
+	 */
+	public void release() {
+		this.referenceCount--;
+		if (this.referenceCount <= 0) {
+			this.cache.evict(this);
+		}
+	}
+
+	public int getReferenceCount() {
+		return this.referenceCount;
+	}
+
+	private float getWorldX(final int x) {
+		return this.corners ? this.pathingGrid.getWorldXFromCorner(x) : this.pathingGrid.getWorldX(x);
+	}
+
+	private float getWorldY(final int y) {
+		return this.corners ? this.pathingGrid.getWorldYFromCorner(y) : this.pathingGrid.getWorldY(y);
+	}
+}
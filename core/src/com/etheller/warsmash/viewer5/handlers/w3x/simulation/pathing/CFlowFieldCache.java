@@ -0,0 +1,100 @@
+package com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.etheller.warsmash.viewer5.handlers.w3x.environment.PathingGrid;
+import com.etheller.warsmash.viewer5.handlers.w3x.environment.PathingGrid.MovementType;
+
+/**
+ * Reference counted cache of {@link CFlowField}s keyed by (goal node, movement
+ * type, collision size), shared by the pathfinding processors of all players.
+ * A field stays cached while any mover holds a reference to it. A change to
+ * the dynamic pathing overlay makes the cached fields that read the changed
+ * part of the grid stale, so they are dropped from the cache; movers that still
+ * hold one keep using it until they release it.
+ */
+public final class CFlowFieldCache implements PathingGrid.DynamicPathingListener {
+	private final PathingGrid pathingGrid;
+	private final Map<Long, CFlowField> keyToField = new HashMap<>();
+	private int createdFieldCount = 0;
+
+	public CFlowFieldCache(final PathingGrid pathingGrid) {
+		this.pathingGrid = pathingGrid;
+		pathingGrid.addDynamicPathingListener(this);
+	}
+
+	/**
+	 * @return the cache key for a move to the given goal, or -1 if the goal is off
+	 *         the pathing grid
+	 */
+	public long getKey(final float goalX, final float goalY, final MovementType movementType,
+			final float collisionSize) {
+		final boolean corners = CPathfindingProcessor.isCollisionSizeBetterSuitedForCorners(collisionSize);
+		final CPathfindingProcessor.GridMapping gridMapping = corners ? CPathfindingProcessor.GridMapping.CORNERS
+				: CPathfindingProcessor.GridMapping.CELLS;
+		final int width = this.pathingGrid.getWidth() + (corners ? 1 : 0);
+		final int height = this.pathingGrid.getHeight() + (corners ? 1 : 0);
+		final int goalNodeX = gridMapping.getX(this.pathingGrid, goalX);
+		final int goalNodeY = gridMapping.getY(this.pathingGrid, goalY);
+		if ((goalNodeX < 0) || (goalNodeY < 0) || (goalNodeX >= width) || (goalNodeY >= height)) {
+			return -1;
+		}
+		final int goalIndex = (goalNodeY * width) + goalNodeX;
+		return ((long) goalIndex << 24) | ((long) movementType.ordinal() << 16) | (((int) collisionSize) & 0xFFFF);
+	}
+
+	public boolean contains(final long key) {
+		return this.keyToField.containsKey(key);
+	}
+
+	/**
+	 * Returns the cached field for the key, creating it if needed, and adds a
+	 * reference to it that the caller must eventually {@link CFlowField#release()}.
+	 * A newly created field still has to be computed with
+	 * {@link CFlowField#expand(float, float, int)}.
+	 */
+	public CFlowField acquire(final long key, final float goalX, final float goalY, final MovementType movementType,
+			final float collisionSize) {
+		CFlowField field = this.keyToField.get(key);
+		if (field == null) {
+			final CPathfindingProcessor.GridMapping gridMapping = CPathfindingProcessor
+					.isCollisionSizeBetterSuitedForCorners(collisionSize) ? CPathfindingProcessor.GridMapping.CORNERS
+							: CPathfindingProcessor.GridMapping.CELLS;
+			field = new CFlowField(this, key, this.pathingGrid, movementType, (int) collisionSize,
+					gridMapping.getX(this.pathingGrid, goalX), gridMapping.getY(this.pathingGrid, goalY));
+			this.keyToField.put(key, field);
+			this.createdFieldCount++;
+		}
+		field.acquire();
+		return field;
+	}
+
+	void evict(final CFlowField field) {
+		if (this.keyToField.get(field.getKey()) == field) {
+			this.keyToField.remove(field.getKey());
+		}
+	}
+
+	public int getCachedFieldCount() {
+		return this.keyToField.size();
+	}
+
+	public int getCreatedFieldCount() {
+		return this.createdFieldCount;
+	}
+
+	@Override
+	public void onDynamicPathingChanged(final int minCellX, final int minCellY, final int maxCellX,
+			final int maxCellY) {
+		final Iterator<CFlowField> iterator = this.keyToField.values().iterator();
+		while (iterator.hasNext()) {
+			final CFlowField field = iterator.next();
+			if (field.isAffectedBy(minCellX, minCellY, maxCellX, maxCellY)) {
+				field.markStale();
+				iterator.remove();
+			}
+		}
+	}
+}
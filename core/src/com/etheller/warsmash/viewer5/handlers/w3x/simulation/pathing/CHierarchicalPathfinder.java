@@ -0,0 +1,74 @@
+package com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.etheller.warsmash.viewer5.handlers.w3x.environment.PathingGrid;
+import com.etheller.warsmash.viewer5.handlers.w3x.environment.PathingGrid.MovementType;
+
+/**
+ * Owns the {@link CHierarchicalPathingGraph} instances for a simulation. One
+ * graph is built lazily per movement type and collision size, and is shared by
+ * the pathfinding processors of all players. Changes to the dynamic pathing
+ * overlay are forwarded to every graph so that they can rebuild the affected
+ * clusters, which they do within the pathfinding budget of each tick.
+ */
+public final class CHierarchicalPathfinder implements PathingGrid.DynamicPathingListener {
+	private final PathingGrid pathingGrid;
+	private final Map<MovementType, Map<Integer, CHierarchicalPathingGraph>> movementTypeToGraphs = new EnumMap<>(
+			MovementType.class);
+	private final List<CHierarchicalPathingGraph> allGraphs = new ArrayList<>();
+
+	public CHierarchicalPathfinder(final PathingGrid pathingGrid) {
+		this.pathingGrid = pathingGrid;
+		pathingGrid.addDynamicPathingListener(this);
+	}
+
+	public CHierarchicalPathingGraph getGraph(final MovementType movementType, final float collisionSize) {
+		Map<Integer, CHierarchicalPathingGraph> collisionSizeToGraph = this.movementTypeToGraphs.get(movementType);
+		if (collisionSizeToGraph == null) {
+			collisionSizeToGraph = new TreeMap<>();
+			this.movementTypeToGraphs.put(movementType, collisionSizeToGraph);
+		}
+		// collision sizes are whole numbers in the unit data, so the integer part
+		// identifies the collision class
+		final int collisionClass = (int) collisionSize;
+		CHierarchicalPathingGraph graph = collisionSizeToGraph.get(collisionClass);
+		if (graph == null) {
+			graph = new CHierarchicalPathingGraph(this.pathingGrid, movementType, collisionClass);
+			collisionSizeToGraph.put(collisionClass, graph);
+			this.allGraphs.add(graph);
+		}
+		return graph;
+	}
+
+	/**
+	 * Spends up to about the given amount of work on rebuilding the dirty parts
+	 * of the graphs.
+	 *
+	 * @return the work done
+	 */
+	public int refresh(final int workBudget) {
+		int work = 0;
+		for (final CHierarchicalPathingGraph graph : this.allGraphs) {
+			if (work >= workBudget) {
+				break;
+			}
+			if (!graph.isReady()) {
+				work += graph.refresh(workBudget - work);
+			}
+		}
+		return work;
+	}
+
+	@Override
+	public void onDynamicPathingChanged(final int minCellX, final int minCellY, final int maxCellX,
+			final int maxCellY) {
+		for (final CHierarchicalPathingGraph graph : this.allGraphs) {
+			graph.markDirty(minCellX, minCellY, maxCellX, maxCellY);
+		}
+	}
+}
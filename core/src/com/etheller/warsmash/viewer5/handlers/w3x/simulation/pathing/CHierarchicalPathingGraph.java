@@ -0,0 +1,984 @@
+package com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.etheller.warsmash.viewer5.handlers.w3x.environment.PathingGrid;
+import com.etheller.warsmash.viewer5.handlers.w3x.environment.PathingGrid.MovementType;
+
+/**
+ * Cluster/portal abstraction of the {@link PathingGrid} for one movement type
+ * and one collision size (HPA*). The pathing grid is cut into square clusters,
+ * and each contiguous open run along the border between two clusters becomes a
+ * pair of portal nodes. Portals inside the same cluster are linked by edges that
+ * cache their in-cluster cell path, so that a long path only needs a local
+ * search inside the first and last cluster and an A* over the (small) portal
+ * graph in between.
+ *
+ * The graph itself only holds static pathing (terrain plus the dynamic overlay
+ * of buildings and trees). Units are taken into account per query: the local
+ * searches in the first and last cluster avoid them, and cached edges that turn
+ * out to be blocked by them are left out of the search.
+ *
+ * Clusters are marked dirty when the overlay changes. They are rebuilt a
+ * budgeted amount of work at a time by {@link #refresh(int)}, and the graph
+ * can't be searched until that is done. Queries are budgeted the same way: a
+ * {@link Search} is worked on by {@link #continueSearch(Search, int)} until it
+ * is done, and is abandoned if the graph changes in the meantime.
+ */
+public final class CHierarchicalPathingGraph {
+	public static final int CLUSTER_SIZE = 16;
+	private static final int CLUSTER_AREA = CLUSTER_SIZE * CLUSTER_SIZE;
+	private static final int MAX_SINGLE_ENTRANCE_WIDTH = 6;
+	// how many times a query searches the portal graph again after finding units
+	// on the edges it picked
+	private static final int MAX_BLOCKED_EDGE_RETRIES = 8;
+	private static final float STRAIGHT_COST = 32f;
+	private static final float DIAGONAL_COST = (float) (Math.sqrt(2) * 32);
+	private static final int[] DIRECTION_X = { -1, 0, 1, 1, 1, 0, -1, -1 };
+	private static final int[] DIRECTION_Y = { 1, 1, 1, 0, -1, -1, -1, 0 };
+
+	private final PathingGrid pathingGrid;
+	private final MovementType movementType;
+	private final float collisionSize;
+	private final CPathfindingProcessor.GridMapping gridMapping;
+	private final boolean corners;
+	private final int width;
+	private final int height;
+	private final int clustersX;
+	private final int clustersY;
+	private final Cluster[] clusters;
+	private final List<PortalNode> portalNodes = new ArrayList<>();
+	private int[] freePortalIds = new int[16];
+	private int freePortalIdCount = 0;
+
+	// rebuild state, worked off by refresh():
+	private final List<Cluster> dirtyClusters = new ArrayList<>();
+	private final List<Cluster> entranceBatch = new ArrayList<>();
+	private int entranceBatchCursor = 0;
+	private final ArrayDeque<Cluster> edgesDirtyClusters = new ArrayDeque<>();
+	// the cluster whose portal edges are being built, one portal at a time
+	private Cluster edgeBuildCluster;
+	private int edgeBuildPortalIndex;
+
+	// scratch state for searches, reused between queries:
+	// scratch state for one step of a search or rebuild, reused between them:
+	private final boolean[] localPathable = new boolean[CLUSTER_AREA];
+	private Cluster localPathableCluster;
+	private DynamicPathability localPathableDynamicPathability;
+	private final float[] localDistance = new float[CLUSTER_AREA];
+	private final int[] localParent = new int[CLUSTER_AREA];
+	private final IndexedMinHeap localOpenSet = new IndexedMinHeap(CLUSTER_AREA);
+	private int[] pathBuffer = new int[256];
+	private int pathBufferLength;
+	private int queryId = 0;
+	private int work = 0;
+	// changed whenever portals may change, so that paused searches know to give up
+	private int version = 0;
+
+	public CHierarchicalPathingGraph(final PathingGrid pathingGrid, final MovementType movementType,
+			final float collisionSize) {
+		this.pathingGrid = pathingGrid;
+		this.movementType = movementType;
+		this.collisionSize = collisionSize;
+		this.corners = CPathfindingProcessor.isCollisionSizeBetterSuitedForCorners(collisionSize);
+		if (this.corners) {
+			this.gridMapping = CPathfindingProcessor.GridMapping.CORNERS;
+			this.width = pathingGrid.getWidth() + 1;
+			this.height = pathingGrid.getHeight() + 1;
+		}
+		else {
+			this.gridMapping = CPathfindingProcessor.GridMapping.CELLS;
+			this.width = pathingGrid.getWidth();
+			this.height = pathingGrid.getHeight();
+		}
+		this.clustersX = ((this.width + CLUSTER_SIZE) - 1) / CLUSTER_SIZE;
+		this.clustersY = ((this.height + CLUSTER_SIZE) - 1) / CLUSTER_SIZE;
+		this.clusters = new Cluster[this.clustersX * this.clustersY];
+		for (int clusterY = 0; clusterY < this.clustersY; clusterY++) {
+			for (int clusterX = 0; clusterX < this.clustersX; clusterX++) {
+				final int minX = clusterX * CLUSTER_SIZE;
+				final int minY = clusterY * CLUSTER_SIZE;
+				final int index = (clusterY * this.clustersX) + clusterX;
+				final Cluster cluster = new Cluster(clusterX, clusterY, index, minX, minY,
+						Math.min(this.width - 1, (minX + CLUSTER_SIZE) - 1),
+						Math.min(this.height - 1, (minY + CLUSTER_SIZE) - 1));
+				this.clusters[index] = cluster;
+				this.dirtyClusters.add(cluster);
+			}
+		}
+	}
+
+	/**
+	 * @return true if no part of the graph is waiting to be rebuilt, so that it
+	 *         can be searched
+	 */
+	public boolean isReady() {
+		return this.dirtyClusters.isEmpty() && this.entranceBatch.isEmpty() && this.edgesDirtyClusters.isEmpty()
+				&& (this.edgeBuildCluster == null);
+	}
+
+	/**
+	 * Marks all clusters whose portals or portal edges could be affected by a
+	 * change of the given pathing cells (inclusive) as dirty.
+	 */
+	public void markDirty(final int minCellX, final int minCellY, final int maxCellX, final int maxCellY) {
+		// a node is pathable based on the cells within collisionSize of it, so the
+		// changed area grows by that much
+		final int margin = (int) Math.ceil(this.collisionSize / 32f) + 1;
+		final int minX = Math.max(0, minCellX - margin);
+		final int minY = Math.max(0, minCellY - margin);
+		final int maxX = Math.min(this.width - 1, maxCellX + 1 + margin);
+		final int maxY = Math.min(this.height - 1, maxCellY + 1 + margin);
+		if ((minX > maxX) || (minY > maxY)) {
+			return;
+		}
+		this.version++;
+		for (int clusterY = minY / CLUSTER_SIZE; clusterY <= (maxY / CLUSTER_SIZE); clusterY++) {
+			for (int clusterX = minX / CLUSTER_SIZE; clusterX <= (maxX / CLUSTER_SIZE); clusterX++) {
+				final Cluster cluster = this.clusters[(clusterY * this.clustersX) + clusterX];
+				if (!cluster.dirty) {
+					cluster.dirty = true;
+					this.dirtyClusters.add(cluster);
+				}
+			}
+		}
+		this.localPathableCluster = null;
+	}
+
+	/**
+	 * Rebuilds dirty parts of the graph, the entrances of one cluster or the edges
+	 * of one portal at a time, until about the given amount of work is done or the
+	 * graph is ready.
+	 *
+	 * @return the work done
+	 */
+	public int refresh(final int workBudget) {
+		this.work = 0;
+		while (this.work < workBudget) {
+			if (this.entranceBatchCursor < this.entranceBatch.size()) {
+				buildEntrances(this.entranceBatch.get(this.entranceBatchCursor++));
+			}
+			else if (!this.entranceBatch.isEmpty()) {
+				for (final Cluster cluster : this.entranceBatch) {
+					cluster.inEntranceBatch = false;
+				}
+				this.entranceBatch.clear();
+				this.entranceBatchCursor = 0;
+			}
+			else if (!this.dirtyClusters.isEmpty()) {
+				startEntranceBatch();
+			}
+			else if (this.edgeBuildCluster != null) {
+				buildIntraClusterEdges(this.edgeBuildCluster, this.edgeBuildPortalIndex++);
+			}
+			else if (!this.edgesDirtyClusters.isEmpty()) {
+				startIntraClusterEdges(this.edgesDirtyClusters.poll());
+			}
+			else {
+				break;
+			}
+		}
+		return this.work;
+	}
+
+	/**
+	 * Starts a query for a path on the graph, which must be {@link #isReady()
+	 * ready}, replacing whatever query the search held before. No work is done
+	 * until {@link #continueSearch(Search, int)} is called.
+	 */
+	public void startSearch(final Search search, final float startX, final float startY, final Point2D.Float goal,
+			final DynamicPathability dynamicPathability, final boolean allowSmoothing) {
+		search.graph = this;
+		search.graphVersion = this.version;
+		search.queryId = ++this.queryId;
+		search.startX = startX;
+		search.startY = startY;
+		search.goal = goal;
+		search.dynamicPathability = dynamicPathability;
+		search.allowSmoothing = allowSmoothing;
+		search.attempt = 0;
+		search.path = null;
+		search.phase = Search.PHASE_GOAL_CLUSTER;
+		// the units around each mover are different
+		this.localPathableCluster = null;
+		search.ensurePortalCapacity(this.portalNodes.size());
+	}
+
+	/**
+	 * Works on the search until about the given amount of work is done or the
+	 * search is {@link Search#isDone() done}. The search finds nothing when the
+	 * start or goal is not pathable, when there is no route through the portal
+	 * graph, when units block every route that was tried, or when the graph
+	 * changed since the search was started, in which case the caller should fall
+	 * back to a full grid search. A single step, like the search inside the start
+	 * or goal cluster, is never split, so the budget can be overrun by up to one
+	 * step.
+	 *
+	 * @return the work (nodes checked or expanded) done, for work accounting
+	 */
+	public int continueSearch(final Search search, final int workBudget) {
+		this.work = 0;
+		if (search.phase == Search.PHASE_DONE) {
+			return 0;
+		}
+		if ((search.graph != this) || (search.graphVersion != this.version)) {
+			search.finish(null);
+			return 0;
+		}
+		while ((search.phase != Search.PHASE_DONE) && (this.work < workBudget)) {
+			switch (search.phase) {
+			case Search.PHASE_GOAL_CLUSTER:
+				searchGoalCluster(search);
+				break;
+			case Search.PHASE_START_CLUSTER:
+				searchStartCluster(search);
+				break;
+			case Search.PHASE_PORTALS:
+				searchPortals(search, workBudget);
+				break;
+			case Search.PHASE_CHECK_EDGES:
+				checkEdges(search);
+				break;
+			default:
+				buildPath(search);
+				break;
+			}
+		}
+		return this.work;
+	}
+
+	private void searchGoalCluster(final Search search) {
+		final int goalNodeX = this.gridMapping.getX(this.pathingGrid, search.goal.x);
+		final int goalNodeY = this.gridMapping.getY(this.pathingGrid, search.goal.y);
+		final int startNodeX = this.gridMapping.getX(this.pathingGrid, search.startX);
+		final int startNodeY = this.gridMapping.getY(this.pathingGrid, search.startY);
+		if (!isInBounds(startNodeX, startNodeY) || !isInBounds(goalNodeX, goalNodeY)) {
+			search.finish(null);
+			return;
+		}
+		search.goalNodeX = goalNodeX;
+		search.goalNodeY = goalNodeY;
+		search.startCluster = getCluster(startNodeX, startNodeY);
+		search.goalCluster = getCluster(goalNodeX, goalNodeY);
+		search.goalLocalIndex = search.goalCluster.localIndex(goalNodeX, goalNodeY);
+		final Cluster goalCluster = search.goalCluster;
+		loadClusterPathability(goalCluster, search.dynamicPathability);
+		if (!this.localPathable[search.goalLocalIndex]) {
+			search.finish(null);
+			return;
+		}
+		localSearch(goalCluster, goalNodeX, goalNodeY);
+		System.arraycopy(this.localParent, 0, search.goalLocalParent, 0, CLUSTER_AREA);
+		for (final PortalNode portal : goalCluster.portals) {
+			search.portalGoalDistance[portal.id] = this.localDistance[goalCluster.localIndex(portal.x, portal.y)];
+		}
+		search.phase = Search.PHASE_START_CLUSTER;
+	}
+
+	private void searchStartCluster(final Search search) {
+		final Cluster startCluster = search.startCluster;
+		final int startNodeX = this.gridMapping.getX(this.pathingGrid, search.startX);
+		final int startNodeY = this.gridMapping.getY(this.pathingGrid, search.startY);
+		loadClusterPathability(startCluster, search.dynamicPathability);
+		if (!this.localPathable[startCluster.localIndex(startNodeX, startNodeY)]) {
+			search.finish(null);
+			return;
+		}
+		localSearch(startCluster, startNodeX, startNodeY);
+		System.arraycopy(this.localParent, 0, search.startLocalParent, 0, CLUSTER_AREA);
+		// when both ends are in one cluster, the path that stays inside it competes
+		// with the ones through the portals
+		search.directCost = (startCluster == search.goalCluster) ? this.localDistance[search.goalLocalIndex]
+				: Float.POSITIVE_INFINITY;
+		final int portalCount = startCluster.portals.size();
+		if (search.startPortalDistances.length < portalCount) {
+			search.startPortalDistances = new float[portalCount];
+		}
+		for (int i = 0; i < portalCount; i++) {
+			final PortalNode portal = startCluster.portals.get(i);
+			search.startPortalDistances[i] = this.localDistance[startCluster.localIndex(portal.x, portal.y)];
+		}
+		startPortalSearch(search);
+	}
+
+	/**
+	 * Seeds an A* over the portal graph with the portals of the start cluster.
+	 */
+	private void startPortalSearch(final Search search) {
+		search.searchId++;
+		search.openSet.clear();
+		search.openSet.ensureCapacity(this.portalNodes.size());
+		final Cluster startCluster = search.startCluster;
+		for (int i = 0; i < startCluster.portals.size(); i++) {
+			final float distance = search.startPortalDistances[i];
+			if (distance != Float.POSITIVE_INFINITY) {
+				final PortalNode portal = startCluster.portals.get(i);
+				search.touch(portal.id);
+				search.portalG[portal.id] = distance;
+				search.openSet.insertOrDecrease(portal.id, distance + h(portal, search.goalNodeX, search.goalNodeY));
+			}
+		}
+		search.bestGoalCost = search.directCost;
+		search.bestGoalPortal = null;
+		search.phase = Search.PHASE_PORTALS;
+	}
+
+	/**
+	 * A* over the portal graph, leaving out edges found blocked by units earlier
+	 * in this query, until the best route is known or the budget is spent. The
+	 * best route ends at {@link Search#bestGoalPortal}, which is null if there is
+	 * none or the direct route is cheaper.
+	 */
+	private void searchPortals(final Search search, final int workBudget) {
+		final IndexedMinHeap openSet = search.openSet;
+		while (!openSet.isEmpty()) {
+			if (openSet.peekKey() >= search.bestGoalCost) {
+				break;
+			}
+			if (this.work >= workBudget) {
+				return;
+			}
+			final PortalNode current = this.portalNodes.get(openSet.poll());
+			this.work++;
+			final float currentG = search.portalG[current.id];
+			if (current.cluster == search.goalCluster) {
+				final float goalDistance = search.portalGoalDistance[current.id];
+				if (goalDistance != Float.POSITIVE_INFINITY) {
+					final float goalCost = currentG + goalDistance;
+					if (goalCost < search.bestGoalCost) {
+						search.bestGoalCost = goalCost;
+						search.bestGoalPortal = current;
+					}
+				}
+			}
+			for (final PortalEdge edge : current.edges) {
+				if (edge.blockedQueryId == search.queryId) {
+					continue;
+				}
+				final PortalNode neighbor = edge.target;
+				search.touch(neighbor.id);
+				final float tentativeScore = currentG + edge.cost;
+				if (tentativeScore < search.portalG[neighbor.id]) {
+					search.portalG[neighbor.id] = tentativeScore;
+					search.portalCameFrom[neighbor.id] = current;
+					search.portalCameFromEdge[neighbor.id] = edge;
+					openSet.insertOrDecrease(neighbor.id,
+							tentativeScore + h(neighbor, search.goalNodeX, search.goalNodeY));
+				}
+			}
+		}
+		search.phase = Search.PHASE_CHECK_EDGES;
+	}
+
+	/**
+	 * Checks the cached cell paths of the edges on the best route for units,
+	 * since the graph was built without them, and searches again without the
+	 * blocked ones.
+	 */
+	private void checkEdges(final Search search) {
+		if ((search.bestGoalPortal == null) || !markEdgesBlockedByUnits(search)) {
+			search.phase = Search.PHASE_BUILD_PATH;
+		}
+		else if (search.attempt == MAX_BLOCKED_EDGE_RETRIES) {
+			search.finish(null);
+		}
+		else {
+			search.attempt++;
+			startPortalSearch(search);
+		}
+	}
+
+	/**
+	 * @return true if any edge was blocked, and was marked so for this query
+	 */
+	private boolean markEdgesBlockedByUnits(final Search search) {
+		boolean anyBlocked = false;
+		for (PortalNode portal = search.bestGoalPortal; search.portalCameFrom[portal.id] != null;
+				portal = search.portalCameFrom[portal.id]) {
+			final PortalEdge edge = search.portalCameFromEdge[portal.id];
+			for (final int packedNode : edge.path) {
+				this.work++;
+				if (search.dynamicPathability.isBlockedByUnits(getWorldX(packedNode % this.width),
+						getWorldY(packedNode / this.width))) {
+					edge.blockedQueryId = search.queryId;
+					anyBlocked = true;
+					break;
+				}
+			}
+		}
+		return anyBlocked;
+	}
+
+	private void buildPath(final Search search) {
+		final Cluster startCluster = search.startCluster;
+		final Cluster goalCluster = search.goalCluster;
+		final PortalNode bestGoalPortal = search.bestGoalPortal;
+		this.pathBufferLength = 0;
+		if (bestGoalPortal == null) {
+			if (search.directCost == Float.POSITIVE_INFINITY) {
+				search.finish(null);
+				return;
+			}
+			appendReversedLocalPath(startCluster, search.startLocalParent, search.goalLocalIndex);
+			search.finish(toWaypoints(search));
+			return;
+		}
+
+		// walk back through the portal graph, then expand to grid nodes
+		final LinkedList<PortalNode> portalChain = new LinkedList<>();
+		for (PortalNode portal = bestGoalPortal; portal != null; portal = search.portalCameFrom[portal.id]) {
+			portalChain.addFirst(portal);
+		}
+		final PortalNode firstPortal = portalChain.getFirst();
+		appendReversedLocalPath(startCluster, search.startLocalParent,
+				startCluster.localIndex(firstPortal.x, firstPortal.y));
+		boolean first = true;
+		for (final PortalNode portal : portalChain) {
+			if (first) {
+				first = false;
+				continue;
+			}
+			for (final int packedNode : search.portalCameFromEdge[portal.id].path) {
+				appendPathNode(packedNode);
+			}
+		}
+		int localIndex = search.goalLocalParent[goalCluster.localIndex(bestGoalPortal.x, bestGoalPortal.y)];
+		while (localIndex != -1) {
+			appendPathNode(goalCluster.packedNode(localIndex, this.width));
+			localIndex = search.goalLocalParent[localIndex];
+		}
+		search.finish(toWaypoints(search));
+	}
+
+	/**
+	 * Turns the grid nodes in {@link #pathBuffer} into waypoints at the corners
+	 * of the path. Like the full grid search, smoothing lets the mover skip the
+	 * first and last grid node when it can step past them.
+	 */
+	private List<Point2D.Float> toWaypoints(final Search search) {
+		final float startX = search.startX;
+		final float startY = search.startY;
+		final Point2D.Float goal = search.goal;
+		final DynamicPathability dynamicPathability = search.dynamicPathability;
+		final boolean allowSmoothing = search.allowSmoothing;
+		final LinkedList<Point2D.Float> totalPath = new LinkedList<>();
+		int previousX = this.gridMapping.getX(this.pathingGrid, startX);
+		int previousY = this.gridMapping.getY(this.pathingGrid, startY);
+		for (int i = 0; i < (this.pathBufferLength - 1); i++) {
+			final int x = this.pathBuffer[i] % this.width;
+			final int y = this.pathBuffer[i] / this.width;
+			final int nextX = this.pathBuffer[i + 1] % this.width;
+			final int nextY = this.pathBuffer[i + 1] / this.width;
+			if (((x - previousX) != (nextX - x)) || ((y - previousY) != (nextY - y))) {
+				// direction changes here, so this node is a corner of the path
+				final float worldX = getWorldX(x);
+				final float worldY = getWorldY(y);
+				final float nextWorldX = getWorldX(nextX);
+				final float nextWorldY = getWorldY(nextY);
+				if (!allowSmoothing || (i != 0)
+						|| !dynamicPathability.pathableBetween(startX, startY, worldX, worldY)
+						|| !dynamicPathability.pathableBetween(worldX, worldY, nextWorldX, nextWorldY)
+						|| !dynamicPathability.pathableBetween(startX, startY, nextWorldX, nextWorldY)) {
+					totalPath.add(new Point2D.Float(worldX, worldY));
+				}
+			}
+			previousX = x;
+			previousY = y;
+		}
+		if (this.pathBufferLength > 0) {
+			final int lastNode = this.pathBuffer[this.pathBufferLength - 1];
+			final float lastX = getWorldX(lastNode % this.width);
+			final float lastY = getWorldY(lastNode / this.width);
+			final float beforeLastX = totalPath.isEmpty() ? startX : totalPath.getLast().x;
+			final float beforeLastY = totalPath.isEmpty() ? startY : totalPath.getLast().y;
+			if (!allowSmoothing || !dynamicPathability.pathableBetween(lastX, lastY, goal.x, goal.y)
+					|| !dynamicPathability.pathableBetween(beforeLastX, beforeLastY, lastX, lastY)
+					|| !dynamicPathability.pathableBetween(beforeLastX, beforeLastY, goal.x, goal.y)) {
+				totalPath.add(new Point2D.Float(lastX, lastY));
+			}
+		}
+		totalPath.add(goal);
+		return totalPath;
+	}
+
+	private void appendReversedLocalPath(final Cluster cluster, final int[] parents, final int endLocalIndex) {
+		final int startLength = this.pathBufferLength;
+		int localIndex = endLocalIndex;
+		while (parents[localIndex] != -1) {
+			appendPathNode(cluster.packedNode(localIndex, this.width));
+			localIndex = parents[localIndex];
+		}
+		for (int i = startLength, j = this.pathBufferLength - 1; i < j; i++, j--) {
+			final int swap = this.pathBuffer[i];
+			this.pathBuffer[i] = this.pathBuffer[j];
+			this.pathBuffer[j] = swap;
+		}
+	}
+
+	private void appendPathNode(final int packedNode) {
+		if (this.pathBufferLength == this.pathBuffer.length) {
+			this.pathBuffer = Arrays.copyOf(this.pathBuffer, this.pathBuffer.length * 2);
+		}
+		this.pathBuffer[this.pathBufferLength++] = packedNode;
+	}
+
+	private float h(final PortalNode node, final int goalNodeX, final int goalNodeY) {
+		final int dx = Math.abs(node.x - goalNodeX);
+		final int dy = Math.abs(node.y - goalNodeY);
+		final int diagonal = Math.min(dx, dy);
+		return (diagonal * DIAGONAL_COST) + ((Math.max(dx, dy) - diagonal) * STRAIGHT_COST);
+	}
+
+	/**
+	 * Takes all of the dirty clusters as the next batch to build entrances for,
+	 * dropping their old portals (and the partners across the border).
+	 */
+	private void startEntranceBatch() {
+		this.localPathableCluster = null;
+		for (final Cluster cluster : this.dirtyClusters) {
+			cluster.dirty = false;
+			cluster.inEntranceBatch = true;
+			this.entranceBatch.add(cluster);
+			for (final PortalNode portal : new ArrayList<>(cluster.portals)) {
+				removePortal(portal.partner);
+				removePortal(portal);
+				this.work++;
+			}
+			markEdgesDirty(cluster);
+			if (cluster.clusterX > 0) {
+				markEdgesDirty(this.clusters[cluster.index - 1]);
+			}
+			if (cluster.clusterX < (this.clustersX - 1)) {
+				markEdgesDirty(this.clusters[cluster.index + 1]);
+			}
+			if (cluster.clusterY > 0) {
+				markEdgesDirty(this.clusters[cluster.index - this.clustersX]);
+			}
+			if (cluster.clusterY < (this.clustersY - 1)) {
+				markEdgesDirty(this.clusters[cluster.index + this.clustersX]);
+			}
+		}
+		this.work += this.dirtyClusters.size();
+		this.dirtyClusters.clear();
+		if ((this.edgeBuildCluster != null) && this.edgeBuildCluster.edgesDirty) {
+			// its portals may have changed, and it will be built again from the start
+			this.edgeBuildCluster = null;
+		}
+	}
+
+	private void markEdgesDirty(final Cluster cluster) {
+		if (!cluster.edgesDirty) {
+			cluster.edgesDirty = true;
+			this.edgesDirtyClusters.add(cluster);
+		}
+	}
+
+	private void buildEntrances(final Cluster cluster) {
+		// each border is built once: always our east/north borders, and our
+		// west/south borders only when the neighbor won't build them itself
+		if (cluster.clusterX < (this.clustersX - 1)) {
+			buildEastEntrances(cluster, this.clusters[cluster.index + 1]);
+		}
+		if (cluster.clusterY < (this.clustersY - 1)) {
+			buildNorthEntrances(cluster, this.clusters[cluster.index + this.clustersX]);
+		}
+		if ((cluster.clusterX > 0) && !this.clusters[cluster.index - 1].inEntranceBatch) {
+			buildEastEntrances(this.clusters[cluster.index - 1], cluster);
+		}
+		if ((cluster.clusterY > 0) && !this.clusters[cluster.index - this.clustersX].inEntranceBatch) {
+			buildNorthEntrances(this.clusters[cluster.index - this.clustersX], cluster);
+		}
+	}
+
+	private void buildEastEntrances(final Cluster west, final Cluster east) {
+		final int x = west.maxX;
+		int runStart = -1;
+		for (int y = west.minY; y <= (west.maxY + 1); y++) {
+			final boolean open = (y <= west.maxY) && isNodePathable(x, y) && isNodePathable(x + 1, y);
+			if (open) {
+				if (runStart == -1) {
+					runStart = y;
+				}
+			}
+			else if (runStart != -1) {
+				final int runEnd = y - 1;
+				if (((runEnd - runStart) + 1) > MAX_SINGLE_ENTRANCE_WIDTH) {
+					addEntrance(west, x, runStart, east, x + 1, runStart);
+					addEntrance(west, x, runEnd, east, x + 1, runEnd);
+				}
+				else {
+					final int middle = (runStart + runEnd) / 2;
+					addEntrance(west, x, middle, east, x + 1, middle);
+				}
+				runStart = -1;
+			}
+		}
+	}
+
+	private void buildNorthEntrances(final Cluster south, final Cluster north) {
+		final int y = south.maxY;
+		int runStart = -1;
+		for (int x = south.minX; x <= (south.maxX + 1); x++) {
+			final boolean open = (x <= south.maxX) && isNodePathable(x, y) && isNodePathable(x, y + 1);
+			if (open) {
+				if (runStart == -1) {
+					runStart = x;
+				}
+			}
+			else if (runStart != -1) {
+				final int runEnd = x - 1;
+				if (((runEnd - runStart) + 1) > MAX_SINGLE_ENTRANCE_WIDTH) {
+					addEntrance(south, runStart, y, north, runStart, y + 1);
+					addEntrance(south, runEnd, y, north, runEnd, y + 1);
+				}
+				else {
+					final int middle = (runStart + runEnd) / 2;
+					addEntrance(south, middle, y, north, middle, y + 1);
+				}
+				runStart = -1;
+			}
+		}
+	}
+
+	private void addEntrance(final Cluster clusterA, final int xA, final int yA, final Cluster clusterB, final int xB,
+			final int yB) {
+		final PortalNode portalA = createPortal(clusterA, xA, yA);
+		final PortalNode portalB = createPortal(clusterB, xB, yB);
+		portalA.partner = portalB;
+		portalB.partner = portalA;
+	}
+
+	private PortalNode createPortal(final Cluster cluster, final int x, final int y) {
+		final int id;
+		if (this.freePortalIdCount > 0) {
+			id = this.freePortalIds[--this.freePortalIdCount];
+		}
+		else {
+			id = this.portalNodes.size();
+			this.portalNodes.add(null);
+		}
+		final PortalNode portal = new PortalNode(id, cluster, x, y);
+		this.portalNodes.set(id, portal);
+		cluster.portals.add(portal);
+		return portal;
+	}
+
+	private void removePortal(final PortalNode portal) {
+		if (portal.id == -1) {
+			return;
+		}
+		portal.cluster.portals.remove(portal);
+		this.portalNodes.set(portal.id, null);
+		if (this.freePortalIdCount == this.freePortalIds.length) {
+			this.freePortalIds = Arrays.copyOf(this.freePortalIds, this.freePortalIds.length * 2);
+		}
+		this.freePortalIds[this.freePortalIdCount++] = portal.id;
+		portal.id = -1;
+	}
+
+	private void startIntraClusterEdges(final Cluster cluster) {
+		cluster.edgesDirty = false;
+		for (final PortalNode portal : cluster.portals) {
+			this.work++;
+			portal.edges.clear();
+			portal.edges.add(new PortalEdge(portal.partner, STRAIGHT_COST,
+					new int[] { (portal.partner.y * this.width) + portal.partner.x }));
+		}
+		if (!cluster.portals.isEmpty()) {
+			this.edgeBuildCluster = cluster;
+			this.edgeBuildPortalIndex = 0;
+		}
+	}
+
+	/**
+	 * Links one portal of the cluster to the others it can reach inside the
+	 * cluster.
+	 */
+	private void buildIntraClusterEdges(final Cluster cluster, final int portalIndex) {
+		if ((portalIndex + 1) >= cluster.portals.size()) {
+			this.edgeBuildCluster = null;
+		}
+		final PortalNode portal = cluster.portals.get(portalIndex);
+		loadClusterPathability(cluster, null);
+		localSearch(cluster, portal.x, portal.y);
+		for (final PortalNode other : cluster.portals) {
+			if (other == portal) {
+				continue;
+			}
+			final int otherLocalIndex = cluster.localIndex(other.x, other.y);
+			final float distance = this.localDistance[otherLocalIndex];
+			if (distance != Float.POSITIVE_INFINITY) {
+				this.pathBufferLength = 0;
+				appendReversedLocalPath(cluster, this.localParent, otherLocalIndex);
+				portal.edges.add(
+						new PortalEdge(other, distance, Arrays.copyOf(this.pathBuffer, this.pathBufferLength)));
+			}
+		}
+	}
+
+	/**
+	 * Loads which nodes of the cluster can be walked on into
+	 * {@link #localPathable}, leaving out the nodes blocked by units if a dynamic
+	 * pathability is given.
+	 */
+	private void loadClusterPathability(final Cluster cluster, final DynamicPathability dynamicPathability) {
+		if ((this.localPathableCluster == cluster)
+				&& (this.localPathableDynamicPathability == dynamicPathability)) {
+			return;
+		}
+		for (int y = cluster.minY; y <= cluster.maxY; y++) {
+			for (int x = cluster.minX; x <= cluster.maxX; x++) {
+				boolean pathable = isNodePathable(x, y);
+				if (pathable && (dynamicPathability != null)) {
+					this.work++;
+					pathable = !dynamicPathability.isBlockedByUnits(getWorldX(x), getWorldY(y));
+				}
+				this.localPathable[cluster.localIndex(x, y)] = pathable;
+			}
+		}
+		this.localPathableCluster = cluster;
+		this.localPathableDynamicPathability = dynamicPathability;
+	}
+
+	/**
+	 * Dijkstra search restricted to the bounds of one cluster, filling
+	 * {@link #localDistance} and {@link #localParent}. Requires the pathability of
+	 * the cluster to have been loaded.
+	 */
+	private void localSearch(final Cluster cluster, final int startX, final int startY) {
+		Arrays.fill(this.localDistance, Float.POSITIVE_INFINITY);
+		Arrays.fill(this.localParent, -1);
+		this.localOpenSet.clear();
+		final int startLocalIndex = cluster.localIndex(startX, startY);
+		this.localDistance[startLocalIndex] = 0;
+		this.localOpenSet.insertOrDecrease(startLocalIndex, 0);
+		while (!this.localOpenSet.isEmpty()) {
+			final int current = this.localOpenSet.poll();
+			this.work++;
+			final int x = cluster.minX + (current % CLUSTER_SIZE);
+			final int y = cluster.minY + (current / CLUSTER_SIZE);
+			for (int direction = 0; direction < DIRECTION_X.length; direction++) {
+				final int nextX = x + DIRECTION_X[direction];
+				final int nextY = y + DIRECTION_Y[direction];
+				if ((nextX < cluster.minX) || (nextX > cluster.maxX) || (nextY < cluster.minY)
+						|| (nextY > cluster.maxY)) {
+					continue;
+				}
+				// mirrors CPathfindingProcessor.pathableBetween()
+				if (!this.localPathable[cluster.localIndex(nextX, nextY)]
+						|| !this.localPathable[cluster.localIndex(x, nextY)]
+						|| !this.localPathable[cluster.localIndex(nextX, y)]) {
+					continue;
+				}
+				final float stepCost = ((DIRECTION_X[direction] != 0) && (DIRECTION_Y[direction] != 0))
+						? DIAGONAL_COST
+						: STRAIGHT_COST;
+				final float tentativeScore = this.localDistance[current] + stepCost;
+				final int next = cluster.localIndex(nextX, nextY);
+				if (tentativeScore < this.localDistance[next]) {
+					this.localDistance[next] = tentativeScore;
+					this.localParent[next] = current;
+					this.localOpenSet.insertOrDecrease(next, tentativeScore);
+				}
+			}
+		}
+	}
+
+	private boolean isInBounds(final int x, final int y) {
+		return (x >= 0) && (y >= 0) && (x < this.width) && (y < this.height);
+	}
+
+	private Cluster getCluster(final int x, final int y) {
+		return this.clusters[((y / CLUSTER_SIZE) * this.clustersX) + (x / CLUSTER_SIZE)];
+	}
+
+	private boolean isNodePathable(final int x, final int y) {
+		this.work++;
+		return this.pathingGrid.isPathable(getWorldX(x), getWorldY(y), this.movementType, this.collisionSize);
+	}
+
+	private float getWorldX(final int x) {
+		return this.corners ? this.pathingGrid.getWorldXFromCorner(x) : this.pathingGrid.getWorldX(x);
+	}
+
+	private float getWorldY(final int y) {
+		return this.corners ? this.pathingGrid.getWorldYFromCorner(y) : this.pathingGrid.getWorldY(y);
+	}
+
+	/**
+	 * What the graph asks of the unit it finds a path for, about the other units
+	 * in its way.
+	 */
+	public static interface DynamicPathability {
+		boolean isBlockedByUnits(float x, float y);
+
+		/**
+		 * @return true if the unit can step from the first point to the second, as
+		 *         by the full grid search
+		 */
+		boolean pathableBetween(float startX, float startY, float x, float y);
+	}
+
+	private static final class Cluster {
+		private final int clusterX;
+		private final int clusterY;
+		private final int index;
+		private final int minX;
+		private final int minY;
+		private final int maxX;
+		private final int maxY;
+		private final List<PortalNode> portals = new ArrayList<>();
+		private boolean dirty = true;
+		private boolean inEntranceBatch = false;
+		private boolean edgesDirty = false;
+
+		private Cluster(final int clusterX, final int clusterY, final int index, final int minX, final int minY,
+				final int maxX, final int maxY) {
+			this.clusterX = clusterX;
+			this.clusterY = clusterY;
+			this.index = index;
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+		}
+
+		private int localIndex(final int x, final int y) {
+			return ((y - this.minY) * CLUSTER_SIZE) + (x - this.minX);
+		}
+
+		private int packedNode(final int localIndex, final int width) {
+			return ((this.minY + (localIndex / CLUSTER_SIZE)) * width) + this.minX + (localIndex % CLUSTER_SIZE);
+		}
+	}
+
+	private static final class PortalNode {
+		private int id;
+		private final Cluster cluster;
+		private final int x;
+		private final int y;
+		private PortalNode partner;
+		private final List<PortalEdge> edges = new ArrayList<>();
+
+		private PortalNode(final int id, final Cluster cluster, final int x, final int y) {
+			this.id = id;
+			this.cluster = cluster;
+			this.x = x;
+			this.y = y;
+		}
+	}
+
+	private static final class PortalEdge {
+		private final PortalNode target;
+		private final float cost;
+		// packed (y * width + x) grid nodes walked after leaving the source,
+		// ending on the target
+		private final int[] path;
+		// the query that found units on the path, so that it skips this edge. If
+		// two paused queries both find it blocked, the first one may have to find
+		// that out again, which only costs it a retry
+		private int blockedQueryId;
+
+		private PortalEdge(final PortalNode target, final float cost, final int[] path) {
+			this.target = target;
+			this.cost = cost;
+			this.path = path;
+		}
+	}
+
+	/**
+	 * The state of one query on a graph, kept apart from the graph so that the
+	 * query can be paused when the pathfinding budget of a tick is spent and
+	 * resumed on the next, while the processors of other players search the same
+	 * graph in between. Each processor reuses one for all of its queries.
+	 */
+	public static final class Search {
+		private static final int PHASE_GOAL_CLUSTER = 0;
+		private static final int PHASE_START_CLUSTER = 1;
+		private static final int PHASE_PORTALS = 2;
+		private static final int PHASE_CHECK_EDGES = 3;
+		private static final int PHASE_BUILD_PATH = 4;
+		private static final int PHASE_DONE = 5;
+
+		private CHierarchicalPathingGraph graph;
+		private int graphVersion;
+		private int queryId;
+		private int phase = PHASE_DONE;
+		private float startX;
+		private float startY;
+		private Point2D.Float goal;
+		private DynamicPathability dynamicPathability;
+		private boolean allowSmoothing;
+		private int goalNodeX;
+		private int goalNodeY;
+		private Cluster startCluster;
+		private Cluster goalCluster;
+		private int goalLocalIndex;
+		private final int[] startLocalParent = new int[CLUSTER_AREA];
+		private final int[] goalLocalParent = new int[CLUSTER_AREA];
+		private float[] startPortalDistances = new float[16];
+		private float directCost;
+		private int attempt;
+		private List<Point2D.Float> path;
+
+		// portal graph search state, by portal id:
+		private final IndexedMinHeap openSet = new IndexedMinHeap(64);
+		private int searchId = 0;
+		private int[] portalSearchIds = new int[0];
+		private float[] portalG = new float[0];
+		private float[] portalGoalDistance = new float[0];
+		private PortalNode[] portalCameFrom = new PortalNode[0];
+		private PortalEdge[] portalCameFromEdge = new PortalEdge[0];
+		private float bestGoalCost;
+		private PortalNode bestGoalPortal;
+
+		/**
+		 * @return the graph the search was last started on
+		 */
+		public CHierarchicalPathingGraph getGraph() {
+			return this.graph;
+		}
+
+		public boolean isDone() {
+			return this.phase == PHASE_DONE;
+		}
+
+		/**
+		 * @return the path found by a search that is done, or null if it found none
+		 */
+		public List<Point2D.Float> getPath() {
+			return this.path;
+		}
+
+		private void finish(final List<Point2D.Float> path) {
+			this.path = path;
+			this.phase = PHASE_DONE;
+			this.dynamicPathability = null;
+		}
+
+		private void ensurePortalCapacity(final int portalCount) {
+			if (this.portalG.length < portalCount) {
+				final int capacity = Math.max(portalCount, this.portalG.length * 2);
+				this.portalSearchIds = Arrays.copyOf(this.portalSearchIds, capacity);
+				this.portalG = Arrays.copyOf(this.portalG, capacity);
+				this.portalGoalDistance = Arrays.copyOf(this.portalGoalDistance, capacity);
+				this.portalCameFrom = Arrays.copyOf(this.portalCameFrom, capacity);
+				this.portalCameFromEdge = Arrays.copyOf(this.portalCameFromEdge, capacity);
+			}
+		}
+
+		private void touch(final int portalId) {
+			if (this.portalSearchIds[portalId] != this.searchId) {
+				this.portalG[portalId] = Float.POSITIVE_INFINITY;
+				this.portalCameFrom[portalId] = null;
+				this.portalCameFromEdge[portalId] = null;
+				this.portalSearchIds[portalId] = this.searchId;
+			}
+		}
+	}
+}
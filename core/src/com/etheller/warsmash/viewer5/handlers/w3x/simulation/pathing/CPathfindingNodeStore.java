@@ -0,0 +1,171 @@
+package com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing;
+
+import com.etheller.warsmash.viewer5.handlers.w3x.environment.PathingGrid;
+
+/**
+ * Search state for every node of the cell grid or the corner grid, stored as
+ * parallel primitive arrays indexed by (y * width) + x. This replaces one
+ * object per node so that a search touches a few flat arrays instead of
+ * chasing pointers, and so that the open set can be an {@link IndexedMinHeap}
+ * of node indices.
+ *
+ * Nodes are reset lazily: a node whose job id differs from the current search
+ * is treated as unvisited, so starting a new search costs nothing up front.
+ */
+public final class CPathfindingNodeStore {
+	public static final int NO_NODE = -1;
+	public static final byte NO_DIRECTION = -1;
+	public static final byte PATHABILITY_UNKNOWN = 0;
+	public static final byte PATHABILITY_KNOWN = 1;
+	public static final byte PATHABILITY_WALKABLE = 2;
+	public static final byte PATHABILITY_NEAR_UNITS = 4;
+
+	private final PathingGrid pathingGrid;
+	private final CPathfindingProcessor.GridMapping gridMapping;
+	private final int width;
+	private final int height;
+	private final float[] worldX;
+	private final float[] worldY;
+	private final int[] pathfindJobIds;
+	private final double[] g;
+	private final int[] cameFrom;
+	private final byte[] cameFromDirection;
+	private final byte[] pathability;
+	private final IndexedMinHeap openSet;
+
+	public CPathfindingNodeStore(final PathingGrid pathingGrid, final boolean corners) {
+		this.pathingGrid = pathingGrid;
+		if (corners) {
+			this.gridMapping = CPathfindingProcessor.GridMapping.CORNERS;
+			this.width = pathingGrid.getWidth() + 1;
+			this.height = pathingGrid.getHeight() + 1;
+		}
+		else {
+			this.gridMapping = CPathfindingProcessor.GridMapping.CELLS;
+			this.width = pathingGrid.getWidth();
+			this.height = pathingGrid.getHeight();
+		}
+		this.worldX = new float[this.width];
+		this.worldY = new float[this.height];
+		for (int x = 0; x < this.width; x++) {
+			this.worldX[x] = corners ? pathingGrid.getWorldXFromCorner(x) : pathingGrid.getWorldX(x);
+		}
+		for (int y = 0; y < this.height; y++) {
+			this.worldY[y] = corners ? pathingGrid.getWorldYFromCorner(y) : pathingGrid.getWorldY(y);
+		}
+		final int nodeCount = this.width * this.height;
+		this.pathfindJobIds = new int[nodeCount];
+		this.g = new double[nodeCount];
+		this.cameFrom = new int[nodeCount];
+		this.cameFromDirection = new byte[nodeCount];
+		this.pathability = new byte[nodeCount];
+		this.openSet = new IndexedMinHeap(nodeCount);
+	}
+
+	public CPathfindingProcessor.GridMapping getGridMapping() {
+		return this.gridMapping;
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	public int getNodeCount() {
+		return this.pathfindJobIds.length;
+	}
+
+	public boolean contains(final int x, final int y) {
+		return (x >= 0) && (y >= 0) && (x < this.width) && (y < this.height);
+	}
+
+	public int getIndex(final int x, final int y) {
+		return (y * this.width) + x;
+	}
+
+	/**
+	 * @return the node index for a world position, or {@link #NO_NODE} if it is
+	 *         off the grid
+	 */
+	public int getIndexOfWorld(final float x, final float y) {
+		final int nodeX = this.gridMapping.getX(this.pathingGrid, x);
+		final int nodeY = this.gridMapping.getY(this.pathingGrid, y);
+		if (!contains(nodeX, nodeY)) {
+			return NO_NODE;
+		}
+		return getIndex(nodeX, nodeY);
+	}
+
+	public int getX(final int index) {
+		return index % this.width;
+	}
+
+	public int getY(final int index) {
+		return index / this.width;
+	}
+
+	public float getWorldX(final int index) {
+		return this.worldX[index % this.width];
+	}
+
+	public float getWorldY(final int index) {
+		return this.worldY[index / this.width];
+	}
+
+	public double distance(final int index, final float x, final float y) {
+		final double dx = this.worldX[index % this.width] - x;
+		final double dy = this.worldY[index / this.width] - y;
+		return Math.sqrt((dx * dx) + (dy * dy));
+	}
+
+	public void touch(final int index, final int pathfindJobId) {
+		if (this.pathfindJobIds[index] != pathfindJobId) {
+			this.g[index] = Float.POSITIVE_INFINITY;
+			this.cameFrom[index] = NO_NODE;
+			this.cameFromDirection[index] = NO_DIRECTION;
+			this.pathability[index] = PATHABILITY_UNKNOWN;
+			this.pathfindJobIds[index] = pathfindJobId;
+		}
+	}
+
+	public double getG(final int index) {
+		return this.g[index];
+	}
+
+	public int getCameFrom(final int index) {
+		return this.cameFrom[index];
+	}
+
+	public byte getCameFromDirection(final int index) {
+		return this.cameFromDirection[index];
+	}
+
+	public void set(final int index, final double g, final int cameFrom, final byte cameFromDirection) {
+		this.g[index] = g;
+		this.cameFrom[index] = cameFrom;
+		this.cameFromDirection[index] = cameFromDirection;
+	}
+
+	/**
+	 * Pathability flags of a touched node as cached by the current search, or
+	 * {@link #PATHABILITY_UNKNOWN} if it has not been checked yet.
+	 */
+	public byte getPathability(final int index) {
+		return this.pathability[index];
+	}
+
+	public void setPathability(final int index, final byte pathability) {
+		this.pathability[index] = pathability;
+	}
+
+	/**
+	 * The open set of the current search, keyed by f score. It belongs to
+	 * whichever job is using this store, and is cleared when a new search starts.
+	 */
+	public IndexedMinHeap getOpenSet() {
+		return this.openSet;
+	}
+}
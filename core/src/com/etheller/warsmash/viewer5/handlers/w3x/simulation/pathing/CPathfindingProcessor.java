@@ -1,14 +1,16 @@
 package com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing;
 
 import java.awt.geom.Point2D;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.PriorityQueue;
+import java.util.List;
+import java.util.Map;
 
 import com.badlogic.gdx.math.Rectangle;
+import com.etheller.warsmash.util.WarsmashConstants;
 import com.etheller.warsmash.viewer5.handlers.w3x.environment.PathingGrid;
 import com.etheller.warsmash.viewer5.handlers.w3x.environment.PathingGrid.MovementType;
 import com.etheller.warsmash.viewer5.handlers.w3x.simulation.CSimulation;
@@ -18,35 +20,57 @@ import com.etheller.warsmash.viewer5.handlers.w3x.simulation.behaviors.CBehavior
 
 public class CPathfindingProcessor {
 	private static final Rectangle tempRect = new Rectangle();
+	private static final Rectangle tempNearbyRect = new Rectangle();
+	// a jump point search step only checks one node instead of the three per
+	// neighbor of an ordinary expansion, so many of them cost one iteration
+	private static final int JUMP_STEPS_PER_ITERATION = 16;
 	private final PathingGrid pathingGrid;
 	private final CWorldCollision worldCollision;
-	private final LinkedList<PathfindingJob> moveQueue = new LinkedList<>();
+	private final CHierarchicalPathfinder hierarchicalPathfinder;
+	// the hierarchical search of the current job, which may take several ticks
+	private final CHierarchicalPathingGraph.Search hierarchicalSearch = new CHierarchicalPathingGraph.Search();
+	private final JobDynamicPathability jobDynamicPathability = new JobDynamicPathability();
+	private final CFlowFieldCache flowFieldCache;
+	// number of queued, not yet started jobs per flow field key, used to spot group
+	// moves
+	private final Map<Long, Integer> pendingFlowFieldRequests = new HashMap<>();
+	// one queue per priority; jobs in each are in the order they were queued, which
+	// is also the order of their enqueueTick
+	private final ArrayDeque<PathfindingJob>[] moveQueues = createMoveQueues();
+	// the job being worked on is kept out of moveQueues until it finishes, because
+	// the search graph state belongs to it even while it is paused between ticks
+	private PathfindingJob currentJob;
+	private int jobSequence = 0;
+	// calls to update(), which is once per simulation step
+	private int tick = 0;
+	private int iterationBudgetPerTick = WarsmashConstants.PATHFINDING_ITERATIONS_PER_TICK;
 	// things with modified state per current job:
-	private final Node[][] nodes;
-	private final Node[][] cornerNodes;
-	private final Node[] goalSet = new Node[4];
+	// node stores are large and most processors never search, so they are only
+	// allocated on first use
+	private CPathfindingNodeStore cellNodes;
+	private CPathfindingNodeStore cornerNodes;
+	private final int[] goalSet = new int[9];
 	private int goals = 0;
 	private int pathfindJobId = 0;
 	private int totalIterations = 0;
 	private int totalJobLoops = 0;
+	private int jumpSteps = 0;
+	// metrics, cumulative over the lifetime of this processor:
+	private int queueDepth = 0;
+	private long iterationCount = 0;
+	private long jobLoopCount = 0;
+	private int budgetExhaustedCount = 0;
+	private int completedJobCount = 0;
+	private int cancelledJobCount = 0;
+	private int promotedJobCount = 0;
 	private final int pathingGridCellCount;
 
-	public CPathfindingProcessor(final PathingGrid pathingGrid, final CWorldCollision worldCollision) {
+	public CPathfindingProcessor(final PathingGrid pathingGrid, final CWorldCollision worldCollision,
+			final CHierarchicalPathfinder hierarchicalPathfinder, final CFlowFieldCache flowFieldCache) {
 		this.pathingGrid = pathingGrid;
 		this.worldCollision = worldCollision;
-		this.nodes = new Node[pathingGrid.getHeight()][pathingGrid.getWidth()];
-		this.cornerNodes = new Node[pathingGrid.getHeight() + 1][pathingGrid.getWidth() + 1];
-		for (int i = 0; i < this.nodes.length; i++) {
-			for (int j = 0; j < this.nodes[i].length; j++) {
-				this.nodes[i][j] = new Node(new Point2D.Float(pathingGrid.getWorldX(j), pathingGrid.getWorldY(i)));
-			}
-		}
-		for (int i = 0; i < this.cornerNodes.length; i++) {
-			for (int j = 0; j < this.cornerNodes[i].length; j++) {
-				this.cornerNodes[i][j] = new Node(
-						new Point2D.Float(pathingGrid.getWorldXFromCorner(j), pathingGrid.getWorldYFromCorner(i)));
-			}
-		}
+		this.hierarchicalPathfinder = hierarchicalPathfinder;
+		this.flowFieldCache = flowFieldCache;
 		this.pathingGridCellCount = pathingGrid.getWidth() * pathingGrid.getHeight();
 	}
 
@@ -64,27 +88,166 @@ public class CPathfindingProcessor {
 	 * @param goal
 	 * @param playerIndex
 	 * @param queueItem
-	 * @return
+	 * @param priority
+	 * @return a handle to the queued job, which can be passed to
+	 *         {@link #cancel(PathfindingJob)}
 	 */
-	public void findNaiveSlowPath(final CUnit ignoreIntersectionsWithThisUnit,
+	public PathfindingJob findNaiveSlowPath(final CUnit ignoreIntersectionsWithThisUnit,
 			final CUnit ignoreIntersectionsWithThisSecondUnit, final float startX, final float startY,
 			final Point2D.Float goal, final PathingGrid.MovementType movementType, final float collisionSize,
-			final boolean allowSmoothing, final CBehaviorMove queueItem) {
-		this.moveQueue.offer(new PathfindingJob(ignoreIntersectionsWithThisUnit, ignoreIntersectionsWithThisSecondUnit,
-				startX, startY, goal, movementType, collisionSize, allowSmoothing, queueItem));
+			final boolean allowSmoothing, final CBehaviorMove queueItem, final JobPriority priority) {
+		final PathfindingJob job = new PathfindingJob(ignoreIntersectionsWithThisUnit,
+				ignoreIntersectionsWithThisSecondUnit, startX, startY, goal, movementType, collisionSize, allowSmoothing,
+				queueItem, priority, this.jobSequence++, this.tick);
+		job.flowFieldKey = this.flowFieldCache.getKey(goal.x, goal.y, movementType, collisionSize);
+		if (job.flowFieldKey != -1) {
+			final Integer pendingCount = this.pendingFlowFieldRequests.get(job.flowFieldKey);
+			this.pendingFlowFieldRequests.put(job.flowFieldKey, (pendingCount == null) ? 1 : pendingCount + 1);
+		}
+		this.moveQueues[priority.ordinal()].offer(job);
+		this.queueDepth++;
+		return job;
+	}
+
+	/**
+	 * @return how many not yet started jobs shared the flow field key of the job,
+	 *         including itself
+	 */
+	private int removePendingFlowFieldRequest(final PathfindingJob job) {
+		if (job.flowFieldKey == -1) {
+			return 0;
+		}
+		final long key = job.flowFieldKey;
+		final Integer pendingCount = this.pendingFlowFieldRequests.get(key);
+		if (pendingCount == null) {
+			return 0;
+		}
+		if (pendingCount <= 1) {
+			this.pendingFlowFieldRequests.remove(key);
+		}
+		else {
+			this.pendingFlowFieldRequests.put(key, pendingCount - 1);
+		}
+		return pendingCount;
 	}
 
-	public void removeFromPathfindingQueue(final CBehaviorMove behaviorMove) {
-		// TODO because of silly java things, this remove is O(N) for now,
-		// we could do some refactors to make it O(1) but do we care?
-		final Iterator<PathfindingJob> iterator = this.moveQueue.iterator();
-		while (iterator.hasNext()) {
-			final PathfindingJob job = iterator.next();
-			if (job.queueItem == behaviorMove) {
-				iterator.remove();
+	/**
+	 * Cancels a queued or in-progress job in O(1). Cancelled jobs are only marked
+	 * here, and are discarded without doing any work when they reach the head of
+	 * the queue.
+	 */
+	public void cancel(final PathfindingJob job) {
+		if ((job != null) && !job.cancelled && !job.finished) {
+			job.cancelled = true;
+			this.queueDepth--;
+			this.cancelledJobCount++;
+			if (!job.jobStarted) {
+				removePendingFlowFieldRequest(job);
+			}
+			if (job.flowField != null) {
+				job.flowField.release();
+				job.flowField = null;
 			}
 		}
+	}
+
+	/**
+	 * Starts the most urgent job, except that a job which waited longer than
+	 * {@link WarsmashConstants#PATHFINDING_MAX_JOB_WAIT_TICKS} is promoted ahead
+	 * of any priority, so that a steady stream of urgent jobs can't starve
+	 * repaths and AI orders. Among several such jobs, the oldest goes first.
+	 */
+	private PathfindingJob pollNextJob() {
+		ArrayDeque<PathfindingJob> mostUrgentQueue = null;
+		ArrayDeque<PathfindingJob> oldestExpiredQueue = null;
+		for (final ArrayDeque<PathfindingJob> queue : this.moveQueues) {
+			while (!queue.isEmpty() && queue.peek().cancelled) {
+				queue.poll();
+			}
+			final PathfindingJob head = queue.peek();
+			if (head == null) {
+				continue;
+			}
+			if (mostUrgentQueue == null) {
+				mostUrgentQueue = queue;
+			}
+			if (((this.tick - head.enqueueTick) > WarsmashConstants.PATHFINDING_MAX_JOB_WAIT_TICKS)
+					&& ((oldestExpiredQueue == null) || (head.sequence < oldestExpiredQueue.peek().sequence))) {
+				oldestExpiredQueue = queue;
+			}
+		}
+		if (oldestExpiredQueue != null) {
+			this.promotedJobCount++;
+			return oldestExpiredQueue.poll();
+		}
+		if (mostUrgentQueue != null) {
+			return mostUrgentQueue.poll();
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ArrayDeque<PathfindingJob>[] createMoveQueues() {
+		final ArrayDeque<PathfindingJob>[] moveQueues = new ArrayDeque[JobPriority.VALUES.length];
+		for (int i = 0; i < moveQueues.length; i++) {
+			moveQueues[i] = new ArrayDeque<>();
+		}
+		return moveQueues;
+	}
+
+	private void finishJob(final PathfindingJob job) {
+		job.finished = true;
+		this.currentJob = null;
+		this.queueDepth--;
+		this.completedJobCount++;
+	}
+
+	public void setIterationBudgetPerTick(final int iterationBudgetPerTick) {
+		this.iterationBudgetPerTick = iterationBudgetPerTick;
+	}
+
+	public int getIterationBudgetPerTick() {
+		return this.iterationBudgetPerTick;
+	}
+
+	/**
+	 * @return the number of jobs waiting or in progress, not counting cancelled
+	 *         jobs
+	 */
+	public int getQueueDepth() {
+		return this.queueDepth;
+	}
+
+	public long getTotalIterations() {
+		return this.iterationCount;
+	}
+
+	public long getTotalJobLoops() {
+		return this.jobLoopCount;
+	}
+
+	/**
+	 * @return how many ticks stopped working on the queue because the per tick
+	 *         iteration budget was spent
+	 */
+	public int getBudgetExhaustedCount() {
+		return this.budgetExhaustedCount;
+	}
+
+	public int getCompletedJobCount() {
+		return this.completedJobCount;
+	}
 
+	public int getCancelledJobCount() {
+		return this.cancelledJobCount;
+	}
+
+	/**
+	 * @return how many jobs were started ahead of more urgent ones because they
+	 *         had waited too long
+	 */
+	public int getPromotedJobCount() {
+		return this.promotedJobCount;
 	}
 
 	private boolean pathableBetween(final CUnit ignoreIntersectionsWithThisUnit,
@@ -111,27 +274,20 @@ public class CPathfindingProcessor {
 		return (((2 * (int) collisionSize) / 32) % 2) == 1;
 	}
 
-	public double f(final Node n) {
-		return n.g + h(n);
-	}
-
-	public double g(final Node n) {
-		return n.g;
-	}
-
-	private boolean isGoal(final Node n) {
+	private boolean isGoal(final int node) {
 		for (int i = 0; i < this.goals; i++) {
-			if (n == this.goalSet[i]) {
+			if (node == this.goalSet[i]) {
 				return true;
 			}
 		}
 		return false;
 	}
 
-	public float h(final Node n) {
+	private float h(final CPathfindingNodeStore store, final int node) {
 		float bestDistance = 0;
 		for (int i = 0; i < this.goals; i++) {
-			final float possibleDistance = (float) n.point.distance(this.goalSet[i].point);
+			final int goal = this.goalSet[i];
+			final float possibleDistance = (float) store.distance(node, store.getWorldX(goal), store.getWorldY(goal));
 			if (possibleDistance > bestDistance) {
 				bestDistance = possibleDistance; // always overestimate
 			}
@@ -139,27 +295,17 @@ public class CPathfindingProcessor {
 		return bestDistance;
 	}
 
-	public static final class Node {
-		public Direction cameFromDirection;
-		private final Point2D.Float point;
-		private double f;
-		private double g;
-		private Node cameFrom;
-		private int pathfindJobId;
-
-		private Node(final Point2D.Float point) {
-			this.point = point;
-		}
-
-		private void touch(final int pathfindJobId) {
-			if (pathfindJobId != this.pathfindJobId) {
-				this.g = Float.POSITIVE_INFINITY;
-				this.f = Float.POSITIVE_INFINITY;
-				this.cameFrom = null;
-				this.cameFromDirection = null;
-				this.pathfindJobId = pathfindJobId;
+	private CPathfindingNodeStore getNodeStore(final boolean corners) {
+		if (corners) {
+			if (this.cornerNodes == null) {
+				this.cornerNodes = new CPathfindingNodeStore(this.pathingGrid, true);
 			}
+			return this.cornerNodes;
+		}
+		if (this.cellNodes == null) {
+			this.cellNodes = new CPathfindingNodeStore(this.pathingGrid, false);
 		}
+		return this.cellNodes;
 	}
 
 	private static enum Direction {
@@ -178,6 +324,15 @@ public class CPathfindingProcessor {
 			final double sqrt = Math.sqrt((xOffset * xOffset) + (yOffset * yOffset));
 			this.length = sqrt;
 		}
+
+		private static Direction of(final int xOffset, final int yOffset) {
+			for (final Direction direction : VALUES) {
+				if ((direction.xOffset == xOffset) && (direction.yOffset == yOffset)) {
+					return direction;
+				}
+			}
+			return null;
+		}
 	}
 
 	public static interface GridMapping {
@@ -213,10 +368,18 @@ public class CPathfindingProcessor {
 	}
 
 	public void update(final CSimulation simulation) {
+		this.tick++;
 		int workIterations = 0;
-		JobsLoop: while (!this.moveQueue.isEmpty()) {
+		JobsLoop: while (true) {
+			if ((this.currentJob == null) || this.currentJob.cancelled) {
+				this.currentJob = pollNextJob();
+				if (this.currentJob == null) {
+					break;
+				}
+			}
+			final PathfindingJob job = this.currentJob;
 			this.totalJobLoops++;
-			final PathfindingJob job = this.moveQueue.peek();
+			this.jobLoopCount++;
 			if (!job.jobStarted) {
 				this.pathfindJobId++;
 				this.totalIterations = 0;
@@ -227,171 +390,183 @@ public class CPathfindingProcessor {
 				job.goalX = job.goal.x;
 				job.goalY = job.goal.y;
 				job.weightForHittingWalls = 1E9f;
+				setCollisionRects(job);
 				if (!this.pathingGrid.isPathable(job.goalX, job.goalY, job.movementType, job.collisionSize)
 						|| !isPathableDynamically(job.goalX, job.goalY, job.ignoreIntersectionsWithThisUnit,
 								job.ignoreIntersectionsWithThisSecondUnit, job.movementType)) {
 					job.weightForHittingWalls = 5E2f;
 				}
+				job.jumpPointSearch = WarsmashConstants.ENABLE_JUMP_POINT_SEARCH
+						&& (job.weightForHittingWalls == 1E9f);
 				System.out.println("beginning findNaiveSlowPath for  " + job.startX + "," + job.startY + "," + job.goalX
 						+ "," + job.goalY);
+				final int flowFieldGroupSize = removePendingFlowFieldRequest(job);
 				if ((job.startX == job.goalX) && (job.startY == job.goalY)) {
+					finishJob(job);
 					job.queueItem.pathFound(Collections.emptyList(), simulation);
-					this.moveQueue.poll();
 					continue JobsLoop;
 				}
-				tempRect.set(0, 0, job.collisionSize * 2, job.collisionSize * 2);
-				if (isCollisionSizeBetterSuitedForCorners(job.collisionSize)) {
-					job.searchGraph = this.cornerNodes;
-					job.gridMapping = GridMapping.CORNERS;
-					System.out.println("using corners");
-				}
-				else {
-					job.searchGraph = this.nodes;
-					job.gridMapping = GridMapping.CELLS;
-					System.out.println("using cells");
-				}
-				final int goalCellY = job.gridMapping.getY(this.pathingGrid, job.goalY);
-				final int goalCellX = job.gridMapping.getX(this.pathingGrid, job.goalX);
-				final Node mostLikelyGoal = job.searchGraph[goalCellY][goalCellX];
-				mostLikelyGoal.touch(this.pathfindJobId);
-				final double bestGoalDistance = mostLikelyGoal.point.distance(job.goalX, job.goalY);
-				Arrays.fill(this.goalSet, null);
-				this.goals = 0;
-				for (int i = goalCellX - 1; i <= (goalCellX + 1); i++) {
-					for (int j = goalCellY - 1; j <= (goalCellY + 1); j++) {
-						if ((j >= 0) && (j <= job.searchGraph.length)) {
-							if ((i >= 0) && (i < job.searchGraph[j].length)) {
-								final Node possibleGoal = job.searchGraph[j][i];
-								possibleGoal.touch(this.pathfindJobId);
-								if (possibleGoal.point.distance(job.goalX, job.goalY) <= bestGoalDistance) {
-									this.goalSet[this.goals++] = possibleGoal;
-								}
-							}
-						}
+				if (WarsmashConstants.ENABLE_FLOW_FIELD_PATHFINDING && (job.weightForHittingWalls == 1E9f)) {
+					// several movers of this player heading for the same goal node share one
+					// flow field, as do any later movers while that field is still referenced
+					final long flowFieldKey = this.flowFieldCache.getKey(job.goalX, job.goalY, job.movementType,
+							job.collisionSize);
+					if ((flowFieldKey != -1) && (flowFieldKey == job.flowFieldKey)
+							&& (this.flowFieldCache.contains(flowFieldKey)
+									|| (flowFieldGroupSize >= WarsmashConstants.FLOW_FIELD_MIN_GROUP_SIZE))) {
+						job.flowField = this.flowFieldCache.acquire(flowFieldKey, job.goalX, job.goalY,
+								job.movementType, job.collisionSize);
 					}
 				}
-				final int startGridY = job.gridMapping.getY(this.pathingGrid, job.startY);
-				final int startGridX = job.gridMapping.getX(this.pathingGrid, job.startX);
-				job.openSet = new PriorityQueue<>(new Comparator<Node>() {
-					@Override
-					public int compare(final Node a, final Node b) {
-						return Double.compare(f(a), f(b));
+				if ((job.flowField == null) && WarsmashConstants.ENABLE_HIERARCHICAL_PATHFINDING
+						&& (job.weightForHittingWalls == 1E9f)) {
+					// long paths to a reachable goal go through the cluster graph; everything
+					// else (and anything the graph can't answer) uses the full grid search below
+					final CHierarchicalPathingGraph graph = this.hierarchicalPathfinder.getGraph(job.movementType,
+							job.collisionSize);
+					if (!graph.isReady()) {
+						final int refreshIterations = graph
+								.refresh(Math.max(0, this.iterationBudgetPerTick - workIterations));
+						workIterations += refreshIterations;
+						this.iterationCount += refreshIterations;
+					}
+					if (graph.isReady()) {
+						graph.startSearch(this.hierarchicalSearch, job.startX, job.startY, job.goal,
+								this.jobDynamicPathability, job.allowSmoothing);
+						job.hierarchicalSearch = true;
 					}
-				});
-
-				job.start = job.searchGraph[startGridY][startGridX];
-				job.start.touch(this.pathfindJobId);
-				if (job.startX > job.start.point.x) {
-					job.startGridMinX = startGridX;
-					job.startGridMaxX = startGridX + 1;
-				}
-				else if (job.startX < job.start.point.x) {
-					job.startGridMinX = startGridX - 1;
-					job.startGridMaxX = startGridX;
-				}
-				else {
-					job.startGridMinX = startGridX;
-					job.startGridMaxX = startGridX;
 				}
-				if (job.startY > job.start.point.y) {
-					job.startGridMinY = startGridY;
-					job.startGridMaxY = startGridY + 1;
+				if ((job.flowField == null) && !job.hierarchicalSearch) {
+					startGridSearch(job);
 				}
-				else if (job.startY < job.start.point.y) {
-					job.startGridMinY = startGridY - 1;
-					job.startGridMaxY = startGridY;
+			}
+
+			if (job.hierarchicalSearch) {
+				final CHierarchicalPathingGraph.Search search = this.hierarchicalSearch;
+				this.jobDynamicPathability.job = job;
+				final int searchIterations = search.getGraph().continueSearch(search,
+						Math.max(0, this.iterationBudgetPerTick - workIterations));
+				this.jobDynamicPathability.job = null;
+				workIterations += searchIterations;
+				this.iterationCount += searchIterations;
+				if (!search.isDone()) {
+					this.budgetExhaustedCount++;
+					// the job stays current, and its search goes on next tick
+					break JobsLoop;
 				}
-				else {
-					job.startGridMinY = startGridY;
-					job.startGridMaxY = startGridY;
+				job.hierarchicalSearch = false;
+				final List<Point2D.Float> hierarchicalPath = search.getPath();
+				if (hierarchicalPath != null) {
+					finishJob(job);
+					job.queueItem.pathFound(hierarchicalPath, simulation);
+					continue JobsLoop;
 				}
-				for (int cellX = job.startGridMinX; cellX <= job.startGridMaxX; cellX++) {
-					for (int cellY = job.startGridMinY; cellY <= job.startGridMaxY; cellY++) {
-						if ((cellX >= 0) && (cellX < this.pathingGrid.getWidth()) && (cellY >= 0)
-								&& (cellY < this.pathingGrid.getHeight())) {
-							final Node possibleNode = job.searchGraph[cellY][cellX];
-							possibleNode.touch(this.pathfindJobId);
-							final float x = possibleNode.point.x;
-							final float y = possibleNode.point.y;
-							if (pathableBetween(job.ignoreIntersectionsWithThisUnit,
-									job.ignoreIntersectionsWithThisSecondUnit, job.startX, job.startY, job.movementType,
-									job.collisionSize, x, y)) {
-
-								final double tentativeScore = possibleNode.point.distance(job.startX, job.startY);
-								possibleNode.g = tentativeScore;
-								possibleNode.f = tentativeScore + h(possibleNode);
-								job.openSet.add(possibleNode);
-
-							}
-							else {
-								final double tentativeScore = job.weightForHittingWalls;
-								possibleNode.g = tentativeScore;
-								possibleNode.f = tentativeScore + h(possibleNode);
-								job.openSet.add(possibleNode);
+				startGridSearch(job);
+			}
 
-							}
-						}
+			if (job.flowField != null) {
+				final CFlowField flowField = job.flowField;
+				if (!flowField.isReached(job.startX, job.startY) && !flowField.isStale()) {
+					final int flowFieldIterations = flowField.expand(job.startX, job.startY,
+							Math.max(0, this.iterationBudgetPerTick - workIterations));
+					workIterations += flowFieldIterations;
+					this.iterationCount += flowFieldIterations;
+					if (!flowField.isReached(job.startX, job.startY)) {
+						this.budgetExhaustedCount++;
+						// the field keeps its progress without us, so instead of holding up the
+						// queue, go back to the head of our priority and let more urgent jobs
+						// go first next tick
+						this.moveQueues[job.priority.ordinal()].offerFirst(job);
+						this.currentJob = null;
+						break JobsLoop;
+					}
+				}
+				job.flowField = null;
+				final List<Point2D.Float> flowFieldPath = flowField.isReached(job.startX, job.startY)
+						? flowField.trace(job.startX, job.startY, job.goal)
+						: null;
+				if (flowFieldPath != null) {
+					finishJob(job);
+					if (job.queueItem.isPathfindingJob(job)) {
+						// the mover takes over our reference to the field
+						job.queueItem.flowFieldAssigned(flowField);
+					}
+					else {
+						flowField.release();
 					}
+					job.queueItem.pathFound(flowFieldPath, simulation);
+					continue JobsLoop;
 				}
+				flowField.release();
+				startGridSearch(job);
 			}
 
-			while (!job.openSet.isEmpty()) {
-				Node current = job.openSet.poll();
-				current.touch(this.pathfindJobId);
+			final CPathfindingNodeStore store = job.nodeStore;
+			final IndexedMinHeap openSet = store.getOpenSet();
+			while (!openSet.isEmpty()) {
+				int current = openSet.poll();
 				if (isGoal(current)) {
 					final LinkedList<Point2D.Float> totalPath = new LinkedList<>();
-					Direction lastCameFromDirection = null;
+					byte lastCameFromDirection = CPathfindingNodeStore.NO_DIRECTION;
 
-					if ((current.cameFrom != null)
+					int cameFrom = store.getCameFrom(current);
+					if ((cameFrom != CPathfindingNodeStore.NO_NODE)
 							&& pathableBetween(job.ignoreIntersectionsWithThisUnit,
-									job.ignoreIntersectionsWithThisSecondUnit, current.point.x, current.point.y,
-									job.movementType, job.collisionSize, job.goalX, job.goalY)
+									job.ignoreIntersectionsWithThisSecondUnit, store.getWorldX(current),
+									store.getWorldY(current), job.movementType, job.collisionSize, job.goalX, job.goalY)
 							&& pathableBetween(job.ignoreIntersectionsWithThisUnit,
-									job.ignoreIntersectionsWithThisSecondUnit, current.cameFrom.point.x,
-									current.cameFrom.point.y, job.movementType, job.collisionSize, current.point.x,
-									current.point.y)
+									job.ignoreIntersectionsWithThisSecondUnit, store.getWorldX(cameFrom),
+									store.getWorldY(cameFrom), job.movementType, job.collisionSize,
+									store.getWorldX(current), store.getWorldY(current))
 							&& pathableBetween(job.ignoreIntersectionsWithThisUnit,
-									job.ignoreIntersectionsWithThisSecondUnit, current.cameFrom.point.x,
-									current.cameFrom.point.y, job.movementType, job.collisionSize, job.goalX, job.goalY)
+									job.ignoreIntersectionsWithThisSecondUnit, store.getWorldX(cameFrom),
+									store.getWorldY(cameFrom), job.movementType, job.collisionSize, job.goalX, job.goalY)
 							&& job.allowSmoothing) {
 						// do some basic smoothing to walk straight to the goal if it is not obstructed,
 						// skipping the last grid location
 						totalPath.addFirst(job.goal);
-						current = current.cameFrom;
+						current = cameFrom;
 					}
 					else {
 						totalPath.addFirst(job.goal);
-						totalPath.addFirst(current.point);
+						totalPath.addFirst(new Point2D.Float(store.getWorldX(current), store.getWorldY(current)));
 					}
-					lastCameFromDirection = current.cameFromDirection;
-					Node lastNode = null;
+					lastCameFromDirection = store.getCameFromDirection(current);
+					int lastNode = CPathfindingNodeStore.NO_NODE;
 					int stepsBackward = 0;
-					while (current.cameFrom != null) {
+					while ((cameFrom = store.getCameFrom(current)) != CPathfindingNodeStore.NO_NODE) {
 						lastNode = current;
-						current = current.cameFrom;
-						if ((lastCameFromDirection == null) || (current.cameFromDirection != lastCameFromDirection)
-								|| (current.cameFromDirection == null)) {
-							if ((current.cameFromDirection != null) || (lastNode == null)
+						current = cameFrom;
+						final byte currentCameFromDirection = store.getCameFromDirection(current);
+						if ((lastCameFromDirection == CPathfindingNodeStore.NO_DIRECTION)
+								|| (currentCameFromDirection != lastCameFromDirection)
+								|| (currentCameFromDirection == CPathfindingNodeStore.NO_DIRECTION)) {
+							final float currentX = store.getWorldX(current);
+							final float currentY = store.getWorldY(current);
+							if ((currentCameFromDirection != CPathfindingNodeStore.NO_DIRECTION)
+									|| (lastNode == CPathfindingNodeStore.NO_NODE)
 									|| !pathableBetween(job.ignoreIntersectionsWithThisUnit,
 											job.ignoreIntersectionsWithThisSecondUnit, job.startX, job.startY,
-											job.movementType, job.collisionSize, current.point.x, current.point.y)
+											job.movementType, job.collisionSize, currentX, currentY)
 									|| !pathableBetween(job.ignoreIntersectionsWithThisUnit,
-											job.ignoreIntersectionsWithThisSecondUnit, current.point.x, current.point.y,
-											job.movementType, job.collisionSize, lastNode.point.x, lastNode.point.y)
+											job.ignoreIntersectionsWithThisSecondUnit, currentX, currentY,
+											job.movementType, job.collisionSize, store.getWorldX(lastNode),
+											store.getWorldY(lastNode))
 									|| !pathableBetween(job.ignoreIntersectionsWithThisUnit,
 											job.ignoreIntersectionsWithThisSecondUnit, job.startX, job.startY,
-											job.movementType, job.collisionSize, lastNode.point.x, lastNode.point.y)
+											job.movementType, job.collisionSize, store.getWorldX(lastNode),
+											store.getWorldY(lastNode))
 									|| !job.allowSmoothing) {
 								// Add the point if it's not the first one, or if we can only complete
 								// the journey by specifically walking to the first one
-								totalPath.addFirst(current.point);
-								lastCameFromDirection = current.cameFromDirection;
+								totalPath.addFirst(new Point2D.Float(currentX, currentY));
+								lastCameFromDirection = currentCameFromDirection;
 							}
 						}
 						if (stepsBackward > this.pathingGridCellCount) {
 							new IllegalStateException(
 									"PATHING SYSTEM ERROR: The path finding algorithm hit an infinite cycle at or near pt: "
-											+ current.cameFrom.point
+											+ store.getWorldX(current) + "," + store.getWorldY(current)
 											+ ".\nThis means the A* search algorithm heuristic 'admissable' constraint was probably violated.\n\nUnit1:"
 											+ CUnit.maybeMeaningfulName(job.ignoreIntersectionsWithThisUnit)
 											+ "\nUnit2:"
@@ -402,59 +577,353 @@ public class CPathfindingProcessor {
 						}
 						stepsBackward++;
 					}
+					finishJob(job);
 					job.queueItem.pathFound(totalPath, simulation);
-					this.moveQueue.poll();
 					System.out.println("Task " + this.pathfindJobId + " took " + this.totalIterations
 							+ " iterations and " + this.totalJobLoops + " job loops!");
 					continue JobsLoop;
 				}
 
-				for (final Direction direction : Direction.VALUES) {
-					final float x = current.point.x + (direction.xOffset * 32);
-					final float y = current.point.y + (direction.yOffset * 32);
-					if (this.pathingGrid.contains(x, y)) {
-						double turnCost;
-						if ((current.cameFromDirection != null) && (direction != current.cameFromDirection)) {
-							turnCost = 0.25;
-						}
-						else {
-							turnCost = 0;
-						}
-						double tentativeScore = current.g + ((direction.length + turnCost) * 32);
-						if (!pathableBetween(job.ignoreIntersectionsWithThisUnit,
-								job.ignoreIntersectionsWithThisSecondUnit, current.point.x, current.point.y,
-								job.movementType, job.collisionSize, x, y)) {
-							tentativeScore += (direction.length) * job.weightForHittingWalls;
-						}
-						final Node neighbor = job.searchGraph[job.gridMapping.getY(this.pathingGrid, y)][job.gridMapping
-								.getX(this.pathingGrid, x)];
-						neighbor.touch(this.pathfindJobId);
-						if (tentativeScore < neighbor.g) {
-							neighbor.cameFrom = current;
-							neighbor.cameFromDirection = direction;
-							neighbor.g = tentativeScore;
-							neighbor.f = tentativeScore + h(neighbor);
-							if (!job.openSet.contains(neighbor)) {
-								job.openSet.add(neighbor);
-							}
-						}
-					}
+				if (job.jumpPointSearch) {
+					expandJumpPoints(job, store, openSet, current);
+					workIterations += this.jumpSteps / JUMP_STEPS_PER_ITERATION;
+					this.jumpSteps %= JUMP_STEPS_PER_ITERATION;
+				}
+				else {
+					expandNeighbors(job, store, openSet, current);
 				}
 				workIterations++;
 				this.totalIterations++;
-				if (this.totalIterations > 20000) {
+				this.iterationCount++;
+				if (this.totalIterations > WarsmashConstants.PATHFINDING_MAX_ITERATIONS_PER_JOB) {
 					break;
 				}
-				if (workIterations >= 1500) {
+				if (workIterations >= this.iterationBudgetPerTick) {
+					this.budgetExhaustedCount++;
 					// breaking jobs loop will implicitly exit without calling pathFound() below
 					break JobsLoop;
 				}
 			}
+			if (job.jumpPointSearch && openSet.isEmpty()) {
+				// jump point search only crosses open ground, so search again the ordinary
+				// way, which can also route through walls and units at a high cost
+				job.jumpPointSearch = false;
+				this.pathfindJobId++;
+				this.totalIterations = 0;
+				startGridSearch(job);
+				continue JobsLoop;
+			}
+			finishJob(job);
 			job.queueItem.pathFound(Collections.emptyList(), simulation);
-			this.moveQueue.poll();
 			System.out.println("Task " + this.pathfindJobId + " took " + this.totalIterations + " iterations and "
 					+ this.totalJobLoops + " job loops!");
 		}
+		if (WarsmashConstants.ENABLE_HIERARCHICAL_PATHFINDING && (workIterations < this.iterationBudgetPerTick)) {
+			// rebuild graphs after changes to the pathing while there is budget left, so
+			// that they are ready when the next long path is asked for
+			final int refreshIterations = this.hierarchicalPathfinder
+					.refresh(this.iterationBudgetPerTick - workIterations);
+			this.iterationCount += refreshIterations;
+		}
+	}
+
+	private void expandNeighbors(final PathfindingJob job, final CPathfindingNodeStore store,
+			final IndexedMinHeap openSet, final int current) {
+		final int currentNodeX = store.getX(current);
+		final int currentNodeY = store.getY(current);
+		final float currentX = store.getWorldX(current);
+		final float currentY = store.getWorldY(current);
+		final double currentG = store.getG(current);
+		final byte currentCameFromDirection = store.getCameFromDirection(current);
+		for (final Direction direction : Direction.VALUES) {
+			final int neighborNodeX = currentNodeX + direction.xOffset;
+			final int neighborNodeY = currentNodeY + direction.yOffset;
+			final float x = currentX + (direction.xOffset * 32);
+			final float y = currentY + (direction.yOffset * 32);
+			if (store.contains(neighborNodeX, neighborNodeY) && this.pathingGrid.contains(x, y)) {
+				double turnCost;
+				if ((currentCameFromDirection != CPathfindingNodeStore.NO_DIRECTION)
+						&& (direction.ordinal() != currentCameFromDirection)) {
+					turnCost = 0.25;
+				}
+				else {
+					turnCost = 0;
+				}
+				double tentativeScore = currentG + ((direction.length + turnCost) * 32);
+				if (!pathableBetween(job.ignoreIntersectionsWithThisUnit, job.ignoreIntersectionsWithThisSecondUnit,
+						currentX, currentY, job.movementType, job.collisionSize, x, y)) {
+					tentativeScore += (direction.length) * job.weightForHittingWalls;
+				}
+				final int neighbor = store.getIndex(neighborNodeX, neighborNodeY);
+				store.touch(neighbor, this.pathfindJobId);
+				if (tentativeScore < store.getG(neighbor)) {
+					store.set(neighbor, tentativeScore, current, (byte) direction.ordinal());
+					openSet.insertOrDecrease(neighbor, tentativeScore + h(store, neighbor));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Jump Point Search expansion: instead of queueing every neighbor, walk in
+	 * each direction that is not dominated by the way we came, and only queue the
+	 * node where the walk finds a turn that might matter (a forced neighbor), a
+	 * goal, or a unit nearby. Nodes near units are expanded the ordinary way,
+	 * since units block pathing without being part of the pathing grid.
+	 */
+	private void expandJumpPoints(final PathfindingJob job, final CPathfindingNodeStore store,
+			final IndexedMinHeap openSet, final int current) {
+		if ((getJumpPathability(job, store, current) & CPathfindingNodeStore.PATHABILITY_NEAR_UNITS) != 0) {
+			expandNeighbors(job, store, openSet, current);
+			return;
+		}
+		final int x = store.getX(current);
+		final int y = store.getY(current);
+		final byte cameFromDirection = store.getCameFromDirection(current);
+		if (cameFromDirection == CPathfindingNodeStore.NO_DIRECTION) {
+			for (final Direction direction : Direction.VALUES) {
+				if ((direction.xOffset == 0) || (direction.yOffset == 0)
+						|| (isJumpWalkable(job, store, x + direction.xOffset, y)
+								&& isJumpWalkable(job, store, x, y + direction.yOffset))) {
+					jumpFrom(job, store, openSet, current, direction.xOffset, direction.yOffset);
+				}
+			}
+			return;
+		}
+		final Direction direction = Direction.VALUES[cameFromDirection];
+		final int dx = direction.xOffset;
+		final int dy = direction.yOffset;
+		if ((dx != 0) && (dy != 0)) {
+			final boolean walkableX = isJumpWalkable(job, store, x + dx, y);
+			final boolean walkableY = isJumpWalkable(job, store, x, y + dy);
+			if (walkableX) {
+				jumpFrom(job, store, openSet, current, dx, 0);
+			}
+			if (walkableY) {
+				jumpFrom(job, store, openSet, current, 0, dy);
+			}
+			if (walkableX && walkableY) {
+				jumpFrom(job, store, openSet, current, dx, dy);
+			}
+		}
+		else {
+			// sideways neighbors along a straight walk, either side of the direction
+			final int sideX = dy;
+			final int sideY = dx;
+			final boolean walkableAhead = isJumpWalkable(job, store, x + dx, y + dy);
+			final boolean walkableSide = isJumpWalkable(job, store, x + sideX, y + sideY);
+			final boolean walkableOtherSide = isJumpWalkable(job, store, x - sideX, y - sideY);
+			if (walkableAhead) {
+				jumpFrom(job, store, openSet, current, dx, dy);
+				if (walkableSide) {
+					jumpFrom(job, store, openSet, current, dx + sideX, dy + sideY);
+				}
+				if (walkableOtherSide) {
+					jumpFrom(job, store, openSet, current, dx - sideX, dy - sideY);
+				}
+			}
+			if (walkableSide) {
+				jumpFrom(job, store, openSet, current, sideX, sideY);
+			}
+			if (walkableOtherSide) {
+				jumpFrom(job, store, openSet, current, -sideX, -sideY);
+			}
+		}
+	}
+
+	private void jumpFrom(final PathfindingJob job, final CPathfindingNodeStore store, final IndexedMinHeap openSet,
+			final int current, final int dx, final int dy) {
+		final int jumpPoint = jump(job, store, store.getX(current), store.getY(current), dx, dy);
+		if (jumpPoint == CPathfindingNodeStore.NO_NODE) {
+			return;
+		}
+		final int steps = Math.max(Math.abs(store.getX(jumpPoint) - store.getX(current)),
+				Math.abs(store.getY(jumpPoint) - store.getY(current)));
+		final Direction direction = Direction.of(dx, dy);
+		final double tentativeScore = store.getG(current) + (steps * direction.length * 32);
+		if (tentativeScore < store.getG(jumpPoint)) {
+			store.set(jumpPoint, tentativeScore, current, (byte) direction.ordinal());
+			openSet.insertOrDecrease(jumpPoint, tentativeScore + h(store, jumpPoint));
+		}
+	}
+
+	/**
+	 * Walks from (x, y) in the given direction without cutting corners.
+	 *
+	 * @return the first node on the way that must be queued, or
+	 *         {@link CPathfindingNodeStore#NO_NODE} if the walk hits a wall
+	 */
+	private int jump(final PathfindingJob job, final CPathfindingNodeStore store, int x, int y, final int dx,
+			final int dy) {
+		while (true) {
+			x += dx;
+			y += dy;
+			if (!isJumpWalkable(job, store, x, y)) {
+				return CPathfindingNodeStore.NO_NODE;
+			}
+			final int index = store.getIndex(x, y);
+			if (isGoal(index) || ((store.getPathability(index) & CPathfindingNodeStore.PATHABILITY_NEAR_UNITS) != 0)) {
+				return index;
+			}
+			if ((dx != 0) && (dy != 0)) {
+				if ((jump(job, store, x, y, dx, 0) != CPathfindingNodeStore.NO_NODE)
+						|| (jump(job, store, x, y, 0, dy) != CPathfindingNodeStore.NO_NODE)) {
+					return index;
+				}
+				if (!isJumpWalkable(job, store, x + dx, y) || !isJumpWalkable(job, store, x, y + dy)) {
+					return CPathfindingNodeStore.NO_NODE;
+				}
+			}
+			else {
+				final int sideX = dy;
+				final int sideY = dx;
+				if ((isJumpWalkable(job, store, x + sideX, y + sideY)
+						&& !isJumpWalkable(job, store, (x + sideX) - dx, (y + sideY) - dy))
+						|| (isJumpWalkable(job, store, x - sideX, y - sideY)
+								&& !isJumpWalkable(job, store, x - sideX - dx, y - sideY - dy))) {
+					return index;
+				}
+			}
+		}
+	}
+
+	private boolean isJumpWalkable(final PathfindingJob job, final CPathfindingNodeStore store, final int x,
+			final int y) {
+		return store.contains(x, y) && ((getJumpPathability(job, store,
+				store.getIndex(x, y)) & CPathfindingNodeStore.PATHABILITY_WALKABLE) != 0);
+	}
+
+	private byte getJumpPathability(final PathfindingJob job, final CPathfindingNodeStore store, final int index) {
+		store.touch(index, this.pathfindJobId);
+		byte pathability = store.getPathability(index);
+		if (pathability == CPathfindingNodeStore.PATHABILITY_UNKNOWN) {
+			this.jumpSteps++;
+			final float x = store.getWorldX(index);
+			final float y = store.getWorldY(index);
+			pathability = CPathfindingNodeStore.PATHABILITY_KNOWN;
+			final boolean nearUnits = this.worldCollision.intersectsAnythingOtherThan(
+					tempNearbyRect.setCenter(x, y), job.ignoreIntersectionsWithThisUnit,
+					job.ignoreIntersectionsWithThisSecondUnit, job.movementType);
+			if (nearUnits) {
+				pathability |= CPathfindingNodeStore.PATHABILITY_NEAR_UNITS;
+			}
+			if (this.pathingGrid.isPathable(x, y, job.movementType, job.collisionSize)
+					&& (!nearUnits || isPathableDynamically(x, y, job.ignoreIntersectionsWithThisUnit,
+							job.ignoreIntersectionsWithThisSecondUnit, job.movementType))) {
+				pathability |= CPathfindingNodeStore.PATHABILITY_WALKABLE;
+			}
+			store.setPathability(index, pathability);
+		}
+		return pathability;
+	}
+
+	private static void setCollisionRects(final PathfindingJob job) {
+		tempRect.set(0, 0, job.collisionSize * 2, job.collisionSize * 2);
+		// one node beyond the unit's own collision box
+		tempNearbyRect.set(0, 0, (job.collisionSize * 2) + 64, (job.collisionSize * 2) + 64);
+	}
+
+	private void startGridSearch(final PathfindingJob job) {
+		setCollisionRects(job);
+		final boolean corners = isCollisionSizeBetterSuitedForCorners(job.collisionSize);
+		final CPathfindingNodeStore store = getNodeStore(corners);
+		job.nodeStore = store;
+		System.out.println(corners ? "using corners" : "using cells");
+		final GridMapping gridMapping = store.getGridMapping();
+		final int goalCellY = gridMapping.getY(this.pathingGrid, job.goalY);
+		final int goalCellX = gridMapping.getX(this.pathingGrid, job.goalX);
+		final int mostLikelyGoal = store.getIndex(goalCellX, goalCellY);
+		store.touch(mostLikelyGoal, this.pathfindJobId);
+		final double bestGoalDistance = store.distance(mostLikelyGoal, job.goalX, job.goalY);
+		Arrays.fill(this.goalSet, CPathfindingNodeStore.NO_NODE);
+		this.goals = 0;
+		for (int i = goalCellX - 1; i <= (goalCellX + 1); i++) {
+			for (int j = goalCellY - 1; j <= (goalCellY + 1); j++) {
+				if (store.contains(i, j)) {
+					final int possibleGoal = store.getIndex(i, j);
+					store.touch(possibleGoal, this.pathfindJobId);
+					if (store.distance(possibleGoal, job.goalX, job.goalY) <= bestGoalDistance) {
+						this.goalSet[this.goals++] = possibleGoal;
+					}
+				}
+			}
+		}
+		final int startGridY = gridMapping.getY(this.pathingGrid, job.startY);
+		final int startGridX = gridMapping.getX(this.pathingGrid, job.startX);
+		final IndexedMinHeap openSet = store.getOpenSet();
+		openSet.clear();
+
+		final int start = store.getIndex(startGridX, startGridY);
+		store.touch(start, this.pathfindJobId);
+		final float startNodeX = store.getWorldX(start);
+		final float startNodeY = store.getWorldY(start);
+		if (job.startX > startNodeX) {
+			job.startGridMinX = startGridX;
+			job.startGridMaxX = startGridX + 1;
+		}
+		else if (job.startX < startNodeX) {
+			job.startGridMinX = startGridX - 1;
+			job.startGridMaxX = startGridX;
+		}
+		else {
+			job.startGridMinX = startGridX;
+			job.startGridMaxX = startGridX;
+		}
+		if (job.startY > startNodeY) {
+			job.startGridMinY = startGridY;
+			job.startGridMaxY = startGridY + 1;
+		}
+		else if (job.startY < startNodeY) {
+			job.startGridMinY = startGridY - 1;
+			job.startGridMaxY = startGridY;
+		}
+		else {
+			job.startGridMinY = startGridY;
+			job.startGridMaxY = startGridY;
+		}
+		for (int cellX = job.startGridMinX; cellX <= job.startGridMaxX; cellX++) {
+			for (int cellY = job.startGridMinY; cellY <= job.startGridMaxY; cellY++) {
+				if (store.contains(cellX, cellY)) {
+					final int possibleNode = store.getIndex(cellX, cellY);
+					store.touch(possibleNode, this.pathfindJobId);
+					final float x = store.getWorldX(possibleNode);
+					final float y = store.getWorldY(possibleNode);
+					final double tentativeScore;
+					if (pathableBetween(job.ignoreIntersectionsWithThisUnit,
+							job.ignoreIntersectionsWithThisSecondUnit, job.startX, job.startY, job.movementType,
+							job.collisionSize, x, y)) {
+						tentativeScore = store.distance(possibleNode, job.startX, job.startY);
+					}
+					else {
+						tentativeScore = job.weightForHittingWalls;
+					}
+					store.set(possibleNode, tentativeScore, CPathfindingNodeStore.NO_NODE,
+							CPathfindingNodeStore.NO_DIRECTION);
+					openSet.insertOrDecrease(possibleNode, tentativeScore + h(store, possibleNode));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Lets the hierarchical graph check the units around the mover of a job, the
+	 * same way that the grid search does.
+	 */
+	private final class JobDynamicPathability implements CHierarchicalPathingGraph.DynamicPathability {
+		private PathfindingJob job;
+
+		@Override
+		public boolean isBlockedByUnits(final float x, final float y) {
+			return !isPathableDynamically(x, y, this.job.ignoreIntersectionsWithThisUnit,
+					this.job.ignoreIntersectionsWithThisSecondUnit, this.job.movementType);
+		}
+
+		@Override
+		public boolean pathableBetween(final float startX, final float startY, final float x, final float y) {
+			return CPathfindingProcessor.this.pathableBetween(this.job.ignoreIntersectionsWithThisUnit,
+					this.job.ignoreIntersectionsWithThisSecondUnit, startX, startY, this.job.movementType,
+					this.job.collisionSize, x, y);
+		}
 	}
 
 	public static final class PathfindingJob {
@@ -467,14 +936,20 @@ public class CPathfindingProcessor {
 		private final float collisionSize;
 		private final boolean allowSmoothing;
 		private final CBehaviorMove queueItem;
+		private final JobPriority priority;
+		private final int sequence;
+		private final int enqueueTick;
 		private boolean jobStarted;
+		private boolean cancelled;
+		private boolean finished;
+		private long flowFieldKey;
+		private CFlowField flowField;
 		public float goalY;
 		public float goalX;
 		public float weightForHittingWalls;
-		Node[][] searchGraph;
-		GridMapping gridMapping;
-		PriorityQueue<Node> openSet;
-		Node start;
+		CPathfindingNodeStore nodeStore;
+		boolean jumpPointSearch;
+		boolean hierarchicalSearch;
 		int startGridMinX;
 		int startGridMinY;
 		int startGridMaxX;
@@ -483,7 +958,8 @@ public class CPathfindingProcessor {
 		public PathfindingJob(final CUnit ignoreIntersectionsWithThisUnit,
 				final CUnit ignoreIntersectionsWithThisSecondUnit, final float startX, final float startY,
 				final Point2D.Float goal, final PathingGrid.MovementType movementType, final float collisionSize,
-				final boolean allowSmoothing, final CBehaviorMove queueItem) {
+				final boolean allowSmoothing, final CBehaviorMove queueItem, final JobPriority priority,
+				final int sequence, final int enqueueTick) {
 			this.ignoreIntersectionsWithThisUnit = ignoreIntersectionsWithThisUnit;
 			this.ignoreIntersectionsWithThisSecondUnit = ignoreIntersectionsWithThisSecondUnit;
 			this.startX = startX;
@@ -493,7 +969,31 @@ public class CPathfindingProcessor {
 			this.collisionSize = collisionSize;
 			this.allowSmoothing = allowSmoothing;
 			this.queueItem = queueItem;
+			this.priority = priority;
+			this.sequence = sequence;
+			this.enqueueTick = enqueueTick;
 			this.jobStarted = false;
 		}
+
+		public JobPriority getPriority() {
+			return this.priority;
+		}
+
+		public boolean isCancelled() {
+			return this.cancelled;
+		}
+	}
+
+	/**
+	 * Order in which queued jobs are started, most urgent first. Jobs of equal
+	 * priority are started in the order they were queued, and jobs that waited
+	 * too long are started ahead of any priority.
+	 */
+	public static enum JobPriority {
+		PLAYER_ORDER,
+		AI_ORDER,
+		REPATH;
+
+		public static final JobPriority[] VALUES = values();
 	}
 }
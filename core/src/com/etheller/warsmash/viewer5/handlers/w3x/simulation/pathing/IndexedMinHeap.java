@@ -0,0 +1,137 @@
+package com.etheller.warsmash.viewer5.handlers.w3x.simulation.pathing;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of int ids keyed by double priority. Each id may be present at
+ * most once, and its position is tracked so that the priority can be lowered in
+ * place (decrease-key) instead of adding a duplicate entry. Ties are broken on
+ * the id so that the order in which entries are polled never depends on
+ * insertion history, which keeps pathfinding results identical on all clients.
+ */
+public final class IndexedMinHeap {
+	private int[] heap;
+	private int[] positions;
+	private double[] keys;
+	private int size;
+
+	public IndexedMinHeap(final int capacity) {
+		this.heap = new int[capacity];
+		this.positions = new int[capacity];
+		this.keys = new double[capacity];
+		Arrays.fill(this.positions, -1);
+	}
+
+	public void ensureCapacity(final int capacity) {
+		if (capacity > this.positions.length) {
+			final int newCapacity = Math.max(capacity, this.positions.length * 2);
+			final int oldCapacity = this.positions.length;
+			this.heap = Arrays.copyOf(this.heap, newCapacity);
+			this.positions = Arrays.copyOf(this.positions, newCapacity);
+			this.keys = Arrays.copyOf(this.keys, newCapacity);
+			Arrays.fill(this.positions, oldCapacity, newCapacity, -1);
+		}
+	}
+
+	public int capacity() {
+		return this.positions.length;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean contains(final int id) {
+		return this.positions[id] != -1;
+	}
+
+	public double peekKey() {
+		return this.keys[this.heap[0]];
+	}
+
+	/**
+	 * Inserts the id, or lowers its key if it is already present with a higher
+	 * key. A higher key for an id already in the heap is ignored.
+	 */
+	public void insertOrDecrease(final int id, final double key) {
+		final int position = this.positions[id];
+		if (position == -1) {
+			this.keys[id] = key;
+			this.heap[this.size] = id;
+			this.positions[id] = this.size;
+			siftUp(this.size++);
+		}
+		else if (key < this.keys[id]) {
+			this.keys[id] = key;
+			siftUp(position);
+		}
+	}
+
+	public int poll() {
+		final int result = this.heap[0];
+		this.positions[result] = -1;
+		this.size--;
+		if (this.size > 0) {
+			final int last = this.heap[this.size];
+			this.heap[0] = last;
+			this.positions[last] = 0;
+			siftDown(0);
+		}
+		return result;
+	}
+
+	public void clear() {
+		for (int i = 0; i < this.size; i++) {
+			this.positions[this.heap[i]] = -1;
+		}
+		this.size = 0;
+	}
+
+	private boolean less(final int idA, final int idB) {
+		final double keyA = this.keys[idA];
+		final double keyB = this.keys[idB];
+		return (keyA < keyB) || ((keyA == keyB) && (idA < idB));
+	}
+
+	private void siftUp(int position) {
+		final int id = this.heap[position];
+		while (position > 0) {
+			final int parentPosition = (position - 1) >>> 1;
+			final int parent = this.heap[parentPosition];
+			if (!less(id, parent)) {
+				break;
+			}
+			this.heap[position] = parent;
+			this.positions[parent] = position;
+			position = parentPosition;
+		}
+		this.heap[position] = id;
+		this.positions[id] = position;
+	}
+
+	private void siftDown(int position) {
+		final int id = this.heap[position];
+		final int half = this.size >>> 1;
+		while (position < half) {
+			int childPosition = (position << 1) + 1;
+			int child = this.heap[childPosition];
+			final int rightPosition = childPosition + 1;
+			if ((rightPosition < this.size) && less(this.heap[rightPosition], child)) {
+				childPosition = rightPosition;
+				child = this.heap[childPosition];
+			}
+			if (!less(child, id)) {
+				break;
+			}
+			this.heap[position] = child;
+			this.positions[child] = position;
+			position = childPosition;
+		}
+		this.heap[position] = id;
+		this.positions[id] = position;
+	}
+}
@@ -309,6 +309,9 @@ public class CPlayer extends CBasePlayer {
 		final List<CPlayerEvent> eventList = getEventList(eventType);
 		if (eventList != null) {
 			for (final CPlayerEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(hero, eventScopeBuilder.create(eventType, event.getTrigger(), hero));
 			}
 		}
@@ -343,6 +346,9 @@ public class CPlayer extends CBasePlayer {
 		final List<CPlayerEvent> eventList = getEventList(JassGameEventsWar3.EVENT_PLAYER_UNIT_DEATH);
 		if (eventList != null) {
 			for (final CPlayerEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(dyingUnit, CommonTriggerExecutionScope.unitDeathScope(
 						JassGameEventsWar3.EVENT_PLAYER_UNIT_DEATH, event.getTrigger(), dyingUnit, killingUnit));
 			}
@@ -353,6 +359,9 @@ public class CPlayer extends CBasePlayer {
 		final List<CPlayerEvent> eventList = getEventList(JassGameEventsWar3.EVENT_PLAYER_UNIT_ISSUED_ORDER);
 		if (eventList != null) {
 			for (final CPlayerEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(unit,
 						CommonTriggerExecutionScope.unitOrderScope(JassGameEventsWar3.EVENT_PLAYER_UNIT_ISSUED_ORDER,
 								event.getTrigger(), unit, orderNoTarget.getOrderId()));
@@ -365,6 +374,9 @@ public class CPlayer extends CBasePlayer {
 		if (eventList != null) {
 			final AbilityPointTarget target = order.getTarget(game);
 			for (final CPlayerEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(unit,
 						CommonTriggerExecutionScope.unitOrderPointScope(
 								JassGameEventsWar3.EVENT_PLAYER_UNIT_ISSUED_POINT_ORDER, event.getTrigger(), unit,
@@ -378,6 +390,9 @@ public class CPlayer extends CBasePlayer {
 		if (eventList != null) {
 			final CWidget target = order.getTarget(game);
 			for (final CPlayerEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(unit,
 						CommonTriggerExecutionScope.unitOrderTargetScope(
 								JassGameEventsWar3.EVENT_PLAYER_UNIT_ISSUED_TARGET_ORDER, event.getTrigger(), unit,
@@ -390,6 +405,9 @@ public class CPlayer extends CBasePlayer {
 		final List<CPlayerEvent> eventList = getEventList(JassGameEventsWar3.EVENT_PLAYER_UNIT_CONSTRUCT_FINISH);
 		if (eventList != null) {
 			for (final CPlayerEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(unit,
 						CommonTriggerExecutionScope.unitConstructFinishScope(
 								JassGameEventsWar3.EVENT_PLAYER_UNIT_CONSTRUCT_FINISH, event.getTrigger(), unit,
@@ -402,6 +420,9 @@ public class CPlayer extends CBasePlayer {
 		final List<CPlayerEvent> eventList = getEventList(JassGameEventsWar3.EVENT_PLAYER_UNIT_TRAIN_FINISH);
 		if (eventList != null) {
 			for (final CPlayerEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(unit, CommonTriggerExecutionScope.unitTrainFinishScope(
 						JassGameEventsWar3.EVENT_PLAYER_UNIT_TRAIN_FINISH, event.getTrigger(), unit, trainedUnit));
 			}
@@ -412,6 +433,9 @@ public class CPlayer extends CBasePlayer {
 		final List<CPlayerEvent> eventList = getEventList(JassGameEventsWar3.EVENT_PLAYER_UNIT_RESEARCH_FINISH);
 		if (eventList != null) {
 			for (final CPlayerEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(unit, CommonTriggerExecutionScope.unitResearchFinishScope(
 						JassGameEventsWar3.EVENT_PLAYER_UNIT_RESEARCH_FINISH, event.getTrigger(), unit, researched));
 			}
@@ -422,6 +446,9 @@ public class CPlayer extends CBasePlayer {
 		final List<CPlayerEvent> eventList = getEventList(JassGameEventsWar3.EVENT_PLAYER_UNIT_PICKUP_ITEM);
 		if (eventList != null) {
 			for (final CPlayerEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(unit, CommonTriggerExecutionScope.unitPickupItemScope(
 						JassGameEventsWar3.EVENT_PLAYER_UNIT_PICKUP_ITEM, event.getTrigger(), unit, item));
 			}
@@ -599,6 +626,9 @@ public class CPlayer extends CBasePlayer {
 		final List<CPlayerEvent> eventList = getEventList(JassGameEventsWar3.EVENT_PLAYER_UNIT_SPELL_EFFECT);
 		if (eventList != null) {
 			for (final CPlayerEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(spellAbilityUnit,
 						CommonTriggerExecutionScope.unitSpellEffectTargetScope(
 								JassGameEventsWar3.EVENT_PLAYER_UNIT_SPELL_EFFECT, event.getTrigger(), spellAbility,
@@ -612,6 +642,9 @@ public class CPlayer extends CBasePlayer {
 		final List<CPlayerEvent> eventList = getEventList(JassGameEventsWar3.EVENT_PLAYER_UNIT_SPELL_EFFECT);
 		if (eventList != null) {
 			for (final CPlayerEvent event : eventList) {
+				if (!event.getTrigger().isEnabled()) {
+					continue;
+				}
 				event.fire(spellAbilityUnit,
 						CommonTriggerExecutionScope.unitSpellEffectPointScope(
 								JassGameEventsWar3.EVENT_PLAYER_UNIT_SPELL_EFFECT, event.getTrigger(), spellAbility,
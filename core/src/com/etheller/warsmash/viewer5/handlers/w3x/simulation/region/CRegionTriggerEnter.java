@@ -21,6 +21,9 @@ public class CRegionTriggerEnter {
 	}
 
 	public void fire(final CUnit unit, final CRegion region) {
+		if (!this.trigger.isEnabled()) {
+			return;
+		}
 		final CommonTriggerExecutionScope eventScope = CommonTriggerExecutionScope.unitEnterRegionScope(
 				JassGameEventsWar3.EVENT_GAME_ENTER_REGION, this.trigger, TriggerExecutionScope.EMPTY, unit, region);
 		this.globalScope.queueTrigger(this.filter,
@@ -21,6 +21,9 @@ public class CRegionTriggerLeave {
 	}
 
 	public void fire(final CUnit unit, final CRegion region) {
+		if (!this.trigger.isEnabled()) {
+			return;
+		}
 		final CommonTriggerExecutionScope eventScope = CommonTriggerExecutionScope.unitLeaveRegionScope(
 				JassGameEventsWar3.EVENT_GAME_LEAVE_REGION, this.trigger, TriggerExecutionScope.EMPTY, unit, region);
 		this.globalScope.queueTrigger(this.filter,
@@ -0,0 +1,30 @@
+package com.etheller.warsmash.viewer5.handlers.w3x.simulation.timers;
+
+import com.etheller.interpreter.ast.bytecode.JassThread;
+import com.etheller.interpreter.ast.debug.JassException;
+import com.etheller.interpreter.ast.scope.GlobalScope;
+
+/**
+ * Resumes a JASS thread that was suspended by TriggerSleepAction. Since it is an
+ * ordinary simulation timer, sleeping threads wake up on the same game tick and
+ * in the same order on every client.
+ */
+public class CTimerJassThread extends CTimer {
+	private final GlobalScope jassGlobalScope;
+	private final JassThread thread;
+
+	public CTimerJassThread(final GlobalScope jassGlobalScope, final JassThread thread) {
+		this.jassGlobalScope = jassGlobalScope;
+		this.thread = thread;
+	}
+
+	@Override
+	public void onFire() {
+		try {
+			this.thread.resume();
+		}
+		catch (final Exception e) {
+			throw new JassException(this.jassGlobalScope, "Exception during resumed jass thread", e);
+		}
+	}
+}
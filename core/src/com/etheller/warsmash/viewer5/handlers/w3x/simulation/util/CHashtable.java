@@ -1,30 +1,425 @@
 package com.etheller.warsmash.viewer5.handlers.w3x.simulation.util;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
+/**
+ * The JASS hashtable. As in the game, every pair of keys has one slot for each
+ * of integer, real, boolean, string and handle, so saving an integer does not
+ * overwrite a real saved under the same keys.
+ *
+ * Entries are kept in one open addressing table keyed by both keys packed into
+ * a long, with the values in primitive arrays, so that saving and loading does
+ * not box anything. The entries of each parent key are linked together so that
+ * {@link #flushChild(int)} only visits the entries it removes.
+ */
 public class CHashtable {
-	private final Map<Integer, Map<Integer, Object>> parentKeyToChildTable = new HashMap<>();
+	private static final byte FREE = 0;
+	private static final byte REMOVED = -1;
+	private static final byte INTEGER = 1;
+	private static final byte REAL = 2;
+	private static final byte BOOLEAN = 4;
+	private static final byte STRING = 8;
+	private static final byte HANDLE = 16;
+	private static final byte TYPES = INTEGER | REAL | BOOLEAN | STRING | HANDLE;
+	// the value of the boolean slot
+	private static final byte BOOLEAN_VALUE = 32;
 
-	public void save(final Integer parentKey, final Integer childKey, final Object object) {
-		Map<Integer, Object> childTable = this.parentKeyToChildTable.get(parentKey);
-		if (childTable == null) {
-			childTable = new HashMap<>();
-			this.parentKeyToChildTable.put(parentKey, childTable);
+	private static final int NO_ENTRY = -1;
+	// marks a free slot of the parent index
+	private static final int NO_PARENT = -2;
+
+	// FREE, REMOVED, or which slots of the entry hold a value
+	private byte[] flags;
+	private long[] keys;
+	private int[] ints;
+	private double[] reals;
+	private String[] strings;
+	private Object[] handles;
+	private int[] nextInParent;
+	private int[] previousInParent;
+	private int size;
+	// live and removed entries, which both lengthen the probes
+	private int usedSlots;
+
+	// parent key to the first entry with it, or NO_ENTRY after it was flushed
+	private int[] parentKeys;
+	private int[] parentHeads;
+	private int parentCount;
+
+	public CHashtable() {
+		allocate(16);
+		allocateParents(16);
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public void saveInteger(final int parentKey, final int childKey, final int value) {
+		final int entry = insert(parentKey, childKey, INTEGER);
+		this.ints[entry] = value;
+	}
+
+	public int loadInteger(final int parentKey, final int childKey) {
+		final int entry = find(parentKey, childKey);
+		if ((entry == NO_ENTRY) || ((this.flags[entry] & INTEGER) == 0)) {
+			return 0;
+		}
+		return this.ints[entry];
+	}
+
+	public boolean haveSavedInteger(final int parentKey, final int childKey) {
+		return has(parentKey, childKey, INTEGER);
+	}
+
+	public void removeSavedInteger(final int parentKey, final int childKey) {
+		remove(parentKey, childKey, INTEGER);
+	}
+
+	public void saveReal(final int parentKey, final int childKey, final double value) {
+		final int entry = insert(parentKey, childKey, REAL);
+		this.reals[entry] = value;
+	}
+
+	public double loadReal(final int parentKey, final int childKey) {
+		final int entry = find(parentKey, childKey);
+		if ((entry == NO_ENTRY) || ((this.flags[entry] & REAL) == 0)) {
+			return 0;
+		}
+		return this.reals[entry];
+	}
+
+	public boolean haveSavedReal(final int parentKey, final int childKey) {
+		return has(parentKey, childKey, REAL);
+	}
+
+	public void removeSavedReal(final int parentKey, final int childKey) {
+		remove(parentKey, childKey, REAL);
+	}
+
+	public void saveBoolean(final int parentKey, final int childKey, final boolean value) {
+		insert(parentKey, childKey, value ? (byte) (BOOLEAN | BOOLEAN_VALUE) : BOOLEAN);
+	}
+
+	public boolean loadBoolean(final int parentKey, final int childKey) {
+		final int entry = find(parentKey, childKey);
+		return (entry != NO_ENTRY) && ((this.flags[entry] & BOOLEAN_VALUE) != 0);
+	}
+
+	public boolean haveSavedBoolean(final int parentKey, final int childKey) {
+		return has(parentKey, childKey, BOOLEAN);
+	}
+
+	public void removeSavedBoolean(final int parentKey, final int childKey) {
+		remove(parentKey, childKey, BOOLEAN);
+	}
+
+	public void saveString(final int parentKey, final int childKey, final String value) {
+		final int entry = insert(parentKey, childKey, STRING);
+		this.strings[entry] = value;
+	}
+
+	/**
+	 * @return the string, or null if none was saved
+	 */
+	public String loadString(final int parentKey, final int childKey) {
+		final int entry = find(parentKey, childKey);
+		if (entry == NO_ENTRY) {
+			return null;
+		}
+		return this.strings[entry];
+	}
+
+	public boolean haveSavedString(final int parentKey, final int childKey) {
+		return has(parentKey, childKey, STRING);
+	}
+
+	public void removeSavedString(final int parentKey, final int childKey) {
+		remove(parentKey, childKey, STRING);
+	}
+
+	public void saveHandle(final int parentKey, final int childKey, final Object value) {
+		final int entry = insert(parentKey, childKey, HANDLE);
+		this.handles[entry] = value;
+	}
+
+	/**
+	 * @return the handle, or null if none was saved
+	 */
+	public Object loadHandle(final int parentKey, final int childKey) {
+		final int entry = find(parentKey, childKey);
+		if (entry == NO_ENTRY) {
+			return null;
+		}
+		return this.handles[entry];
+	}
+
+	public boolean haveSavedHandle(final int parentKey, final int childKey) {
+		return has(parentKey, childKey, HANDLE);
+	}
+
+	public void removeSavedHandle(final int parentKey, final int childKey) {
+		remove(parentKey, childKey, HANDLE);
+	}
+
+	/**
+	 * Removes every value saved under the parent key.
+	 */
+	public void flushChild(final int parentKey) {
+		final int parent = findParent(parentKey);
+		if (parent == NO_ENTRY) {
+			return;
 		}
-		if (object == null) {
-			childTable.remove(childKey);
+		int entry = this.parentHeads[parent];
+		while (entry != NO_ENTRY) {
+			final int next = this.nextInParent[entry];
+			clear(entry);
+			entry = next;
+		}
+		this.parentHeads[parent] = NO_ENTRY;
+	}
+
+	/**
+	 * Removes every value.
+	 */
+	public void flushParent() {
+		Arrays.fill(this.flags, FREE);
+		Arrays.fill(this.strings, null);
+		Arrays.fill(this.handles, null);
+		Arrays.fill(this.parentHeads, NO_PARENT);
+		this.size = 0;
+		this.usedSlots = 0;
+		this.parentCount = 0;
+	}
+
+	private boolean has(final int parentKey, final int childKey, final byte type) {
+		final int entry = find(parentKey, childKey);
+		return (entry != NO_ENTRY) && ((this.flags[entry] & type) != 0);
+	}
+
+	private void remove(final int parentKey, final int childKey, final byte type) {
+		final int entry = find(parentKey, childKey);
+		if (entry == NO_ENTRY) {
+			return;
+		}
+		if (type == STRING) {
+			this.strings[entry] = null;
+		}
+		else if (type == HANDLE) {
+			this.handles[entry] = null;
+		}
+		final byte remaining = (byte) (this.flags[entry] & ~type & ~(type == BOOLEAN ? BOOLEAN_VALUE : 0));
+		if ((remaining & TYPES) == 0) {
+			unlink(entry, parentKey);
+			clear(entry);
+		}
+		else {
+			this.flags[entry] = remaining;
+		}
+	}
+
+	private int find(final int parentKey, final int childKey) {
+		final long key = key(parentKey, childKey);
+		final int mask = this.flags.length - 1;
+		int slot = hash(key) & mask;
+		byte flag;
+		while ((flag = this.flags[slot]) != FREE) {
+			if ((flag != REMOVED) && (this.keys[slot] == key)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return NO_ENTRY;
+	}
+
+	/**
+	 * Marks the slot of the given type as holding a value, adding an entry for the
+	 * keys if there was none. For {@link #BOOLEAN}, the type includes
+	 * {@link #BOOLEAN_VALUE} if the value is true.
+	 *
+	 * @return the entry for the keys
+	 */
+	private int insert(final int parentKey, final int childKey, final byte type) {
+		final long key = key(parentKey, childKey);
+		final int mask = this.flags.length - 1;
+		int slot = hash(key) & mask;
+		int firstRemoved = NO_ENTRY;
+		byte flag;
+		while ((flag = this.flags[slot]) != FREE) {
+			if (flag == REMOVED) {
+				if (firstRemoved == NO_ENTRY) {
+					firstRemoved = slot;
+				}
+			}
+			else if (this.keys[slot] == key) {
+				final byte keptFlags = (type & BOOLEAN) != 0 ? (byte) (flag & ~BOOLEAN_VALUE) : flag;
+				this.flags[slot] = (byte) (keptFlags | type);
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if (firstRemoved == NO_ENTRY) {
+			if (((this.usedSlots + 1) * 2) > this.flags.length) {
+				rehash();
+				return insert(parentKey, childKey, type);
+			}
+			this.usedSlots++;
 		}
 		else {
-			childTable.put(childKey, object);
+			slot = firstRemoved;
 		}
+		// linked while the slot is still free or removed, so that if the parent
+		// index is rebuilt for the new parent, it does not link the entry as well
+		link(slot, parentKey);
+		this.keys[slot] = key;
+		this.flags[slot] = type;
+		this.size++;
+		return slot;
 	}
 
-	public Object load(final Integer parentKey, final Integer childKey) {
-		final Map<Integer, Object> childTable = this.parentKeyToChildTable.get(parentKey);
-		if (childTable != null) {
-			return childTable.get(childKey);
+	/**
+	 * Frees an entry that was unlinked from its parent, or whose parent's list is
+	 * dropped.
+	 */
+	private void clear(final int entry) {
+		this.flags[entry] = REMOVED;
+		this.strings[entry] = null;
+		this.handles[entry] = null;
+		this.size--;
+	}
+
+	private void link(final int entry, final int parentKey) {
+		int parent = findParent(parentKey);
+		if (parent == NO_ENTRY) {
+			parent = insertParent(parentKey);
+		}
+		final int head = this.parentHeads[parent];
+		this.nextInParent[entry] = head;
+		this.previousInParent[entry] = NO_ENTRY;
+		if (head != NO_ENTRY) {
+			this.previousInParent[head] = entry;
+		}
+		this.parentHeads[parent] = entry;
+	}
+
+	private void unlink(final int entry, final int parentKey) {
+		final int next = this.nextInParent[entry];
+		final int previous = this.previousInParent[entry];
+		if (next != NO_ENTRY) {
+			this.previousInParent[next] = previous;
+		}
+		if (previous != NO_ENTRY) {
+			this.nextInParent[previous] = next;
 		}
-		return null;
+		else {
+			this.parentHeads[findParent(parentKey)] = next;
+		}
+	}
+
+	private int findParent(final int parentKey) {
+		final int mask = this.parentKeys.length - 1;
+		int slot = hash(parentKey) & mask;
+		while (this.parentHeads[slot] != NO_PARENT) {
+			if (this.parentKeys[slot] == parentKey) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return NO_ENTRY;
+	}
+
+	private int insertParent(final int parentKey) {
+		if (((this.parentCount + 1) * 2) > this.parentKeys.length) {
+			// parents whose children were all removed are dropped here
+			relinkParents();
+		}
+		final int mask = this.parentKeys.length - 1;
+		int slot = hash(parentKey) & mask;
+		while (this.parentHeads[slot] != NO_PARENT) {
+			slot = (slot + 1) & mask;
+		}
+		this.parentKeys[slot] = parentKey;
+		this.parentHeads[slot] = NO_ENTRY;
+		this.parentCount++;
+		return slot;
+	}
+
+	private void rehash() {
+		final byte[] oldFlags = this.flags;
+		final long[] oldKeys = this.keys;
+		final int[] oldInts = this.ints;
+		final double[] oldReals = this.reals;
+		final String[] oldStrings = this.strings;
+		final Object[] oldHandles = this.handles;
+		int capacity = 16;
+		while ((capacity / 4) < this.size) {
+			capacity *= 2;
+		}
+		allocate(capacity);
+		final int mask = capacity - 1;
+		for (int i = 0; i < oldFlags.length; i++) {
+			final byte flag = oldFlags[i];
+			if ((flag == FREE) || (flag == REMOVED)) {
+				continue;
+			}
+			final long key = oldKeys[i];
+			int slot = hash(key) & mask;
+			while (this.flags[slot] != FREE) {
+				slot = (slot + 1) & mask;
+			}
+			this.flags[slot] = flag;
+			this.keys[slot] = key;
+			this.ints[slot] = oldInts[i];
+			this.reals[slot] = oldReals[i];
+			this.strings[slot] = oldStrings[i];
+			this.handles[slot] = oldHandles[i];
+		}
+		this.usedSlots = this.size;
+		relinkParents();
+	}
+
+	/**
+	 * Rebuilds the parent index and the parent lists from the live entries.
+	 */
+	private void relinkParents() {
+		final int liveParents = Math.max(this.parentCount, 1);
+		int capacity = 16;
+		while ((capacity / 4) < liveParents) {
+			capacity *= 2;
+		}
+		allocateParents(capacity);
+		for (int i = 0; i < this.flags.length; i++) {
+			final byte flag = this.flags[i];
+			if ((flag != FREE) && (flag != REMOVED)) {
+				link(i, (int) (this.keys[i] >>> 32));
+			}
+		}
+	}
+
+	private void allocate(final int capacity) {
+		this.flags = new byte[capacity];
+		this.keys = new long[capacity];
+		this.ints = new int[capacity];
+		this.reals = new double[capacity];
+		this.strings = new String[capacity];
+		this.handles = new Object[capacity];
+		this.nextInParent = new int[capacity];
+		this.previousInParent = new int[capacity];
+	}
+
+	private void allocateParents(final int capacity) {
+		this.parentKeys = new int[capacity];
+		this.parentHeads = new int[capacity];
+		Arrays.fill(this.parentHeads, NO_PARENT);
+		this.parentCount = 0;
+	}
+
+	private static long key(final int parentKey, final int childKey) {
+		return ((long) parentKey << 32) | (childKey & 0xFFFFFFFFL);
+	}
+
+	private static int hash(final long key) {
+		final long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
 	}
 }
@@ -0,0 +1,169 @@
+package com.etheller.warsmash.viewer5.handlers.w3x.simulation.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Times saving and loading integers and reals in {@link CHashtable} against the
+ * map of maps with boxed values that it replaced. Before timing, both are given
+ * the same random saves, removes and flushes, and exits with status 1 if they
+ * ever load a different value.
+ */
+public class CHashtableBenchmark {
+	private static final int PARENT_KEYS = 256;
+	private static final int CHILD_KEYS = 256;
+	private static final int OPERATIONS = 20000000;
+	private static final int CHECKED_OPERATIONS = 2000000;
+	private static final int RUNS = 5;
+
+	public static void main(final String[] args) {
+		check();
+		final int[] parentKeys = new int[OPERATIONS];
+		final int[] childKeys = new int[OPERATIONS];
+		final Random random = new Random(0);
+		for (int i = 0; i < OPERATIONS; i++) {
+			parentKeys[i] = random.nextInt(PARENT_KEYS);
+			childKeys[i] = random.nextInt(CHILD_KEYS);
+		}
+		for (int run = 0; run < RUNS; run++) {
+			final long clockTime1 = System.currentTimeMillis();
+			final long hashtableSum = runHashtable(parentKeys, childKeys);
+			final long clockTime2 = System.currentTimeMillis();
+			final long mapOfMapsSum = runMapOfMaps(parentKeys, childKeys);
+			final long clockTime3 = System.currentTimeMillis();
+			if (hashtableSum != mapOfMapsSum) {
+				System.err.println("FAILED: " + hashtableSum + " != " + mapOfMapsSum);
+				System.exit(1);
+			}
+			System.out.println("CHashtable: " + (clockTime2 - clockTime1) + " ms, map of maps: "
+					+ (clockTime3 - clockTime2) + " ms");
+		}
+	}
+
+	private static long runHashtable(final int[] parentKeys, final int[] childKeys) {
+		final CHashtable hashtable = new CHashtable();
+		long sum = 0;
+		for (int i = 0; i < OPERATIONS; i++) {
+			final int parentKey = parentKeys[i];
+			final int childKey = childKeys[i];
+			hashtable.saveInteger(parentKey, childKey, hashtable.loadInteger(parentKey, childKey) + 1);
+			hashtable.saveReal(parentKey, childKey, hashtable.loadReal(childKey, parentKey) + 0.5);
+			sum += hashtable.loadInteger(parentKey, childKey);
+		}
+		return sum;
+	}
+
+	private static long runMapOfMaps(final int[] parentKeys, final int[] childKeys) {
+		final MapOfMaps ints = new MapOfMaps();
+		final MapOfMaps reals = new MapOfMaps();
+		long sum = 0;
+		for (int i = 0; i < OPERATIONS; i++) {
+			final int parentKey = parentKeys[i];
+			final int childKey = childKeys[i];
+			final Integer intValue = (Integer) ints.load(parentKey, childKey);
+			ints.save(parentKey, childKey, (intValue == null ? 0 : intValue) + 1);
+			final Double realValue = (Double) reals.load(childKey, parentKey);
+			reals.save(parentKey, childKey, (realValue == null ? 0 : realValue) + 0.5);
+			sum += (Integer) ints.load(parentKey, childKey);
+		}
+		return sum;
+	}
+
+	/**
+	 * Compares the two on random saves, removes and flushes of a few keys, so that
+	 * entries are often removed and their slots reused.
+	 */
+	private static void check() {
+		final CHashtable hashtable = new CHashtable();
+		final MapOfMaps ints = new MapOfMaps();
+		final MapOfMaps booleans = new MapOfMaps();
+		final MapOfMaps strings = new MapOfMaps();
+		final Random random = new Random(1);
+		for (int i = 0; i < CHECKED_OPERATIONS; i++) {
+			final int parentKey = random.nextInt(16);
+			final int childKey = random.nextInt(16);
+			switch (random.nextInt(8)) {
+			case 0:
+				hashtable.saveInteger(parentKey, childKey, i);
+				ints.save(parentKey, childKey, i);
+				break;
+			case 1:
+				hashtable.removeSavedInteger(parentKey, childKey);
+				ints.save(parentKey, childKey, null);
+				break;
+			case 2:
+				hashtable.saveBoolean(parentKey, childKey, (i & 1) != 0);
+				booleans.save(parentKey, childKey, (i & 1) != 0);
+				break;
+			case 3:
+				hashtable.removeSavedBoolean(parentKey, childKey);
+				booleans.save(parentKey, childKey, null);
+				break;
+			case 4:
+				hashtable.saveString(parentKey, childKey, Integer.toString(i));
+				strings.save(parentKey, childKey, Integer.toString(i));
+				break;
+			case 5:
+				hashtable.removeSavedString(parentKey, childKey);
+				strings.save(parentKey, childKey, null);
+				break;
+			case 6:
+				if (random.nextInt(64) == 0) {
+					hashtable.flushChild(parentKey);
+					ints.flushChild(parentKey);
+					booleans.flushChild(parentKey);
+					strings.flushChild(parentKey);
+				}
+				break;
+			default:
+				break;
+			}
+			final Integer intValue = (Integer) ints.load(parentKey, childKey);
+			final Boolean booleanValue = (Boolean) booleans.load(parentKey, childKey);
+			final String stringValue = (String) strings.load(parentKey, childKey);
+			if ((hashtable.haveSavedInteger(parentKey, childKey) != (intValue != null))
+					|| (hashtable.loadInteger(parentKey, childKey) != (intValue == null ? 0 : intValue))
+					|| (hashtable.haveSavedBoolean(parentKey, childKey) != (booleanValue != null))
+					|| (hashtable.loadBoolean(parentKey, childKey) != Boolean.TRUE.equals(booleanValue))
+					|| (hashtable.haveSavedString(parentKey, childKey) != (stringValue != null))) {
+				System.err.println("FAILED: different value for " + parentKey + ", " + childKey + " after " + i
+						+ " operations");
+				System.exit(1);
+			}
+		}
+	}
+
+	/**
+	 * How CHashtable used to store values.
+	 */
+	private static final class MapOfMaps {
+		private final Map<Integer, Map<Integer, Object>> parentKeyToChildTable = new HashMap<>();
+
+		public void save(final Integer parentKey, final Integer childKey, final Object object) {
+			Map<Integer, Object> childTable = this.parentKeyToChildTable.get(parentKey);
+			if (childTable == null) {
+				childTable = new HashMap<>();
+				this.parentKeyToChildTable.put(parentKey, childTable);
+			}
+			if (object == null) {
+				childTable.remove(childKey);
+			}
+			else {
+				childTable.put(childKey, object);
+			}
+		}
+
+		public Object load(final Integer parentKey, final Integer childKey) {
+			final Map<Integer, Object> childTable = this.parentKeyToChildTable.get(parentKey);
+			if (childTable != null) {
+				return childTable.get(childKey);
+			}
+			return null;
+		}
+
+		public void flushChild(final Integer parentKey) {
+			this.parentKeyToChildTable.remove(parentKey);
+		}
+	}
+}
@@ -234,6 +234,8 @@ public class MenuUI {
 	private GlueTextButtonFrame battleNetConnectCancelButton;
 	private DialogWar3 dialog;
 	private Task gameListQueryTask;
+	// the map of the game we asked the server to create, until it says if it needs it
+	private War3Map mapToUpload;
 
 	public MenuUI(final DataSource dataSource, final Viewport uiViewport, final Scene uiScene, final MdxViewer viewer,
 			final WarsmashGdxMultiScreenGame screenManager, final SingleModelScreen menuScreen,
@@ -572,13 +574,20 @@ public class MenuUI {
 			}
 
 			@Override
-			public void gameCreationOk() {
+			public void gameCreationOk(final boolean mapUploadRequired) {
 				System.out.println("NOTE: Server says we created a game OK");
 				// NOTE: immediately following this the server should tell us we joined a game
 				Gdx.app.postRunnable(new Runnable() {
 					@Override
 					public void run() {
 						creatingGame = true;
+						if (mapUploadRequired && (MenuUI.this.mapToUpload != null)) {
+							uploadMap(MenuUI.this.mapToUpload);
+						}
+						else {
+							System.out.println("NOTE: Server already has the map, not uploading it");
+						}
+						MenuUI.this.mapToUpload = null;
 					}
 				});
 			}
@@ -1537,29 +1546,12 @@ public class MenuUI {
 					@Override
 					public void createGame(final String gameName, final String mapPath, final int mapPlayerSlots,
 							final LobbyGameSpeed gameSpeed, final HostedGameVisibility hostedGameVisibility,
-							final long mapChecksum, final War3Map map) {
+							final long mapChecksum, final byte[] mapHash, final War3Map map) {
+						// uploaded once the server says it does not already have it
+						MenuUI.this.mapToUpload = map;
 						MenuUI.this.gamingNetworkConnection.createGame(
 								MenuUI.this.battleNetUI.getGamingNetworkSessionToken(), gameName, mapPath,
-								mapPlayerSlots, gameSpeed, hostedGameVisibility, mapChecksum);
-						final SeekableByteChannel inputChannel = map.getInternalMpqContentsDataSource()
-								.getInputChannel();
-						try {
-							inputChannel.position(0);
-							final ByteBuffer mapDataBuffer = ByteBuffer.allocate(1300).clear();
-							int mapSeqNo = 0;
-							while (inputChannel.read(mapDataBuffer) != -1) {
-								mapDataBuffer.flip();
-								MenuUI.this.gamingNetworkConnection.uploadMapData(
-										MenuUI.this.battleNetUI.getGamingNetworkSessionToken(), mapSeqNo++,
-										mapDataBuffer);
-								mapDataBuffer.clear();
-							}
-							MenuUI.this.gamingNetworkConnection
-									.mapDone(MenuUI.this.battleNetUI.getGamingNetworkSessionToken(), mapSeqNo);
-						}
-						catch (final IOException e) {
-							throw new IllegalStateException(e);
-						}
+								mapPlayerSlots, gameSpeed, hostedGameVisibility, mapChecksum, mapHash);
 					}
 
 					@Override
@@ -1613,6 +1605,25 @@ public class MenuUI {
 		this.glueScreenLoop.play(this.uiScene.audioContext, 0f, 0f, 0f);
 	}
 
+	private void uploadMap(final War3Map map) {
+		final SeekableByteChannel inputChannel = map.getInternalMpqContentsDataSource().getInputChannel();
+		try {
+			inputChannel.position(0);
+			final ByteBuffer mapDataBuffer = ByteBuffer.allocate(1300).clear();
+			int mapSeqNo = 0;
+			while (inputChannel.read(mapDataBuffer) != -1) {
+				mapDataBuffer.flip();
+				this.gamingNetworkConnection.uploadMapData(this.battleNetUI.getGamingNetworkSessionToken(), mapSeqNo++,
+						mapDataBuffer);
+				mapDataBuffer.clear();
+			}
+			this.gamingNetworkConnection.mapDone(this.battleNetUI.getGamingNetworkSessionToken(), mapSeqNo);
+		}
+		catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	private void internalStartMap(final String mapFilename) {
 		this.loadingFrame.setVisible(true);
 		this.loadingBar.setVisible(true);
@@ -1874,6 +1885,10 @@ public class MenuUI {
 							public void framesSkipped(final float skippedCount) {
 
 							}
+
+							@Override
+							public void stateChecksum(final int gameTurnTick, final long checksum) {
+							}
 						});
 					}
 
@@ -4,6 +4,8 @@ import java.awt.Desktop;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.CRC32C;
@@ -48,6 +50,7 @@ import com.etheller.warsmash.viewer5.handlers.w3x.ui.mapsetup.PlayerSlotPaneList
 import com.etheller.warsmash.viewer5.handlers.w3x.ui.mapsetup.TeamSetupPane;
 
 import net.warsmash.uberserver.ChannelServerMessageType;
+import net.warsmash.uberserver.GamingNetwork;
 import net.warsmash.uberserver.HostedGameVisibility;
 import net.warsmash.uberserver.LobbyGameSpeed;
 import net.warsmash.uberserver.LobbyPlayerType;
@@ -639,12 +642,22 @@ public class BattleNetUI {
 
 				final long mapChecksum = BattleNetUI.this.customCreateCurrentMap
 						.computeChecksum(this.mapChecksumCalculator);
+				final byte[] mapHash;
+				try {
+					mapHash = BattleNetUI.this.customCreateCurrentMap
+							.computeDigest(MessageDigest.getInstance(GamingNetwork.MAP_HASH_ALGORITHM));
+				}
+				catch (final NoSuchAlgorithmException e) {
+					e.printStackTrace();
+					actionListener.showError("NETERROR_DEFAULTERROR");
+					return;
+				}
 
 				String mapName = BattleNetUI.this.customCreatePanelCurrentSelectedMapPath;
 				mapName = mapName.substring(Math.max(mapName.lastIndexOf('/'), mapName.lastIndexOf('\\')) + 1);
 
 				actionListener.createGame(gameName, mapName, mapPlayerSlots, gameSpeed, hostedGameVisibility,
-						mapChecksum, BattleNetUI.this.customCreateCurrentMap);
+						mapChecksum, mapHash, BattleNetUI.this.customCreateCurrentMap);
 			}
 		});
 
@@ -32,7 +32,8 @@ public interface BattleNetUIActionListener {
 	void requestJoinGame(String text);
 
 	void createGame(String string, String customCreatePanelCurrentSelectedMapPath, int mapPlayerSlots,
-			LobbyGameSpeed gameSpeed, HostedGameVisibility hostedGameVisibility, long mapChecksum, War3Map map);
+			LobbyGameSpeed gameSpeed, HostedGameVisibility hostedGameVisibility, long mapChecksum, byte[] mapHash,
+			War3Map map);
 
 	void showError(String errorKey);
 
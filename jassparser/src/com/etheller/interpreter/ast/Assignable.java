@@ -1,7 +1,9 @@
 package com.etheller.interpreter.ast;
 
+import com.etheller.interpreter.ast.value.IntegerJassValue;
 import com.etheller.interpreter.ast.value.JassType;
 import com.etheller.interpreter.ast.value.JassValue;
+import com.etheller.interpreter.ast.value.RealJassValue;
 import com.etheller.interpreter.ast.value.visitor.JassTypeGettingValueVisitor;
 
 public class Assignable {
@@ -13,19 +15,29 @@ public class Assignable {
 	}
 
 	public void setValue(final JassValue value) {
+		this.value = checkValue(this.type, value);
+	}
+
+	/**
+	 * @return the value that a variable of the given type holds after being
+	 *         assigned the given value
+	 */
+	public static JassValue checkValue(final JassType type, final JassValue value) {
 		if (value == null) {
-			if (!this.type.isNullable()) {
-				throw new RuntimeException("Type " + this.type.getName() + " cannot be assigned to null!");
+			if (!type.isNullable()) {
+				throw new RuntimeException("Type " + type.getName() + " cannot be assigned to null!");
 			}
-			this.value = this.type.getNullValue();
+			return type.getNullValue();
 		}
-		else {
-			final JassType valueType = value.visit(JassTypeGettingValueVisitor.getInstance());
-			if (!this.type.isAssignableFrom(valueType)) {
-				throw new RuntimeException("Incompatible types " + valueType.getName() + " != " + this.type.getName());
-			}
-			this.value = value;
+		final JassType valueType = value.visit(JassTypeGettingValueVisitor.getInstance());
+		if (!type.isAssignableFrom(valueType)) {
+			throw new RuntimeException("Incompatible types " + valueType.getName() + " != " + type.getName());
+		}
+		if ((type == JassType.REAL) && (valueType == JassType.INTEGER)) {
+			// stored as a real, so that arithmetic on the variable is real arithmetic
+			return new RealJassValue(((IntegerJassValue) value).getValue());
 		}
+		return value;
 	}
 
 	public JassValue getValue() {
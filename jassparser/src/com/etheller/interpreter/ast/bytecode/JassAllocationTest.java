@@ -0,0 +1,82 @@
+package com.etheller.interpreter.ast.bytecode;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+import com.etheller.interpreter.JassLexer;
+import com.etheller.interpreter.JassParser;
+import com.etheller.interpreter.ast.scope.GlobalScope;
+import com.etheller.interpreter.ast.util.JassSettings;
+import com.etheller.interpreter.ast.value.IntegerJassValue;
+import com.etheller.interpreter.ast.visitors.JassProgramVisitor;
+
+/**
+ * Checks that integer and real arithmetic on locals does not allocate when run
+ * on the {@link JassVirtualMachine}, by counting the bytes the thread allocates
+ * while a loop of it runs. Exits with status 1 if the loop allocates more than
+ * {@link #MAX_BYTES_PER_ITERATION} per iteration, which it would if the values
+ * were boxed again.
+ */
+public class JassAllocationTest {
+	private static final int ITERATIONS = 200000;
+	private static final int WARMUP_RUNS = 20;
+	// the call to addScaled still allocates, as it boxes the real that it
+	// returns; the arithmetic should not
+	private static final long MAX_BYTES_PER_ITERATION = 64;
+	private static final String PROGRAM = String.join("\n", //
+			"function addScaled takes integer a, real scale returns real", //
+			"    return a * scale + 0.5", //
+			"endfunction", //
+			"function run takes integer n returns real", //
+			"    local integer i = 0", //
+			"    local real sum = 0.0", //
+			"    loop", //
+			"        exitwhen i >= n", //
+			"        set sum = sum + addScaled(i - (i / 7) * 7, 1.25)", //
+			"        set i = i + 1", //
+			"    endloop", //
+			"    return sum", //
+			"endfunction", //
+			"");
+
+	public static void main(final String[] args) {
+		JassSettings.USE_BYTECODE_INTERPRETER = true;
+		final long unboxedBytes = measureBytesPerIteration();
+		JassSettings.UNBOX_ARITHMETIC = false;
+		final long boxedBytes = measureBytesPerIteration();
+		JassSettings.UNBOX_ARITHMETIC = true;
+		System.out.println("unboxed: " + unboxedBytes + " bytes per iteration");
+		System.out.println("boxed: " + boxedBytes + " bytes per iteration");
+		if (unboxedBytes > MAX_BYTES_PER_ITERATION) {
+			System.err.println("FAILED: more than " + MAX_BYTES_PER_ITERATION + " bytes per iteration");
+			System.exit(1);
+		}
+		System.out.println("OK");
+	}
+
+	private static long measureBytesPerIteration() {
+		// parsed again so that the functions are compiled with the current settings
+		final GlobalScope globals = load(PROGRAM);
+		final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		final long threadId = Thread.currentThread().getId();
+		long minBytes = Long.MAX_VALUE;
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			final long before = threadBean.getThreadAllocatedBytes(threadId);
+			globals.getFunctionByName("run").call(Arrays.asList(IntegerJassValue.of(ITERATIONS)), globals, null);
+			minBytes = Math.min(minBytes, threadBean.getThreadAllocatedBytes(threadId) - before);
+		}
+		return minBytes / ITERATIONS;
+	}
+
+	static GlobalScope load(final String program) {
+		final JassProgramVisitor jassProgramVisitor = new JassProgramVisitor();
+		final JassLexer lexer = new JassLexer(CharStreams.fromString(program));
+		final JassParser parser = new JassParser(new CommonTokenStream(lexer));
+		jassProgramVisitor.visit(parser.program());
+		return jassProgramVisitor.getGlobals();
+	}
+}
@@ -0,0 +1,71 @@
+package com.etheller.interpreter.ast.bytecode;
+
+import com.etheller.interpreter.ast.value.JassType;
+
+/**
+ * A user function lowered to {@link JassBytecodeOps} instructions.
+ */
+public final class JassBytecode {
+	private final int[] code;
+	private final Object[] constants;
+	private final JassType[] localTypes;
+	private final String[] localNames;
+	private final int parameterCount;
+	private final boolean unboxedParameters;
+	private final int maxStackSize;
+
+	public JassBytecode(final int[] code, final Object[] constants, final JassType[] localTypes,
+			final String[] localNames, final int parameterCount, final boolean unboxedParameters,
+			final int maxStackSize) {
+		this.code = code;
+		this.constants = constants;
+		this.localTypes = localTypes;
+		this.localNames = localNames;
+		this.parameterCount = parameterCount;
+		this.unboxedParameters = unboxedParameters;
+		this.maxStackSize = maxStackSize;
+	}
+
+	public int[] getCode() {
+		return this.code;
+	}
+
+	public Object[] getConstants() {
+		return this.constants;
+	}
+
+	public JassType getLocalType(final int slot) {
+		return this.localTypes[slot];
+	}
+
+	public String getLocalName(final int slot) {
+		return this.localNames[slot];
+	}
+
+	/**
+	 * Parameters occupy the first local slots, in order.
+	 */
+	public int getParameterCount() {
+		return this.parameterCount;
+	}
+
+	/**
+	 * @return true if integer and real parameters are moved to the unboxed stacks
+	 *         when the function is called
+	 */
+	public boolean hasUnboxedParameters() {
+		return this.unboxedParameters;
+	}
+
+	public int getLocalCount() {
+		return this.localTypes.length;
+	}
+
+	/**
+	 * @return the number of stack slots a call needs: its locals plus the deepest
+	 *         operand stack reached while evaluating expressions
+	 */
+	public int getFrameSize() {
+		return this.localTypes.length + this.maxStackSize;
+	}
+}
@@ -0,0 +1,439 @@
+package com.etheller.interpreter.ast.bytecode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.etheller.interpreter.ast.debug.DebuggingJassFunction;
+import com.etheller.interpreter.ast.expression.JassExpression;
+import com.etheller.interpreter.ast.function.AbstractJassFunction;
+import com.etheller.interpreter.ast.function.JassFunction;
+import com.etheller.interpreter.ast.function.JassParameter;
+import com.etheller.interpreter.ast.function.UserJassFunction;
+import com.etheller.interpreter.ast.scope.GlobalScope;
+import com.etheller.interpreter.ast.scope.GlobalScopeAssignable;
+import com.etheller.interpreter.ast.statement.JassExitWhenStatement;
+import com.etheller.interpreter.ast.statement.JassLocalStatement;
+import com.etheller.interpreter.ast.statement.JassStatement;
+import com.etheller.interpreter.ast.util.JassSettings;
+import com.etheller.interpreter.ast.value.IntegerJassValue;
+import com.etheller.interpreter.ast.value.JassType;
+import com.etheller.interpreter.ast.value.JassValue;
+
+/**
+ * Lowers the syntax tree of one user function to {@link JassBytecode}. Each
+ * statement and expression emits its own instructions through
+ * {@link JassStatement#compile(JassBytecodeCompiler)} and
+ * {@link JassExpression#compile(JassBytecodeCompiler)}.
+ *
+ * Local names are resolved to slots in the order the locals are declared, the
+ * same way the tree walker creates them as it runs, so a name used before its
+ * local is declared still refers to the global.
+ *
+ * Integer and real arithmetic whose operand types are known from the
+ * declarations of locals, globals and functions is compiled to instructions on
+ * unboxed values, so only the final result of an expression is boxed. A local
+ * that the tree walker leaves without a value when it is declared (a real
+ * without an initializer) is kept boxed and its type treated as unknown, so
+ * that reading it before it is set fails with the same error as in the tree
+ * walker. The same goes for integer and real globals that have no value yet.
+ */
+public final class JassBytecodeCompiler {
+	private final UserJassFunction function;
+	private final GlobalScope globalScope;
+	private final boolean unboxArithmetic = JassSettings.UNBOX_ARITHMETIC;
+	private int[] code = new int[64];
+	private int codeLength;
+	private final List<Object> constants = new ArrayList<>();
+	private final Map<String, Integer> globalReferences = new HashMap<>();
+	private final Map<String, Integer> callSites = new HashMap<>();
+	private final Map<String, Integer> localSlots = new HashMap<>();
+	private final List<JassType> localTypes = new ArrayList<>();
+	private final List<String> localNames = new ArrayList<>();
+	// integer and real locals that are not unboxed, because they may be read
+	// before they have a value
+	private final BitSet boxedLocals = new BitSet();
+	private final Deque<List<Integer>> loopExits = new ArrayDeque<>();
+	private int stackSize;
+	private int maxStackSize;
+
+	public JassBytecodeCompiler(final UserJassFunction function, final GlobalScope globalScope) {
+		this.function = function;
+		this.globalScope = globalScope;
+	}
+
+	public JassBytecode compile() {
+		for (final JassParameter parameter : this.function.getParameters()) {
+			defineLocal(parameter.getIdentifier(), parameter.getType());
+		}
+		compileStatements(this.function.getStatements());
+		emit(JassBytecodeOps.END);
+		return new JassBytecode(Arrays.copyOf(this.code, this.codeLength), this.constants.toArray(),
+				this.localTypes.toArray(new JassType[0]), this.localNames.toArray(new String[0]),
+				this.function.getParameters().size(), this.unboxArithmetic, this.maxStackSize);
+	}
+
+	public void compileStatements(final List<JassStatement> statements) {
+		for (final JassStatement statement : statements) {
+			statement.compile(this);
+		}
+	}
+
+	public void compileExpression(final JassExpression expression) {
+		expression.compile(this);
+	}
+
+	public void compileInt(final JassExpression expression) {
+		expression.compileInt(this);
+	}
+
+	public void compileReal(final JassExpression expression) {
+		expression.compileReal(this);
+	}
+
+	public JassType getLocalType(final int slot) {
+		return this.localTypes.get(slot);
+	}
+
+	/**
+	 * @return the type of every value the local can hold, or null if it may not
+	 *         have a value yet
+	 */
+	public JassType getLocalStaticType(final int slot) {
+		if (this.boxedLocals.get(slot)) {
+			return null;
+		}
+		return getLocalType(slot);
+	}
+
+	/**
+	 * @return true if the local is an integer or real kept unboxed, which the
+	 *         *_INT and *_REAL instructions work on
+	 */
+	public boolean isUnboxedLocal(final int slot) {
+		final JassType type = getLocalType(slot);
+		return this.unboxArithmetic && ((type == JassType.INTEGER) || (type == JassType.REAL))
+				&& !this.boxedLocals.get(slot);
+	}
+
+	/**
+	 * @return false if {@link JassSettings#UNBOX_ARITHMETIC} is off, in which case
+	 *         arithmetic is compiled to the boxed instructions even where the
+	 *         types of the operands are known
+	 */
+	public boolean isUnboxingArithmetic() {
+		return this.unboxArithmetic;
+	}
+
+	/**
+	 * Emits code that pushes the value of the expression as it will be stored in
+	 * a local of the given type by {@link #emitStoreLocal(int)}.
+	 */
+	public void compileAssignedValue(final JassType targetType, final JassExpression expression) {
+		final JassType valueType = expression.getStaticType(this);
+		if (!this.unboxArithmetic) {
+			expression.compile(this);
+		}
+		else if (targetType == JassType.INTEGER) {
+			if (valueType == JassType.INTEGER) {
+				expression.compileInt(this);
+			}
+			else {
+				expression.compile(this);
+				emit(JassBytecodeOps.CHECK_TYPE, addConstant(targetType));
+				emit(JassBytecodeOps.UNBOX_INT);
+			}
+		}
+		else if (targetType == JassType.REAL) {
+			if ((valueType == JassType.INTEGER) || (valueType == JassType.REAL)) {
+				expression.compileReal(this);
+			}
+			else {
+				expression.compile(this);
+				emit(JassBytecodeOps.CHECK_TYPE, addConstant(targetType));
+				emit(JassBytecodeOps.UNBOX_REAL);
+			}
+		}
+		else {
+			expression.compile(this);
+		}
+	}
+
+	/**
+	 * Emits code that stores the value of the expression in the local.
+	 */
+	public void compileLocalAssignment(final int slot, final JassExpression expression) {
+		if (isUnboxedLocal(slot)) {
+			compileAssignedValue(getLocalType(slot), expression);
+		}
+		else {
+			expression.compile(this);
+		}
+		emitStoreLocal(slot);
+	}
+
+	public void emitStoreLocal(final int slot) {
+		final JassType type = getLocalType(slot);
+		if (!isUnboxedLocal(slot)) {
+			emit(JassBytecodeOps.STORE_LOCAL, slot);
+		}
+		else if (type == JassType.INTEGER) {
+			emit(JassBytecodeOps.STORE_LOCAL_INT, slot);
+		}
+		else if (type == JassType.REAL) {
+			emit(JassBytecodeOps.STORE_LOCAL_REAL, slot);
+		}
+		else {
+			emit(JassBytecodeOps.STORE_LOCAL, slot);
+		}
+	}
+
+	public void emitLoadLocal(final int slot) {
+		final JassType type = getLocalType(slot);
+		if (!isUnboxedLocal(slot)) {
+			emit(JassBytecodeOps.LOAD_LOCAL, slot);
+		}
+		else if (type == JassType.INTEGER) {
+			emit(JassBytecodeOps.LOAD_LOCAL_INT, slot);
+			emit(JassBytecodeOps.BOX_INT);
+		}
+		else if (type == JassType.REAL) {
+			emit(JassBytecodeOps.LOAD_LOCAL_REAL, slot);
+			emit(JassBytecodeOps.BOX_REAL);
+		}
+		else {
+			emit(JassBytecodeOps.LOAD_LOCAL, slot);
+		}
+	}
+
+	/**
+	 * Defines a local declared without a value, and emits its initialization,
+	 * which gives it the same value as in the tree walker.
+	 *
+	 * @return the slot of the local
+	 */
+	public int defineUninitializedLocal(final String name, final JassType type) {
+		final int slot = defineLocal(name, type);
+		final JassValue initialValue = JassLocalStatement.initialValue(type);
+		if (this.unboxArithmetic && (type == JassType.INTEGER)) {
+			emit(JassBytecodeOps.PUSH_INT, ((IntegerJassValue) initialValue).getValue());
+			emit(JassBytecodeOps.STORE_LOCAL_INT, slot);
+		}
+		else {
+			if ((type == JassType.REAL) && (initialValue == null)) {
+				this.boxedLocals.set(slot);
+			}
+			emit(JassBytecodeOps.INIT_LOCAL, slot);
+		}
+		return slot;
+	}
+
+	/**
+	 * @return the declared type of the global, or null if there is no such global
+	 *         yet, or if it is an integer or real without a value yet
+	 */
+	public JassType getGlobalType(final String name) {
+		final GlobalScopeAssignable global = this.globalScope.getAssignableGlobal(name);
+		if (global == null) {
+			return null;
+		}
+		final JassType type = global.getType();
+		if (((type == JassType.INTEGER) || (type == JassType.REAL)) && (global.getValue() == null)) {
+			// not set yet; once it is, it can't be set back to null
+			return null;
+		}
+		return type;
+	}
+
+	/**
+	 * @return the declared return type of the function, or null if it is not
+	 *         defined yet
+	 */
+	public JassType getFunctionReturnType(final String name) {
+		JassFunction function = this.globalScope.getFunctionByName(name);
+		if (function instanceof DebuggingJassFunction) {
+			function = ((DebuggingJassFunction) function).getDelegate();
+		}
+		if (function instanceof AbstractJassFunction) {
+			return ((AbstractJassFunction) function).getReturnType();
+		}
+		return null;
+	}
+
+	/**
+	 * @return the slot of the local with the given name, or -1 if the name refers
+	 *         to a global
+	 */
+	public int getLocalSlot(final String name) {
+		final Integer slot = this.localSlots.get(name);
+		if (slot == null) {
+			return -1;
+		}
+		return slot;
+	}
+
+	public int defineLocal(final String name, final JassType type) {
+		final int slot = this.localTypes.size();
+		this.localTypes.add(type);
+		this.localNames.add(name);
+		this.localSlots.put(name, slot);
+		return slot;
+	}
+
+	public int addConstant(final Object constant) {
+		final int index = this.constants.size();
+		this.constants.add(constant);
+		return index;
+	}
+
+	public int getGlobalReference(final String name) {
+		Integer index = this.globalReferences.get(name);
+		if (index == null) {
+			index = addConstant(new JassGlobalReference(name));
+			this.globalReferences.put(name, index);
+		}
+		return index;
+	}
+
+	public int getCallSite(final String functionName) {
+		Integer index = this.callSites.get(functionName);
+		if (index == null) {
+			index = addConstant(new JassCallSite(functionName));
+			this.callSites.put(functionName, index);
+		}
+		return index;
+	}
+
+	public void emit(final int opcode) {
+		adjustStack(opcode, 0);
+		append(opcode);
+	}
+
+	public void emit(final int opcode, final int operand) {
+		adjustStack(opcode, 0);
+		append(opcode);
+		append(operand);
+	}
+
+	public void emitCall(final String functionName, final int argumentCount, final boolean discardResult) {
+		final int opcode = discardResult ? JassBytecodeOps.CALL_DISCARD : JassBytecodeOps.CALL;
+		adjustStack(opcode, argumentCount);
+		append(opcode);
+		append(getCallSite(functionName));
+		append(argumentCount);
+	}
+
+	/**
+	 * Emits a jump whose target is filled in later by {@link #patchJump(int)}.
+	 *
+	 * @return the position of the jump target operand
+	 */
+	public int emitJump(final int opcode) {
+		emit(opcode, -1);
+		return this.codeLength - 1;
+	}
+
+	/**
+	 * Points a jump emitted by {@link #emitJump(int)} at the next instruction.
+	 */
+	public void patchJump(final int jumpOperandPosition) {
+		this.code[jumpOperandPosition] = this.codeLength;
+	}
+
+	public int getPosition() {
+		return this.codeLength;
+	}
+
+	public void beginLoop() {
+		this.loopExits.push(new ArrayList<Integer>());
+	}
+
+	public void endLoop() {
+		for (final int exit : this.loopExits.pop()) {
+			patchJump(exit);
+		}
+	}
+
+	/**
+	 * Emits the jump out of the innermost loop for an exitwhen whose condition is
+	 * on the stack.
+	 */
+	public void emitExitWhen() {
+		final List<Integer> exits = this.loopExits.peek();
+		if (exits != null) {
+			exits.add(emitJump(JassBytecodeOps.JUMP_IF_TRUE));
+		}
+		else {
+			// the tree walker returns the loop exit notice from the function in this
+			// case, so do the same
+			final int skip = emitJump(JassBytecodeOps.JUMP_IF_FALSE);
+			emit(JassBytecodeOps.PUSH_CONSTANT, addConstant(JassExitWhenStatement.LOOP_EXIT_NOTICE));
+			emit(JassBytecodeOps.RETURN);
+			patchJump(skip);
+		}
+	}
+
+	private void adjustStack(final int opcode, final int argumentCount) {
+		switch (opcode) {
+		case JassBytecodeOps.PUSH_CONSTANT:
+		case JassBytecodeOps.PUSH_INT:
+		case JassBytecodeOps.PUSH_REAL:
+		case JassBytecodeOps.LOAD_LOCAL:
+		case JassBytecodeOps.LOAD_LOCAL_INT:
+		case JassBytecodeOps.LOAD_LOCAL_REAL:
+		case JassBytecodeOps.LOAD_GLOBAL:
+		case JassBytecodeOps.FUNCTION_REFERENCE:
+			this.stackSize++;
+			break;
+		case JassBytecodeOps.STORE_LOCAL:
+		case JassBytecodeOps.STORE_LOCAL_INT:
+		case JassBytecodeOps.STORE_LOCAL_REAL:
+		case JassBytecodeOps.STORE_GLOBAL:
+		case JassBytecodeOps.ARITHMETIC:
+		case JassBytecodeOps.ADD_INT:
+		case JassBytecodeOps.SUBTRACT_INT:
+		case JassBytecodeOps.MULTIPLY_INT:
+		case JassBytecodeOps.DIVIDE_INT:
+		case JassBytecodeOps.ADD_REAL:
+		case JassBytecodeOps.SUBTRACT_REAL:
+		case JassBytecodeOps.MULTIPLY_REAL:
+		case JassBytecodeOps.DIVIDE_REAL:
+		case JassBytecodeOps.COMPARE_INT:
+		case JassBytecodeOps.COMPARE_REAL:
+		case JassBytecodeOps.JUMP_IF_FALSE:
+		case JassBytecodeOps.JUMP_IF_TRUE:
+		case JassBytecodeOps.RETURN:
+			this.stackSize--;
+			break;
+		case JassBytecodeOps.STORE_LOCAL_ARRAY:
+		case JassBytecodeOps.STORE_GLOBAL_ARRAY:
+			this.stackSize -= 2;
+			break;
+		case JassBytecodeOps.CALL:
+			this.stackSize += 1 - argumentCount;
+			break;
+		case JassBytecodeOps.CALL_DISCARD:
+			this.stackSize -= argumentCount;
+			break;
+		default:
+			// LINE, INIT_LOCAL, array loads, unary operations, boxing, jumps and
+			// returns without a value leave the stack size unchanged
+			break;
+		}
+		if (this.stackSize > this.maxStackSize) {
+			this.maxStackSize = this.stackSize;
+		}
+	}
+
+	private void append(final int value) {
+		if (this.codeLength == this.code.length) {
+			this.code = Arrays.copyOf(this.code, this.code.length * 2);
+		}
+		this.code[this.codeLength++] = value;
+	}
+}
@@ -0,0 +1,99 @@
+package com.etheller.interpreter.ast.bytecode;
+
+/**
+ * Instruction set of {@link JassVirtualMachine}. Each instruction is an opcode
+ * followed by its int operands in the code array. Locals (including parameters)
+ * are addressed by frame slot, everything else that is named (globals,
+ * functions) and all literal values by constant pool index.
+ *
+ * Instructions named *_INT and *_REAL work on unboxed values, which are kept in
+ * the virtual machine's primitive stacks at the same stack position instead of
+ * as a JassValue. Integer and real locals (and parameters) always live there.
+ * The compiler only emits these instructions where the static types of the
+ * operands are known, and boxes values where they leave for a native, a
+ * global, an array or a return.
+ */
+public final class JassBytecodeOps {
+	// LINE lineNumber
+	public static final int LINE = 1;
+	// PUSH_CONSTANT constant
+	public static final int PUSH_CONSTANT = 2;
+	// LOAD_LOCAL slot
+	public static final int LOAD_LOCAL = 3;
+	// STORE_LOCAL slot; pops value
+	public static final int STORE_LOCAL = 4;
+	// INIT_LOCAL slot; local declared without a value
+	public static final int INIT_LOCAL = 5;
+	// LOAD_GLOBAL globalReference
+	public static final int LOAD_GLOBAL = 6;
+	// STORE_GLOBAL globalReference; pops value
+	public static final int STORE_GLOBAL = 7;
+	// LOAD_LOCAL_ARRAY slot; pops index
+	public static final int LOAD_LOCAL_ARRAY = 8;
+	// STORE_LOCAL_ARRAY slot; pops value, then index
+	public static final int STORE_LOCAL_ARRAY = 9;
+	// LOAD_GLOBAL_ARRAY globalReference; pops index
+	public static final int LOAD_GLOBAL_ARRAY = 10;
+	// STORE_GLOBAL_ARRAY globalReference; pops value, then index
+	public static final int STORE_GLOBAL_ARRAY = 11;
+	// ARITHMETIC arithmeticSign; pops right, then left
+	public static final int ARITHMETIC = 12;
+	public static final int NEGATE = 13;
+	public static final int NOT = 14;
+	// FUNCTION_REFERENCE callSite
+	public static final int FUNCTION_REFERENCE = 15;
+	// CALL callSite argumentCount; pops arguments, pushes result
+	public static final int CALL = 16;
+	// CALL_DISCARD callSite argumentCount; pops arguments
+	public static final int CALL_DISCARD = 17;
+	// JUMP target
+	public static final int JUMP = 18;
+	// JUMP_IF_FALSE target; pops condition
+	public static final int JUMP_IF_FALSE = 19;
+	// JUMP_IF_TRUE target; pops condition
+	public static final int JUMP_IF_TRUE = 20;
+	// RETURN; pops value
+	public static final int RETURN = 21;
+	public static final int RETURN_NOTHING = 22;
+	// end of the function body, reached without a return statement
+	public static final int END = 23;
+
+	// PUSH_INT value
+	public static final int PUSH_INT = 24;
+	// PUSH_REAL constant
+	public static final int PUSH_REAL = 25;
+	// LOAD_LOCAL_INT slot
+	public static final int LOAD_LOCAL_INT = 26;
+	// LOAD_LOCAL_REAL slot
+	public static final int LOAD_LOCAL_REAL = 27;
+	public static final int UNBOX_INT = 28;
+	public static final int UNBOX_REAL = 29;
+	public static final int BOX_INT = 30;
+	public static final int BOX_REAL = 31;
+	public static final int INT_TO_REAL = 32;
+	// ADD_INT etc.; pop right, then left
+	public static final int ADD_INT = 33;
+	public static final int SUBTRACT_INT = 34;
+	public static final int MULTIPLY_INT = 35;
+	public static final int DIVIDE_INT = 36;
+	public static final int NEGATE_INT = 37;
+	public static final int ADD_REAL = 38;
+	public static final int SUBTRACT_REAL = 39;
+	public static final int MULTIPLY_REAL = 40;
+	public static final int DIVIDE_REAL = 41;
+	public static final int NEGATE_REAL = 42;
+	// COMPARE_INT arithmeticSign; pops right, then left, pushes a boolean
+	public static final int COMPARE_INT = 43;
+	// COMPARE_REAL arithmeticSign; pops right, then left, pushes a boolean
+	public static final int COMPARE_REAL = 44;
+	// STORE_LOCAL_INT slot; pops unboxed integer
+	public static final int STORE_LOCAL_INT = 45;
+	// STORE_LOCAL_REAL slot; pops unboxed real
+	public static final int STORE_LOCAL_REAL = 46;
+	// CHECK_TYPE type; checks the value on top of the stack as if it was assigned
+	// to a variable of the type
+	public static final int CHECK_TYPE = 47;
+
+	private JassBytecodeOps() {
+	}
+}
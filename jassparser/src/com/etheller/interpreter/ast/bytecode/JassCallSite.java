@@ -0,0 +1,78 @@
+package com.etheller.interpreter.ast.bytecode;
+
+import com.etheller.interpreter.ast.debug.DebuggingJassFunction;
+import com.etheller.interpreter.ast.function.JassFunction;
+import com.etheller.interpreter.ast.function.NativeJassFunction;
+import com.etheller.interpreter.ast.function.UserJassFunction;
+import com.etheller.interpreter.ast.scope.GlobalScope;
+
+/**
+ * A function named in compiled code, either called or referenced with
+ * "function". The name is looked up the first time the instruction runs. When
+ * it names a user function, calls to it push a frame onto the virtual machine
+ * instead of going through {@link JassFunction#call}, and when it names a
+ * native, the native reads its arguments from the stack.
+ */
+public final class JassCallSite {
+	private final String functionName;
+	private JassFunction function;
+	private UserJassFunction userFunction;
+	private NativeJassFunction nativeFunction;
+	private DebuggingJassFunction debuggingFunction;
+
+	public JassCallSite(final String functionName) {
+		this.functionName = functionName;
+	}
+
+	public String getFunctionName() {
+		return this.functionName;
+	}
+
+	/**
+	 * @return the function, or null if it is not defined (yet)
+	 */
+	public JassFunction resolve(final GlobalScope globalScope) {
+		JassFunction function = this.function;
+		if (function == null) {
+			function = globalScope.getFunctionByName(this.functionName);
+			if (function == null) {
+				return null;
+			}
+			JassFunction implementation = function;
+			if (implementation instanceof DebuggingJassFunction) {
+				this.debuggingFunction = (DebuggingJassFunction) implementation;
+				implementation = this.debuggingFunction.getDelegate();
+			}
+			if (implementation instanceof UserJassFunction) {
+				this.userFunction = (UserJassFunction) implementation;
+			}
+			else if (implementation instanceof NativeJassFunction) {
+				this.nativeFunction = (NativeJassFunction) implementation;
+			}
+			this.function = function;
+		}
+		return function;
+	}
+
+	/**
+	 * @return the user function behind a resolved call site, or null for natives
+	 */
+	public UserJassFunction getUserFunction() {
+		return this.userFunction;
+	}
+
+	/**
+	 * @return the native behind a resolved call site, or null for user functions
+	 */
+	public NativeJassFunction getNativeFunction() {
+		return this.nativeFunction;
+	}
+
+	/**
+	 * @return the debugging wrapper around a resolved call site, if any, whose
+	 *         stack element must be pushed for calls that bypass it
+	 */
+	public DebuggingJassFunction getDebuggingFunction() {
+		return this.debuggingFunction;
+	}
+}
@@ -0,0 +1,46 @@
+package com.etheller.interpreter.ast.bytecode;
+
+import com.etheller.interpreter.ast.scope.GlobalScope;
+import com.etheller.interpreter.ast.scope.GlobalScopeAssignable;
+import com.etheller.interpreter.ast.value.visitor.ArrayPrimitiveTypeVisitor;
+
+/**
+ * A global variable named in compiled code. The name is looked up the first
+ * time the instruction runs and the variable is used directly from then on.
+ */
+public final class JassGlobalReference {
+	private final String name;
+	private GlobalScopeAssignable assignable;
+
+	public JassGlobalReference(final String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public GlobalScopeAssignable resolve(final GlobalScope globalScope) {
+		GlobalScopeAssignable assignable = this.assignable;
+		if (assignable == null) {
+			assignable = globalScope.getAssignableGlobal(this.name);
+			if (assignable == null) {
+				throw new RuntimeException("Undefined global: " + this.name);
+			}
+			this.assignable = assignable;
+		}
+		return assignable;
+	}
+
+	/**
+	 * Same as {@link #resolve(GlobalScope)}, but rejects array variables, which
+	 * can only be assigned by index.
+	 */
+	public GlobalScopeAssignable resolveForAssignment(final GlobalScope globalScope) {
+		final GlobalScopeAssignable assignable = resolve(globalScope);
+		if (assignable.getType().visit(ArrayPrimitiveTypeVisitor.getInstance()) != null) {
+			throw new RuntimeException("Unable to assign array variable: " + this.name);
+		}
+		return assignable;
+	}
+}
@@ -0,0 +1,102 @@
+package com.etheller.interpreter.ast.bytecode;
+
+import java.util.Arrays;
+
+import com.etheller.interpreter.ast.scope.GlobalScope;
+import com.etheller.interpreter.ast.util.JassSettings;
+import com.etheller.interpreter.ast.value.IntegerJassValue;
+
+/**
+ * Times the same JASS functions on the {@link JassVirtualMachine}, with and
+ * without {@link JassSettings#UNBOX_ARITHMETIC}, and on the tree walker. Each is
+ * run a few times first so that the JIT has compiled them, then the best of the
+ * timed runs is printed.
+ *
+ * The interpreters share the JIT's profile of the code they have in common, so
+ * the one that runs first is favoured. Give one of "walker", "boxed" or
+ * "unboxed" to run only that one, in a JVM of its own.
+ */
+public class JassInterpreterBenchmark {
+	private static final int WARMUP_RUNS = 10;
+	private static final int TIMED_RUNS = 10;
+	private static final String PROGRAM = String.join("\n", //
+			"function Fib takes integer n returns integer", //
+			"    if n < 2 then", //
+			"        return n", //
+			"    endif", //
+			"    return Fib(n - 1) + Fib(n - 2)", //
+			"endfunction", //
+			"function Arithmetic takes integer n returns real", //
+			"    local integer i = 0", //
+			"    local real sum = 0.0", //
+			"    loop", //
+			"        exitwhen i >= n", //
+			"        set sum = sum + (i - (i / 7) * 7) * 1.25 + 0.5", //
+			"        set i = i + 1", //
+			"    endloop", //
+			"    return sum", //
+			"endfunction", //
+			"function Square takes real x returns real", //
+			"    return x * x", //
+			"endfunction", //
+			"function Calls takes integer n returns real", //
+			"    local integer i = 0", //
+			"    local real sum = 0.0", //
+			"    loop", //
+			"        exitwhen i >= n", //
+			"        set sum = sum + Square(i)", //
+			"        set i = i + 1", //
+			"    endloop", //
+			"    return sum", //
+			"endfunction", //
+			"");
+
+	public static void main(final String[] args) {
+		final boolean useBytecodeInterpreter = JassSettings.USE_BYTECODE_INTERPRETER;
+		final boolean unboxArithmetic = JassSettings.UNBOX_ARITHMETIC;
+		final String only = args.length > 0 ? args[0] : null;
+		try {
+			if ((only == null) || only.equals("walker")) {
+				JassSettings.USE_BYTECODE_INTERPRETER = false;
+				run("tree walker");
+			}
+			if ((only == null) || only.equals("boxed")) {
+				JassSettings.USE_BYTECODE_INTERPRETER = true;
+				JassSettings.UNBOX_ARITHMETIC = false;
+				run("bytecode, boxed");
+			}
+			if ((only == null) || only.equals("unboxed")) {
+				JassSettings.USE_BYTECODE_INTERPRETER = true;
+				JassSettings.UNBOX_ARITHMETIC = true;
+				run("bytecode, unboxed");
+			}
+		}
+		finally {
+			JassSettings.USE_BYTECODE_INTERPRETER = useBytecodeInterpreter;
+			JassSettings.UNBOX_ARITHMETIC = unboxArithmetic;
+		}
+	}
+
+	private static void run(final String name) {
+		// parsed again so that the functions are compiled with the current settings
+		final GlobalScope globals = JassAllocationTest.load(PROGRAM);
+		System.out.println(name + ":");
+		time(globals, "Fib", 22);
+		time(globals, "Arithmetic", 200000);
+		time(globals, "Calls", 200000);
+	}
+
+	private static void time(final GlobalScope globals, final String functionName, final int argument) {
+		long bestNanos = Long.MAX_VALUE;
+		for (int i = 0; i < (WARMUP_RUNS + TIMED_RUNS); i++) {
+			final long start = System.nanoTime();
+			globals.getFunctionByName(functionName).call(Arrays.asList(IntegerJassValue.of(argument)), globals,
+					null);
+			final long nanos = System.nanoTime() - start;
+			if (i >= WARMUP_RUNS) {
+				bestNanos = Math.min(bestNanos, nanos);
+			}
+		}
+		System.out.println("    " + functionName + "(" + argument + "): " + (bestNanos / 1000) + " us");
+	}
+}
@@ -0,0 +1,72 @@
+package com.etheller.interpreter.ast.bytecode;
+
+import com.etheller.interpreter.ast.debug.JassStackElement;
+import com.etheller.interpreter.ast.function.UserJassFunction;
+import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
+import com.etheller.interpreter.ast.value.JassValue;
+
+/**
+ * A JASS thread that is suspended by a sleep (TriggerSleepAction). It holds a
+ * copy of the part of the {@link JassVirtualMachine} stack that belongs to the
+ * thread: its call frames and the values in them, which is usually a few
+ * hundred bytes. Whoever suspended the thread decides when to {@link #resume()}
+ * it; nothing runs in between, so suspended threads cost no Java thread and
+ * resume in whatever order their owner resumes them.
+ */
+public final class JassThread {
+	private final JassVirtualMachine virtualMachine;
+	private TriggerExecutionScope triggerScope;
+
+	UserJassFunction[] frameFunctions;
+	JassBytecode[] frameBytecodes;
+	// relative to the base of the first frame
+	int[] frameBases;
+	int[] framePcs;
+	boolean[] frameDiscardsResult;
+	boolean[] framePushedStackElement;
+	JassValue[] stack;
+	int[] intStack;
+	double[] realStack;
+	// the debug stack elements pushed by the frames, bottom first
+	JassStackElement[] stackElements;
+	// the debug stack element of the function the thread was started with, which
+	// its caller pushed
+	JassStackElement rootStackElement;
+
+	private Runnable continuation;
+
+	JassThread(final JassVirtualMachine virtualMachine) {
+		this.virtualMachine = virtualMachine;
+	}
+
+	public TriggerExecutionScope getTriggerScope() {
+		return this.triggerScope;
+	}
+
+	void setTriggerScope(final TriggerExecutionScope triggerScope) {
+		this.triggerScope = triggerScope;
+	}
+
+	/**
+	 * @param continuation run after the function the thread was started with
+	 *                     returns, for example to run the remaining actions of a
+	 *                     trigger
+	 */
+	public void setContinuation(final Runnable continuation) {
+		this.continuation = continuation;
+	}
+
+	/**
+	 * Continues the thread where it was suspended, until it returns or sleeps
+	 * again.
+	 */
+	public void resume() {
+		if (this.virtualMachine.resume(this)) {
+			final Runnable continuation = this.continuation;
+			this.continuation = null;
+			if (continuation != null) {
+				continuation.run();
+			}
+		}
+	}
+}
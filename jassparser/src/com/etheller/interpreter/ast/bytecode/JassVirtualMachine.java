@@ -0,0 +1,839 @@
+package com.etheller.interpreter.ast.bytecode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.etheller.interpreter.ast.Assignable;
+import com.etheller.interpreter.ast.debug.DebuggingJassFunction;
+import com.etheller.interpreter.ast.debug.JassException;
+import com.etheller.interpreter.ast.debug.JassProfiler;
+import com.etheller.interpreter.ast.debug.JassStackElement;
+import com.etheller.interpreter.ast.expression.ArithmeticJassExpression;
+import com.etheller.interpreter.ast.expression.ArithmeticSign;
+import com.etheller.interpreter.ast.expression.ArithmeticSigns;
+import com.etheller.interpreter.ast.function.JassFunction;
+import com.etheller.interpreter.ast.function.JassParameter;
+import com.etheller.interpreter.ast.function.NativeJassFunction;
+import com.etheller.interpreter.ast.function.UserJassFunction;
+import com.etheller.interpreter.ast.scope.GlobalScope;
+import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
+import com.etheller.interpreter.ast.statement.JassLocalStatement;
+import com.etheller.interpreter.ast.statement.JassReturnNothingStatement;
+import com.etheller.interpreter.ast.util.JassSettings;
+import com.etheller.interpreter.ast.value.ArrayJassValue;
+import com.etheller.interpreter.ast.value.BooleanJassValue;
+import com.etheller.interpreter.ast.value.CodeJassValue;
+import com.etheller.interpreter.ast.value.IntegerJassValue;
+import com.etheller.interpreter.ast.value.JassType;
+import com.etheller.interpreter.ast.value.JassValue;
+import com.etheller.interpreter.ast.value.RealJassValue;
+import com.etheller.interpreter.ast.value.visitor.ArrayJassValueVisitor;
+import com.etheller.interpreter.ast.value.visitor.BooleanJassValueVisitor;
+import com.etheller.interpreter.ast.value.visitor.IntegerJassValueVisitor;
+import com.etheller.interpreter.ast.value.visitor.NegateJassValueVisitor;
+import com.etheller.interpreter.ast.value.visitor.NotJassValueVisitor;
+import com.etheller.interpreter.ast.value.visitor.RealJassValueVisitor;
+
+/**
+ * Runs {@link JassBytecode} on one value stack shared by every call. A call
+ * frame keeps its locals at the bottom of its part of the stack and evaluates
+ * expressions above them. The arguments of a call are pushed where the
+ * callee's parameter slots go, so calls from one user function to another
+ * don't copy them and don't recurse on the Java stack.
+ *
+ * Natives may call back into JASS (ForGroup, TriggerEvaluate, ...), which
+ * starts a new {@link #call} above the frames that are already running.
+ *
+ * A function started with {@link #callAsThread} runs as a {@link JassThread}.
+ * A native it calls may {@link #suspend()} it, which moves its frames off the
+ * stack into the thread when the native returns, so the thread can be resumed
+ * later. Only natives called directly from the thread's own frames may do that,
+ * since the Java stack of a native in between could not be saved.
+ */
+public final class JassVirtualMachine {
+	private final GlobalScope globalScope;
+	private final JassProfiler profiler;
+	private JassValue[] stack = new JassValue[1024];
+	// unboxed values, at the same positions as the stack
+	private int[] intStack = new int[1024];
+	private double[] realStack = new double[1024];
+	private int stackTop = 0;
+
+	private UserJassFunction[] frameFunctions = new UserJassFunction[64];
+	private JassBytecode[] frameBytecodes = new JassBytecode[64];
+	private int[] frameBases = new int[64];
+	private int[] framePcs = new int[64];
+	private boolean[] frameDiscardsResult = new boolean[64];
+	private boolean[] framePushedStackElement = new boolean[64];
+	private int frameCount = 0;
+
+	// set by callAsThread for the call that starts the thread
+	private boolean startThread;
+	// entry frame of the innermost call if it runs a thread, otherwise -1
+	private int threadEntryFrame = -1;
+	// the thread of threadEntryFrame, created when it is first suspended
+	private JassThread currentThread;
+	// whether the native being called was called directly by the innermost call
+	private boolean suspendableCall;
+	private boolean suspendRequested;
+	private JassThread suspendedThread;
+
+	public JassVirtualMachine(final GlobalScope globalScope) {
+		this.globalScope = globalScope;
+		this.profiler = globalScope.getProfiler();
+	}
+
+	/**
+	 * Runs a user function whose arguments were already checked by
+	 * {@link UserJassFunction#call}.
+	 */
+	public JassValue call(final UserJassFunction function, final JassBytecode bytecode,
+			final List<JassValue> arguments, final TriggerExecutionScope triggerScope) {
+		final int entryFrameCount = this.frameCount;
+		final int entryStackTop = this.stackTop;
+		final int previousThreadEntryFrame = this.threadEntryFrame;
+		final JassThread previousThread = this.currentThread;
+		final boolean previousSuspendableCall = this.suspendableCall;
+		this.threadEntryFrame = this.startThread ? entryFrameCount : -1;
+		this.currentThread = null;
+		this.suspendableCall = false;
+		this.startThread = false;
+		ensureStackCapacity(entryStackTop + arguments.size());
+		for (int i = 0; i < arguments.size(); i++) {
+			this.stack[entryStackTop + i] = Assignable.checkValue(bytecode.getLocalType(i), arguments.get(i));
+		}
+		try {
+			pushFrame(function, bytecode, entryStackTop, false, false);
+			return run(entryFrameCount, triggerScope, 0, entryStackTop + bytecode.getLocalCount());
+		}
+		catch (final RuntimeException exc) {
+			while (this.frameCount > entryFrameCount) {
+				popFrame();
+			}
+			throw exc;
+		}
+		finally {
+			this.stackTop = entryStackTop;
+			this.threadEntryFrame = previousThreadEntryFrame;
+			this.currentThread = previousThread;
+			this.suspendableCall = previousSuspendableCall;
+			this.suspendRequested = false;
+		}
+	}
+
+	/**
+	 * Calls a function with no arguments as a new {@link JassThread}, the way
+	 * trigger actions run.
+	 *
+	 * @return the thread if it was suspended before the function returned,
+	 *         otherwise null
+	 */
+	public JassThread callAsThread(final JassFunction function, final TriggerExecutionScope triggerScope) {
+		JassFunction delegate = function;
+		if (delegate instanceof DebuggingJassFunction) {
+			delegate = ((DebuggingJassFunction) delegate).getDelegate();
+		}
+		// only a user function that this call starts on the virtual machine can be
+		// the thread's entry, not one that a native or the tree walker calls
+		this.startThread = JassSettings.USE_BYTECODE_INTERPRETER && (delegate instanceof UserJassFunction)
+				&& (((UserJassFunction) delegate).getBytecode(this.globalScope) != null);
+		try {
+			function.call(Collections.<JassValue>emptyList(), this.globalScope, triggerScope);
+		}
+		finally {
+			this.startThread = false;
+		}
+		final JassThread thread = this.suspendedThread;
+		this.suspendedThread = null;
+		return thread;
+	}
+
+	/**
+	 * Called by a native to suspend the thread that called it once the native
+	 * returns. Whatever the native returns is still pushed for the caller.
+	 *
+	 * @return the thread to resume later, or null if the native was not called by
+	 *         a thread that can be suspended
+	 */
+	public JassThread suspend() {
+		if ((this.threadEntryFrame < 0) || !this.suspendableCall) {
+			return null;
+		}
+		if (this.currentThread == null) {
+			this.currentThread = new JassThread(this);
+		}
+		this.suspendRequested = true;
+		return this.currentThread;
+	}
+
+	/**
+	 * Restores the frames of a suspended thread above the frames that are already
+	 * running and continues them.
+	 *
+	 * @return true if the thread returned, false if it was suspended again
+	 */
+	boolean resume(final JassThread thread) {
+		final int entryFrameCount = this.frameCount;
+		final int entryStackTop = this.stackTop;
+		final int previousThreadEntryFrame = this.threadEntryFrame;
+		final JassThread previousThread = this.currentThread;
+		final boolean previousSuspendableCall = this.suspendableCall;
+		this.threadEntryFrame = entryFrameCount;
+		this.currentThread = thread;
+		this.suspendableCall = false;
+		if (thread.rootStackElement != null) {
+			this.globalScope.pushJassStack(thread.rootStackElement);
+		}
+		try {
+			final int sp = restoreThread(thread);
+			run(entryFrameCount, thread.getTriggerScope(), this.framePcs[this.frameCount - 1], sp);
+			final boolean suspendedAgain = this.suspendedThread == thread;
+			this.suspendedThread = null;
+			return !suspendedAgain;
+		}
+		catch (final RuntimeException exc) {
+			while (this.frameCount > entryFrameCount) {
+				popFrame();
+			}
+			throw exc;
+		}
+		finally {
+			this.stackTop = entryStackTop;
+			this.threadEntryFrame = previousThreadEntryFrame;
+			this.currentThread = previousThread;
+			this.suspendableCall = previousSuspendableCall;
+			this.suspendRequested = false;
+			if (thread.rootStackElement != null) {
+				this.globalScope.popJassStack();
+			}
+		}
+	}
+
+	/**
+	 * Moves the frames of the running thread, from the entry frame up, into the
+	 * thread. The debug stack elements the frames pushed go with them.
+	 */
+	private void saveThread(final JassThread thread, final int entryFrameCount, final int sp,
+			final TriggerExecutionScope triggerScope) {
+		final int frameCount = this.frameCount - entryFrameCount;
+		final int rootBase = this.frameBases[entryFrameCount];
+		thread.setTriggerScope(triggerScope);
+		thread.frameFunctions = Arrays.copyOfRange(this.frameFunctions, entryFrameCount, this.frameCount);
+		thread.frameBytecodes = Arrays.copyOfRange(this.frameBytecodes, entryFrameCount, this.frameCount);
+		thread.frameBases = new int[frameCount];
+		for (int i = 0; i < frameCount; i++) {
+			thread.frameBases[i] = this.frameBases[entryFrameCount + i] - rootBase;
+		}
+		thread.framePcs = Arrays.copyOfRange(this.framePcs, entryFrameCount, this.frameCount);
+		thread.frameDiscardsResult = Arrays.copyOfRange(this.frameDiscardsResult, entryFrameCount, this.frameCount);
+		thread.framePushedStackElement = Arrays.copyOfRange(this.framePushedStackElement, entryFrameCount,
+				this.frameCount);
+		thread.stack = Arrays.copyOfRange(this.stack, rootBase, sp);
+		thread.intStack = Arrays.copyOfRange(this.intStack, rootBase, sp);
+		thread.realStack = Arrays.copyOfRange(this.realStack, rootBase, sp);
+		int stackElementCount = 0;
+		for (final boolean pushedStackElement : thread.framePushedStackElement) {
+			if (pushedStackElement) {
+				stackElementCount++;
+			}
+		}
+		thread.stackElements = new JassStackElement[stackElementCount];
+		for (int i = stackElementCount - 1; i >= 0; i--) {
+			thread.stackElements[i] = this.globalScope.getJassStack().pop();
+		}
+		if (thread.rootStackElement == null) {
+			thread.rootStackElement = this.globalScope.getJassStack().peekFirst();
+		}
+		// the time a thread sleeps is not counted, only the time it runs
+		for (int i = this.frameCount - 1; i >= entryFrameCount; i--) {
+			this.profiler.exit(this.frameFunctions[i]);
+		}
+		for (int i = entryFrameCount; i < this.frameCount; i++) {
+			this.frameFunctions[i] = null;
+			this.frameBytecodes[i] = null;
+		}
+		this.frameCount = entryFrameCount;
+		Arrays.fill(this.stack, rootBase, sp, null);
+	}
+
+	/**
+	 * @return the stack pointer of the top frame of the thread
+	 */
+	private int restoreThread(final JassThread thread) {
+		final int rootBase = this.stackTop;
+		final int frameCount = thread.frameFunctions.length;
+		final int sp = rootBase + thread.stack.length;
+		final int topBytecodeFrameSize = thread.frameBytecodes[frameCount - 1].getFrameSize();
+		ensureStackCapacity(Math.max(sp, rootBase + thread.frameBases[frameCount - 1] + topBytecodeFrameSize));
+		ensureFrameCapacity(this.frameCount + frameCount);
+		System.arraycopy(thread.stack, 0, this.stack, rootBase, thread.stack.length);
+		System.arraycopy(thread.intStack, 0, this.intStack, rootBase, thread.stack.length);
+		System.arraycopy(thread.realStack, 0, this.realStack, rootBase, thread.stack.length);
+		final int entryFrameCount = this.frameCount;
+		for (int i = 0; i < frameCount; i++) {
+			final int frame = entryFrameCount + i;
+			this.frameFunctions[frame] = thread.frameFunctions[i];
+			this.frameBytecodes[frame] = thread.frameBytecodes[i];
+			this.frameBases[frame] = rootBase + thread.frameBases[i];
+			this.framePcs[frame] = thread.framePcs[i];
+			this.frameDiscardsResult[frame] = thread.frameDiscardsResult[i];
+			this.framePushedStackElement[frame] = thread.framePushedStackElement[i];
+			this.profiler.resume(thread.frameFunctions[i]);
+		}
+		this.frameCount = entryFrameCount + frameCount;
+		for (final JassStackElement stackElement : thread.stackElements) {
+			this.globalScope.pushJassStack(stackElement);
+		}
+		thread.frameFunctions = null;
+		thread.frameBytecodes = null;
+		thread.stack = null;
+		thread.intStack = null;
+		thread.realStack = null;
+		thread.stackElements = null;
+		this.stackTop = sp;
+		return sp;
+	}
+
+	private JassValue run(final int entryFrameCount, final TriggerExecutionScope triggerScope, final int startPc,
+			final int startSp) {
+		final GlobalScope globalScope = this.globalScope;
+		int frame = this.frameCount - 1;
+		UserJassFunction function = this.frameFunctions[frame];
+		JassBytecode bytecode = this.frameBytecodes[frame];
+		int[] code = bytecode.getCode();
+		Object[] constants = bytecode.getConstants();
+		int base = this.frameBases[frame];
+		int sp = startSp;
+		int pc = startPc;
+		JassValue[] stack = this.stack;
+		int[] ints = this.intStack;
+		double[] reals = this.realStack;
+		while (true) {
+			final int opcode = code[pc++];
+			switch (opcode) {
+			case JassBytecodeOps.LINE:
+				globalScope.setLineNumber(code[pc++]);
+				break;
+			case JassBytecodeOps.PUSH_CONSTANT:
+				stack[sp++] = (JassValue) constants[code[pc++]];
+				break;
+			case JassBytecodeOps.LOAD_LOCAL:
+				stack[sp++] = stack[base + code[pc++]];
+				break;
+			case JassBytecodeOps.STORE_LOCAL: {
+				final int slot = code[pc++];
+				stack[base + slot] = Assignable.checkValue(bytecode.getLocalType(slot), stack[--sp]);
+				stack[sp] = null;
+				break;
+			}
+			case JassBytecodeOps.INIT_LOCAL: {
+				final int slot = code[pc++];
+				stack[base + slot] = JassLocalStatement.initialValue(bytecode.getLocalType(slot));
+				break;
+			}
+			case JassBytecodeOps.LOAD_GLOBAL:
+				stack[sp++] = ((JassGlobalReference) constants[code[pc++]]).resolve(globalScope).getValue();
+				break;
+			case JassBytecodeOps.STORE_GLOBAL:
+				((JassGlobalReference) constants[code[pc++]]).resolveForAssignment(globalScope).setValue(stack[--sp]);
+				stack[sp] = null;
+				break;
+			case JassBytecodeOps.LOAD_LOCAL_ARRAY:
+				stack[sp - 1] = getArrayElement(stack[base + code[pc++]], stack[sp - 1]);
+				break;
+			case JassBytecodeOps.STORE_LOCAL_ARRAY: {
+				final int slot = code[pc++];
+				setArrayElement(stack[base + slot], bytecode.getLocalName(slot), stack[sp - 2], stack[sp - 1]);
+				stack[--sp] = null;
+				stack[--sp] = null;
+				break;
+			}
+			case JassBytecodeOps.LOAD_GLOBAL_ARRAY: {
+				final JassGlobalReference global = (JassGlobalReference) constants[code[pc++]];
+				stack[sp - 1] = getArrayElement(global.resolve(globalScope).getValue(), stack[sp - 1]);
+				break;
+			}
+			case JassBytecodeOps.STORE_GLOBAL_ARRAY: {
+				final JassGlobalReference global = (JassGlobalReference) constants[code[pc++]];
+				setArrayElement(global.resolve(globalScope).getValue(), global.getName(), stack[sp - 2],
+						stack[sp - 1]);
+				stack[--sp] = null;
+				stack[--sp] = null;
+				break;
+			}
+			case JassBytecodeOps.ARITHMETIC: {
+				final JassValue right = stack[--sp];
+				stack[sp] = null;
+				stack[sp - 1] = ArithmeticJassExpression.apply(stack[sp - 1], right,
+						(ArithmeticSign) constants[code[pc++]]);
+				break;
+			}
+			case JassBytecodeOps.NEGATE:
+				stack[sp - 1] = stack[sp - 1].visit(NegateJassValueVisitor.getInstance());
+				break;
+			case JassBytecodeOps.NOT:
+				stack[sp - 1] = stack[sp - 1].visit(NotJassValueVisitor.getInstance());
+				break;
+			case JassBytecodeOps.FUNCTION_REFERENCE: {
+				final JassCallSite callSite = (JassCallSite) constants[code[pc++]];
+				final JassFunction referencedFunction = callSite.resolve(globalScope);
+				if (referencedFunction == null) {
+					throw new RuntimeException("Unable to find function: " + callSite.getFunctionName());
+				}
+				stack[sp++] = new CodeJassValue(referencedFunction);
+				break;
+			}
+			case JassBytecodeOps.CALL:
+			case JassBytecodeOps.CALL_DISCARD: {
+				final boolean discardResult = opcode == JassBytecodeOps.CALL_DISCARD;
+				final JassCallSite callSite = (JassCallSite) constants[code[pc++]];
+				final int argumentCount = code[pc++];
+				final int argumentsBase = sp - argumentCount;
+				final JassFunction calledFunction = callSite.resolve(globalScope);
+				if (calledFunction == null) {
+					Arrays.fill(stack, argumentsBase, sp, null);
+					sp = argumentsBase;
+					if (!discardResult) {
+						throw new JassException(globalScope, "Undefined function: " + callSite.getFunctionName(),
+								new RuntimeException());
+					}
+					if (JassSettings.CONTINUE_EXECUTING_ON_ERROR) {
+						System.err.println("Undefined function: " + callSite.getFunctionName());
+						break;
+					}
+					throw new RuntimeException("Undefined function: " + callSite.getFunctionName());
+				}
+				final UserJassFunction userFunction = callSite.getUserFunction();
+				final JassBytecode calleeBytecode = userFunction == null ? null : userFunction.getBytecode(globalScope);
+				if (calleeBytecode != null) {
+					if (!checkArguments(userFunction, stack, argumentsBase, argumentCount)) {
+						Arrays.fill(stack, argumentsBase, sp, null);
+						sp = argumentsBase;
+						if (!discardResult) {
+							stack[sp++] = null;
+						}
+						break;
+					}
+					this.framePcs[frame] = pc;
+					final DebuggingJassFunction debuggingFunction = callSite.getDebuggingFunction();
+					if (debuggingFunction != null) {
+						globalScope.pushJassStack(debuggingFunction.createStackElement());
+						globalScope.setLineNumber(debuggingFunction.getLineNo());
+					}
+					pushFrame(userFunction, calleeBytecode, argumentsBase, discardResult, debuggingFunction != null);
+					frame = this.frameCount - 1;
+					function = userFunction;
+					bytecode = calleeBytecode;
+					code = bytecode.getCode();
+					constants = bytecode.getConstants();
+					base = argumentsBase;
+					sp = base + bytecode.getLocalCount();
+					pc = 0;
+					stack = this.stack;
+					ints = this.intStack;
+					reals = this.realStack;
+					break;
+				}
+				final NativeJassFunction nativeFunction = callSite.getNativeFunction();
+				this.framePcs[frame] = pc;
+				JassValue result;
+				if (nativeFunction != null) {
+					// the native reads its arguments where they are, so anything it calls
+					// back into goes above them
+					this.stackTop = sp;
+					this.suspendableCall = true;
+					final DebuggingJassFunction debuggingFunction = callSite.getDebuggingFunction();
+					if (debuggingFunction != null) {
+						globalScope.pushJassStack(debuggingFunction.createStackElement());
+						globalScope.setLineNumber(debuggingFunction.getLineNo());
+					}
+					try {
+						result = nativeFunction.invoke(stack, argumentsBase, argumentCount, globalScope,
+								triggerScope);
+					}
+					catch (final Exception exc) {
+						if (discardResult) {
+							throw exc;
+						}
+						throw new JassException(globalScope,
+								"Function call by name failed for name: " + callSite.getFunctionName(), exc);
+					}
+					finally {
+						if (debuggingFunction != null) {
+							globalScope.popJassStack();
+						}
+						this.suspendableCall = false;
+					}
+					Arrays.fill(this.stack, argumentsBase, sp, null);
+					sp = argumentsBase;
+				}
+				else {
+					final List<JassValue> arguments = new ArrayList<>(argumentCount);
+					for (int i = argumentsBase; i < sp; i++) {
+						arguments.add(stack[i]);
+						stack[i] = null;
+					}
+					sp = argumentsBase;
+					this.stackTop = sp;
+					this.suspendableCall = userFunction == null;
+					try {
+						if (discardResult) {
+							calledFunction.call(arguments, globalScope, triggerScope);
+							result = null;
+						}
+						else {
+							try {
+								result = calledFunction.call(arguments, globalScope, triggerScope);
+							}
+							catch (final Exception exc) {
+								throw new JassException(globalScope,
+										"Function call by name failed for name: " + callSite.getFunctionName(), exc);
+							}
+						}
+					}
+					finally {
+						this.suspendableCall = false;
+					}
+				}
+				// a native that called back into JASS may have grown the stack
+				stack = this.stack;
+				ints = this.intStack;
+				reals = this.realStack;
+				if (!discardResult) {
+					stack[sp++] = result;
+				}
+				if (this.suspendRequested) {
+					this.suspendRequested = false;
+					saveThread(this.currentThread, entryFrameCount, sp, triggerScope);
+					this.suspendedThread = this.currentThread;
+					return null;
+				}
+				break;
+			}
+			case JassBytecodeOps.JUMP:
+				pc = code[pc];
+				break;
+			case JassBytecodeOps.JUMP_IF_FALSE: {
+				final JassValue condition = stack[--sp];
+				stack[sp] = null;
+				if ((condition == null) || !condition.visit(BooleanJassValueVisitor.getInstance())) {
+					pc = code[pc];
+				}
+				else {
+					pc++;
+				}
+				break;
+			}
+			case JassBytecodeOps.JUMP_IF_TRUE: {
+				final JassValue condition = stack[--sp];
+				stack[sp] = null;
+				if ((condition != null) && condition.visit(BooleanJassValueVisitor.getInstance())) {
+					pc = code[pc];
+				}
+				else {
+					pc++;
+				}
+				break;
+			}
+			case JassBytecodeOps.RETURN:
+			case JassBytecodeOps.RETURN_NOTHING:
+			case JassBytecodeOps.END: {
+				final JassValue result;
+				if (opcode == JassBytecodeOps.RETURN) {
+					final JassValue returnValue = stack[--sp];
+					result = function.checkReturnValue(globalScope,
+							returnValue == null ? JassReturnNothingStatement.RETURN_NOTHING_NOTICE : returnValue);
+				}
+				else if (opcode == JassBytecodeOps.RETURN_NOTHING) {
+					result = function.checkReturnValue(globalScope, JassReturnNothingStatement.RETURN_NOTHING_NOTICE);
+				}
+				else {
+					result = function.checkEndOfFunction(globalScope);
+				}
+				Arrays.fill(stack, base, sp, null);
+				final boolean discardResult = this.frameDiscardsResult[frame];
+				popFrame();
+				if (this.frameCount == entryFrameCount) {
+					return result;
+				}
+				sp = base;
+				frame = this.frameCount - 1;
+				function = this.frameFunctions[frame];
+				bytecode = this.frameBytecodes[frame];
+				code = bytecode.getCode();
+				constants = bytecode.getConstants();
+				base = this.frameBases[frame];
+				pc = this.framePcs[frame];
+				if (!discardResult) {
+					stack[sp++] = result;
+				}
+				break;
+			}
+			case JassBytecodeOps.PUSH_INT:
+				ints[sp++] = code[pc++];
+				break;
+			case JassBytecodeOps.PUSH_REAL:
+				reals[sp++] = (Double) constants[code[pc++]];
+				break;
+			case JassBytecodeOps.LOAD_LOCAL_INT:
+				ints[sp++] = ints[base + code[pc++]];
+				break;
+			case JassBytecodeOps.LOAD_LOCAL_REAL:
+				// unboxed locals always have a value, see JassBytecodeCompiler
+				reals[sp++] = reals[base + code[pc++]];
+				break;
+			case JassBytecodeOps.STORE_LOCAL_INT:
+				ints[base + code[pc++]] = ints[--sp];
+				break;
+			case JassBytecodeOps.STORE_LOCAL_REAL:
+				reals[base + code[pc++]] = reals[--sp];
+				break;
+			case JassBytecodeOps.CHECK_TYPE:
+				stack[sp - 1] = Assignable.checkValue((JassType) constants[code[pc++]], stack[sp - 1]);
+				break;
+			case JassBytecodeOps.UNBOX_INT:
+				ints[sp - 1] = toInt(stack[sp - 1]);
+				stack[sp - 1] = null;
+				break;
+			case JassBytecodeOps.UNBOX_REAL:
+				reals[sp - 1] = toReal(stack[sp - 1]);
+				stack[sp - 1] = null;
+				break;
+			case JassBytecodeOps.BOX_INT:
+				stack[sp - 1] = IntegerJassValue.of(ints[sp - 1]);
+				break;
+			case JassBytecodeOps.BOX_REAL:
+				stack[sp - 1] = new RealJassValue(reals[sp - 1]);
+				break;
+			case JassBytecodeOps.INT_TO_REAL:
+				reals[sp - 1] = ints[sp - 1];
+				break;
+			case JassBytecodeOps.ADD_INT:
+				sp--;
+				ints[sp - 1] += ints[sp];
+				break;
+			case JassBytecodeOps.SUBTRACT_INT:
+				sp--;
+				ints[sp - 1] -= ints[sp];
+				break;
+			case JassBytecodeOps.MULTIPLY_INT:
+				sp--;
+				ints[sp - 1] *= ints[sp];
+				break;
+			case JassBytecodeOps.DIVIDE_INT:
+				sp--;
+				if (ints[sp] == 0) {
+					// same as the boxed arithmetic, which reports the exception and uses zero
+					new ArithmeticException("/ by zero").printStackTrace();
+					ints[sp - 1] = 0;
+				}
+				else {
+					ints[sp - 1] /= ints[sp];
+				}
+				break;
+			case JassBytecodeOps.NEGATE_INT:
+				ints[sp - 1] = -ints[sp - 1];
+				break;
+			case JassBytecodeOps.ADD_REAL:
+				sp--;
+				reals[sp - 1] += reals[sp];
+				break;
+			case JassBytecodeOps.SUBTRACT_REAL:
+				sp--;
+				reals[sp - 1] -= reals[sp];
+				break;
+			case JassBytecodeOps.MULTIPLY_REAL:
+				sp--;
+				reals[sp - 1] *= reals[sp];
+				break;
+			case JassBytecodeOps.DIVIDE_REAL:
+				sp--;
+				reals[sp - 1] /= reals[sp];
+				break;
+			case JassBytecodeOps.NEGATE_REAL:
+				reals[sp - 1] = -reals[sp - 1];
+				break;
+			case JassBytecodeOps.COMPARE_INT:
+				sp--;
+				stack[sp - 1] = BooleanJassValue
+						.of(compare((ArithmeticSigns) constants[code[pc++]], ints[sp - 1], ints[sp]));
+				break;
+			case JassBytecodeOps.COMPARE_REAL:
+				sp--;
+				stack[sp - 1] = BooleanJassValue
+						.of(compare((ArithmeticSigns) constants[code[pc++]], reals[sp - 1], reals[sp]));
+				break;
+			default:
+				throw new IllegalStateException("Unknown opcode: " + opcode);
+			}
+		}
+	}
+
+	/**
+	 * Same checks as {@link UserJassFunction#call} followed by the parameter
+	 * assignment, on arguments that are already in the callee's parameter slots.
+	 */
+	private static boolean checkArguments(final UserJassFunction function, final JassValue[] stack,
+			final int argumentsBase, final int argumentCount) {
+		final List<JassParameter> parameters = function.getParameters();
+		if (argumentCount != parameters.size()) {
+			throw new RuntimeException("Invalid number of arguments passed to function");
+		}
+		for (int i = 0; i < argumentCount; i++) {
+			if (!function.checkArgument(i, stack[argumentsBase + i])) {
+				return false;
+			}
+		}
+		for (int i = 0; i < argumentCount; i++) {
+			stack[argumentsBase + i] = Assignable.checkValue(parameters.get(i).getType(), stack[argumentsBase + i]);
+		}
+		return true;
+	}
+
+	private void pushFrame(final UserJassFunction function, final JassBytecode bytecode, final int base,
+			final boolean discardResult, final boolean pushedStackElement) {
+		ensureFrameCapacity(this.frameCount + 1);
+		ensureStackCapacity(base + bytecode.getFrameSize());
+		final int unboxedParameterCount = bytecode.hasUnboxedParameters() ? bytecode.getParameterCount() : 0;
+		for (int i = 0; i < unboxedParameterCount; i++) {
+			final JassType type = bytecode.getLocalType(i);
+			if (type == JassType.INTEGER) {
+				this.intStack[base + i] = toInt(this.stack[base + i]);
+				this.stack[base + i] = null;
+			}
+			else if (type == JassType.REAL) {
+				this.realStack[base + i] = toReal(this.stack[base + i]);
+				this.stack[base + i] = null;
+			}
+		}
+		for (int i = bytecode.getParameterCount(); i < bytecode.getLocalCount(); i++) {
+			this.stack[base + i] = null;
+		}
+		final int frame = this.frameCount++;
+		this.frameFunctions[frame] = function;
+		this.frameBytecodes[frame] = bytecode;
+		this.frameBases[frame] = base;
+		this.framePcs[frame] = 0;
+		this.frameDiscardsResult[frame] = discardResult;
+		this.framePushedStackElement[frame] = pushedStackElement;
+		this.stackTop = base + bytecode.getLocalCount();
+		this.profiler.enter(function);
+	}
+
+	private void popFrame() {
+		final int frame = --this.frameCount;
+		this.profiler.exit(this.frameFunctions[frame]);
+		if (this.framePushedStackElement[frame]) {
+			this.globalScope.popJassStack();
+		}
+		this.frameFunctions[frame] = null;
+		this.frameBytecodes[frame] = null;
+	}
+
+	private void ensureFrameCapacity(final int capacity) {
+		if (capacity > this.frameFunctions.length) {
+			final int newLength = Math.max(capacity, this.frameFunctions.length * 2);
+			this.frameFunctions = Arrays.copyOf(this.frameFunctions, newLength);
+			this.frameBytecodes = Arrays.copyOf(this.frameBytecodes, newLength);
+			this.frameBases = Arrays.copyOf(this.frameBases, newLength);
+			this.framePcs = Arrays.copyOf(this.framePcs, newLength);
+			this.frameDiscardsResult = Arrays.copyOf(this.frameDiscardsResult, newLength);
+			this.framePushedStackElement = Arrays.copyOf(this.framePushedStackElement, newLength);
+		}
+	}
+
+	private void ensureStackCapacity(final int capacity) {
+		if (capacity > this.stack.length) {
+			final int newLength = Math.max(capacity, this.stack.length * 2);
+			this.stack = Arrays.copyOf(this.stack, newLength);
+			this.intStack = Arrays.copyOf(this.intStack, newLength);
+			this.realStack = Arrays.copyOf(this.realStack, newLength);
+		}
+	}
+
+	private static int toInt(final JassValue value) {
+		if (value instanceof IntegerJassValue) {
+			return ((IntegerJassValue) value).getValue();
+		}
+		return value.visit(IntegerJassValueVisitor.getInstance());
+	}
+
+	private static double toReal(final JassValue value) {
+		if (value instanceof RealJassValue) {
+			return ((RealJassValue) value).getValue();
+		}
+		return value.visit(RealJassValueVisitor.getInstance());
+	}
+
+	/**
+	 * Comparisons with the same results as {@link ArithmeticSigns} on boxed
+	 * values.
+	 */
+	private static boolean compare(final ArithmeticSigns sign, final int left, final int right) {
+		switch (sign) {
+		case EQUALS:
+			return Math.abs(left - right) <= 0.00001;
+		case NOT_EQUALS:
+			return left != right;
+		case LESS:
+			return left < right;
+		case LESS_OR_EQUALS:
+			return left <= right;
+		case GREATER:
+			return left > right;
+		case GREATER_OR_EQUALS:
+			return left >= right;
+		default:
+			throw new IllegalStateException("Not a comparison: " + sign);
+		}
+	}
+
+	private static boolean compare(final ArithmeticSigns sign, final double left, final double right) {
+		switch (sign) {
+		case EQUALS:
+			return Math.abs(left - right) <= 0.00001;
+		case NOT_EQUALS:
+			return left != right;
+		case LESS:
+			return left < right;
+		case LESS_OR_EQUALS:
+			return left <= right;
+		case GREATER:
+			return left > right;
+		case GREATER_OR_EQUALS:
+			return left >= right;
+		default:
+			throw new IllegalStateException("Not a comparison: " + sign);
+		}
+	}
+
+	private static JassValue getArrayElement(final JassValue variableValue, final JassValue index) {
+		if (variableValue == null) {
+			throw new RuntimeException("Unable to use subscript on uninitialized variable");
+		}
+		final ArrayJassValue arrayValue = variableValue.visit(ArrayJassValueVisitor.getInstance());
+		if (arrayValue == null) {
+			throw new RuntimeException("Not an array");
+		}
+		return arrayValue.get(index.visit(IntegerJassValueVisitor.getInstance()));
+	}
+
+	private void setArrayElement(final JassValue variableValue, final String name, final JassValue index,
+			final JassValue value) {
+		if (variableValue == null) {
+			throw new JassException(this.globalScope, "Unable to assign uninitialized array", null);
+		}
+		final ArrayJassValue arrayValue = variableValue.visit(ArrayJassValueVisitor.getInstance());
+		if (arrayValue == null) {
+			throw new JassException(this.globalScope, "Not an array", null);
+		}
+		final Integer indexInt = index.visit(IntegerJassValueVisitor.getInstance());
+		if ((indexInt == null) || (indexInt < 0)) {
+			throw new JassException(this.globalScope,
+					"Attempted to assign " + name + "[" + indexInt + "], which was an illegal index", null);
+		}
+		arrayValue.set(this.globalScope, indexInt, value);
+	}
+}
@@ -0,0 +1,343 @@
+package com.etheller.interpreter.ast.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+import com.etheller.interpreter.JassLexer;
+import com.etheller.interpreter.JassParser;
+import com.etheller.interpreter.JassParser.ProgramContext;
+import com.etheller.interpreter.ast.util.JassSettings;
+import com.etheller.interpreter.ast.visitors.JassProgramVisitor;
+
+/**
+ * On-disk cache of parsed JASS scripts. A script is looked up by a SHA-256 of
+ * its contents and of the {@link JassSettings} that change the syntax tree. On
+ * a hit the memory mapped file is replayed with a {@link JassProgramReader}
+ * instead of running the ANTLR lexer and parser; on a miss, or when the file
+ * is damaged or from another {@link JassProgramFormat#VERSION}, the script is
+ * parsed as usual and the cache file is rewritten.
+ *
+ * When the files are over the size limit after a script is stored, the least
+ * recently used ones are deleted. A hit touches the time the file was last
+ * modified, so that is the time it was last used, also for other processes
+ * sharing the directory.
+ */
+public final class JassProgramCache {
+	public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+	private static final String FILE_EXTENSION = ".jassc";
+	private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+	// a temporary file this old was left behind by a process that stopped while
+	// writing it
+	private static final long ABANDONED_TEMPORARY_FILE_MILLIS = 60L * 60 * 1000;
+	private static final int HEADER_LENGTH = 4 + 4 + JassProgramFormat.KEY_LENGTH + 8 + 4 + 4;
+
+	private final File directory;
+	private final long maxBytes;
+
+	/**
+	 * @param directory where the cache files are kept, or null to always parse
+	 */
+	public JassProgramCache(final File directory) {
+		this(directory, DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * @param directory where the cache files are kept, or null to always parse
+	 * @param maxBytes  how large the cache files may be in total
+	 */
+	public JassProgramCache(final File directory, final long maxBytes) {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Defines the program in the script on the visitor, from the cache if
+	 * possible.
+	 *
+	 * @param errorListener receives the syntax errors when the script has to be
+	 *                      parsed. Scripts with syntax errors are not cached.
+	 * @return how many nanoseconds of parsing were saved by the cache, 0 on a miss
+	 */
+	public long load(final JassProgramVisitor jassProgramVisitor, final String jassFileName, final byte[] script,
+			final ANTLRErrorListener errorListener) throws IOException {
+		return define(jassProgramVisitor, prepare(jassFileName, script, errorListener));
+	}
+
+	/**
+	 * Does the part of {@link #load} that does not touch the program: maps and
+	 * checks the cache file, or parses the script on a miss. Scripts may be
+	 * prepared on several threads at once.
+	 */
+	public PreparedProgram prepare(final String jassFileName, final byte[] script,
+			final ANTLRErrorListener errorListener) throws IOException {
+		final long prepareStartTime = System.nanoTime();
+		if (this.directory == null) {
+			final JassParser parser = parser(script, errorListener);
+			return new PreparedProgram(jassFileName, null, null, null, parser.program(), false, 0, 0);
+		}
+		final byte[] key = key(script);
+		final File cacheFile = new File(this.directory, toHex(key) + FILE_EXTENSION);
+		final ByteBuffer records = map(cacheFile, key);
+		if (records != null) {
+			cacheFile.setLastModified(System.currentTimeMillis());
+			final long parseNanos = records.getLong(HEADER_LENGTH - 16);
+			records.position(HEADER_LENGTH);
+			return new PreparedProgram(jassFileName, key, cacheFile, records.slice(), null, false, parseNanos,
+					System.nanoTime() - prepareStartTime);
+		}
+		final JassParser parser = parser(script, errorListener);
+		final ProgramContext program = parser.program();
+		final long parseNanos = System.nanoTime() - prepareStartTime;
+		return new PreparedProgram(jassFileName, key, cacheFile, null, program,
+				parser.getNumberOfSyntaxErrors() > 0, parseNanos, parseNanos);
+	}
+
+	/**
+	 * Defines a prepared program on the visitor, and writes it to the cache if it
+	 * was parsed. Programs must be defined in the order of their scripts.
+	 *
+	 * @return how many nanoseconds of parsing were saved by the cache, 0 on a miss
+	 */
+	public long define(final JassProgramVisitor jassProgramVisitor, final PreparedProgram program) {
+		final String jassFileName = program.jassFileName;
+		jassProgramVisitor.setCurrentFileName(jassFileName);
+		final long defineStartTime = System.nanoTime();
+		if (program.records != null) {
+			new JassProgramReader(program.records, jassProgramVisitor.getGlobals())
+					.read(jassProgramVisitor.getJassNativeManager(), jassFileName);
+			final long loadNanos = program.prepareNanos + (System.nanoTime() - defineStartTime);
+			System.out.println("Loaded " + jassFileName + " from program cache in " + (loadNanos / 1000000)
+					+ " ms (parsing took " + (program.parseNanos / 1000000) + " ms)");
+			return Math.max(0, program.parseNanos - loadNanos);
+		}
+		if (program.key == null) {
+			jassProgramVisitor.visit(program.tree);
+			return 0;
+		}
+
+		final JassProgramWriter programWriter = new JassProgramWriter();
+		jassProgramVisitor.setProgramWriter(programWriter);
+		try {
+			jassProgramVisitor.visit(program.tree);
+		}
+		finally {
+			jassProgramVisitor.setProgramWriter(null);
+		}
+		if (!program.syntaxErrors) {
+			try {
+				store(program.cacheFile, program.key, program.parseNanos, programWriter.finish());
+				evict();
+			}
+			catch (final IOException exc) {
+				System.err.println("Unable to write program cache for " + jassFileName + ": " + exc);
+			}
+		}
+		return 0;
+	}
+
+	private static JassParser parser(final byte[] script, final ANTLRErrorListener errorListener)
+			throws IOException {
+		final JassLexer lexer = new JassLexer(CharStreams.fromStream(new ByteArrayInputStream(script)));
+		final JassParser parser = new JassParser(new CommonTokenStream(lexer));
+		parser.addErrorListener(errorListener);
+		return parser;
+	}
+
+	/**
+	 * @return the records of the cache file positioned at the header, or null if
+	 *         the file is missing or does not match
+	 */
+	private static ByteBuffer map(final File cacheFile, final byte[] key) {
+		if (!cacheFile.isFile()) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+			final long size = channel.size();
+			if ((size < HEADER_LENGTH) || (size > Integer.MAX_VALUE)) {
+				return null;
+			}
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if ((buffer.getInt() != JassProgramFormat.MAGIC) || (buffer.getInt() != JassProgramFormat.VERSION)) {
+				return null;
+			}
+			final byte[] fileKey = new byte[JassProgramFormat.KEY_LENGTH];
+			buffer.get(fileKey);
+			if (!Arrays.equals(key, fileKey)) {
+				return null;
+			}
+			buffer.getLong(); // parse time
+			final int length = buffer.getInt();
+			final int crc = buffer.getInt();
+			if (length != (size - HEADER_LENGTH)) {
+				return null;
+			}
+			final CRC32 crc32 = new CRC32();
+			crc32.update(buffer.duplicate());
+			if ((int) crc32.getValue() != crc) {
+				return null;
+			}
+			buffer.rewind();
+			return buffer;
+		}
+		catch (final IOException exc) {
+			System.err.println("Unable to read program cache " + cacheFile + ": " + exc);
+			return null;
+		}
+	}
+
+	private void store(final File cacheFile, final byte[] key, final long parseNanos, final byte[] records)
+			throws IOException {
+		final CRC32 crc32 = new CRC32();
+		crc32.update(records);
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		header.putInt(JassProgramFormat.MAGIC);
+		header.putInt(JassProgramFormat.VERSION);
+		header.put(key);
+		header.putLong(parseNanos);
+		header.putInt(records.length);
+		header.putInt((int) crc32.getValue());
+		header.flip();
+
+		// written next to the final file and moved into place, so that other
+		// processes sharing the directory never map a partly written file
+		Files.createDirectories(this.directory.toPath());
+		final Path temporaryFile = Files.createTempFile(this.directory.toPath(), "jass", TEMPORARY_FILE_EXTENSION);
+		try {
+			try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+				channel.write(new ByteBuffer[] { header, ByteBuffer.wrap(records) });
+			}
+			try {
+				Files.move(temporaryFile, cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (final AtomicMoveNotSupportedException exc) {
+				Files.move(temporaryFile, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	/**
+	 * Deletes the least recently used cache files until they fit in the limit.
+	 * The files are listed every time, as other processes may share the
+	 * directory.
+	 */
+	private void evict() {
+		final File[] files = this.directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		final long now = System.currentTimeMillis();
+		final List<File> cacheFiles = new ArrayList<>();
+		long totalBytes = 0;
+		for (final File file : files) {
+			final String fileName = file.getName();
+			if (fileName.endsWith(FILE_EXTENSION)) {
+				cacheFiles.add(file);
+				totalBytes += file.length();
+			}
+			else if (fileName.endsWith(TEMPORARY_FILE_EXTENSION)
+					&& ((now - file.lastModified()) > ABANDONED_TEMPORARY_FILE_MILLIS)) {
+				file.delete();
+			}
+		}
+		if (totalBytes <= this.maxBytes) {
+			return;
+		}
+		cacheFiles.sort(Comparator.comparingLong(File::lastModified));
+		for (final File file : cacheFiles) {
+			if (totalBytes <= this.maxBytes) {
+				break;
+			}
+			final long length = file.length();
+			// a file mapped by a process may not be deletable on some systems; it is
+			// tried again next time
+			if (file.delete()) {
+				totalBytes -= length;
+			}
+		}
+	}
+
+	private static byte[] key(final byte[] script) {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (final NoSuchAlgorithmException exc) {
+			throw new IllegalStateException(exc);
+		}
+		final ByteBuffer settings = ByteBuffer.allocate(8);
+		settings.putInt(JassProgramFormat.VERSION);
+		settings.putInt(JassSettings.DEBUG ? 1 : 0);
+		digest.update(settings.array());
+		digest.update(script);
+		return digest.digest();
+	}
+
+	private static String toHex(final byte[] bytes) {
+		final StringBuilder builder = new StringBuilder(bytes.length * 2);
+		for (final byte b : bytes) {
+			builder.append(Character.forDigit((b >>> 4) & 0xF, 16));
+			builder.append(Character.forDigit(b & 0xF, 16));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * A script that was looked up in the cache, and parsed if it was not there.
+	 */
+	public static final class PreparedProgram {
+		private final String jassFileName;
+		private final byte[] key;
+		private final File cacheFile;
+		// on a hit
+		private final ByteBuffer records;
+		// on a miss
+		private final ProgramContext tree;
+		private final boolean syntaxErrors;
+		private final long parseNanos;
+		private final long prepareNanos;
+
+		private PreparedProgram(final String jassFileName, final byte[] key, final File cacheFile,
+				final ByteBuffer records, final ProgramContext tree, final boolean syntaxErrors,
+				final long parseNanos, final long prepareNanos) {
+			this.jassFileName = jassFileName;
+			this.key = key;
+			this.cacheFile = cacheFile;
+			this.records = records;
+			this.tree = tree;
+			this.syntaxErrors = syntaxErrors;
+			this.parseNanos = parseNanos;
+			this.prepareNanos = prepareNanos;
+		}
+
+		public String getJassFileName() {
+			return this.jassFileName;
+		}
+
+		public boolean isCached() {
+			return this.records != null;
+		}
+	}
+}
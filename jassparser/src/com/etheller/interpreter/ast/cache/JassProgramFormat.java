@@ -0,0 +1,68 @@
+package com.etheller.interpreter.ast.cache;
+
+/**
+ * Layout of a file of the {@link JassProgramCache}. After the header comes one
+ * record per definition of the program, in the order the program defines them,
+ * and then {@link #END}. Statements and expressions are written depth first as
+ * a tag followed by their fields. Strings are written in full the first time
+ * and as the index of that first occurrence afterwards.
+ *
+ * Header: MAGIC, VERSION, key (SHA-256), parse time in nanoseconds (long),
+ * length of the records and CRC32 of the records.
+ */
+public final class JassProgramFormat {
+	public static final int MAGIC = 0x4A415353; // "JASS"
+	// increment whenever the layout or the syntax tree classes change
+	public static final int VERSION = 1;
+	public static final int KEY_LENGTH = 32;
+
+	// records
+	public static final int END = 0;
+	// TYPE_DEFINITION type supertype
+	public static final int TYPE_DEFINITION = 1;
+	// GLOBAL name type
+	public static final int GLOBAL = 2;
+	// GLOBAL_DEFINITION name type expression
+	public static final int GLOBAL_DEFINITION = 3;
+	// NATIVE lineNo name parameters returnType
+	public static final int NATIVE = 4;
+	// FUNCTION lineNo name parameters returnType statements
+	public static final int FUNCTION = 5;
+
+	// statements
+	public static final int ARRAYED_ASSIGNMENT_STATEMENT = 16;
+	public static final int CALL_STATEMENT = 17;
+	public static final int DO_NOTHING_STATEMENT = 18;
+	public static final int EXIT_WHEN_STATEMENT = 19;
+	public static final int IF_ELSE_IF_STATEMENT = 20;
+	public static final int IF_ELSE_STATEMENT = 21;
+	public static final int IF_STATEMENT = 22;
+	public static final int LOCAL_DEFINITION_STATEMENT = 23;
+	public static final int LOCAL_STATEMENT = 24;
+	public static final int LOOP_STATEMENT = 25;
+	public static final int RETURN_NOTHING_STATEMENT = 26;
+	public static final int RETURN_STATEMENT = 27;
+	public static final int SET_STATEMENT = 28;
+	// DEBUGGING_STATEMENT lineNo statement
+	public static final int DEBUGGING_STATEMENT = 29;
+
+	// expressions
+	public static final int ARITHMETIC_EXPRESSION = 48;
+	public static final int ARRAY_REF_EXPRESSION = 49;
+	public static final int FUNCTION_CALL_EXPRESSION = 50;
+	public static final int FUNCTION_REFERENCE_EXPRESSION = 51;
+	public static final int LITERAL_EXPRESSION = 52;
+	public static final int NEGATE_EXPRESSION = 53;
+	public static final int NOT_EXPRESSION = 54;
+	public static final int REFERENCE_EXPRESSION = 55;
+
+	// literal values
+	public static final int NULL_VALUE = 0;
+	public static final int BOOLEAN_VALUE = 1;
+	public static final int INTEGER_VALUE = 2;
+	public static final int REAL_VALUE = 3;
+	public static final int STRING_VALUE = 4;
+
+	private JassProgramFormat() {
+	}
+}
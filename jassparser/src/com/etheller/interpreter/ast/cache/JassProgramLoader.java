@@ -0,0 +1,135 @@
+package com.etheller.interpreter.ast.cache;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+
+import com.etheller.interpreter.ast.cache.JassProgramCache.PreparedProgram;
+import com.etheller.interpreter.ast.visitors.JassProgramVisitor;
+
+/**
+ * Loads several scripts into one program. The scripts are read one at a time,
+ * because the data sources they come from are not thread safe, then lexed and
+ * parsed (or looked up in the {@link JassProgramCache}) at the same time on a
+ * fork-join pool. They are defined on the {@link JassProgramVisitor} one at a
+ * time in the order they were given, since a script may use the types and
+ * functions of the ones before it, so the program is the same as when they are
+ * loaded one after another.
+ *
+ * A script that cannot be read or parsed is reported and skipped, like before.
+ */
+public final class JassProgramLoader {
+	private final JassProgramCache programCache;
+	private final ForkJoinPool pool;
+
+	public JassProgramLoader(final JassProgramCache programCache) {
+		this(programCache, ForkJoinPool.commonPool());
+	}
+
+	public JassProgramLoader(final JassProgramCache programCache, final ForkJoinPool pool) {
+		this.programCache = programCache;
+		this.pool = pool;
+	}
+
+	/**
+	 * @param errorListeners makes the listener for the syntax errors of a file.
+	 *                       It is called on the thread that parses the file.
+	 */
+	public void load(final JassProgramVisitor jassProgramVisitor, final ScriptReader reader,
+			final Function<String, ANTLRErrorListener> errorListeners, final String... files) {
+		final long loadStartTime = System.nanoTime();
+		final byte[][] scripts = new byte[files.length][];
+		for (int i = 0; i < files.length; i++) {
+			try {
+				scripts[i] = reader.read(files[i]);
+			}
+			catch (final Exception e) {
+				e.printStackTrace();
+			}
+		}
+		final long readEndTime = System.nanoTime();
+
+		final AtomicLong parseNanos = new AtomicLong();
+		final PreparedProgram[] programs = new PreparedProgram[files.length];
+		if (files.length == 1) {
+			try {
+				programs[0] = prepare(files[0], scripts[0], errorListeners, parseNanos);
+			}
+			catch (final Exception e) {
+				e.printStackTrace();
+			}
+		}
+		else {
+			final Future<?>[] tasks = new Future<?>[files.length];
+			for (int i = 0; i < files.length; i++) {
+				final int index = i;
+				tasks[i] = this.pool.submit(() -> {
+					programs[index] = prepare(files[index], scripts[index], errorListeners, parseNanos);
+				});
+			}
+			for (final Future<?> task : tasks) {
+				try {
+					task.get();
+				}
+				catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException(e);
+				}
+				catch (final ExecutionException e) {
+					e.getCause().printStackTrace();
+				}
+			}
+		}
+		final long parseEndTime = System.nanoTime();
+
+		long parseNanosSaved = 0;
+		for (final PreparedProgram program : programs) {
+			if (program != null) {
+				try {
+					parseNanosSaved += this.programCache.define(jassProgramVisitor, program);
+				}
+				catch (final Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		final long defineEndTime = System.nanoTime();
+
+		jassProgramVisitor.getJassNativeManager().checkUnregisteredNatives();
+		final long linkEndTime = System.nanoTime();
+
+		System.out.println("Loaded " + Arrays.toString(files) + " in " + ((linkEndTime - loadStartTime) / 1000000)
+				+ " ms: read " + ((readEndTime - loadStartTime) / 1000000) + " ms, parse "
+				+ ((parseEndTime - readEndTime) / 1000000) + " ms (" + (parseNanos.get() / 1000000) + " ms on "
+				+ Math.min(files.length, this.pool.getParallelism()) + " threads), define "
+				+ ((defineEndTime - parseEndTime) / 1000000) + " ms, link " + ((linkEndTime - defineEndTime) / 1000000)
+				+ " ms; program cache saved " + (parseNanosSaved / 1000000) + " ms of parsing");
+	}
+
+	private PreparedProgram prepare(final String jassFileName, final byte[] script,
+			final Function<String, ANTLRErrorListener> errorListeners, final AtomicLong parseNanos) {
+		if (script == null) {
+			return null;
+		}
+		final long prepareStartTime = System.nanoTime();
+		try {
+			return this.programCache.prepare(jassFileName, script, errorListeners.apply(jassFileName));
+		}
+		catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+		finally {
+			parseNanos.addAndGet(System.nanoTime() - prepareStartTime);
+		}
+	}
+
+	public interface ScriptReader {
+		byte[] read(String jassFileName) throws IOException;
+	}
+}
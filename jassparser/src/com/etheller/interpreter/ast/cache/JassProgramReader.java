@@ -0,0 +1,299 @@
+package com.etheller.interpreter.ast.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.etheller.interpreter.ast.debug.DebuggingJassStatement;
+import com.etheller.interpreter.ast.expression.ArithmeticJassExpression;
+import com.etheller.interpreter.ast.expression.ArithmeticSigns;
+import com.etheller.interpreter.ast.expression.ArrayRefJassExpression;
+import com.etheller.interpreter.ast.expression.FunctionCallJassExpression;
+import com.etheller.interpreter.ast.expression.FunctionReferenceJassExpression;
+import com.etheller.interpreter.ast.expression.JassExpression;
+import com.etheller.interpreter.ast.expression.LiteralJassExpression;
+import com.etheller.interpreter.ast.expression.NegateJassExpression;
+import com.etheller.interpreter.ast.expression.NotJassExpression;
+import com.etheller.interpreter.ast.expression.ReferenceJassExpression;
+import com.etheller.interpreter.ast.function.JassNativeManager;
+import com.etheller.interpreter.ast.function.JassParameter;
+import com.etheller.interpreter.ast.function.UserJassFunction;
+import com.etheller.interpreter.ast.scope.GlobalScope;
+import com.etheller.interpreter.ast.scope.LocalScope;
+import com.etheller.interpreter.ast.statement.JassArrayedAssignmentStatement;
+import com.etheller.interpreter.ast.statement.JassCallStatement;
+import com.etheller.interpreter.ast.statement.JassDoNothingStatement;
+import com.etheller.interpreter.ast.statement.JassExitWhenStatement;
+import com.etheller.interpreter.ast.statement.JassIfElseIfStatement;
+import com.etheller.interpreter.ast.statement.JassIfElseStatement;
+import com.etheller.interpreter.ast.statement.JassIfStatement;
+import com.etheller.interpreter.ast.statement.JassLocalDefinitionStatement;
+import com.etheller.interpreter.ast.statement.JassLocalStatement;
+import com.etheller.interpreter.ast.statement.JassLoopStatement;
+import com.etheller.interpreter.ast.statement.JassReturnNothingStatement;
+import com.etheller.interpreter.ast.statement.JassReturnStatement;
+import com.etheller.interpreter.ast.statement.JassSetStatement;
+import com.etheller.interpreter.ast.statement.JassStatement;
+import com.etheller.interpreter.ast.value.BooleanJassValue;
+import com.etheller.interpreter.ast.value.IntegerJassValue;
+import com.etheller.interpreter.ast.value.JassType;
+import com.etheller.interpreter.ast.value.JassValue;
+import com.etheller.interpreter.ast.value.RealJassValue;
+import com.etheller.interpreter.ast.value.StringJassValue;
+import com.etheller.interpreter.ast.value.visitor.ArrayPrimitiveTypeVisitor;
+import com.etheller.interpreter.ast.visitors.JassProgramVisitor;
+
+/**
+ * Replays the records written by a {@link JassProgramWriter} into a global
+ * scope, defining the same types, globals, natives and functions in the same
+ * order as the {@link JassProgramVisitor} did when it parsed the script. Types,
+ * natives and global initializers are resolved against the scope as it is now,
+ * so only the parsing is skipped.
+ */
+public final class JassProgramReader {
+	private static final LocalScope EMPTY_LOCAL_SCOPE = new LocalScope();
+	private static final ArithmeticSigns[] SIGNS = ArithmeticSigns.values();
+	private static final String ARRAY_SUFFIX = " array";
+
+	private final ByteBuffer records;
+	private final GlobalScope globals;
+	private final List<String> strings = new ArrayList<>();
+
+	public JassProgramReader(final ByteBuffer records, final GlobalScope globals) {
+		this.records = records;
+		this.globals = globals;
+	}
+
+	public void read(final JassNativeManager jassNativeManager, final String jassFileName) {
+		int tag;
+		while ((tag = readTag()) != JassProgramFormat.END) {
+			switch (tag) {
+			case JassProgramFormat.TYPE_DEFINITION: {
+				final String type = readString();
+				final String supertype = readString();
+				this.globals.loadTypeDefinition(type, supertype);
+				break;
+			}
+			case JassProgramFormat.GLOBAL: {
+				final String name = readString();
+				final JassType type = readType();
+				if (type.visit(ArrayPrimitiveTypeVisitor.getInstance()) != null) {
+					this.globals.createGlobalArray(name, type);
+				}
+				else {
+					this.globals.createGlobal(name, type);
+				}
+				break;
+			}
+			case JassProgramFormat.GLOBAL_DEFINITION: {
+				final String name = readString();
+				final JassType type = readType();
+				final JassExpression expression = readExpression();
+				try {
+					this.globals.createGlobal(name, type, expression.evaluate(this.globals, EMPTY_LOCAL_SCOPE,
+							JassProgramVisitor.EMPTY_TRIGGER_SCOPE));
+				}
+				catch (final Exception exc) {
+					throw new RuntimeException(name, exc);
+				}
+				break;
+			}
+			case JassProgramFormat.NATIVE: {
+				final int lineNo = readInt();
+				final String name = readString();
+				final List<JassParameter> parameters = readParameters();
+				final JassType returnType = readType();
+				jassNativeManager.registerNativeCode(lineNo, jassFileName, name, parameters, returnType,
+						this.globals);
+				break;
+			}
+			case JassProgramFormat.FUNCTION: {
+				final int lineNo = readInt();
+				final String name = readString();
+				final List<JassParameter> parameters = readParameters();
+				final JassType returnType = readType();
+				final List<JassStatement> statements = readStatements();
+				this.globals.defineFunction(lineNo, jassFileName, name,
+						new UserJassFunction(statements, parameters, returnType));
+				break;
+			}
+			default:
+				throw new IllegalStateException("Unknown record: " + tag);
+			}
+		}
+	}
+
+	private JassStatement readStatement() {
+		final int tag = readTag();
+		switch (tag) {
+		case JassProgramFormat.ARRAYED_ASSIGNMENT_STATEMENT: {
+			final String identifier = readString();
+			final JassExpression indexExpression = readExpression();
+			return new JassArrayedAssignmentStatement(identifier, indexExpression, readExpression());
+		}
+		case JassProgramFormat.CALL_STATEMENT: {
+			final String functionName = readString();
+			return new JassCallStatement(functionName, readExpressions());
+		}
+		case JassProgramFormat.DO_NOTHING_STATEMENT:
+			return new JassDoNothingStatement();
+		case JassProgramFormat.EXIT_WHEN_STATEMENT:
+			return new JassExitWhenStatement(readExpression());
+		case JassProgramFormat.IF_ELSE_IF_STATEMENT: {
+			final JassExpression condition = readExpression();
+			final List<JassStatement> thenStatements = readStatements();
+			return new JassIfElseIfStatement(condition, thenStatements, readStatement());
+		}
+		case JassProgramFormat.IF_ELSE_STATEMENT: {
+			final JassExpression condition = readExpression();
+			final List<JassStatement> thenStatements = readStatements();
+			return new JassIfElseStatement(condition, thenStatements, readStatements());
+		}
+		case JassProgramFormat.IF_STATEMENT: {
+			final JassExpression condition = readExpression();
+			return new JassIfStatement(condition, readStatements());
+		}
+		case JassProgramFormat.LOCAL_DEFINITION_STATEMENT: {
+			final String identifier = readString();
+			final JassType type = readType();
+			return new JassLocalDefinitionStatement(identifier, type, readExpression());
+		}
+		case JassProgramFormat.LOCAL_STATEMENT: {
+			final String identifier = readString();
+			return new JassLocalStatement(identifier, readType());
+		}
+		case JassProgramFormat.LOOP_STATEMENT:
+			return new JassLoopStatement(readStatements());
+		case JassProgramFormat.RETURN_NOTHING_STATEMENT:
+			return new JassReturnNothingStatement();
+		case JassProgramFormat.RETURN_STATEMENT:
+			return new JassReturnStatement(readExpression());
+		case JassProgramFormat.SET_STATEMENT: {
+			final String identifier = readString();
+			return new JassSetStatement(identifier, readExpression());
+		}
+		case JassProgramFormat.DEBUGGING_STATEMENT: {
+			final int lineNo = readInt();
+			return new DebuggingJassStatement(lineNo, readStatement());
+		}
+		default:
+			throw new IllegalStateException("Unknown statement: " + tag);
+		}
+	}
+
+	private List<JassStatement> readStatements() {
+		final int count = readInt();
+		final List<JassStatement> statements = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			statements.add(readStatement());
+		}
+		return statements;
+	}
+
+	private JassExpression readExpression() {
+		final int tag = readTag();
+		switch (tag) {
+		case JassProgramFormat.ARITHMETIC_EXPRESSION: {
+			final JassExpression leftExpression = readExpression();
+			final JassExpression rightExpression = readExpression();
+			return new ArithmeticJassExpression(leftExpression, rightExpression, SIGNS[readTag()]);
+		}
+		case JassProgramFormat.ARRAY_REF_EXPRESSION: {
+			final String identifier = readString();
+			return new ArrayRefJassExpression(identifier, readExpression());
+		}
+		case JassProgramFormat.FUNCTION_CALL_EXPRESSION: {
+			final String functionName = readString();
+			return new FunctionCallJassExpression(functionName, readExpressions());
+		}
+		case JassProgramFormat.FUNCTION_REFERENCE_EXPRESSION:
+			return new FunctionReferenceJassExpression(readString());
+		case JassProgramFormat.LITERAL_EXPRESSION:
+			return new LiteralJassExpression(readValue());
+		case JassProgramFormat.NEGATE_EXPRESSION:
+			return new NegateJassExpression(readExpression());
+		case JassProgramFormat.NOT_EXPRESSION:
+			return new NotJassExpression(readExpression());
+		case JassProgramFormat.REFERENCE_EXPRESSION:
+			return new ReferenceJassExpression(readString());
+		default:
+			throw new IllegalStateException("Unknown expression: " + tag);
+		}
+	}
+
+	private List<JassExpression> readExpressions() {
+		final int count = readInt();
+		if (count == 0) {
+			return Collections.emptyList();
+		}
+		final List<JassExpression> expressions = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			expressions.add(readExpression());
+		}
+		return expressions;
+	}
+
+	private JassValue readValue() {
+		final int tag = readTag();
+		switch (tag) {
+		case JassProgramFormat.NULL_VALUE:
+			return null;
+		case JassProgramFormat.BOOLEAN_VALUE:
+			return readTag() != 0 ? BooleanJassValue.TRUE : BooleanJassValue.FALSE;
+		case JassProgramFormat.INTEGER_VALUE:
+			return IntegerJassValue.of(readInt());
+		case JassProgramFormat.REAL_VALUE:
+			return new RealJassValue(Double.longBitsToDouble(this.records.getLong()));
+		case JassProgramFormat.STRING_VALUE:
+			return new StringJassValue(readString());
+		default:
+			throw new IllegalStateException("Unknown literal: " + tag);
+		}
+	}
+
+	private List<JassParameter> readParameters() {
+		final int count = readInt();
+		if (count == 0) {
+			return Collections.emptyList();
+		}
+		final List<JassParameter> parameters = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final JassType type = readType();
+			parameters.add(new JassParameter(type, readString()));
+		}
+		return parameters;
+	}
+
+	private JassType readType() {
+		final String name = readString();
+		if (name.equals(JassType.NOTHING.getName())) {
+			return JassType.NOTHING;
+		}
+		if (name.endsWith(ARRAY_SUFFIX)) {
+			return this.globals.parseArrayType(name.substring(0, name.length() - ARRAY_SUFFIX.length()));
+		}
+		return this.globals.parseType(name);
+	}
+
+	private String readString() {
+		final int index = readInt();
+		if (index >= 0) {
+			return this.strings.get(index);
+		}
+		final byte[] bytes = new byte[readInt()];
+		this.records.get(bytes);
+		final String value = new String(bytes, StandardCharsets.UTF_8);
+		this.strings.add(value);
+		return value;
+	}
+
+	private int readTag() {
+		return this.records.get() & 0xFF;
+	}
+
+	private int readInt() {
+		return this.records.getInt();
+	}
+}
@@ -0,0 +1,191 @@
+package com.etheller.interpreter.ast.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.etheller.interpreter.ast.expression.ArithmeticSign;
+import com.etheller.interpreter.ast.expression.ArithmeticSigns;
+import com.etheller.interpreter.ast.expression.JassExpression;
+import com.etheller.interpreter.ast.function.JassParameter;
+import com.etheller.interpreter.ast.statement.JassStatement;
+import com.etheller.interpreter.ast.value.BooleanJassValue;
+import com.etheller.interpreter.ast.value.IntegerJassValue;
+import com.etheller.interpreter.ast.value.JassType;
+import com.etheller.interpreter.ast.value.JassValue;
+import com.etheller.interpreter.ast.value.RealJassValue;
+import com.etheller.interpreter.ast.value.StringJassValue;
+
+/**
+ * Records the definitions of a program as the
+ * {@link com.etheller.interpreter.ast.visitors.JassProgramVisitor} makes
+ * them, in the layout of {@link JassProgramFormat}. Statements and expressions
+ * write themselves with {@link JassStatement#write(JassProgramWriter)} and
+ * {@link JassExpression#write(JassProgramWriter)}.
+ */
+public final class JassProgramWriter {
+	private byte[] data = new byte[4096];
+	private int length;
+	private final Map<String, Integer> strings = new HashMap<>();
+
+	public void writeTypeDefinition(final String type, final String supertype) {
+		writeTag(JassProgramFormat.TYPE_DEFINITION);
+		writeString(type);
+		writeString(supertype);
+	}
+
+	/**
+	 * @param initializer the expression the global is initialized with, or null
+	 */
+	public void writeGlobal(final String name, final JassType type, final JassExpression initializer) {
+		writeTag(initializer == null ? JassProgramFormat.GLOBAL : JassProgramFormat.GLOBAL_DEFINITION);
+		writeString(name);
+		writeType(type);
+		if (initializer != null) {
+			writeExpression(initializer);
+		}
+	}
+
+	public void writeNative(final int lineNo, final String name, final List<JassParameter> parameters,
+			final JassType returnType) {
+		writeTag(JassProgramFormat.NATIVE);
+		writeInt(lineNo);
+		writeString(name);
+		writeParameters(parameters);
+		writeType(returnType);
+	}
+
+	public void writeFunction(final int lineNo, final String name, final List<JassParameter> parameters,
+			final JassType returnType, final List<JassStatement> statements) {
+		writeTag(JassProgramFormat.FUNCTION);
+		writeInt(lineNo);
+		writeString(name);
+		writeParameters(parameters);
+		writeType(returnType);
+		writeStatements(statements);
+	}
+
+	public void writeTag(final int tag) {
+		ensureCapacity(1);
+		this.data[this.length++] = (byte) tag;
+	}
+
+	public void writeInt(final int value) {
+		ensureCapacity(4);
+		this.data[this.length++] = (byte) (value >>> 24);
+		this.data[this.length++] = (byte) (value >>> 16);
+		this.data[this.length++] = (byte) (value >>> 8);
+		this.data[this.length++] = (byte) value;
+	}
+
+	public void writeLong(final long value) {
+		writeInt((int) (value >>> 32));
+		writeInt((int) value);
+	}
+
+	public void writeDouble(final double value) {
+		writeLong(Double.doubleToRawLongBits(value));
+	}
+
+	public void writeBytes(final byte[] bytes) {
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, this.data, this.length, bytes.length);
+		this.length += bytes.length;
+	}
+
+	public void writeString(final String value) {
+		final Integer index = this.strings.get(value);
+		if (index != null) {
+			writeInt(index);
+		}
+		else {
+			this.strings.put(value, this.strings.size());
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeInt(-1);
+			writeInt(bytes.length);
+			writeBytes(bytes);
+		}
+	}
+
+	public void writeType(final JassType type) {
+		writeString(type.getName());
+	}
+
+	public void writeSign(final ArithmeticSign sign) {
+		if (!(sign instanceof ArithmeticSigns)) {
+			throw new IllegalArgumentException("Arithmetic sign cannot be cached: " + sign);
+		}
+		writeTag(((ArithmeticSigns) sign).ordinal());
+	}
+
+	public void writeValue(final JassValue value) {
+		if (value == null) {
+			writeTag(JassProgramFormat.NULL_VALUE);
+		}
+		else if (value instanceof BooleanJassValue) {
+			writeTag(JassProgramFormat.BOOLEAN_VALUE);
+			writeTag(((BooleanJassValue) value).getValue() ? 1 : 0);
+		}
+		else if (value instanceof IntegerJassValue) {
+			writeTag(JassProgramFormat.INTEGER_VALUE);
+			writeInt(((IntegerJassValue) value).getValue());
+		}
+		else if (value instanceof RealJassValue) {
+			writeTag(JassProgramFormat.REAL_VALUE);
+			writeDouble(((RealJassValue) value).getValue());
+		}
+		else if (value instanceof StringJassValue) {
+			writeTag(JassProgramFormat.STRING_VALUE);
+			writeString(((StringJassValue) value).getValue());
+		}
+		else {
+			throw new IllegalArgumentException("Literal cannot be cached: " + value);
+		}
+	}
+
+	public void writeParameters(final List<JassParameter> parameters) {
+		writeInt(parameters.size());
+		for (final JassParameter parameter : parameters) {
+			writeType(parameter.getType());
+			writeString(parameter.getIdentifier());
+		}
+	}
+
+	public void writeStatement(final JassStatement statement) {
+		statement.write(this);
+	}
+
+	public void writeStatements(final List<JassStatement> statements) {
+		writeInt(statements.size());
+		for (final JassStatement statement : statements) {
+			statement.write(this);
+		}
+	}
+
+	public void writeExpression(final JassExpression expression) {
+		expression.write(this);
+	}
+
+	public void writeExpressions(final List<JassExpression> expressions) {
+		writeInt(expressions.size());
+		for (final JassExpression expression : expressions) {
+			expression.write(this);
+		}
+	}
+
+	/**
+	 * @return the records written so far, followed by {@link JassProgramFormat#END}
+	 */
+	public byte[] finish() {
+		writeTag(JassProgramFormat.END);
+		return Arrays.copyOf(this.data, this.length);
+	}
+
+	private void ensureCapacity(final int additional) {
+		if ((this.length + additional) > this.data.length) {
+			this.data = Arrays.copyOf(this.data, Math.max(this.length + additional, this.data.length * 2));
+		}
+	}
+}
@@ -24,7 +24,7 @@ public class DebuggingJassFunction implements JassFunction {
 	@Override
 	public JassValue call(final List<JassValue> arguments, final GlobalScope globalScope,
 			final TriggerExecutionScope triggerScope) {
-		globalScope.pushJassStack(new JassStackElement(this.sourceFile, this.functionName, this.lineNo));
+		globalScope.pushJassStack(createStackElement());
 		globalScope.setLineNumber(this.lineNo);
 		try {
 			return this.delegate.call(arguments, globalScope, triggerScope);
@@ -34,4 +34,16 @@ public class DebuggingJassFunction implements JassFunction {
 		}
 	}
 
+	public JassFunction getDelegate() {
+		return this.delegate;
+	}
+
+	public int getLineNo() {
+		return this.lineNo;
+	}
+
+	public JassStackElement createStackElement() {
+		return new JassStackElement(this.sourceFile, this.functionName, this.lineNo);
+	}
+
 }
@@ -1,5 +1,9 @@
 package com.etheller.interpreter.ast.debug;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
@@ -22,4 +26,17 @@ public class DebuggingJassStatement implements JassStatement {
 		return this.delegate.execute(globalScope, localScope, triggerScope);
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		compiler.emit(JassBytecodeOps.LINE, this.lineNo);
+		this.delegate.compile(compiler);
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.DEBUGGING_STATEMENT);
+		writer.writeInt(this.lineNo);
+		writer.writeStatement(this.delegate);
+	}
+
 }
@@ -0,0 +1,334 @@
+package com.etheller.interpreter.ast.debug;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.etheller.interpreter.ast.function.JassFunction;
+import com.etheller.interpreter.ast.function.NativeJassFunction;
+import com.etheller.interpreter.ast.scope.GlobalScope;
+
+/**
+ * Instrumenting profiler for JASS. User functions and natives report when they
+ * are entered and left, and the profiler keeps its own stack of them, so that
+ * it can tell the time spent in a function itself from the time spent in the
+ * functions it called. Time is recorded per function and per call path, the
+ * latter for flame graphs. When it is disabled every hook returns after reading
+ * one field.
+ *
+ * Functions are recorded by identity and only named when a report is written,
+ * by looking them up in the {@link GlobalScope}.
+ */
+public final class JassProfiler {
+	private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN;
+	static {
+		final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if ((threadBean instanceof com.sun.management.ThreadMXBean)
+				&& ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()) {
+			ALLOCATION_BEAN = (com.sun.management.ThreadMXBean) threadBean;
+		}
+		else {
+			ALLOCATION_BEAN = null;
+		}
+	}
+
+	private final GlobalScope globalScope;
+	private boolean enabled;
+	private boolean allocationTracking;
+	private long enabledTime;
+	private long enabledNanos;
+
+	private final Map<JassFunction, FunctionProfile> profiles = new IdentityHashMap<>();
+	private CallNode root = new CallNode(null);
+
+	private CallNode[] stackNodes = new CallNode[64];
+	private long[] stackStartTimes = new long[64];
+	private long[] stackChildNanos = new long[64];
+	private long[] stackStartAllocations = new long[64];
+	private int depth;
+
+	public JassProfiler(final GlobalScope globalScope) {
+		this.globalScope = globalScope;
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	/**
+	 * Starts or stops recording. Calls in progress when this is called are not
+	 * recorded.
+	 */
+	public void setEnabled(final boolean enabled) {
+		if (enabled == this.enabled) {
+			return;
+		}
+		clearStack();
+		if (enabled) {
+			this.allocationTracking = (ALLOCATION_BEAN != null) && ALLOCATION_BEAN.isThreadAllocatedMemoryEnabled();
+			this.enabledTime = System.nanoTime();
+		}
+		else {
+			this.enabledNanos += System.nanoTime() - this.enabledTime;
+		}
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Discards everything recorded so far.
+	 */
+	public void reset() {
+		this.profiles.clear();
+		this.root = new CallNode(null);
+		clearStack();
+		this.enabledNanos = 0;
+		this.enabledTime = System.nanoTime();
+	}
+
+	private void clearStack() {
+		Arrays.fill(this.stackNodes, 0, this.depth, null);
+		this.depth = 0;
+		for (final FunctionProfile profile : this.profiles.values()) {
+			profile.active = 0;
+		}
+	}
+
+	/**
+	 * Called when a function is called.
+	 *
+	 * @return the depth to give to {@link #exitTo(int)} when the function returns
+	 *         or throws
+	 */
+	public int enter(final JassFunction function) {
+		if (!this.enabled) {
+			return -1;
+		}
+		final int depth = this.depth;
+		push(function).calls++;
+		return depth;
+	}
+
+	/**
+	 * Called when a function that was suspended with a sleeping thread is
+	 * restored, which does not count as a call.
+	 */
+	public void resume(final JassFunction function) {
+		if (!this.enabled) {
+			return;
+		}
+		push(function);
+	}
+
+	/**
+	 * Called when a function entered with {@link #enter} or {@link #resume}
+	 * returns. Ignored if it is not the innermost function, which happens when
+	 * the profiler was enabled during the call.
+	 */
+	public void exit(final JassFunction function) {
+		if (!this.enabled || (this.depth == 0) || (this.stackNodes[this.depth - 1].function != function)) {
+			return;
+		}
+		pop();
+	}
+
+	/**
+	 * Leaves every function entered since {@link #enter} returned the given depth,
+	 * including ones that did not return because of an exception or a sleep.
+	 */
+	public void exitTo(final int depth) {
+		if (!this.enabled || (depth < 0)) {
+			return;
+		}
+		while (this.depth > depth) {
+			pop();
+		}
+	}
+
+	private FunctionProfile push(final JassFunction function) {
+		final int depth = this.depth;
+		if (depth == this.stackNodes.length) {
+			final int newLength = depth * 2;
+			this.stackNodes = Arrays.copyOf(this.stackNodes, newLength);
+			this.stackStartTimes = Arrays.copyOf(this.stackStartTimes, newLength);
+			this.stackChildNanos = Arrays.copyOf(this.stackChildNanos, newLength);
+			this.stackStartAllocations = Arrays.copyOf(this.stackStartAllocations, newLength);
+		}
+		final CallNode parent = depth == 0 ? this.root : this.stackNodes[depth - 1];
+		final CallNode node = parent.getChild(function);
+		FunctionProfile profile = this.profiles.get(function);
+		if (profile == null) {
+			profile = new FunctionProfile(function);
+			this.profiles.put(function, profile);
+		}
+		profile.active++;
+		this.stackNodes[depth] = node;
+		this.stackChildNanos[depth] = 0;
+		this.stackStartAllocations[depth] = allocatedBytes();
+		this.depth = depth + 1;
+		this.stackStartTimes[depth] = System.nanoTime();
+		return profile;
+	}
+
+	private void pop() {
+		final long endTime = System.nanoTime();
+		final int depth = --this.depth;
+		final CallNode node = this.stackNodes[depth];
+		this.stackNodes[depth] = null;
+		final long totalNanos = endTime - this.stackStartTimes[depth];
+		final long selfNanos = totalNanos - this.stackChildNanos[depth];
+		final long allocated = allocatedBytes() - this.stackStartAllocations[depth];
+		node.selfNanos += selfNanos;
+		final FunctionProfile profile = this.profiles.get(node.function);
+		profile.selfNanos += selfNanos;
+		// recursive calls are already part of the total of the outermost call
+		if (--profile.active == 0) {
+			profile.totalNanos += totalNanos;
+			profile.allocatedBytes += allocated;
+		}
+		if (depth > 0) {
+			this.stackChildNanos[depth - 1] += totalNanos;
+		}
+	}
+
+	private long allocatedBytes() {
+		if (!this.allocationTracking) {
+			return 0;
+		}
+		return ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Prints the user functions that took the most time by self time, and the
+	 * natives by total time.
+	 */
+	public void printReport(final PrintStream out, final int limit) {
+		final Map<JassFunction, String> names = getFunctionNames();
+		final List<FunctionProfile> functions = new ArrayList<>();
+		final List<FunctionProfile> natives = new ArrayList<>();
+		for (final FunctionProfile profile : this.profiles.values()) {
+			if (profile.function instanceof NativeJassFunction) {
+				natives.add(profile);
+			}
+			else {
+				functions.add(profile);
+			}
+		}
+		functions.sort((a, b) -> Long.compare(b.selfNanos, a.selfNanos));
+		natives.sort((a, b) -> Long.compare(b.totalNanos, a.totalNanos));
+		long recordedNanos = this.enabledNanos;
+		if (this.enabled) {
+			recordedNanos += System.nanoTime() - this.enabledTime;
+		}
+		out.println("JASS profile over " + (recordedNanos / 1000000) + " ms"
+				+ (this.allocationTracking ? "" : " (allocations not tracked)"));
+		out.println("Functions by self time: calls, self ms, total ms, allocated KiB");
+		printProfiles(out, functions, names, limit);
+		out.println("Natives by total time: calls, self ms, total ms, allocated KiB");
+		printProfiles(out, natives, names, limit);
+	}
+
+	private static void printProfiles(final PrintStream out, final List<FunctionProfile> profiles,
+			final Map<JassFunction, String> names, final int limit) {
+		for (int i = 0; (i < limit) && (i < profiles.size()); i++) {
+			final FunctionProfile profile = profiles.get(i);
+			out.println("  " + getName(names, profile.function) + ": " + profile.calls + ", "
+					+ (profile.selfNanos / 1000000) + ", " + (profile.totalNanos / 1000000) + ", "
+					+ (profile.allocatedBytes / 1024));
+		}
+	}
+
+	/**
+	 * Writes the self time of every call path in microseconds, in the collapsed
+	 * stack format read by flame graph tools ("main;InitTrig_Foo;CreateUnit 42").
+	 */
+	public void writeCollapsedStacks(final PrintWriter out) {
+		final Map<JassFunction, String> names = getFunctionNames();
+		final StringBuilder path = new StringBuilder();
+		for (final CallNode child : this.root.children.values()) {
+			writeCollapsedStacks(out, names, child, path);
+		}
+		out.flush();
+	}
+
+	private static void writeCollapsedStacks(final PrintWriter out, final Map<JassFunction, String> names,
+			final CallNode node, final StringBuilder path) {
+		final int pathLength = path.length();
+		if (pathLength > 0) {
+			path.append(';');
+		}
+		path.append(getName(names, node.function));
+		final long selfMicros = node.selfNanos / 1000;
+		if (selfMicros > 0) {
+			out.print(path);
+			out.print(' ');
+			out.println(selfMicros);
+		}
+		for (final CallNode child : node.children.values()) {
+			writeCollapsedStacks(out, names, child, path);
+		}
+		path.setLength(pathLength);
+	}
+
+	private Map<JassFunction, String> getFunctionNames() {
+		final Map<JassFunction, String> names = new IdentityHashMap<>();
+		for (final Map.Entry<String, JassFunction> entry : this.globalScope.getFunctions().entrySet()) {
+			JassFunction function = entry.getValue();
+			if (function instanceof DebuggingJassFunction) {
+				function = ((DebuggingJassFunction) function).getDelegate();
+			}
+			names.put(function, entry.getKey());
+		}
+		return names;
+	}
+
+	private static String getName(final Map<JassFunction, String> names, final JassFunction function) {
+		final String name = names.get(function);
+		if (name != null) {
+			return name;
+		}
+		if (function instanceof NativeJassFunction) {
+			return ((NativeJassFunction) function).getName();
+		}
+		return "<anonymous>";
+	}
+
+	private static final class FunctionProfile {
+		private final JassFunction function;
+		private long calls;
+		private long selfNanos;
+		private long totalNanos;
+		private long allocatedBytes;
+		// how many calls are on the stack, for recursion
+		private int active;
+
+		public FunctionProfile(final JassFunction function) {
+			this.function = function;
+		}
+	}
+
+	private static final class CallNode {
+		private final JassFunction function;
+		private final Map<JassFunction, CallNode> children = new HashMap<>();
+		private long selfNanos;
+
+		public CallNode(final JassFunction function) {
+			this.function = function;
+		}
+
+		public CallNode getChild(final JassFunction function) {
+			CallNode child = this.children.get(function);
+			if (child == null) {
+				child = new CallNode(function);
+				this.children.put(function, child);
+			}
+			return child;
+		}
+	}
+}
@@ -1,9 +1,14 @@
 package com.etheller.interpreter.ast.expression;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
 import com.etheller.interpreter.ast.value.IntegerJassValue;
+import com.etheller.interpreter.ast.value.JassType;
 import com.etheller.interpreter.ast.value.JassValue;
 import com.etheller.interpreter.ast.value.visitor.ArithmeticJassValueVisitor;
 import com.etheller.interpreter.ast.value.visitor.ArithmeticLeftHandNullJassValueVisitor;
@@ -26,20 +31,140 @@ public class ArithmeticJassExpression implements JassExpression {
 			final TriggerExecutionScope triggerScope) {
 		final JassValue leftValue = this.leftExpression.evaluate(globalScope, localScope, triggerScope);
 		final JassValue rightValue = this.rightExpression.evaluate(globalScope, localScope, triggerScope);
+		return apply(leftValue, rightValue, this.arithmeticSign);
+	}
+
+	public static JassValue apply(final JassValue leftValue, final JassValue rightValue,
+			final ArithmeticSign arithmeticSign) {
 		try {
 			if (leftValue == null) {
 				if (rightValue == null) {
-					return this.arithmeticSign.apply((String) null, (String) null);
+					return arithmeticSign.apply((String) null, (String) null);
 				}
 				else {
-					return rightValue.visit(ArithmeticLeftHandNullJassValueVisitor.INSTANCE.reset(this.arithmeticSign));
+					return rightValue.visit(ArithmeticLeftHandNullJassValueVisitor.INSTANCE.reset(arithmeticSign));
 				}
 			}
-			return leftValue.visit(ArithmeticJassValueVisitor.INSTANCE.reset(rightValue, this.arithmeticSign));
+			return leftValue.visit(ArithmeticJassValueVisitor.INSTANCE.reset(rightValue, arithmeticSign));
 		}
 		catch (final ArithmeticException exception) {
 			exception.printStackTrace();
 			return IntegerJassValue.ZERO;
 		}
 	}
+
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		final JassType leftType = this.leftExpression.getStaticType(compiler);
+		final JassType rightType = this.rightExpression.getStaticType(compiler);
+		if (compiler.isUnboxingArithmetic() && isNumeric(leftType) && isNumeric(rightType)) {
+			if (isNumericOperator(this.arithmeticSign)) {
+				if ((leftType == JassType.INTEGER) && (rightType == JassType.INTEGER)) {
+					compileInt(compiler);
+					compiler.emit(JassBytecodeOps.BOX_INT);
+				}
+				else {
+					compileReal(compiler);
+					compiler.emit(JassBytecodeOps.BOX_REAL);
+				}
+				return;
+			}
+			if (isComparisonOperator(this.arithmeticSign)) {
+				if ((leftType == JassType.INTEGER) && (rightType == JassType.INTEGER)) {
+					compiler.compileInt(this.leftExpression);
+					compiler.compileInt(this.rightExpression);
+					compiler.emit(JassBytecodeOps.COMPARE_INT, compiler.addConstant(this.arithmeticSign));
+				}
+				else {
+					compiler.compileReal(this.leftExpression);
+					compiler.compileReal(this.rightExpression);
+					compiler.emit(JassBytecodeOps.COMPARE_REAL, compiler.addConstant(this.arithmeticSign));
+				}
+				return;
+			}
+		}
+		compiler.compileExpression(this.leftExpression);
+		compiler.compileExpression(this.rightExpression);
+		compiler.emit(JassBytecodeOps.ARITHMETIC, compiler.addConstant(this.arithmeticSign));
+	}
+
+	@Override
+	public JassType getStaticType(final JassBytecodeCompiler compiler) {
+		if (isComparisonOperator(this.arithmeticSign) || (this.arithmeticSign == ArithmeticSigns.AND)
+				|| (this.arithmeticSign == ArithmeticSigns.OR)) {
+			return JassType.BOOLEAN;
+		}
+		final JassType leftType = this.leftExpression.getStaticType(compiler);
+		final JassType rightType = this.rightExpression.getStaticType(compiler);
+		if (isNumericOperator(this.arithmeticSign) && isNumeric(leftType) && isNumeric(rightType)) {
+			if ((leftType == JassType.INTEGER) && (rightType == JassType.INTEGER)) {
+				return JassType.INTEGER;
+			}
+			return JassType.REAL;
+		}
+		if ((this.arithmeticSign == ArithmeticSigns.ADD) && (leftType == JassType.STRING)
+				&& (rightType == JassType.STRING)) {
+			return JassType.STRING;
+		}
+		return null;
+	}
+
+	@Override
+	public void compileInt(final JassBytecodeCompiler compiler) {
+		compiler.compileInt(this.leftExpression);
+		compiler.compileInt(this.rightExpression);
+		compiler.emit(numericOpcode(this.arithmeticSign, JassBytecodeOps.ADD_INT, JassBytecodeOps.SUBTRACT_INT,
+				JassBytecodeOps.MULTIPLY_INT, JassBytecodeOps.DIVIDE_INT));
+	}
+
+	@Override
+	public void compileReal(final JassBytecodeCompiler compiler) {
+		if (getStaticType(compiler) == JassType.INTEGER) {
+			JassExpression.super.compileReal(compiler);
+			return;
+		}
+		compiler.compileReal(this.leftExpression);
+		compiler.compileReal(this.rightExpression);
+		compiler.emit(numericOpcode(this.arithmeticSign, JassBytecodeOps.ADD_REAL, JassBytecodeOps.SUBTRACT_REAL,
+				JassBytecodeOps.MULTIPLY_REAL, JassBytecodeOps.DIVIDE_REAL));
+	}
+
+	private static boolean isNumeric(final JassType type) {
+		return (type == JassType.INTEGER) || (type == JassType.REAL);
+	}
+
+	private static boolean isNumericOperator(final ArithmeticSign sign) {
+		return (sign == ArithmeticSigns.ADD) || (sign == ArithmeticSigns.SUBTRACT)
+				|| (sign == ArithmeticSigns.MULTIPLY) || (sign == ArithmeticSigns.DIVIDE);
+	}
+
+	private static boolean isComparisonOperator(final ArithmeticSign sign) {
+		return (sign == ArithmeticSigns.EQUALS) || (sign == ArithmeticSigns.NOT_EQUALS)
+				|| (sign == ArithmeticSigns.LESS) || (sign == ArithmeticSigns.LESS_OR_EQUALS)
+				|| (sign == ArithmeticSigns.GREATER) || (sign == ArithmeticSigns.GREATER_OR_EQUALS);
+	}
+
+	private static int numericOpcode(final ArithmeticSign sign, final int add, final int subtract,
+			final int multiply, final int divide) {
+		if (sign == ArithmeticSigns.ADD) {
+			return add;
+		}
+		else if (sign == ArithmeticSigns.SUBTRACT) {
+			return subtract;
+		}
+		else if (sign == ArithmeticSigns.MULTIPLY) {
+			return multiply;
+		}
+		else {
+			return divide;
+		}
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.ARITHMETIC_EXPRESSION);
+		writer.writeExpression(this.leftExpression);
+		writer.writeExpression(this.rightExpression);
+		writer.writeSign(this.arithmeticSign);
+	}
 }
@@ -32,7 +32,7 @@ public enum ArithmeticSigns implements ArithmeticSign {
 
 		@Override
 		public JassValue apply(final IntegerJassValue left, final IntegerJassValue right) {
-			return new IntegerJassValue(left.getValue() + right.getValue());
+			return IntegerJassValue.of(left.getValue() + right.getValue());
 		}
 
 		@Override
@@ -73,7 +73,7 @@ public enum ArithmeticSigns implements ArithmeticSign {
 
 		@Override
 		public JassValue apply(final IntegerJassValue left, final IntegerJassValue right) {
-			return new IntegerJassValue(left.getValue() - right.getValue());
+			return IntegerJassValue.of(left.getValue() - right.getValue());
 		}
 
 		@Override
@@ -114,7 +114,7 @@ public enum ArithmeticSigns implements ArithmeticSign {
 
 		@Override
 		public JassValue apply(final IntegerJassValue left, final IntegerJassValue right) {
-			return new IntegerJassValue(left.getValue() * right.getValue());
+			return IntegerJassValue.of(left.getValue() * right.getValue());
 		}
 
 		@Override
@@ -155,7 +155,7 @@ public enum ArithmeticSigns implements ArithmeticSign {
 
 		@Override
 		public JassValue apply(final IntegerJassValue left, final IntegerJassValue right) {
-			return new IntegerJassValue(left.getValue() / right.getValue());
+			return IntegerJassValue.of(left.getValue() / right.getValue());
 		}
 
 		@Override
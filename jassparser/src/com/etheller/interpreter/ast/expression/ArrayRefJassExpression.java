@@ -1,12 +1,18 @@
 package com.etheller.interpreter.ast.expression;
 
 import com.etheller.interpreter.ast.Assignable;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
 import com.etheller.interpreter.ast.value.ArrayJassValue;
+import com.etheller.interpreter.ast.value.JassType;
 import com.etheller.interpreter.ast.value.JassValue;
 import com.etheller.interpreter.ast.value.visitor.ArrayJassValueVisitor;
+import com.etheller.interpreter.ast.value.visitor.ArrayPrimitiveTypeVisitor;
 import com.etheller.interpreter.ast.value.visitor.IntegerJassValueVisitor;
 
 public class ArrayRefJassExpression implements JassExpression {
@@ -38,4 +44,33 @@ public class ArrayRefJassExpression implements JassExpression {
 		}
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		compiler.compileExpression(this.indexExpression);
+		final int slot = compiler.getLocalSlot(this.identifier);
+		if (slot != -1) {
+			compiler.emit(JassBytecodeOps.LOAD_LOCAL_ARRAY, slot);
+		}
+		else {
+			compiler.emit(JassBytecodeOps.LOAD_GLOBAL_ARRAY, compiler.getGlobalReference(this.identifier));
+		}
+	}
+
+	@Override
+	public JassType getStaticType(final JassBytecodeCompiler compiler) {
+		final int slot = compiler.getLocalSlot(this.identifier);
+		final JassType arrayType = slot != -1 ? compiler.getLocalType(slot) : compiler.getGlobalType(this.identifier);
+		if (arrayType == null) {
+			return null;
+		}
+		return arrayType.visit(ArrayPrimitiveTypeVisitor.getInstance());
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.ARRAY_REF_EXPRESSION);
+		writer.writeString(this.identifier);
+		writer.writeExpression(this.indexExpression);
+	}
+
 }
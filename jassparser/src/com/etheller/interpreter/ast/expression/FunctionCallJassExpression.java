@@ -3,11 +3,15 @@ package com.etheller.interpreter.ast.expression;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.debug.JassException;
 import com.etheller.interpreter.ast.function.JassFunction;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
+import com.etheller.interpreter.ast.value.JassType;
 import com.etheller.interpreter.ast.value.JassValue;
 
 public class FunctionCallJassExpression implements JassExpression {
@@ -39,4 +43,24 @@ public class FunctionCallJassExpression implements JassExpression {
 		}
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		for (final JassExpression argument : this.arguments) {
+			compiler.compileExpression(argument);
+		}
+		compiler.emitCall(this.functionName, this.arguments.size(), false);
+	}
+
+	@Override
+	public JassType getStaticType(final JassBytecodeCompiler compiler) {
+		return compiler.getFunctionReturnType(this.functionName);
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.FUNCTION_CALL_EXPRESSION);
+		writer.writeString(this.functionName);
+		writer.writeExpressions(this.arguments);
+	}
+
 }
@@ -1,10 +1,15 @@
 package com.etheller.interpreter.ast.expression;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.function.JassFunction;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
 import com.etheller.interpreter.ast.value.CodeJassValue;
+import com.etheller.interpreter.ast.value.JassType;
 import com.etheller.interpreter.ast.value.JassValue;
 
 public class FunctionReferenceJassExpression implements JassExpression {
@@ -24,4 +29,20 @@ public class FunctionReferenceJassExpression implements JassExpression {
 		return new CodeJassValue(functionByName);
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		compiler.emit(JassBytecodeOps.FUNCTION_REFERENCE, compiler.getCallSite(this.identifier));
+	}
+
+	@Override
+	public JassType getStaticType(final JassBytecodeCompiler compiler) {
+		return JassType.CODE;
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.FUNCTION_REFERENCE_EXPRESSION);
+		writer.writeString(this.identifier);
+	}
+
 }
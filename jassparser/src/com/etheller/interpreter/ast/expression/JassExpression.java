@@ -1,10 +1,55 @@
 package com.etheller.interpreter.ast.expression;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
+import com.etheller.interpreter.ast.value.JassType;
 import com.etheller.interpreter.ast.value.JassValue;
 
 public interface JassExpression {
 	JassValue evaluate(GlobalScope globalScope, LocalScope localScope, TriggerExecutionScope triggerScope);
+
+	/**
+	 * Emits code that pushes the value of this expression.
+	 */
+	void compile(JassBytecodeCompiler compiler);
+
+	/**
+	 * Writes this expression to the program cache, see
+	 * {@link com.etheller.interpreter.ast.cache.JassProgramFormat}.
+	 */
+	void write(JassProgramWriter writer);
+
+	/**
+	 * @return the type of every value this expression can evaluate to, as far as
+	 *         it is known from declarations, or null
+	 */
+	JassType getStaticType(JassBytecodeCompiler compiler);
+
+	/**
+	 * Emits code that pushes the value of this expression as an unboxed integer.
+	 * Only used when the static type is integer.
+	 */
+	default void compileInt(final JassBytecodeCompiler compiler) {
+		compile(compiler);
+		compiler.emit(JassBytecodeOps.UNBOX_INT);
+	}
+
+	/**
+	 * Emits code that pushes the value of this expression as an unboxed real.
+	 * Only used when the static type is integer or real.
+	 */
+	default void compileReal(final JassBytecodeCompiler compiler) {
+		if (getStaticType(compiler) == JassType.INTEGER) {
+			compileInt(compiler);
+			compiler.emit(JassBytecodeOps.INT_TO_REAL);
+		}
+		else {
+			compile(compiler);
+			compiler.emit(JassBytecodeOps.UNBOX_REAL);
+		}
+	}
 }
@@ -1,9 +1,17 @@
 package com.etheller.interpreter.ast.expression;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
+import com.etheller.interpreter.ast.value.JassType;
 import com.etheller.interpreter.ast.value.JassValue;
+import com.etheller.interpreter.ast.value.visitor.IntegerJassValueVisitor;
+import com.etheller.interpreter.ast.value.visitor.JassTypeGettingValueVisitor;
+import com.etheller.interpreter.ast.value.visitor.RealJassValueVisitor;
 
 public class LiteralJassExpression implements JassExpression {
 	private final JassValue value;
@@ -18,4 +26,34 @@ public class LiteralJassExpression implements JassExpression {
 		return this.value;
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		compiler.emit(JassBytecodeOps.PUSH_CONSTANT, compiler.addConstant(this.value));
+	}
+
+	@Override
+	public JassType getStaticType(final JassBytecodeCompiler compiler) {
+		if (this.value == null) {
+			return null;
+		}
+		return this.value.visit(JassTypeGettingValueVisitor.getInstance());
+	}
+
+	@Override
+	public void compileInt(final JassBytecodeCompiler compiler) {
+		compiler.emit(JassBytecodeOps.PUSH_INT, this.value.visit(IntegerJassValueVisitor.getInstance()));
+	}
+
+	@Override
+	public void compileReal(final JassBytecodeCompiler compiler) {
+		compiler.emit(JassBytecodeOps.PUSH_REAL,
+				compiler.addConstant(this.value.visit(RealJassValueVisitor.getInstance())));
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.LITERAL_EXPRESSION);
+		writer.writeValue(this.value);
+	}
+
 }
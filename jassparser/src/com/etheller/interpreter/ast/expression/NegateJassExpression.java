@@ -1,8 +1,13 @@
 package com.etheller.interpreter.ast.expression;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
+import com.etheller.interpreter.ast.value.JassType;
 import com.etheller.interpreter.ast.value.JassValue;
 import com.etheller.interpreter.ast.value.visitor.NegateJassValueVisitor;
 
@@ -19,4 +24,53 @@ public class NegateJassExpression implements JassExpression {
 		return this.expression.evaluate(globalScope, localScope, triggerScope)
 				.visit(NegateJassValueVisitor.getInstance());
 	}
+
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		final JassType type = compiler.isUnboxingArithmetic() ? getStaticType(compiler) : null;
+		if (type == JassType.INTEGER) {
+			compileInt(compiler);
+			compiler.emit(JassBytecodeOps.BOX_INT);
+		}
+		else if (type == JassType.REAL) {
+			compileReal(compiler);
+			compiler.emit(JassBytecodeOps.BOX_REAL);
+		}
+		else {
+			compiler.compileExpression(this.expression);
+			compiler.emit(JassBytecodeOps.NEGATE);
+		}
+	}
+
+	@Override
+	public JassType getStaticType(final JassBytecodeCompiler compiler) {
+		final JassType type = this.expression.getStaticType(compiler);
+		if ((type == JassType.INTEGER) || (type == JassType.REAL)) {
+			return type;
+		}
+		return null;
+	}
+
+	@Override
+	public void compileInt(final JassBytecodeCompiler compiler) {
+		compiler.compileInt(this.expression);
+		compiler.emit(JassBytecodeOps.NEGATE_INT);
+	}
+
+	@Override
+	public void compileReal(final JassBytecodeCompiler compiler) {
+		if (getStaticType(compiler) == JassType.INTEGER) {
+			JassExpression.super.compileReal(compiler);
+		}
+		else {
+			compiler.compileReal(this.expression);
+			compiler.emit(JassBytecodeOps.NEGATE_REAL);
+		}
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.NEGATE_EXPRESSION);
+		writer.writeExpression(this.expression);
+	}
 }
@@ -1,8 +1,13 @@
 package com.etheller.interpreter.ast.expression;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
+import com.etheller.interpreter.ast.value.JassType;
 import com.etheller.interpreter.ast.value.JassValue;
 import com.etheller.interpreter.ast.value.visitor.NotJassValueVisitor;
 
@@ -18,4 +23,21 @@ public class NotJassExpression implements JassExpression {
 			final TriggerExecutionScope triggerScope) {
 		return this.expression.evaluate(globalScope, localScope, triggerScope).visit(NotJassValueVisitor.getInstance());
 	}
+
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		compiler.compileExpression(this.expression);
+		compiler.emit(JassBytecodeOps.NOT);
+	}
+
+	@Override
+	public JassType getStaticType(final JassBytecodeCompiler compiler) {
+		return JassType.BOOLEAN;
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.NOT_EXPRESSION);
+		writer.writeExpression(this.expression);
+	}
 }
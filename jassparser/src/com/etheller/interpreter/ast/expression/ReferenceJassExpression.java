@@ -1,9 +1,14 @@
 package com.etheller.interpreter.ast.expression;
 
 import com.etheller.interpreter.ast.Assignable;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
+import com.etheller.interpreter.ast.value.JassType;
 import com.etheller.interpreter.ast.value.JassValue;
 
 public class ReferenceJassExpression implements JassExpression {
@@ -23,4 +28,52 @@ public class ReferenceJassExpression implements JassExpression {
 		return local.getValue();
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		final int slot = compiler.getLocalSlot(this.identifier);
+		if (slot != -1) {
+			compiler.emitLoadLocal(slot);
+		}
+		else {
+			compiler.emit(JassBytecodeOps.LOAD_GLOBAL, compiler.getGlobalReference(this.identifier));
+		}
+	}
+
+	@Override
+	public JassType getStaticType(final JassBytecodeCompiler compiler) {
+		final int slot = compiler.getLocalSlot(this.identifier);
+		if (slot != -1) {
+			return compiler.getLocalStaticType(slot);
+		}
+		return compiler.getGlobalType(this.identifier);
+	}
+
+	@Override
+	public void compileInt(final JassBytecodeCompiler compiler) {
+		final int slot = compiler.getLocalSlot(this.identifier);
+		if ((slot != -1) && compiler.isUnboxedLocal(slot) && (compiler.getLocalType(slot) == JassType.INTEGER)) {
+			compiler.emit(JassBytecodeOps.LOAD_LOCAL_INT, slot);
+		}
+		else {
+			JassExpression.super.compileInt(compiler);
+		}
+	}
+
+	@Override
+	public void compileReal(final JassBytecodeCompiler compiler) {
+		final int slot = compiler.getLocalSlot(this.identifier);
+		if ((slot != -1) && compiler.isUnboxedLocal(slot) && (compiler.getLocalType(slot) == JassType.REAL)) {
+			compiler.emit(JassBytecodeOps.LOAD_LOCAL_REAL, slot);
+		}
+		else {
+			JassExpression.super.compileReal(compiler);
+		}
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.REFERENCE_EXPRESSION);
+		writer.writeString(this.identifier);
+	}
+
 }
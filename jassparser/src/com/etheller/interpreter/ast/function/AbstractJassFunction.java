@@ -3,7 +3,6 @@ package com.etheller.interpreter.ast.function;
 import java.util.List;
 
 import com.etheller.interpreter.ast.scope.GlobalScope;
-import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
 import com.etheller.interpreter.ast.value.JassType;
 import com.etheller.interpreter.ast.value.JassValue;
@@ -30,28 +29,42 @@ public abstract class AbstractJassFunction implements JassFunction {
 		if (arguments.size() != this.parameters.size()) {
 			throw new RuntimeException("Invalid number of arguments passed to function");
 		}
-		final LocalScope localScope = new LocalScope();
 		for (int i = 0; i < this.parameters.size(); i++) {
-			final JassParameter parameter = this.parameters.get(i);
-			final JassValue argument = arguments.get(i);
-			if (!parameter.matchesType(argument)) {
-				if ((parameter == null) || (argument == null)) {
-					System.err.println(
-							"Returning null because we called some Jass function with incorrect argument types, and the types were null!!!");
-					System.err.println("This is a temporary hack for tests and showcase programming solutions");
-					return null;
-				}
+			if (!checkArgument(i, arguments.get(i))) {
+				return null;
+			}
+		}
+		return innerCall(arguments, globalScope, triggerScope);
+	}
+
+	/**
+	 * @return false if the call should be skipped and return null
+	 */
+	public boolean checkArgument(final int index, final JassValue argument) {
+		final JassParameter parameter = this.parameters.get(index);
+		if (!parameter.matchesType(argument)) {
+			if ((parameter == null) || (argument == null)) {
 				System.err.println(
-						parameter.getType() + " != " + argument.visit(JassTypeGettingValueVisitor.getInstance()));
-				throw new RuntimeException(
-						"Invalid type " + argument.visit(JassTypeGettingValueVisitor.getInstance()).getName()
-								+ " for specified argument " + parameter.getType().getName());
+						"Returning null because we called some Jass function with incorrect argument types, and the types were null!!!");
+				System.err.println("This is a temporary hack for tests and showcase programming solutions");
+				return false;
 			}
-			localScope.createLocal(parameter.getIdentifier(), parameter.getType(), argument);
+			System.err.println(parameter.getType() + " != " + argument.visit(JassTypeGettingValueVisitor.getInstance()));
+			throw new RuntimeException(
+					"Invalid type " + argument.visit(JassTypeGettingValueVisitor.getInstance()).getName()
+							+ " for specified argument " + parameter.getType().getName());
 		}
-		return innerCall(arguments, globalScope, triggerScope, localScope);
+		return true;
+	}
+
+	public List<JassParameter> getParameters() {
+		return this.parameters;
+	}
+
+	public JassType getReturnType() {
+		return this.returnType;
 	}
 
 	protected abstract JassValue innerCall(final List<JassValue> arguments, final GlobalScope globalScope,
-			TriggerExecutionScope triggerScope, final LocalScope localScope);
+			TriggerExecutionScope triggerScope);
 }
@@ -0,0 +1,16 @@
+package com.etheller.interpreter.ast.function;
+
+import com.etheller.interpreter.ast.scope.GlobalScope;
+import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
+import com.etheller.interpreter.ast.value.JassValue;
+
+/**
+ * The code of a native. The arguments are read from an array, which is the
+ * stack of the virtual machine when it is called from bytecode, so a call does
+ * not allocate a list. Natives are usually written as one of the
+ * {@link JassNatives} and adapted to this.
+ */
+public interface JassNativeImplementation {
+	JassValue call(JassValue[] arguments, int offset, int count, GlobalScope globalScope,
+			TriggerExecutionScope triggerScope);
+}
@@ -9,30 +9,85 @@ import java.util.Set;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.value.JassType;
 
+/**
+ * Keeps the code of the natives until the scripts declare them. Call sites
+ * keep the {@link NativeJassFunction} they resolve to, so bytecode calls a
+ * native without looking up its name.
+ *
+ * Natives are created with {@link #createNative(String, JassFunction)}, which
+ * allocates a list of arguments for every call, or with one of the
+ * createNative0 to createNative6 methods for natives with that many arguments,
+ * which does not.
+ */
 public class JassNativeManager {
-	private final Map<String, JassFunction> nameToNativeCode;
+	private final Map<String, JassNativeImplementation> nameToNativeCode;
 	private final Set<String> registeredNativeNames = new HashSet<>();
+	private int declaredNativeCount;
+	private int missingNativeCount;
 
 	public JassNativeManager() {
 		this.nameToNativeCode = new HashMap<>();
 	}
 
 	public void createNative(final String name, final JassFunction nativeCode) {
+		createNative(name, JassNatives.fromList(nativeCode));
+	}
+
+	public void createNative(final String name, final JassNativeImplementation nativeCode) {
 		this.nameToNativeCode.put(name, nativeCode);
 	}
 
+	public void createNative0(final String name, final JassNatives.Native0 nativeCode) {
+		createNative(name, JassNatives.of(nativeCode));
+	}
+
+	public void createNative1(final String name, final JassNatives.Native1 nativeCode) {
+		createNative(name, JassNatives.of(nativeCode));
+	}
+
+	public void createNative2(final String name, final JassNatives.Native2 nativeCode) {
+		createNative(name, JassNatives.of(nativeCode));
+	}
+
+	public void createNative3(final String name, final JassNatives.Native3 nativeCode) {
+		createNative(name, JassNatives.of(nativeCode));
+	}
+
+	public void createNative4(final String name, final JassNatives.Native4 nativeCode) {
+		createNative(name, JassNatives.of(nativeCode));
+	}
+
+	public void createNative5(final String name, final JassNatives.Native5 nativeCode) {
+		createNative(name, JassNatives.of(nativeCode));
+	}
+
+	public void createNative6(final String name, final JassNatives.Native6 nativeCode) {
+		createNative(name, JassNatives.of(nativeCode));
+	}
+
 	public void registerNativeCode(final int lineNo, final String sourceFile, final String name,
 			final List<JassParameter> parameters, final JassType returnType, final GlobalScope globals) {
 		if (this.registeredNativeNames.contains(name)) {
 			throw new RuntimeException("Native already registered: " + name);
 		}
-		final JassFunction nativeCode = this.nameToNativeCode.remove(name);
+		final JassNativeImplementation nativeCode = this.nameToNativeCode.remove(name);
+		this.declaredNativeCount++;
+		if (nativeCode == null) {
+			this.missingNativeCount++;
+		}
 		globals.defineFunction(lineNo, sourceFile, name,
 				new NativeJassFunction(parameters, returnType, name, nativeCode));
 		this.registeredNativeNames.add(name);
 	}
 
+	/**
+	 * Reports the natives that were declared by the scripts without code. They
+	 * return the null value of their type when called.
+	 */
 	public void checkUnregisteredNatives() {
-		// TODO maybe do this later
+		if (this.missingNativeCount > 0) {
+			System.err.println(this.missingNativeCount + " of " + this.declaredNativeCount
+					+ " declared natives have no implementation and will return null");
+		}
 	}
 }
@@ -0,0 +1,115 @@
+package com.etheller.interpreter.ast.function;
+
+import java.util.Arrays;
+
+import com.etheller.interpreter.ast.scope.GlobalScope;
+import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
+import com.etheller.interpreter.ast.value.JassValue;
+
+/**
+ * Natives that take their arguments as parameters, for 0 to 6 arguments, and
+ * the adapters that turn them into a {@link JassNativeImplementation}. A native
+ * written as a {@link JassFunction}, which takes a list, still works through
+ * {@link #fromList}, but a list is allocated for each call, so natives that are
+ * called often should be written as one of these.
+ */
+public final class JassNatives {
+	public interface Native0 {
+		JassValue call(GlobalScope globalScope, TriggerExecutionScope triggerScope);
+	}
+
+	public interface Native1 {
+		JassValue call(JassValue arg0, GlobalScope globalScope, TriggerExecutionScope triggerScope);
+	}
+
+	public interface Native2 {
+		JassValue call(JassValue arg0, JassValue arg1, GlobalScope globalScope, TriggerExecutionScope triggerScope);
+	}
+
+	public interface Native3 {
+		JassValue call(JassValue arg0, JassValue arg1, JassValue arg2, GlobalScope globalScope,
+				TriggerExecutionScope triggerScope);
+	}
+
+	public interface Native4 {
+		JassValue call(JassValue arg0, JassValue arg1, JassValue arg2, JassValue arg3, GlobalScope globalScope,
+				TriggerExecutionScope triggerScope);
+	}
+
+	public interface Native5 {
+		JassValue call(JassValue arg0, JassValue arg1, JassValue arg2, JassValue arg3, JassValue arg4,
+				GlobalScope globalScope, TriggerExecutionScope triggerScope);
+	}
+
+	public interface Native6 {
+		JassValue call(JassValue arg0, JassValue arg1, JassValue arg2, JassValue arg3, JassValue arg4,
+				JassValue arg5, GlobalScope globalScope, TriggerExecutionScope triggerScope);
+	}
+
+	public static JassNativeImplementation of(final Native0 nativeCode) {
+		return (arguments, offset, count, globalScope, triggerScope) -> nativeCode.call(globalScope, triggerScope);
+	}
+
+	public static JassNativeImplementation of(final Native1 nativeCode) {
+		return (arguments, offset, count, globalScope, triggerScope) -> nativeCode.call(arguments[offset],
+				globalScope, triggerScope);
+	}
+
+	public static JassNativeImplementation of(final Native2 nativeCode) {
+		return (arguments, offset, count, globalScope, triggerScope) -> nativeCode.call(arguments[offset],
+				arguments[offset + 1], globalScope, triggerScope);
+	}
+
+	public static JassNativeImplementation of(final Native3 nativeCode) {
+		return (arguments, offset, count, globalScope, triggerScope) -> nativeCode.call(arguments[offset],
+				arguments[offset + 1], arguments[offset + 2], globalScope, triggerScope);
+	}
+
+	public static JassNativeImplementation of(final Native4 nativeCode) {
+		return (arguments, offset, count, globalScope, triggerScope) -> nativeCode.call(arguments[offset],
+				arguments[offset + 1], arguments[offset + 2], arguments[offset + 3], globalScope, triggerScope);
+	}
+
+	public static JassNativeImplementation of(final Native5 nativeCode) {
+		return (arguments, offset, count, globalScope, triggerScope) -> nativeCode.call(arguments[offset],
+				arguments[offset + 1], arguments[offset + 2], arguments[offset + 3], arguments[offset + 4],
+				globalScope, triggerScope);
+	}
+
+	public static JassNativeImplementation of(final Native6 nativeCode) {
+		return (arguments, offset, count, globalScope, triggerScope) -> nativeCode.call(arguments[offset],
+				arguments[offset + 1], arguments[offset + 2], arguments[offset + 3], arguments[offset + 4],
+				arguments[offset + 5], globalScope, triggerScope);
+	}
+
+	public static JassNativeImplementation fromList(final JassFunction nativeCode) {
+		return new ListNative(nativeCode);
+	}
+
+	private JassNatives() {
+	}
+
+	/**
+	 * Calls a {@link JassFunction} with a copy of the arguments. Calls that
+	 * already have a list, such as the ones from the tree walking interpreter, can
+	 * give it to the function directly.
+	 */
+	public static final class ListNative implements JassNativeImplementation {
+		private final JassFunction function;
+
+		private ListNative(final JassFunction function) {
+			this.function = function;
+		}
+
+		public JassFunction getFunction() {
+			return this.function;
+		}
+
+		@Override
+		public JassValue call(final JassValue[] arguments, final int offset, final int count,
+				final GlobalScope globalScope, final TriggerExecutionScope triggerScope) {
+			return this.function.call(Arrays.asList(Arrays.copyOfRange(arguments, offset, offset + count)),
+					globalScope, triggerScope);
+		}
+	}
+}
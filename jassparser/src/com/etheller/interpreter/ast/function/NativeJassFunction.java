@@ -2,26 +2,71 @@ package com.etheller.interpreter.ast.function;
 
 import java.util.List;
 
+import com.etheller.interpreter.ast.debug.JassProfiler;
 import com.etheller.interpreter.ast.scope.GlobalScope;
-import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
 import com.etheller.interpreter.ast.value.JassType;
 import com.etheller.interpreter.ast.value.JassValue;
 
 public class NativeJassFunction extends AbstractJassFunction {
 	private final String name;
-	private final JassFunction implementation;
+	private final JassNativeImplementation implementation;
 
 	public NativeJassFunction(final List<JassParameter> parameters, final JassType returnType, final String name,
-			final JassFunction impl) {
+			final JassNativeImplementation impl) {
 		super(parameters, returnType);
 		this.name = name;
 		this.implementation = impl;
 	}
 
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Checks the arguments and calls the native with them, like {@link #call}
+	 * without a list.
+	 */
+	public JassValue invoke(final JassValue[] arguments, final int offset, final int count,
+			final GlobalScope globalScope, final TriggerExecutionScope triggerScope) {
+		if (count != this.parameters.size()) {
+			throw new RuntimeException("Invalid number of arguments passed to function");
+		}
+		for (int i = 0; i < count; i++) {
+			if (!checkArgument(i, arguments[offset + i])) {
+				return null;
+			}
+		}
+		final JassProfiler profiler = globalScope.getProfiler();
+		final int profilerDepth = profiler.enter(this);
+		try {
+			return callImplementation(arguments, offset, count, globalScope, triggerScope);
+		}
+		finally {
+			profiler.exitTo(profilerDepth);
+		}
+	}
+
 	@Override
 	protected JassValue innerCall(final List<JassValue> arguments, final GlobalScope globalScope,
-			final TriggerExecutionScope triggerScope, final LocalScope localScope) {
+			final TriggerExecutionScope triggerScope) {
+		final JassProfiler profiler = globalScope.getProfiler();
+		final int profilerDepth = profiler.enter(this);
+		try {
+			if (this.implementation instanceof JassNatives.ListNative) {
+				return ((JassNatives.ListNative) this.implementation).getFunction().call(arguments, globalScope,
+						triggerScope);
+			}
+			return callImplementation(arguments.toArray(new JassValue[arguments.size()]), 0, arguments.size(),
+					globalScope, triggerScope);
+		}
+		finally {
+			profiler.exitTo(profilerDepth);
+		}
+	}
+
+	private JassValue callImplementation(final JassValue[] arguments, final int offset, final int count,
+			final GlobalScope globalScope, final TriggerExecutionScope triggerScope) {
 		if (this.implementation == null) {
 			System.err.println(
 					"Call to native function that was declared but had no native implementation: " + this.name);
@@ -29,6 +74,6 @@ public class NativeJassFunction extends AbstractJassFunction {
 //			throw new UnsupportedOperationException(
 //					"Call to native function that was declared but had no native implementation: " + this.name);
 		}
-		return this.implementation.call(arguments, globalScope, triggerScope);
+		return this.implementation.call(arguments, offset, count, globalScope, triggerScope);
 	}
 }
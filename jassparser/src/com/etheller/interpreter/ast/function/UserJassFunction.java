@@ -2,14 +2,20 @@ package com.etheller.interpreter.ast.function;
 
 import java.util.List;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecode;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
 import com.etheller.interpreter.ast.debug.JassException;
+import com.etheller.interpreter.ast.debug.JassProfiler;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
 import com.etheller.interpreter.ast.statement.JassReturnNothingStatement;
 import com.etheller.interpreter.ast.statement.JassStatement;
+import com.etheller.interpreter.ast.util.JassSettings;
+import com.etheller.interpreter.ast.value.IntegerJassValue;
 import com.etheller.interpreter.ast.value.JassType;
 import com.etheller.interpreter.ast.value.JassValue;
+import com.etheller.interpreter.ast.value.RealJassValue;
 import com.etheller.interpreter.ast.value.visitor.JassTypeGettingValueVisitor;
 
 /**
@@ -20,6 +26,8 @@ import com.etheller.interpreter.ast.value.visitor.JassTypeGettingValueVisitor;
  */
 public final class UserJassFunction extends AbstractJassFunction {
 	private final List<JassStatement> statements;
+	private JassBytecode bytecode;
+	private boolean bytecodeFailed;
 
 	public UserJassFunction(final List<JassStatement> statements, final List<JassParameter> parameters,
 			final JassType returnType) {
@@ -27,28 +35,97 @@ public final class UserJassFunction extends AbstractJassFunction {
 		this.statements = statements;
 	}
 
+	public List<JassStatement> getStatements() {
+		return this.statements;
+	}
+
+	/**
+	 * Compiles the function the first time it is needed. Names are bound to
+	 * globals and functions the first time each instruction runs, so every
+	 * function of the program is usually defined by then.
+	 *
+	 * @return the compiled function, or null if it could not be compiled and
+	 *         must be interpreted from the syntax tree
+	 */
+	public JassBytecode getBytecode(final GlobalScope globalScope) {
+		if ((this.bytecode == null) && !this.bytecodeFailed) {
+			try {
+				this.bytecode = new JassBytecodeCompiler(this, globalScope).compile();
+			}
+			catch (final Exception exc) {
+				System.err.println("Unable to compile function, falling back to tree walking interpreter: " + exc);
+				this.bytecodeFailed = true;
+			}
+		}
+		return this.bytecode;
+	}
+
 	@Override
 	public JassValue innerCall(final List<JassValue> arguments, final GlobalScope globalScope,
-			final TriggerExecutionScope triggerScope, final LocalScope localScope) {
+			final TriggerExecutionScope triggerScope) {
+		if (JassSettings.USE_BYTECODE_INTERPRETER) {
+			final JassBytecode bytecode = getBytecode(globalScope);
+			if (bytecode != null) {
+				return globalScope.getVirtualMachine().call(this, bytecode, arguments, triggerScope);
+			}
+		}
+		// the virtual machine reports its own frames to the profiler
+		final JassProfiler profiler = globalScope.getProfiler();
+		final int profilerDepth = profiler.enter(this);
+		try {
+			return walk(arguments, globalScope, triggerScope);
+		}
+		finally {
+			profiler.exitTo(profilerDepth);
+		}
+	}
+
+	private JassValue walk(final List<JassValue> arguments, final GlobalScope globalScope,
+			final TriggerExecutionScope triggerScope) {
+		final LocalScope localScope = new LocalScope();
+		for (int i = 0; i < this.parameters.size(); i++) {
+			final JassParameter parameter = this.parameters.get(i);
+			localScope.createLocal(parameter.getIdentifier(), parameter.getType(), arguments.get(i));
+		}
 		for (final JassStatement statement : this.statements) {
 			final JassValue returnValue = statement.execute(globalScope, localScope, triggerScope);
 			if (returnValue != null) {
-				if (!this.returnType.isAssignableFrom(returnValue.visit(JassTypeGettingValueVisitor.getInstance()))) {
-					if ((this.returnType == JassType.NOTHING)
-							&& (returnValue == JassReturnNothingStatement.RETURN_NOTHING_NOTICE)) {
-						return null;
-					}
-					else if ((this.returnType.isNullable())
-							&& (returnValue == JassReturnNothingStatement.RETURN_NOTHING_NOTICE)) {
-						return this.returnType.getNullValue();
-					}
-					else {
-						throw new JassException(globalScope, "Invalid return type", null);
-					}
-				}
-				return returnValue;
+				return checkReturnValue(globalScope, returnValue);
 			}
 		}
+		return checkEndOfFunction(globalScope);
+	}
+
+	/**
+	 * @param returnValue the value given to a return statement, or
+	 *                    {@link JassReturnNothingStatement#RETURN_NOTHING_NOTICE}
+	 * @return the value the function call evaluates to
+	 */
+	public JassValue checkReturnValue(final GlobalScope globalScope, final JassValue returnValue) {
+		if (!this.returnType.isAssignableFrom(returnValue.visit(JassTypeGettingValueVisitor.getInstance()))) {
+			if ((this.returnType == JassType.NOTHING)
+					&& (returnValue == JassReturnNothingStatement.RETURN_NOTHING_NOTICE)) {
+				return null;
+			}
+			else if ((this.returnType.isNullable())
+					&& (returnValue == JassReturnNothingStatement.RETURN_NOTHING_NOTICE)) {
+				return this.returnType.getNullValue();
+			}
+			else {
+				throw new JassException(globalScope, "Invalid return type", null);
+			}
+		}
+		if ((this.returnType == JassType.REAL) && (returnValue instanceof IntegerJassValue)) {
+			return new RealJassValue(((IntegerJassValue) returnValue).getValue());
+		}
+		return returnValue;
+	}
+
+	/**
+	 * @return the value the function call evaluates to when execution reaches the
+	 *         end of the function without a return statement
+	 */
+	public JassValue checkEndOfFunction(final GlobalScope globalScope) {
 		if (JassType.NOTHING != this.returnType) {
 			throw new JassException(globalScope, "Invalid return type", null);
 		}
@@ -5,11 +5,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.etheller.interpreter.ast.Assignable;
+import com.etheller.interpreter.ast.bytecode.JassVirtualMachine;
 import com.etheller.interpreter.ast.debug.DebuggingJassFunction;
+import com.etheller.interpreter.ast.debug.JassProfiler;
 import com.etheller.interpreter.ast.debug.JassStackElement;
 import com.etheller.interpreter.ast.function.JassFunction;
 import com.etheller.interpreter.ast.scope.trigger.RemovableTriggerEvent;
@@ -21,6 +26,7 @@ import com.etheller.interpreter.ast.util.JassSettings;
 import com.etheller.interpreter.ast.value.ArrayJassType;
 import com.etheller.interpreter.ast.value.ArrayJassValue;
 import com.etheller.interpreter.ast.value.HandleJassType;
+import com.etheller.interpreter.ast.value.HandleJassValue;
 import com.etheller.interpreter.ast.value.JassType;
 import com.etheller.interpreter.ast.value.JassValue;
 import com.etheller.interpreter.ast.value.PrimitiveJassType;
@@ -35,10 +41,13 @@ public final class GlobalScope {
 	private final HandleTypeSuperTypeLoadingVisitor handleTypeSuperTypeLoadingVisitor = new HandleTypeSuperTypeLoadingVisitor();
 	private final ArrayDeque<QueuedCallback> triggerQueue = new ArrayDeque<>();
 	private final ArrayDeque<QueuedCallback> runningTriggerQueue = new ArrayDeque<>();
+	private final Set<Trigger> triggers = new LinkedHashSet<>();
 
 	public final HandleJassType handleType;
 
 	private final ArrayDeque<JassStackElement> jassStack = new ArrayDeque<>();
+	private final JassProfiler profiler = new JassProfiler(this);
+	private final JassVirtualMachine virtualMachine = new JassVirtualMachine(this);
 	private boolean debug;
 
 	public GlobalScope() {
@@ -51,6 +60,14 @@ public final class GlobalScope {
 		registerPrimitiveType(JassType.STRING);
 	}
 
+	public JassVirtualMachine getVirtualMachine() {
+		return this.virtualMachine;
+	}
+
+	public JassProfiler getProfiler() {
+		return this.profiler;
+	}
+
 	public Deque<JassStackElement> getJassStack() {
 		return this.jassStack;
 	}
@@ -154,6 +171,10 @@ public final class GlobalScope {
 		return this.functions.get(name);
 	}
 
+	public Map<String, JassFunction> getFunctions() {
+		return Collections.unmodifiableMap(this.functions);
+	}
+
 	public JassType parseType(final String text) {
 		final JassType type = this.types.get(text);
 		if (type != null) {
@@ -227,6 +248,46 @@ public final class GlobalScope {
 		}
 	}
 
+	public Trigger createTrigger(final int handleId) {
+		final Trigger trigger = new Trigger(handleId);
+		this.triggers.add(trigger);
+		return trigger;
+	}
+
+	public void destroyTrigger(final Trigger trigger) {
+		trigger.destroy();
+		this.triggers.remove(trigger);
+	}
+
+	/**
+	 * Prints the triggers that took the most time to evaluate and execute, named
+	 * after the global that holds them when there is one (such as gg_trg_ globals
+	 * of the world editor).
+	 */
+	public void printTriggerMetrics(final int limit) {
+		final Map<Trigger, String> triggerNames = new IdentityHashMap<>();
+		for (final Map.Entry<String, GlobalScopeAssignable> entry : this.globals.entrySet()) {
+			final JassValue value = entry.getValue().getValue();
+			if ((value instanceof HandleJassValue) && (((HandleJassValue) value).getJavaValue() instanceof Trigger)) {
+				triggerNames.put((Trigger) ((HandleJassValue) value).getJavaValue(), entry.getKey());
+			}
+		}
+		final List<Trigger> sortedTriggers = new ArrayList<>(this.triggers);
+		sortedTriggers.sort((a, b) -> Long.compare(b.getEvalNanos() + b.getExecNanos(),
+				a.getEvalNanos() + a.getExecNanos()));
+		System.out.println("Trigger metrics (" + sortedTriggers.size() + " triggers):");
+		for (int i = 0; (i < limit) && (i < sortedTriggers.size()); i++) {
+			final Trigger trigger = sortedTriggers.get(i);
+			String name = triggerNames.get(trigger);
+			if (name == null) {
+				name = "trigger " + trigger.getHandleId();
+			}
+			System.out.println("  " + name + ": " + trigger.getEvalCount() + " evals in "
+					+ (trigger.getEvalNanos() / 1000000) + " ms, " + trigger.getExecCount() + " execs in "
+					+ (trigger.getExecNanos() / 1000000) + " ms");
+		}
+	}
+
 	public void queueFunction(final JassFunction function, final TriggerExecutionScope scope) {
 		this.triggerQueue.add(new QueuedFunction(function, scope));
 	}
@@ -1,9 +1,9 @@
 package com.etheller.interpreter.ast.scope.trigger;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
+import com.etheller.interpreter.ast.bytecode.JassThread;
 import com.etheller.interpreter.ast.debug.JassException;
 import com.etheller.interpreter.ast.function.JassFunction;
 import com.etheller.interpreter.ast.scope.GlobalScope;
@@ -11,17 +11,30 @@ import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
 import com.etheller.interpreter.ast.util.CHandle;
 
 public class Trigger implements CHandle {
-	private static int STUPID_STATIC_TRIGGER_COUNT_DELETE_THIS_LATER = 452354453;
-	private final int handleId = STUPID_STATIC_TRIGGER_COUNT_DELETE_THIS_LATER++;
+	private final int handleId;
 	private final List<TriggerBooleanExpression> conditions = new ArrayList<>();
 	private final List<JassFunction> actions = new ArrayList<>();
 	private int evalCount;
 	private int execCount;
+	private long evalNanos;
+	private long execNanos;
 	private boolean enabled = true;
 	// used for eval
 	private transient final TriggerExecutionScope triggerExecutionScope = new TriggerExecutionScope(this);
 	private boolean waitOnSleeps = true;
 
+	/**
+	 * For triggers the engine uses internally, which scripts never see and which
+	 * have no handle ID.
+	 */
+	public Trigger() {
+		this(0);
+	}
+
+	public Trigger(final int handleId) {
+		this.handleId = handleId;
+	}
+
 	public int addAction(final JassFunction function) {
 		final int index = this.actions.size();
 		this.actions.add(function);
@@ -54,32 +67,80 @@ public class Trigger implements CHandle {
 		return this.execCount;
 	}
 
+	/**
+	 * @return nanoseconds spent evaluating the conditions of this trigger
+	 */
+	public long getEvalNanos() {
+		return this.evalNanos;
+	}
+
+	/**
+	 * @return nanoseconds spent running the actions of this trigger, not counting
+	 *         the actions that ran after a sleep
+	 */
+	public long getExecNanos() {
+		return this.execNanos;
+	}
+
 	public boolean evaluate(final GlobalScope globalScope, final TriggerExecutionScope triggerScope) {
-		for (final TriggerBooleanExpression condition : this.conditions) {
-			if (!condition.evaluate(globalScope, triggerScope)) {
-				return false;
+		this.evalCount++;
+		final long startTime = System.nanoTime();
+		try {
+			for (final TriggerBooleanExpression condition : this.conditions) {
+				if (!condition.evaluate(globalScope, triggerScope)) {
+					return false;
+				}
 			}
+			return true;
+		}
+		finally {
+			this.evalNanos += System.nanoTime() - startTime;
 		}
-		return true;
 	}
 
 	public void execute(final GlobalScope globalScope, final TriggerExecutionScope triggerScope) {
 		if (!this.enabled) {
 			return;
 		}
-		for (final JassFunction action : this.actions) {
+		this.execCount++;
+		final long startTime = System.nanoTime();
+		try {
+			executeActions(globalScope, triggerScope, 0);
+		}
+		finally {
+			this.execNanos += System.nanoTime() - startTime;
+		}
+	}
+
+	/**
+	 * Runs the actions from the given index on. Each action runs as a JASS thread,
+	 * and when one sleeps, the actions after it run once it has been resumed and
+	 * returned.
+	 */
+	private void executeActions(final GlobalScope globalScope, final TriggerExecutionScope triggerScope,
+			final int firstAction) {
+		for (int i = firstAction; i < this.actions.size(); i++) {
+			final JassFunction action = this.actions.get(i);
+			final JassThread thread;
 			try {
-				action.call(Collections.emptyList(), globalScope, triggerScope);
+				thread = globalScope.getVirtualMachine().callAsThread(action, triggerScope);
 			}
 			catch (final Exception e) {
 				if ((e.getMessage() != null) && e.getMessage().startsWith("Needs to sleep")) {
-					// TODO not good design
+					// a sleep where the thread cannot be suspended, such as in a
+					// callback of a native
 					e.printStackTrace();
+					continue;
 				}
 				else {
 					throw new JassException(globalScope, "Exception during Trigger action execute", e);
 				}
 			}
+			if (thread != null) {
+				final int nextAction = i + 1;
+				thread.setContinuation(() -> executeActions(globalScope, triggerScope, nextAction));
+				return;
+			}
 		}
 	}
 
@@ -100,6 +161,8 @@ public class Trigger implements CHandle {
 		this.conditions.clear();
 		this.evalCount = 0;
 		this.execCount = 0;
+		this.evalNanos = 0;
+		this.execNanos = 0;
 		this.enabled = true;
 		this.waitOnSleeps = true;
 	}
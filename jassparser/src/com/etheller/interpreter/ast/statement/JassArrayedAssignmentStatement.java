@@ -1,6 +1,10 @@
 package com.etheller.interpreter.ast.statement;
 
 import com.etheller.interpreter.ast.Assignable;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.debug.JassException;
 import com.etheller.interpreter.ast.expression.JassExpression;
 import com.etheller.interpreter.ast.scope.GlobalScope;
@@ -52,4 +56,25 @@ public class JassArrayedAssignmentStatement implements JassStatement {
 		return null;
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		compiler.compileExpression(this.indexExpression);
+		compiler.compileExpression(this.expression);
+		final int slot = compiler.getLocalSlot(this.identifier);
+		if (slot != -1) {
+			compiler.emit(JassBytecodeOps.STORE_LOCAL_ARRAY, slot);
+		}
+		else {
+			compiler.emit(JassBytecodeOps.STORE_GLOBAL_ARRAY, compiler.getGlobalReference(this.identifier));
+		}
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.ARRAYED_ASSIGNMENT_STATEMENT);
+		writer.writeString(this.identifier);
+		writer.writeExpression(this.indexExpression);
+		writer.writeExpression(this.expression);
+	}
+
 }
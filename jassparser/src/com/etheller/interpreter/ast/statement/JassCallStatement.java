@@ -3,6 +3,9 @@ package com.etheller.interpreter.ast.statement;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.expression.JassExpression;
 import com.etheller.interpreter.ast.function.JassFunction;
 import com.etheller.interpreter.ast.scope.GlobalScope;
@@ -43,4 +46,19 @@ public class JassCallStatement implements JassStatement {
 		return null;
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		for (final JassExpression argument : this.arguments) {
+			compiler.compileExpression(argument);
+		}
+		compiler.emitCall(this.functionName, this.arguments.size(), true);
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.CALL_STATEMENT);
+		writer.writeString(this.functionName);
+		writer.writeExpressions(this.arguments);
+	}
+
 }
@@ -1,5 +1,8 @@
 package com.etheller.interpreter.ast.statement;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
@@ -13,4 +16,13 @@ public class JassDoNothingStatement implements JassStatement {
 		return null;
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.DO_NOTHING_STATEMENT);
+	}
+
 }
@@ -1,5 +1,8 @@
 package com.etheller.interpreter.ast.statement;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.expression.JassExpression;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
@@ -26,4 +29,16 @@ public class JassExitWhenStatement implements JassStatement {
 		return null;
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		compiler.compileExpression(this.expression);
+		compiler.emitExitWhen();
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.EXIT_WHEN_STATEMENT);
+		writer.writeExpression(this.expression);
+	}
+
 }
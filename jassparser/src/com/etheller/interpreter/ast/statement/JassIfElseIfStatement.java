@@ -2,6 +2,10 @@ package com.etheller.interpreter.ast.statement;
 
 import java.util.List;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.expression.JassExpression;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
@@ -39,4 +43,23 @@ public class JassIfElseIfStatement implements JassStatement {
 		return null;
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		compiler.compileExpression(this.condition);
+		final int elseJump = compiler.emitJump(JassBytecodeOps.JUMP_IF_FALSE);
+		compiler.compileStatements(this.thenStatements);
+		final int endJump = compiler.emitJump(JassBytecodeOps.JUMP);
+		compiler.patchJump(elseJump);
+		this.elseifTail.compile(compiler);
+		compiler.patchJump(endJump);
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.IF_ELSE_IF_STATEMENT);
+		writer.writeExpression(this.condition);
+		writer.writeStatements(this.thenStatements);
+		writer.writeStatement(this.elseifTail);
+	}
+
 }
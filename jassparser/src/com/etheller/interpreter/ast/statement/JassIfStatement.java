@@ -2,6 +2,10 @@ package com.etheller.interpreter.ast.statement;
 
 import java.util.List;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.expression.JassExpression;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
@@ -43,4 +47,19 @@ public class JassIfStatement implements JassStatement {
 		return null;
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		compiler.compileExpression(this.condition);
+		final int endJump = compiler.emitJump(JassBytecodeOps.JUMP_IF_FALSE);
+		compiler.compileStatements(this.thenStatements);
+		compiler.patchJump(endJump);
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.IF_STATEMENT);
+		writer.writeExpression(this.condition);
+		writer.writeStatements(this.thenStatements);
+	}
+
 }
@@ -1,5 +1,8 @@
 package com.etheller.interpreter.ast.statement;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.expression.JassExpression;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
@@ -26,4 +29,19 @@ public class JassLocalDefinitionStatement implements JassStatement {
 		return null;
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		// the initializer can still see a variable of the same name from before
+		compiler.compileAssignedValue(this.type, this.expression);
+		compiler.emitStoreLocal(compiler.defineLocal(this.identifier, this.type));
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.LOCAL_DEFINITION_STATEMENT);
+		writer.writeString(this.identifier);
+		writer.writeType(this.type);
+		writer.writeExpression(this.expression);
+	}
+
 }
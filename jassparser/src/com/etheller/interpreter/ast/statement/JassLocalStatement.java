@@ -1,6 +1,9 @@
 package com.etheller.interpreter.ast.statement;
 
 import com.etheller.interpreter.ast.Assignable;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
@@ -24,16 +27,37 @@ public class JassLocalStatement implements JassStatement {
 	public JassValue execute(final GlobalScope globalScope, final LocalScope localScope,
 			final TriggerExecutionScope triggerScope) {
 		final Assignable local = localScope.createLocal(this.identifier, this.type);
-		if (this.type == JassType.INTEGER) {
-			local.setValue(IntegerJassValue.ZERO);
+		final JassValue initialValue = initialValue(this.type);
+		if (initialValue != null) {
+			local.setValue(initialValue);
 		}
-		else {
-			final ArrayJassType arrayType = this.type.visit(ArrayTypeVisitor.getInstance());
-			if (arrayType != null) {
-				local.setValue(new ArrayJassValue(arrayType));
-			}
+		return null;
+	}
+
+	/**
+	 * @return the value of a local declared without an initializer
+	 */
+	public static JassValue initialValue(final JassType type) {
+		if (type == JassType.INTEGER) {
+			return IntegerJassValue.ZERO;
+		}
+		final ArrayJassType arrayType = type.visit(ArrayTypeVisitor.getInstance());
+		if (arrayType != null) {
+			return new ArrayJassValue(arrayType);
 		}
 		return null;
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		compiler.defineUninitializedLocal(this.identifier, this.type);
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.LOCAL_STATEMENT);
+		writer.writeString(this.identifier);
+		writer.writeType(this.type);
+	}
+
 }
@@ -2,6 +2,10 @@ package com.etheller.interpreter.ast.statement;
 
 import java.util.List;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
@@ -32,4 +36,19 @@ public class JassLoopStatement implements JassStatement {
 		}
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		final int loopStart = compiler.getPosition();
+		compiler.beginLoop();
+		compiler.compileStatements(this.statements);
+		compiler.emit(JassBytecodeOps.JUMP, loopStart);
+		compiler.endLoop();
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.LOOP_STATEMENT);
+		writer.writeStatements(this.statements);
+	}
+
 }
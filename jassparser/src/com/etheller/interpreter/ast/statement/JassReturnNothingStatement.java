@@ -1,5 +1,9 @@
 package com.etheller.interpreter.ast.statement;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
@@ -15,4 +19,14 @@ public class JassReturnNothingStatement implements JassStatement {
 		return RETURN_NOTHING_NOTICE;
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		compiler.emit(JassBytecodeOps.RETURN_NOTHING);
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.RETURN_NOTHING_STATEMENT);
+	}
+
 }
@@ -1,5 +1,9 @@
 package com.etheller.interpreter.ast.statement;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.expression.JassExpression;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
@@ -23,4 +27,16 @@ public class JassReturnStatement implements JassStatement {
 		return returnVal;
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		compiler.compileExpression(this.expression);
+		compiler.emit(JassBytecodeOps.RETURN);
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.RETURN_STATEMENT);
+		writer.writeExpression(this.expression);
+	}
+
 }
@@ -1,6 +1,10 @@
 package com.etheller.interpreter.ast.statement;
 
 import com.etheller.interpreter.ast.Assignable;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.bytecode.JassBytecodeOps;
+import com.etheller.interpreter.ast.cache.JassProgramFormat;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.expression.JassExpression;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
@@ -29,4 +33,23 @@ public class JassSetStatement implements JassStatement {
 		return null;
 	}
 
+	@Override
+	public void compile(final JassBytecodeCompiler compiler) {
+		final int slot = compiler.getLocalSlot(this.identifier);
+		if (slot != -1) {
+			compiler.compileLocalAssignment(slot, this.expression);
+		}
+		else {
+			compiler.compileExpression(this.expression);
+			compiler.emit(JassBytecodeOps.STORE_GLOBAL, compiler.getGlobalReference(this.identifier));
+		}
+	}
+
+	@Override
+	public void write(final JassProgramWriter writer) {
+		writer.writeTag(JassProgramFormat.SET_STATEMENT);
+		writer.writeString(this.identifier);
+		writer.writeExpression(this.expression);
+	}
+
 }
@@ -1,5 +1,7 @@
 package com.etheller.interpreter.ast.statement;
 
+import com.etheller.interpreter.ast.bytecode.JassBytecodeCompiler;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
@@ -9,4 +11,8 @@ public interface JassStatement {
 	// When a value is returned, this indicates a RETURN statement,
 	// and will end outer execution
 	JassValue execute(GlobalScope globalScope, LocalScope localScope, TriggerExecutionScope triggerScope);
+
+	void compile(JassBytecodeCompiler compiler);
+
+	void write(JassProgramWriter writer);
 }
@@ -1,8 +1,26 @@
 package com.etheller.interpreter.ast.util;
 
+import java.io.File;
+
 public class JassSettings {
 	public static final boolean LOG_FUNCTION_DEFINITIONS = false;
 	public static final int MAX_ARRAY_SIZE = 32768; // so dumb
 	public static boolean DEBUG = true;
 	public static boolean CONTINUE_EXECUTING_ON_ERROR = true;
+	// user functions are compiled to bytecode and run on the JassVirtualMachine;
+	// set to false to walk the syntax tree instead, which is easier to debug
+	public static boolean USE_BYTECODE_INTERPRETER = true;
+	// the bytecode keeps integer and real locals unboxed and does arithmetic on
+	// them with typed instructions; set to false to box them as the tree walker
+	// does, to compare the two
+	public static boolean UNBOX_ARITHMETIC = true;
+	// parsed scripts are kept here by the JassProgramCache to skip parsing them on
+	// the next load; set to null to always parse
+	public static File PROGRAM_CACHE_DIRECTORY = new File(System.getProperty("java.io.tmpdir"), "WarsmashJassCache");
+	// print the triggers that took the most time, and the handles that are still
+	// alive, when a game ends
+	public static boolean REPORT_TRIGGER_METRICS = false;
+	// Ctrl+P in game starts and stops the JassProfiler; when it stops, the call
+	// stacks are written here for flame graph tools
+	public static File PROFILE_FILE = new File(System.getProperty("java.io.tmpdir"), "warsmash-jass.folded");
 }
@@ -51,6 +51,9 @@ public class ArrayJassValue implements JassValue {
 			throw new IllegalStateException("Illegal type for assignment to " + primitiveType.getName() + " array: "
 					+ (valueType == null ? "null" : valueType.getName()));
 		}
+		if ((primitiveType == JassType.REAL) && (valueType == JassType.INTEGER)) {
+			value = new RealJassValue(((IntegerJassValue) value).getValue());
+		}
 		if (index >= this.data.length) {
 			throw new JassException(globalScope, "Max jass array size exceeded",
 					new ArrayIndexOutOfBoundsException(index));
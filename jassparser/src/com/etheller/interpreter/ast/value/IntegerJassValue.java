@@ -1,9 +1,28 @@
 package com.etheller.interpreter.ast.value;
 
 public class IntegerJassValue implements JassValue {
-	public static final IntegerJassValue ZERO = new IntegerJassValue(0);
+	private static final int CACHE_LOW = -128;
+	private static final int CACHE_HIGH = 1023;
+	private static final IntegerJassValue[] CACHE = new IntegerJassValue[(CACHE_HIGH - CACHE_LOW) + 1];
+	static {
+		for (int i = 0; i < CACHE.length; i++) {
+			CACHE[i] = new IntegerJassValue(i + CACHE_LOW);
+		}
+	}
+	public static final IntegerJassValue ZERO = of(0);
 	private final int value;
 
+	/**
+	 * Like {@link Integer#valueOf(int)}, small values share one instance so that
+	 * loop counters and indices don't allocate.
+	 */
+	public static IntegerJassValue of(final int value) {
+		if ((value >= CACHE_LOW) && (value <= CACHE_HIGH)) {
+			return CACHE[value - CACHE_LOW];
+		}
+		return new IntegerJassValue(value);
+	}
+
 	public IntegerJassValue(final int value) {
 		this.value = value;
 	}
@@ -76,19 +76,19 @@ public class JassExpressionVisitor extends JassBaseVisitor<JassExpression> {
 
 	@Override
 	public JassExpression visitIntegerLiteralExpression(final IntegerLiteralExpressionContext ctx) {
-		return new LiteralJassExpression(new IntegerJassValue((int) Long.parseLong(ctx.INTEGER().getText())));
+		return new LiteralJassExpression(IntegerJassValue.of((int) Long.parseLong(ctx.INTEGER().getText())));
 	}
 
 	@Override
 	public JassExpression visitHexIntegerLiteralExpression(final HexIntegerLiteralExpressionContext ctx) {
-		return new LiteralJassExpression(new IntegerJassValue(
+		return new LiteralJassExpression(IntegerJassValue.of(
 				(int) (Long.parseLong(ctx.HEX_CONSTANT().getText().substring(2), 16) & 0xFFFFFFFF)));
 	}
 
 	@Override
 	public JassExpression visitDollarHexIntegerLiteralExpression(final DollarHexIntegerLiteralExpressionContext ctx) {
 		return new LiteralJassExpression(
-				new IntegerJassValue(Integer.parseInt(ctx.DOLLAR_HEX_CONSTANT().getText().substring(1), 16)));
+				IntegerJassValue.of(Integer.parseInt(ctx.DOLLAR_HEX_CONSTANT().getText().substring(1), 16)));
 	}
 
 	@Override
@@ -98,7 +98,7 @@ public class JassExpressionVisitor extends JassBaseVisitor<JassExpression> {
 		while (parsedString.length() < 4) {
 			parsedString += '\0';
 		}
-		return new LiteralJassExpression(new IntegerJassValue(RawcodeUtils.toInt(parsedString)));
+		return new LiteralJassExpression(IntegerJassValue.of(RawcodeUtils.toInt(parsedString)));
 	}
 
 	@Override
@@ -3,6 +3,8 @@ package com.etheller.interpreter.ast.visitors;
 import com.etheller.interpreter.JassBaseVisitor;
 import com.etheller.interpreter.JassParser.BasicGlobalContext;
 import com.etheller.interpreter.JassParser.DefinitionGlobalContext;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
+import com.etheller.interpreter.ast.expression.JassExpression;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.LocalScope;
 import com.etheller.interpreter.ast.value.JassType;
@@ -13,6 +15,7 @@ public class JassGlobalsVisitor extends JassBaseVisitor<Void> {
 	private final GlobalScope globals;
 	private final JassTypeVisitor jassTypeVisitor;
 	private final JassExpressionVisitor jassExpressionVisitor;
+	private JassProgramWriter programWriter;
 
 	public JassGlobalsVisitor(final GlobalScope globals, final JassTypeVisitor jassTypeVisitor,
 			final JassExpressionVisitor jassExpressionVisitor) {
@@ -31,6 +34,9 @@ public class JassGlobalsVisitor extends JassBaseVisitor<Void> {
 		else {
 			this.globals.createGlobal(ctx.ID().getText(), type);
 		}
+		if (this.programWriter != null) {
+			this.programWriter.writeGlobal(ctx.ID().getText(), type, null);
+		}
 		return null;
 	}
 
@@ -41,11 +47,17 @@ public class JassGlobalsVisitor extends JassBaseVisitor<Void> {
 		try {
 			if (arrayPrimType != null) {
 				this.globals.createGlobalArray(ctx.ID().getText(), type);
+				if (this.programWriter != null) {
+					this.programWriter.writeGlobal(ctx.ID().getText(), type, null);
+				}
 			}
 			else {
-				this.globals.createGlobal(ctx.ID().getText(), type,
-						this.jassExpressionVisitor.visit(ctx.assignTail().expression()).evaluate(this.globals,
-								EMPTY_LOCAL_SCOPE, JassProgramVisitor.EMPTY_TRIGGER_SCOPE));
+				final JassExpression expression = this.jassExpressionVisitor.visit(ctx.assignTail().expression());
+				this.globals.createGlobal(ctx.ID().getText(), type, expression.evaluate(this.globals,
+						EMPTY_LOCAL_SCOPE, JassProgramVisitor.EMPTY_TRIGGER_SCOPE));
+				if (this.programWriter != null) {
+					this.programWriter.writeGlobal(ctx.ID().getText(), type, expression);
+				}
 			}
 		}
 		catch (final Exception exc) {
@@ -53,4 +65,8 @@ public class JassGlobalsVisitor extends JassBaseVisitor<Void> {
 		}
 		return null;
 	}
+
+	public void setProgramWriter(final JassProgramWriter programWriter) {
+		this.programWriter = programWriter;
+	}
 }
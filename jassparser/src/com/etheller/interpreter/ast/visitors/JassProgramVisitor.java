@@ -10,12 +10,15 @@ import com.etheller.interpreter.JassParser.GlobalContext;
 import com.etheller.interpreter.JassParser.ProgramContext;
 import com.etheller.interpreter.JassParser.StatementContext;
 import com.etheller.interpreter.JassParser.TypeDefinitionContext;
+import com.etheller.interpreter.ast.cache.JassProgramWriter;
 import com.etheller.interpreter.ast.function.JassNativeManager;
+import com.etheller.interpreter.ast.function.JassParameter;
 import com.etheller.interpreter.ast.function.UserJassFunction;
 import com.etheller.interpreter.ast.scope.GlobalScope;
 import com.etheller.interpreter.ast.scope.TriggerExecutionScope;
 import com.etheller.interpreter.ast.statement.JassStatement;
 import com.etheller.interpreter.ast.util.JassSettings;
+import com.etheller.interpreter.ast.value.JassType;
 
 public class JassProgramVisitor extends JassBaseVisitor<Void> {
 	public static final TriggerExecutionScope EMPTY_TRIGGER_SCOPE = new TriggerExecutionScope(null);
@@ -36,6 +39,7 @@ public class JassProgramVisitor extends JassBaseVisitor<Void> {
 	private final JassStatementVisitor jassStatementVisitor = new JassStatementVisitor(this.argumentExpressionHandler,
 			this.jassTypeVisitor);
 	private String jassFileName;
+	private JassProgramWriter programWriter;
 
 	@Override
 	public Void visitBlock(final BlockContext ctx) {
@@ -49,9 +53,13 @@ public class JassProgramVisitor extends JassBaseVisitor<Void> {
 			if (JassSettings.LOG_FUNCTION_DEFINITIONS) {
 				System.out.println("Registering native: " + text);
 			}
-			this.jassNativeManager.registerNativeCode(ctx.getStart().getLine(), this.jassFileName, text,
-					this.jassParametersVisitor.visit(ctx.nativeBlock().paramList()),
-					this.jassTypeVisitor.visit(ctx.nativeBlock().type()), this.globals);
+			final List<JassParameter> parameters = this.jassParametersVisitor.visit(ctx.nativeBlock().paramList());
+			final JassType returnType = this.jassTypeVisitor.visit(ctx.nativeBlock().type());
+			this.jassNativeManager.registerNativeCode(ctx.getStart().getLine(), this.jassFileName, text, parameters,
+					returnType, this.globals);
+			if (this.programWriter != null) {
+				this.programWriter.writeNative(ctx.getStart().getLine(), text, parameters, returnType);
+			}
 		}
 		return null;
 	}
@@ -62,9 +70,14 @@ public class JassProgramVisitor extends JassBaseVisitor<Void> {
 		for (final StatementContext statementContext : ctx.statements().statement()) {
 			statements.add(this.jassStatementVisitor.visit(statementContext));
 		}
-		final UserJassFunction userJassFunction = new UserJassFunction(statements,
-				this.jassParametersVisitor.visit(ctx.paramList()), this.jassTypeVisitor.visit(ctx.type()));
+		final List<JassParameter> parameters = this.jassParametersVisitor.visit(ctx.paramList());
+		final JassType returnType = this.jassTypeVisitor.visit(ctx.type());
+		final UserJassFunction userJassFunction = new UserJassFunction(statements, parameters, returnType);
 		this.globals.defineFunction(ctx.getStart().getLine(), this.jassFileName, ctx.ID().getText(), userJassFunction);
+		if (this.programWriter != null) {
+			this.programWriter.writeFunction(ctx.getStart().getLine(), ctx.ID().getText(), parameters, returnType,
+					statements);
+		}
 		return null;
 	}
 
@@ -73,6 +86,10 @@ public class JassProgramVisitor extends JassBaseVisitor<Void> {
 		for (final TypeDefinitionContext typeDefinitionContext : ctx.typeDefinitionBlock().typeDefinition()) {
 			this.globals.loadTypeDefinition(typeDefinitionContext.ID(0).getText(),
 					typeDefinitionContext.ID(1).getText());
+			if (this.programWriter != null) {
+				this.programWriter.writeTypeDefinition(typeDefinitionContext.ID(0).getText(),
+						typeDefinitionContext.ID(1).getText());
+			}
 		}
 		for (final BlockContext blockContext : ctx.block()) {
 			visit(blockContext);
@@ -82,11 +99,15 @@ public class JassProgramVisitor extends JassBaseVisitor<Void> {
 			for (final StatementContext statementContext : functionBlockContext.statements().statement()) {
 				statements.add(this.jassStatementVisitor.visit(statementContext));
 			}
-			final UserJassFunction userJassFunction = new UserJassFunction(statements,
-					this.jassParametersVisitor.visit(functionBlockContext.paramList()),
-					this.jassTypeVisitor.visit(functionBlockContext.type()));
+			final List<JassParameter> parameters = this.jassParametersVisitor.visit(functionBlockContext.paramList());
+			final JassType returnType = this.jassTypeVisitor.visit(functionBlockContext.type());
+			final UserJassFunction userJassFunction = new UserJassFunction(statements, parameters, returnType);
 			this.globals.defineFunction(ctx.getStart().getLine(), this.jassFileName,
 					functionBlockContext.ID().getText(), userJassFunction);
+			if (this.programWriter != null) {
+				this.programWriter.writeFunction(ctx.getStart().getLine(), functionBlockContext.ID().getText(),
+						parameters, returnType, statements);
+			}
 			if (JassSettings.LOG_FUNCTION_DEFINITIONS) {
 				System.out.println("Defining jass user function: " + functionBlockContext.ID().getText());
 			}
@@ -102,6 +123,15 @@ public class JassProgramVisitor extends JassBaseVisitor<Void> {
 		return this.jassNativeManager;
 	}
 
+	/**
+	 * @param programWriter records every definition this visitor makes from now
+	 *                      on, or null to stop recording
+	 */
+	public void setProgramWriter(final JassProgramWriter programWriter) {
+		this.programWriter = programWriter;
+		this.jassGlobalsVisitor.setProgramWriter(programWriter);
+	}
+
 	public void setCurrentFileName(final String jassFile) {
 		this.jassFileName = jassFile;
 		this.jassStatementVisitor.setCurrentFileName(jassFile);
@@ -75,9 +75,9 @@ public class DefaultGamingNetworkServerClientBuilder implements GamingNetworkSer
 			@Override
 			public void createGame(final long sessionToken, final String gameName, final String mapName,
 					final int totalSlots, final LobbyGameSpeed gameSpeed, final HostedGameVisibility visibility,
-					long mapChecksum) {
+					long mapChecksum, final byte[] mapHash) {
 				DefaultGamingNetworkServerClientBuilder.this.businessLogicImpl.createGame(sessionToken, gameName,
-						mapName, totalSlots, gameSpeed, visibility, mapChecksum, writer);
+						mapName, totalSlots, gameSpeed, visibility, mapChecksum, mapHash, writer);
 			}
 
 			@Override
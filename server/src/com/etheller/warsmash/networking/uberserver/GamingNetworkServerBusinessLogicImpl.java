@@ -7,8 +7,6 @@ import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -18,6 +16,7 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 
+import com.etheller.warsmash.networking.WarsmashGameHost;
 import com.etheller.warsmash.networking.WarsmashServer;
 import com.etheller.warsmash.networking.uberserver.users.PasswordAuthentication;
 import com.etheller.warsmash.networking.uberserver.users.User;
@@ -36,15 +35,32 @@ public class GamingNetworkServerBusinessLogicImpl {
 	private final Map<String, ChatChannel> nameLowerCaseToChannel = new HashMap<>();
 	private final Map<String, HostedGame> nameLowerCaseToGame = new HashMap<>();
 	private final Random random;
+	// null to give each game its own port and thread
+	private final WarsmashGameHost gameHost;
+	private final MapStore mapStore;
 
 	public GamingNetworkServerBusinessLogicImpl(final Set<AcceptedGameListKey> acceptedGames,
 			final UserManager userManager, final String welcomeMessage, GamingNetworkServerTracker tracker) {
+		this(acceptedGames, userManager, welcomeMessage, tracker, null);
+	}
+
+	public GamingNetworkServerBusinessLogicImpl(final Set<AcceptedGameListKey> acceptedGames,
+			final UserManager userManager, final String welcomeMessage, GamingNetworkServerTracker tracker,
+			final WarsmashGameHost gameHost) {
+		this(acceptedGames, userManager, welcomeMessage, tracker, gameHost, new MapStore());
+	}
+
+	public GamingNetworkServerBusinessLogicImpl(final Set<AcceptedGameListKey> acceptedGames,
+			final UserManager userManager, final String welcomeMessage, GamingNetworkServerTracker tracker,
+			final WarsmashGameHost gameHost, final MapStore mapStore) {
 		this.acceptedGames = acceptedGames;
 		this.userManager = userManager;
 		this.welcomeMessage = welcomeMessage;
 		this.tracker = tracker;
 		this.tokenToSession = new HashMap<>();
 		this.random = new Random();
+		this.gameHost = gameHost;
+		this.mapStore = mapStore;
 	}
 
 	public void disconnected(GamingNetworkServerToClientWriter writer) {
@@ -299,7 +315,8 @@ public class GamingNetworkServerBusinessLogicImpl {
 	}
 
 	public void createGame(long sessionToken, String gameName, String mapName, int totalSlots, LobbyGameSpeed gameSpeed,
-			HostedGameVisibility visibility, long mapChecksum, GamingNetworkServerToClientWriter connectionContext) {
+			HostedGameVisibility visibility, long mapChecksum, byte[] mapHash,
+			GamingNetworkServerToClientWriter connectionContext) {
 		final SessionImpl session = getSession(sessionToken, connectionContext);
 		if (session != null) {
 
@@ -312,9 +329,14 @@ public class GamingNetworkServerBusinessLogicImpl {
 			else {
 				removeSessionFromCurrentChannel(session);
 				game = new HostedGame(session.getUser(), gameName, mapName, totalSlots, gameSpeed, visibility,
-						mapChecksum);
+						mapChecksum, mapHash, this.mapStore);
 				this.nameLowerCaseToGame.put(gameKey, game);
-				connectionContext.gameCreationOk();
+				final boolean mapStored = game.useStoredMap();
+				connectionContext.gameCreationOk(!mapStored);
+				if (mapStored) {
+					this.mapStore.uploadAvoided();
+					tracker.uploadMapAvoided(connectionContext.getAddressString(), session.getUser());
+				}
 				game.addUser(session);
 				session.currentGameName = gameKey;
 				connectionContext.joinedGame(gameName, game.mapName, game.mapChecksum);
@@ -403,7 +425,7 @@ public class GamingNetworkServerBusinessLogicImpl {
 				final HostedGame game = this.nameLowerCaseToGame.get(channelKey);
 				if (game != null) {
 					if (game.getHostUser() == session.getUser()) {
-						game.onStartGame();
+						game.onStartGame(this.gameHost);
 						tracker.gameLobbyStartGame(connectionContext.getAddressString(), session.getUser(), channelKey);
 					}
 					else {
@@ -449,6 +471,7 @@ public class GamingNetworkServerBusinessLogicImpl {
 			session.currentGameName = null;
 			if (previousGame.isEmpty()) {
 				this.nameLowerCaseToGame.remove(previousGameKey);
+				previousGame.onCloseGame();
 			}
 			else if (session.getUser() == previousGame.getHostUser()) {
 				// host leaves the game, but it is not empty.
@@ -688,16 +711,20 @@ public class GamingNetworkServerBusinessLogicImpl {
 		private final LobbyGameSpeed gameSpeed;
 		private final HostedGameVisibility visibility;
 		private final long mapChecksum;
+		private final byte[] mapHash;
+		private final MapStore mapStore;
 		private final SessionImpl[] userSessionSlots;
 		private final HostedGamePlayerData[] userSessionSlotsGameData;
 		private final List<SessionImpl> userSessionsAwaitingMap = new ArrayList<>();
 		private NetMapDownloader mapDownloader;
 		private File mapFile;
-		private boolean mapFullyLoaded = false;
+		private MapStore.StoredMap storedMap;
 		private WarsmashServer warsmashGameServer;
+		private WarsmashGameHost gameHost;
 
 		public HostedGame(User hostUser, final String gameName, String mapName, final int totalSlots,
-				LobbyGameSpeed gameSpeed, HostedGameVisibility visibility, long mapChecksum) {
+				LobbyGameSpeed gameSpeed, HostedGameVisibility visibility, long mapChecksum, byte[] mapHash,
+				MapStore mapStore) {
 			this.hostUser = hostUser;
 			this.gameName = gameName;
 			this.mapName = mapName;
@@ -705,6 +732,8 @@ public class GamingNetworkServerBusinessLogicImpl {
 			this.gameSpeed = gameSpeed;
 			this.visibility = visibility;
 			this.mapChecksum = mapChecksum;
+			this.mapHash = mapHash;
+			this.mapStore = mapStore;
 			this.userSessionSlots = new SessionImpl[totalSlots];
 			this.userSessionSlotsGameData = new HostedGamePlayerData[totalSlots];
 			for (int i = 0; i < totalSlots; i++) {
@@ -712,39 +741,53 @@ public class GamingNetworkServerBusinessLogicImpl {
 			}
 		}
 
-		public boolean mapDone(long sessionToken, int sequenceNumber) {
-			final long finishedChecksum = this.mapDownloader.finish(sequenceNumber);
-			this.mapFullyLoaded = (finishedChecksum == this.mapChecksum) && this.mapDownloader.isSequenceNumberingOK();
-			return this.mapFullyLoaded;
+		/**
+		 * @return true if the map was already stored, so that the host does not need
+		 *         to upload it
+		 */
+		public boolean useStoredMap() {
+			this.storedMap = this.mapStore.acquire(this.mapHash);
+			return this.storedMap != null;
 		}
 
-		public void sendMap(GamingNetworkClientConnectionContext connectionContext) {
-			int sequenceNumber = 0;
-			connectionContext.beginSendMap();
-			try (FileChannel readerChannel = FileChannel.open(this.mapFile.toPath(), StandardOpenOption.READ)) {
-				final ByteBuffer readBuffer = ByteBuffer.allocate(1300).clear();
-				while ((readerChannel.read(readBuffer)) != -1) {
-					readBuffer.flip();
-					connectionContext.sendMapData(sequenceNumber++, readBuffer);
-					readBuffer.clear();
+		public boolean mapDone(long sessionToken, int sequenceNumber) {
+			if (this.mapDownloader == null) {
+				return this.storedMap != null;
+			}
+			final long finishedChecksum = this.mapDownloader.finish(sequenceNumber);
+			if ((finishedChecksum == this.mapChecksum) && this.mapDownloader.isSequenceNumberingOK()) {
+				try {
+					this.storedMap = this.mapStore.store(this.mapFile, this.mapHash);
+				}
+				catch (final IOException e) {
+					throw new IllegalStateException(e);
 				}
 			}
-			catch (final IOException e) {
-				throw new IllegalStateException(e);
+			else {
+				this.mapFile.delete();
 			}
-			connectionContext.endSendMap(sequenceNumber);
+			this.mapFile = null;
+			return this.storedMap != null;
+		}
+
+		public void sendMap(GamingNetworkClientConnectionContext connectionContext) {
+			this.mapStore.send(this.storedMap, connectionContext);
 		}
 
 		public boolean isMapFullyLoaded() {
-			return this.mapFullyLoaded;
+			return this.storedMap != null;
 		}
 
 		public void writeMap(long sessionToken, int sequenceNumber, ByteBuffer data) {
+			if (this.storedMap != null) {
+				// we already have it
+				return;
+			}
 			if (this.mapDownloader == null) {
 				final int id = this.hostUser.getId();
 				final String nameToStoreMap = id + "_" + sessionToken + "_";
 				try {
-					this.mapFile = File.createTempFile(nameToStoreMap, ".dat");
+					this.mapFile = this.mapStore.createUploadFile(nameToStoreMap);
 				}
 				catch (final IOException e) {
 					throw new IllegalStateException(e);
@@ -958,12 +1001,20 @@ public class GamingNetworkServerBusinessLogicImpl {
 		}
 
 		public void onCloseGame() {
+			if (this.storedMap != null) {
+				this.mapStore.release(this.storedMap);
+				this.storedMap = null;
+			}
 			if (this.mapFile != null) {
 				this.mapFile.delete();
 			}
+			if ((this.gameHost != null) && (this.warsmashGameServer != null)) {
+				// the lobby is gone, but the game may still be played
+				this.gameHost.closeGame(this.warsmashGameServer);
+			}
 		}
 
-		public void onStartGame() {
+		public void onStartGame(final WarsmashGameHost gameHost) {
 			final Map<Long, Integer> sessionTokenToSlot = new HashMap<>();
 			for (int i = 0; i < this.userSessionSlotsGameData.length; i++) {
 				if (this.userSessionSlotsGameData[i].type == LobbyPlayerType.USER) {
@@ -971,14 +1022,22 @@ public class GamingNetworkServerBusinessLogicImpl {
 				}
 			}
 
-			try {
-				this.warsmashGameServer = new WarsmashServer(0, sessionTokenToSlot);
+			if (gameHost != null) {
+				this.gameHost = gameHost;
+				this.warsmashGameServer = gameHost.startGame(sessionTokenToSlot);
 			}
-			catch (final IOException e) {
-				e.printStackTrace();
+			else {
+				try {
+					this.warsmashGameServer = new WarsmashServer(0, sessionTokenToSlot);
+				}
+				catch (final IOException e) {
+					e.printStackTrace();
+				}
+				if (this.warsmashGameServer != null) {
+					this.warsmashGameServer.startThread();
+				}
 			}
 			if (this.warsmashGameServer != null) {
-				this.warsmashGameServer.startThread();
 				final InetSocketAddress localAddress = this.warsmashGameServer.getLocalAddress();
 				if (localAddress != null) {
 					InetAddress localHost;
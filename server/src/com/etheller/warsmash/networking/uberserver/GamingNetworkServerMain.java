@@ -7,12 +7,16 @@ import java.nio.charset.Charset;
 import java.util.HashSet;
 import java.util.Set;
 
+import com.etheller.warsmash.networking.WarsmashGameHost;
 import com.etheller.warsmash.networking.uberserver.users.InRAMUserManager;
 
+import net.warsmash.networking.udp.OrderedUdpCommuncation;
 import net.warsmash.nio.channels.SelectableChannelOpener;
 import net.warsmash.uberserver.GamingNetwork;
 
 public class GamingNetworkServerMain {
+	private static final long STATS_REPORT_INTERVAL_MILLIS = 60 * 1000;
+
 	public static void main(final String[] args) {
 		final SelectableChannelOpener channelOpener = new SelectableChannelOpener();
 		final Set<AcceptedGameListKey> acceptedGames = new HashSet<>();
@@ -21,13 +25,25 @@ public class GamingNetworkServerMain {
 		final InRAMUserManager inRAMUserManager = new InRAMUserManager();
 		final String welcomeMessage = "Thank you for connecting to the first draft of the Warsmash game server.";
 		try(final PrintStream logWriter = new PrintStream(new FileOutputStream("CommandLog.log", true), true, Charset.defaultCharset())) {
+			// every game is played over this one UDP port, read by the same selector as the lobby
+			final WarsmashGameHost gameHost = new WarsmashGameHost();
+			gameHost.open(channelOpener, GamingNetwork.PORT);
+			final MapStore mapStore = new MapStore();
 			final TCPGamingNetworkServer tcpGamingNetworkServer = new TCPGamingNetworkServer(channelOpener,
 				new DefaultGamingNetworkServerClientBuilder(
-						new GamingNetworkServerBusinessLogicImpl(acceptedGames, inRAMUserManager, welcomeMessage, new LoggingGamingNetworkServerTracker(logWriter))));
+						new GamingNetworkServerBusinessLogicImpl(acceptedGames, inRAMUserManager, welcomeMessage, new LoggingGamingNetworkServerTracker(logWriter), gameHost, mapStore)));
 			tcpGamingNetworkServer.start();
 
+			long lastStatsReportTime = System.currentTimeMillis();
 			while (true) {
-				channelOpener.select(100);
+				channelOpener.select(OrderedUdpCommuncation.UPDATE_INTERVAL_MILLIS);
+				gameHost.update();
+				final long currentTime = System.currentTimeMillis();
+				if ((currentTime - lastStatsReportTime) > STATS_REPORT_INTERVAL_MILLIS) {
+					System.out.println(channelOpener.getBufferPool());
+					System.out.println(mapStore);
+					lastStatsReportTime = currentTime;
+				}
 			}
 		} catch (IOException e) {
             throw new RuntimeException(e);
@@ -2,11 +2,13 @@ package com.etheller.warsmash.networking.uberserver;
 
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 
 import net.warsmash.networking.util.AbstractWriter;
 import net.warsmash.nio.channels.WritableOutput;
 import net.warsmash.nio.channels.WritableSocketOutput;
+import net.warsmash.nio.channels.WriteSource;
 import net.warsmash.uberserver.*;
 
 public class GamingNetworkServerToClientWriter extends AbstractWriter implements GamingNetworkClientConnectionContext {
@@ -194,8 +196,9 @@ public class GamingNetworkServerToClientWriter extends AbstractWriter implements
 	}
 
 	@Override
-	public void gameCreationOk() {
-		beginMessage(Protocol.GAME_CREATION_OK, 0);
+	public void gameCreationOk(final boolean mapUploadRequired) {
+		beginMessage(Protocol.GAME_CREATION_OK, 4);
+		this.writeBuffer.putInt(mapUploadRequired ? 1 : 0);
 		send();
 	}
 
@@ -220,10 +223,18 @@ public class GamingNetworkServerToClientWriter extends AbstractWriter implements
 
 	@Override
 	public void sendMapData(final int sequenceNumber, final ByteBuffer data) {
-		beginMessage(Protocol.SEND_MAP_DATA, 4 + data.remaining());
+		// the chunk is written from the mapped file along with its header
+		beginMessage(Protocol.SEND_MAP_DATA, 4, data);
 		this.writeBuffer.putInt(sequenceNumber);
-		this.writeBuffer.put(data);
-		send();
+		send(data);
+	}
+
+	@Override
+	public void sendMap(final ByteBuffer data, final int chunkSize) {
+		beginSendMap();
+		final MapChunkSource source = new MapChunkSource(data, chunkSize, this.writeBuffer.order());
+		send(source);
+		endSendMap(source.chunkCount);
 	}
 
 	@Override
@@ -285,4 +296,52 @@ public class GamingNetworkServerToClientWriter extends AbstractWriter implements
 	public String getAddressString() {
 		return addressString;
 	}
+
+	/**
+	 * The sendMapData messages of a map, a few chunks at a time, each as its
+	 * header followed by the chunk read straight out of the map's buffer.
+	 */
+	private static final class MapChunkSource implements WriteSource {
+		private static final int CHUNKS_PER_WRITE = 16;
+		// protocol, length, sequence number
+		private static final int HEADER_SIZE = 4 + 4 + 4;
+		private final ByteBuffer data;
+		private final int chunkSize;
+		private final int chunkCount;
+		private final ByteBuffer[] headers = new ByteBuffer[CHUNKS_PER_WRITE];
+		private int nextChunk = 0;
+
+		private MapChunkSource(final ByteBuffer data, final int chunkSize, final ByteOrder byteOrder) {
+			this.data = data;
+			this.chunkSize = chunkSize;
+			this.chunkCount = (data.remaining() + chunkSize - 1) / chunkSize;
+			for (int i = 0; i < CHUNKS_PER_WRITE; i++) {
+				this.headers[i] = ByteBuffer.allocate(HEADER_SIZE).order(byteOrder);
+			}
+		}
+
+		@Override
+		public ByteBuffer[] next() {
+			final int chunks = Math.min(CHUNKS_PER_WRITE, this.chunkCount - this.nextChunk);
+			if (chunks <= 0) {
+				return null;
+			}
+			final ByteBuffer[] buffers = new ByteBuffer[chunks * 2];
+			for (int i = 0; i < chunks; i++) {
+				final int start = this.data.position() + (i * this.chunkSize);
+				final int length = Math.min(this.chunkSize, this.data.limit() - start);
+				final ByteBuffer header = this.headers[i];
+				header.clear();
+				header.putInt(Protocol.SEND_MAP_DATA);
+				header.putInt(4 + length);
+				header.putInt(this.nextChunk + i);
+				header.flip();
+				buffers[i * 2] = header;
+				buffers[(i * 2) + 1] = this.data.slice(start, length);
+			}
+			this.data.position(this.data.position() + Math.min(chunks * this.chunkSize, this.data.remaining()));
+			this.nextChunk += chunks;
+			return buffers;
+		}
+	}
 }
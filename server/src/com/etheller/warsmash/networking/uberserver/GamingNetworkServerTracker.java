@@ -40,6 +40,8 @@ public interface GamingNetworkServerTracker {
 
     void uploadMapSucceeded(String addressString, User user);
 
+    void uploadMapAvoided(String addressString, User user);
+
     void requestMapFailedNoGame(String addressString, User user);
 
     void sentMap(String addressString, User user);
@@ -107,6 +107,11 @@ public class LoggingGamingNetworkServerTracker implements GamingNetworkServerTra
         stream.println(getTimestamp() + " " + addressString + " " + user.getUsername() + " - uploadMapSucceeded()");
     }
 
+    @Override
+    public void uploadMapAvoided(String addressString, User user) {
+        stream.println(getTimestamp() + " " + addressString + " " + user.getUsername() + " - uploadMapAvoided()");
+    }
+
     @Override
     public void requestMapFailedNoGame(String addressString, User user) {
         stream.println(getTimestamp() + " " + addressString + " " + user.getUsername() + " - requestMapFailedNoGame()");
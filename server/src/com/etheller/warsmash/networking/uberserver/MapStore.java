@@ -0,0 +1,294 @@
+package com.etheller.warsmash.networking.uberserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.warsmash.uberserver.GamingNetwork;
+import net.warsmash.uberserver.GamingNetworkClientConnectionContext;
+
+/**
+ * The maps that hosts have uploaded, kept in files named by the SHA-256 of the
+ * map, so that a popular map is uploaded once instead of once for every game
+ * that is hosted on it. Maps that no game is using are deleted, least recently
+ * used first, when the files are over the disk budget.
+ *
+ * Users who join a game are sent the map from one read only mapping of its
+ * file, which all of them share, instead of each of them having it read into a
+ * buffer of their own. Each connection keeps its own position in the mapping,
+ * and writes the next chunks from it when the socket can take them.
+ *
+ * Like the rest of the lobby, this is only used from the thread of the
+ * selector.
+ */
+public class MapStore {
+	public static final long DEFAULT_MAX_DISK_BYTES = 2L * 1024 * 1024 * 1024;
+	private static final int SEND_MAP_CHUNK_SIZE = 1300;
+	private static final String MAP_FILE_EXTENSION = ".map";
+	private static final String UPLOAD_FILE_EXTENSION = ".upload";
+	private static final HexFormat HEX = HexFormat.of();
+
+	private final File directory;
+	private final long maxDiskBytes;
+	// in order of use, least recent first
+	private final LinkedHashMap<String, StoredMap> hashToMap = new LinkedHashMap<>(16, 0.75f, true);
+	private long diskBytes;
+	private long uploadsStored;
+	private long uploadsAvoided;
+	private long mapsServed;
+	private long bytesServed;
+	private long mapsEvicted;
+
+	public MapStore() {
+		this(new File(System.getProperty("java.io.tmpdir"), "warsmash-maps"), DEFAULT_MAX_DISK_BYTES);
+	}
+
+	/**
+	 * Maps stored in the directory by an earlier run are kept, least recently
+	 * used by the time they were last modified.
+	 */
+	public MapStore(final File directory, final long maxDiskBytes) {
+		this.directory = directory;
+		this.maxDiskBytes = maxDiskBytes;
+		directory.mkdirs();
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+			for (final File file : files) {
+				final String fileName = file.getName();
+				if (fileName.endsWith(UPLOAD_FILE_EXTENSION)) {
+					// from an upload that was not finished
+					file.delete();
+				}
+				else if (fileName.endsWith(MAP_FILE_EXTENSION)) {
+					final String hash = fileName.substring(0, fileName.length() - MAP_FILE_EXTENSION.length());
+					if (isHash(hash)) {
+						this.hashToMap.put(hash, new StoredMap(hash, file, file.length()));
+						this.diskBytes += file.length();
+					}
+				}
+			}
+		}
+		evict();
+	}
+
+	/**
+	 * @return the stored map with the hash, which is kept until it is given to
+	 *         {@link #release(StoredMap)}, or null when it must be uploaded
+	 */
+	public StoredMap acquire(final byte[] mapHash) {
+		final StoredMap storedMap = this.hashToMap.get(HEX.formatHex(mapHash));
+		if (storedMap == null) {
+			return null;
+		}
+		storedMap.users++;
+		storedMap.file.setLastModified(System.currentTimeMillis());
+		return storedMap;
+	}
+
+	/**
+	 * Counts a game whose host was told not to upload its map, because it was
+	 * already stored.
+	 */
+	public void uploadAvoided() {
+		this.uploadsAvoided++;
+	}
+
+	/**
+	 * @return a new file in the directory of the store for an upload to be
+	 *         written to, and then given to {@link #store(File, byte[])}
+	 */
+	public File createUploadFile(final String prefix) throws IOException {
+		return File.createTempFile(prefix, UPLOAD_FILE_EXTENSION, this.directory);
+	}
+
+	/**
+	 * Moves a finished upload into the store, if it has the hash that the host
+	 * said it would have.
+	 *
+	 * @return the stored map, which is kept until it is given to
+	 *         {@link #release(StoredMap)}, or null when the upload did not have
+	 *         the hash, in which case it is deleted
+	 */
+	public StoredMap store(final File uploadFile, final byte[] expectedMapHash) throws IOException {
+		final byte[] mapHash = computeHash(uploadFile);
+		if (!MessageDigest.isEqual(mapHash, expectedMapHash) || (uploadFile.length() > Integer.MAX_VALUE)) {
+			uploadFile.delete();
+			return null;
+		}
+		final String hash = HEX.formatHex(mapHash);
+		StoredMap storedMap = this.hashToMap.get(hash);
+		if (storedMap != null) {
+			// another host uploaded the same map while this one was uploading
+			uploadFile.delete();
+		}
+		else {
+			final File mapFile = new File(this.directory, hash + MAP_FILE_EXTENSION);
+			Files.move(uploadFile.toPath(), mapFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			storedMap = new StoredMap(hash, mapFile, mapFile.length());
+			this.hashToMap.put(hash, storedMap);
+			this.diskBytes += storedMap.size;
+			this.uploadsStored++;
+		}
+		storedMap.users++;
+		evict();
+		return storedMap;
+	}
+
+	public void release(final StoredMap storedMap) {
+		storedMap.users--;
+		evict();
+	}
+
+	public void send(final StoredMap storedMap, final GamingNetworkClientConnectionContext connectionContext) {
+		final ByteBuffer data;
+		try {
+			data = storedMap.getData();
+		}
+		catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+		connectionContext.sendMap(data, SEND_MAP_CHUNK_SIZE);
+		this.mapsServed++;
+		this.bytesServed += storedMap.size;
+	}
+
+	private void evict() {
+		final Iterator<StoredMap> iterator = this.hashToMap.values().iterator();
+		while ((this.diskBytes > this.maxDiskBytes) && iterator.hasNext()) {
+			final StoredMap storedMap = iterator.next();
+			if (storedMap.users <= 0) {
+				iterator.remove();
+				this.diskBytes -= storedMap.size;
+				this.mapsEvicted++;
+				// the mapping is let go of, some systems will not delete the file until it is
+				// collected
+				storedMap.mappedData = null;
+				if (!storedMap.file.delete()) {
+					storedMap.file.deleteOnExit();
+				}
+			}
+		}
+	}
+
+	public long getDiskBytes() {
+		return this.diskBytes;
+	}
+
+	public int getStoredMaps() {
+		return this.hashToMap.size();
+	}
+
+	public long getUploadsStored() {
+		return this.uploadsStored;
+	}
+
+	/**
+	 * @return the number of games that were hosted on a map that was already
+	 *         stored, so the host did not upload it
+	 */
+	public long getUploadsAvoided() {
+		return this.uploadsAvoided;
+	}
+
+	public long getMapsServed() {
+		return this.mapsServed;
+	}
+
+	public long getBytesServed() {
+		return this.bytesServed;
+	}
+
+	public long getMapsEvicted() {
+		return this.mapsEvicted;
+	}
+
+	@Override
+	public String toString() {
+		return "map store: " + this.hashToMap.size() + " maps (" + (this.diskBytes / 1024) + " KiB of "
+				+ (this.maxDiskBytes / 1024) + " KiB), " + this.uploadsStored + " uploads stored, "
+				+ this.uploadsAvoided + " uploads avoided, " + this.mapsServed + " maps served ("
+				+ (this.bytesServed / 1024) + " KiB), " + this.mapsEvicted + " evicted";
+	}
+
+	private static byte[] computeHash(final File file) throws IOException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(GamingNetwork.MAP_HASH_ALGORITHM);
+		}
+		catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		try (FileChannel readerChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024).clear();
+			while ((readerChannel.read(readBuffer)) != -1) {
+				readBuffer.flip();
+				digest.update(readBuffer);
+				readBuffer.clear();
+			}
+		}
+		return digest.digest();
+	}
+
+	private static boolean isHash(final String hash) {
+		if (hash.length() != (GamingNetwork.MAP_HASH_LENGTH * 2)) {
+			return false;
+		}
+		// lowercase only, as written by HEX, or it would never be looked up
+		for (int i = 0; i < hash.length(); i++) {
+			final char c = hash.charAt(i);
+			if (((c < '0') || (c > '9')) && ((c < 'a') || (c > 'f'))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static final class StoredMap {
+		private final String hash;
+		private final File file;
+		private final long size;
+		private int users;
+		private MappedByteBuffer mappedData;
+
+		private StoredMap(final String hash, final File file, final long size) {
+			this.hash = hash;
+			this.file = file;
+			this.size = size;
+		}
+
+		public String getHash() {
+			return this.hash;
+		}
+
+		public long getSize() {
+			return this.size;
+		}
+
+		/**
+		 * @return a view of all of the map, which is mapped the first time it is
+		 *         asked for
+		 */
+		private ByteBuffer getData() throws IOException {
+			if (this.mappedData == null) {
+				try (FileChannel readerChannel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+					this.mappedData = readerChannel.map(FileChannel.MapMode.READ_ONLY, 0, this.size);
+				}
+			}
+			return this.mappedData.duplicate();
+		}
+	}
+}
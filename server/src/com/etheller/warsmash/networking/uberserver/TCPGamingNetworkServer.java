@@ -1,10 +1,8 @@
 package com.etheller.warsmash.networking.uberserver;
 
 import java.net.SocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
-import net.warsmash.networking.udp.UdpServerListener;
 import net.warsmash.nio.channels.ChannelOpener;
 import net.warsmash.nio.channels.SocketChannelCallback;
 import net.warsmash.nio.channels.WritableOutput;
@@ -39,19 +37,6 @@ public class TCPGamingNetworkServer {
 				e.printStackTrace();
 			}
 		}, 8 * 1024 * 1024, ByteOrder.LITTLE_ENDIAN);
-
-		this.channelOpener.openUDPServerChannel(GamingNetwork.PORT, new UdpServerListener() {
-			@Override
-			public void parse(SocketAddress sourceAddress, ByteBuffer buffer) {
-
-			}
-		}, new ExceptionListener() {
-
-			@Override
-			public void caught(Exception e) {
-				e.printStackTrace();
-			}
-		}, 8 * 1024 * 1024, ByteOrder.LITTLE_ENDIAN);
 	}
 
 }
@@ -92,8 +92,10 @@ public class TCPGamingNetworkServerClientParser implements TCPClientParser {
 					final LobbyGameSpeed gameSpeed = LobbyGameSpeed.VALUES[data.getInt()];
 					final HostedGameVisibility visibility = HostedGameVisibility.VALUES[data.getInt()];
 					final long mapChecksum = data.getLong();
+					final byte[] mapHash = new byte[GamingNetwork.MAP_HASH_LENGTH];
+					data.get(mapHash);
 					this.listener.createGame(sessionToken, gameName, mapName, totalSlots, gameSpeed, visibility,
-							mapChecksum);
+							mapChecksum, mapHash);
 					break;
 				}
 				case GamingNetworkClientToServerListener.Protocol.LEAVE_GAME: {
@@ -0,0 +1,231 @@
+package com.etheller.warsmash.networking.uberserver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+import com.etheller.warsmash.networking.ServerToClientListener;
+import com.etheller.warsmash.networking.WarsmashClientParser;
+import com.etheller.warsmash.networking.WarsmashClientWriter;
+import com.etheller.warsmash.networking.WarsmashGameHost;
+
+import net.warsmash.networking.udp.OrderedUdpCommuncation;
+import net.warsmash.networking.udp.UdpServerListener;
+import net.warsmash.nio.channels.OpenedDatagramChannel;
+import net.warsmash.nio.channels.SelectableChannelOpener;
+import net.warsmash.nio.util.ExceptionListener;
+
+/**
+ * Plays many two player games at once against one {@link WarsmashGameHost} on
+ * localhost, to see how many games a single selector thread can keep up with.
+ * The clients run on a second selector thread and wait 50 ms before finishing
+ * each turn, like a client running its simulation.
+ *
+ * Usage: WarsmashGameHostLoadTest [games=500] [seconds=30]
+ */
+public class WarsmashGameHostLoadTest {
+	private static final int PLAYERS_PER_GAME = 2;
+	private static final long TURN_PACING_MILLIS = 50;
+
+	public static void main(final String[] args) throws Exception {
+		final int gameCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+
+		final SelectableChannelOpener hostChannelOpener = new SelectableChannelOpener();
+		final WarsmashGameHost gameHost = new WarsmashGameHost();
+		gameHost.open(hostChannelOpener, 0);
+		final InetSocketAddress hostAddress = new InetSocketAddress("127.0.0.1",
+				gameHost.getLocalAddress().getPort());
+		final int threadsBeforeStart = Thread.activeCount();
+
+		final SelectableChannelOpener clientChannelOpener = new SelectableChannelOpener();
+		final Queue<LoadTestClient> pacedClients = new ArrayDeque<>();
+		final LoadTestClient[] clients = new LoadTestClient[gameCount * PLAYERS_PER_GAME];
+		long nextSessionToken = 1;
+		for (int game = 0; game < gameCount; game++) {
+			final Map<Long, Integer> sessionTokenToSlot = new HashMap<>();
+			for (int slot = 0; slot < PLAYERS_PER_GAME; slot++) {
+				final long sessionToken = nextSessionToken++;
+				sessionTokenToSlot.put(sessionToken, slot);
+				clients[(game * PLAYERS_PER_GAME) + slot] = new LoadTestClient(clientChannelOpener, hostAddress,
+						sessionToken, pacedClients);
+			}
+			gameHost.startGame(sessionTokenToSlot);
+		}
+
+		final long endTime = System.currentTimeMillis() + (seconds * 1000L);
+		final Thread hostThread = new Thread(() -> {
+			while (System.currentTimeMillis() < endTime) {
+				hostChannelOpener.select(OrderedUdpCommuncation.UPDATE_INTERVAL_MILLIS);
+				gameHost.update();
+			}
+		}, "game host");
+		hostThread.start();
+		final int threadsDuringRun = Thread.activeCount();
+
+		for (final LoadTestClient client : clients) {
+			client.writer.joinGame();
+			client.writer.send();
+		}
+		final long startTime = System.currentTimeMillis();
+		long lastUpdateTime = startTime;
+		while (System.currentTimeMillis() < endTime) {
+			clientChannelOpener.select(1);
+			final long currentTime = System.currentTimeMillis();
+			if ((currentTime - lastUpdateTime) >= OrderedUdpCommuncation.UPDATE_INTERVAL_MILLIS) {
+				for (final LoadTestClient client : clients) {
+					client.communication.update();
+				}
+				lastUpdateTime = currentTime;
+			}
+			LoadTestClient client;
+			// the pacing is the same for everyone, so the queue is in order of when they are due
+			while (((client = pacedClients.peek()) != null) && (client.dueTime <= currentTime)) {
+				pacedClients.poll();
+				client.finishTurn();
+			}
+		}
+		hostThread.join();
+
+		long turns = 0;
+		int latencyCount = 0;
+		for (final LoadTestClient client : clients) {
+			turns += client.turnsFinished;
+			latencyCount += client.latencyCount;
+		}
+		final long[] latencies = new long[latencyCount];
+		int latencyIndex = 0;
+		for (final LoadTestClient client : clients) {
+			System.arraycopy(client.latencyNanos, 0, latencies, latencyIndex, client.latencyCount);
+			latencyIndex += client.latencyCount;
+		}
+		Arrays.sort(latencies);
+		final long elapsedMillis = System.currentTimeMillis() - startTime;
+		System.out.println(gameCount + " games, " + clients.length + " clients for " + (elapsedMillis / 1000) + " s");
+		System.out.println("turns/s: " + ((turns * 1000) / elapsedMillis) + " (client turns, "
+				+ ((turns * 1000) / elapsedMillis / PLAYERS_PER_GAME) + " game turns)");
+		System.out.println("turn latency after pacing: p50 " + percentileMicros(latencies, 50) + " us, p99 "
+				+ percentileMicros(latencies, 99) + " us");
+		System.out.println("dropped datagrams: " + gameHost.getDroppedDatagrams());
+		System.out.println("threads: " + threadsBeforeStart + " before, " + threadsDuringRun + " while hosting");
+	}
+
+	private static long percentileMicros(final long[] sorted, final int percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		return sorted[Math.min(sorted.length - 1, (sorted.length * percentile) / 100)] / 1000;
+	}
+
+	private static final class LoadTestClient implements ServerToClientListener, UdpServerListener {
+		private static final int MAX_LATENCY_SAMPLES = 4096;
+		private final OpenedDatagramChannel channel;
+		private final SocketAddress hostAddress;
+		private final OrderedUdpCommuncation communication;
+		private final WarsmashClientWriter writer;
+		private final Queue<LoadTestClient> pacedClients;
+		private final long[] latencyNanos = new long[MAX_LATENCY_SAMPLES];
+		private int latencyCount;
+		private int turnsFinished;
+		private int turnToFinish;
+		private long dueTime;
+		private long finishSentNanos;
+
+		public LoadTestClient(final SelectableChannelOpener channelOpener, final SocketAddress hostAddress,
+				final long sessionToken, final Queue<LoadTestClient> pacedClients) {
+			this.channel = channelOpener.openUDPServerChannel(0, this, new ExceptionListener() {
+				@Override
+				public void caught(final Exception e) {
+					e.printStackTrace();
+				}
+			}, 2048, ByteOrder.BIG_ENDIAN);
+			this.hostAddress = hostAddress;
+			this.communication = new OrderedUdpCommuncation(new WarsmashClientParser(this)) {
+				@Override
+				protected void trySend(final ByteBuffer data) {
+					try {
+						LoadTestClient.this.channel.send(LoadTestClient.this.hostAddress, data);
+					}
+					catch (final IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+			this.writer = new WarsmashClientWriter(this.communication, sessionToken);
+			this.pacedClients = pacedClients;
+		}
+
+		@Override
+		public void parse(final SocketAddress sourceAddress, final ByteBuffer buffer) {
+			this.communication.parse(buffer);
+		}
+
+		private void finishTurn() {
+			this.writer.finishedTurn(this.turnToFinish);
+			this.writer.send();
+			this.turnsFinished++;
+			this.finishSentNanos = System.nanoTime();
+		}
+
+		@Override
+		public void finishedTurn(final int gameTurnTick) {
+			if ((this.finishSentNanos != 0) && (this.latencyCount < MAX_LATENCY_SAMPLES)) {
+				this.latencyNanos[this.latencyCount++] = System.nanoTime() - this.finishSentNanos;
+			}
+			this.finishSentNanos = 0;
+			this.turnToFinish = gameTurnTick;
+			this.dueTime = System.currentTimeMillis() + TURN_PACING_MILLIS;
+			this.pacedClients.offer(this);
+		}
+
+		@Override
+		public void acceptJoin(final int playerIndex) {
+		}
+
+		@Override
+		public void startGame() {
+		}
+
+		@Override
+		public void heartbeat() {
+		}
+
+		@Override
+		public void issueTargetOrder(final int playerIndex, final int unitHandleId, final int abilityHandleId,
+				final int orderId, final int targetHandleId, final boolean queue) {
+		}
+
+		@Override
+		public void issuePointOrder(final int playerIndex, final int unitHandleId, final int abilityHandleId,
+				final int orderId, final float x, final float y, final boolean queue) {
+		}
+
+		@Override
+		public void issueDropItemAtPointOrder(final int playerIndex, final int unitHandleId,
+				final int abilityHandleId, final int orderId, final int targetHandleId, final float x, final float y,
+				final boolean queue) {
+		}
+
+		@Override
+		public void issueDropItemAtTargetOrder(final int playerIndex, final int unitHandleId,
+				final int abilityHandleId, final int orderId, final int targetHandleId, final int targetHeroHandleId,
+				final boolean queue) {
+		}
+
+		@Override
+		public void issueImmediateOrder(final int playerIndex, final int unitHandleId, final int abilityHandleId,
+				final int orderId, final boolean queue) {
+		}
+
+		@Override
+		public void unitCancelTrainingItem(final int playerIndex, final int unitHandleId, final int cancelIndex) {
+		}
+	}
+}
@@ -26,4 +26,6 @@ public interface ClientToServerListener {
 
 	void framesSkipped(long sessionToken, int nFramesSkipped);
 
+	void stateChecksum(SocketAddress sourceAddress, long sessionToken, int gameTurnTick, long checksum);
+
 }
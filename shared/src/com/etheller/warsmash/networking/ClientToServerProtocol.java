@@ -11,4 +11,5 @@ public class ClientToServerProtocol {
 	public static final int FINISHED_TURN = 6;
 	public static final int JOIN_GAME = 7;
 	public static final int FRAMES_SKIPPED = 8;
+	public static final int STATE_CHECKSUM = 10;
 }
@@ -7,6 +7,8 @@ public interface GameTurnManager {
 
 	void framesSkipped(float skippedCount);
 
+	void stateChecksum(int gameTurnTick, long checksum);
+
 	GameTurnManager PAUSED = new GameTurnManager() {
 		@Override
 		public int getLatestCompletedTurn() {
@@ -21,6 +23,10 @@ public interface GameTurnManager {
 		@Override
 		public void framesSkipped(final float skippedCount) {
 		}
+
+		@Override
+		public void stateChecksum(final int gameTurnTick, final long checksum) {
+		}
 	};
 
 	GameTurnManager LOCAL = new GameTurnManager() {
@@ -36,6 +42,10 @@ public interface GameTurnManager {
 		@Override
 		public void framesSkipped(final float skippedCount) {
 		}
+
+		@Override
+		public void stateChecksum(final int gameTurnTick, final long checksum) {
+		}
 	};
 
 }
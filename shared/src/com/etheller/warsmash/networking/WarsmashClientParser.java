@@ -11,22 +11,20 @@ public class WarsmashClientParser implements OrderedUdpClientListener {
 		this.listener = listener;
 	}
 
-	@Override
-	public void cantReplay(final int seqNo) {
-		throw new IllegalStateException("Cant replay seqNo=" + seqNo + " !");
-	}
-
 	@Override
 	public void parse(final ByteBuffer buffer) {
 		final int initialLimit = buffer.limit();
 		try {
+			// the server sends every message of a turn in one datagram when they fit
 			while (buffer.hasRemaining()) {
 				final int length = buffer.getInt();
 				if (length > buffer.remaining()) {
-					// this packet is junk to us, so we will skip and continue (drop system will
+					// the rest of this packet is junk to us, so we will skip it (drop system will
 					// handle it)
 					System.err.println("Got mismatched protocol length " + length + " > " + buffer.remaining() + "!!");
+					break;
 				}
+				final int messageEnd = buffer.position() + length;
 				final int protocol = buffer.getInt();
 				switch (protocol) {
 				case ServerToClientProtocol.ISSUE_TARGET_ORDER: {
@@ -115,6 +113,7 @@ public class WarsmashClientParser implements OrderedUdpClientListener {
 					System.err.println("Got unknown protocol: " + protocol);
 					break;
 				}
+				buffer.position(messageEnd);
 			}
 		}
 		finally {
@@ -4,14 +4,14 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
-import net.warsmash.networking.udp.OrderedUdpClient;
+import net.warsmash.networking.udp.OrderedUdpCommuncation;
 
 public class WarsmashClientWriter {
-	private final OrderedUdpClient client;
+	private final OrderedUdpCommuncation client;
 	private final ByteBuffer sendBuffer = ByteBuffer.allocate(1024).order(ByteOrder.BIG_ENDIAN);
 	private final long sessionToken;
 
-	public WarsmashClientWriter(final OrderedUdpClient client, long sessionToken) {
+	public WarsmashClientWriter(final OrderedUdpCommuncation client, long sessionToken) {
 		this.client = client;
 		this.sessionToken = sessionToken;
 	}
@@ -109,6 +109,15 @@ public class WarsmashClientWriter {
 		this.sendBuffer.putInt(skippedCount);
 	}
 
+	public void stateChecksum(final int gameTurnTick, final long checksum) {
+		this.sendBuffer.clear();
+		this.sendBuffer.putInt(4 + 8 + 4 + 8);
+		this.sendBuffer.putInt(ClientToServerProtocol.STATE_CHECKSUM);
+		this.sendBuffer.putLong(this.sessionToken);
+		this.sendBuffer.putInt(gameTurnTick);
+		this.sendBuffer.putLong(checksum);
+	}
+
 	public void joinGame() {
 		this.sendBuffer.clear();
 		this.sendBuffer.putInt(4 + 8);
@@ -0,0 +1,129 @@
+package com.etheller.warsmash.networking;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.warsmash.networking.udp.OrderedUdpCommuncation;
+import net.warsmash.networking.udp.UdpServerListener;
+import net.warsmash.nio.channels.ChannelOpener;
+import net.warsmash.nio.channels.OpenedDatagramChannel;
+import net.warsmash.nio.util.ExceptionListener;
+
+/**
+ * Hosts all of the games of a server on one UDP port, which is read by the
+ * selector of the {@link ChannelOpener} like the lobby connections, instead of
+ * giving each game its own port and thread. A game is found by the address of
+ * the client, and the first time a client is seen by the session token at the
+ * start of its message, which every message from a client has.
+ *
+ * The owner of the selector calls {@link #update()} about every
+ * {@link OrderedUdpCommuncation#UPDATE_INTERVAL_MILLIS}, so that lost packets are
+ * sent again.
+ *
+ * A game closed with {@link #closeGame(WarsmashServer)}, when its lobby is
+ * gone, is played on until it has no connected clients, and then removed.
+ */
+public class WarsmashGameHost implements UdpServerListener {
+	private static final int RECEIVE_BUFFER_SIZE = 2048;
+	private final List<WarsmashServer> games = new ArrayList<>();
+	private final Map<Long, WarsmashServer> sessionTokenToGame = new HashMap<>();
+	private final Map<SocketAddress, WarsmashServer> addressToGame = new HashMap<>();
+	private final List<WarsmashServer> closedGames = new ArrayList<>();
+	private OpenedDatagramChannel channel;
+	private long droppedDatagrams;
+
+	public void open(final ChannelOpener channelOpener, final int port) {
+		this.channel = channelOpener.openUDPServerChannel(port, this, new ExceptionListener() {
+			@Override
+			public void caught(final Exception e) {
+				e.printStackTrace();
+			}
+		}, RECEIVE_BUFFER_SIZE, ByteOrder.BIG_ENDIAN);
+	}
+
+	public InetSocketAddress getLocalAddress() {
+		return this.channel.getLocalAddress();
+	}
+
+	public WarsmashServer startGame(final Map<Long, Integer> sessionTokenToPermittedSlot) {
+		final WarsmashServer game = new WarsmashServer(this.channel, sessionTokenToPermittedSlot);
+		for (final Long sessionToken : sessionTokenToPermittedSlot.keySet()) {
+			this.sessionTokenToGame.put(sessionToken, game);
+		}
+		this.games.add(game);
+		return game;
+	}
+
+	public void closeGame(final WarsmashServer game) {
+		if (this.games.contains(game) && !this.closedGames.contains(game)) {
+			this.closedGames.add(game);
+		}
+	}
+
+	public void removeGame(final WarsmashServer game) {
+		for (final Long sessionToken : game.getSessionTokens()) {
+			if (this.sessionTokenToGame.get(sessionToken) == game) {
+				this.sessionTokenToGame.remove(sessionToken);
+			}
+		}
+		this.addressToGame.values().removeIf(addressGame -> addressGame == game);
+		this.games.remove(game);
+		this.closedGames.remove(game);
+	}
+
+	public void update() {
+		for (int i = this.closedGames.size() - 1; i >= 0; i--) {
+			final WarsmashServer game = this.closedGames.get(i);
+			if (!game.hasConnectedClients()) {
+				removeGame(game);
+			}
+		}
+		for (int i = 0; i < this.games.size(); i++) {
+			try {
+				this.games.get(i).update();
+			}
+			catch (final RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	public long getDroppedDatagrams() {
+		return this.droppedDatagrams;
+	}
+
+	@Override
+	public void parse(final SocketAddress sourceAddress, final ByteBuffer buffer) {
+		WarsmashServer game = this.addressToGame.get(sourceAddress);
+		if (game == null) {
+			game = findGame(buffer);
+			if (game == null) {
+				this.droppedDatagrams++;
+				return;
+			}
+			this.addressToGame.put(sourceAddress, game);
+		}
+		try {
+			game.parse(sourceAddress, buffer);
+		}
+		catch (final RuntimeException e) {
+			// one broken game should not stop the others, or the lobby on the same selector
+			e.printStackTrace();
+		}
+	}
+
+	private WarsmashServer findGame(final ByteBuffer buffer) {
+		final int dataPosition = OrderedUdpCommuncation.getDataPosition(buffer);
+		// length, protocol, session token
+		if ((dataPosition == -1) || (buffer.limit() < (dataPosition + 4 + 4 + 8))) {
+			return null;
+		}
+		return this.sessionTokenToGame.get(buffer.getLong(dataPosition + 4 + 4));
+	}
+}
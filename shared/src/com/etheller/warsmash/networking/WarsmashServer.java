@@ -3,31 +3,51 @@ package com.etheller.warsmash.networking;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
 
 import net.warsmash.networking.udp.OrderedUdpServer;
+import net.warsmash.networking.udp.UdpSender;
 import net.warsmash.uberserver.GamingNetwork;
 
 public class WarsmashServer implements ClientToServerListener {
 	private static final boolean VERBOSE_LOGGING = false;
 	private static final int MAGIC_DELAY_OFFSET = 0; //4
+	private static final long TRAFFIC_REPORT_INTERVAL_MILLIS = 10000;
+	// state checksums of turns further behind than this (30 seconds) are dropped,
+	// even if some client never reported theirs
+	private static final int STATE_CHECKSUM_MAX_TURN_LAG = 600;
+	// clients send finishedTurn every turn once the game is started, so one that
+	// sends nothing for this long has left; until then, they may be loading the map
+	private static final long CLIENT_TIMEOUT_MILLIS = 30000;
+	private static final long START_TIMEOUT_MILLIS = 300000;
 	private final OrderedUdpServer udpServer;
 	private final Set<SocketAddress> socketAddressesKnown = new HashSet<>();
 	private final Map<Long, Integer> sessionTokenToPermittedSlot;
 	private final Map<SocketAddress, Integer> clientToTurnFinished = new HashMap<>();
 	private final List<Runnable> turnActions = new ArrayList<>();
+	private final Map<Integer, StateChecksumReport> turnToStateChecksum = new HashMap<>();
+	private int firstDesyncTurnTick = -1;
+	private long missingStateChecksumReports = 0;
 	private final WarsmashServerWriter writer;
 	private int currentTurnTick = MAGIC_DELAY_OFFSET;
 	private boolean gameStarted = false;
 	private long lastServerHeartbeatTime = 0;
 	private int joinCount = 0;
+	private long trafficReportTime;
+	private int trafficReportTurnTick;
+	private long trafficReportDatagrams;
+	private long trafficReportBytes;
+	private final long createdTime = System.currentTimeMillis();
+	private long lastReceivedTime;
 
 	public WarsmashServer(final int port, final Map<Long, Integer> sessionTokenToPermittedSlot) throws IOException {
 		this.udpServer = new OrderedUdpServer(port, new WarsmashServerParser(this));
@@ -35,6 +55,43 @@ public class WarsmashServer implements ClientToServerListener {
 		this.sessionTokenToPermittedSlot = sessionTokenToPermittedSlot;
 	}
 
+	/**
+	 * For a game that shares its socket with other games, see
+	 * {@link WarsmashGameHost}, which gives it its datagrams with
+	 * {@link #parse(SocketAddress, ByteBuffer)}. It has no thread of its own.
+	 */
+	public WarsmashServer(final UdpSender sender, final Map<Long, Integer> sessionTokenToPermittedSlot) {
+		this.udpServer = new OrderedUdpServer(sender, new WarsmashServerParser(this));
+		this.writer = new WarsmashServerWriter(this.udpServer, this.socketAddressesKnown);
+		this.sessionTokenToPermittedSlot = sessionTokenToPermittedSlot;
+	}
+
+	public void parse(final SocketAddress sourceAddress, final ByteBuffer buffer) {
+		this.lastReceivedTime = System.currentTimeMillis();
+		this.udpServer.parse(sourceAddress, buffer);
+	}
+
+	/**
+	 * Whether any client may still be playing, for a game given its datagrams
+	 * with {@link #parse(SocketAddress, ByteBuffer)}: one was heard from
+	 * recently, or the game is not started and was created recently.
+	 */
+	public boolean hasConnectedClients() {
+		final long currentTimeMillis = System.currentTimeMillis();
+		if (!this.gameStarted && ((currentTimeMillis - this.createdTime) < START_TIMEOUT_MILLIS)) {
+			return true;
+		}
+		return (currentTimeMillis - this.lastReceivedTime) < CLIENT_TIMEOUT_MILLIS;
+	}
+
+	public void update() {
+		this.udpServer.update();
+	}
+
+	public Set<Long> getSessionTokens() {
+		return this.sessionTokenToPermittedSlot.keySet();
+	}
+
 	// Useful for if they pass 0 as port and get an auto-assigned one
 	public int getPort() {
 		return this.udpServer.getPort();
@@ -50,16 +107,43 @@ public class WarsmashServer implements ClientToServerListener {
 
 	public void startGame() {
 		this.gameStarted = true;
+		this.trafficReportTime = System.currentTimeMillis();
+		this.trafficReportTurnTick = this.currentTurnTick;
 		WarsmashServer.this.writer.startGame();
 		WarsmashServer.this.writer.send();
 		startTurn();
 	}
 
+	/**
+	 * Sends the finishedTurn after the orders of the turn, in the same datagram
+	 * when they fit.
+	 */
 	private void startTurn() {
-		System.out.println("sending finishedTurn " + this.currentTurnTick);
+		if (VERBOSE_LOGGING) {
+			System.out.println("sending finishedTurn " + this.currentTurnTick);
+		}
 		WarsmashServer.this.writer.finishedTurn(this.currentTurnTick);
 		WarsmashServer.this.writer.send();
 		this.currentTurnTick++;
+		reportTraffic();
+	}
+
+	private void reportTraffic() {
+		final long currentTimeMillis = System.currentTimeMillis();
+		final long elapsedMillis = currentTimeMillis - this.trafficReportTime;
+		if (elapsedMillis < TRAFFIC_REPORT_INTERVAL_MILLIS) {
+			return;
+		}
+		final long datagrams = this.writer.getDatagramsSent() - this.trafficReportDatagrams;
+		final long bytes = this.writer.getBytesSent() - this.trafficReportBytes;
+		final int turns = this.currentTurnTick - this.trafficReportTurnTick;
+		System.out.println("server traffic: " + ((datagrams * 1000) / elapsedMillis) + " datagrams/s, "
+				+ (turns == 0 ? 0 : bytes / turns) + " bytes/turn to " + this.socketAddressesKnown.size()
+				+ " clients, " + this.missingStateChecksumReports + " state checksums missing");
+		this.trafficReportTime = currentTimeMillis;
+		this.trafficReportTurnTick = this.currentTurnTick;
+		this.trafficReportDatagrams = this.writer.getDatagramsSent();
+		this.trafficReportBytes = this.writer.getBytesSent();
 	}
 
 	private int getPlayerIndex(final SocketAddress sourceAddress, final long sessionToken) {
@@ -101,7 +185,6 @@ public class WarsmashServer implements ClientToServerListener {
 			public void run() {
 				WarsmashServer.this.writer.issueTargetOrder(playerIndex, unitHandleId, abilityHandleId, orderId,
 						targetHandleId, queue);
-				WarsmashServer.this.writer.send();
 			}
 		});
 	}
@@ -119,7 +202,6 @@ public class WarsmashServer implements ClientToServerListener {
 			public void run() {
 				WarsmashServer.this.writer.issuePointOrder(playerIndex, unitHandleId, abilityHandleId, orderId, x, y,
 						queue);
-				WarsmashServer.this.writer.send();
 			}
 		});
 	}
@@ -138,7 +220,6 @@ public class WarsmashServer implements ClientToServerListener {
 			public void run() {
 				WarsmashServer.this.writer.issueDropItemAtPointOrder(playerIndex, unitHandleId, abilityHandleId,
 						orderId, targetHandleId, x, y, queue);
-				WarsmashServer.this.writer.send();
 			}
 		});
 	}
@@ -157,7 +238,6 @@ public class WarsmashServer implements ClientToServerListener {
 			public void run() {
 				WarsmashServer.this.writer.issueDropItemAtTargetOrder(playerIndex, unitHandleId, abilityHandleId,
 						orderId, targetHandleId, targetHeroHandleId, queue);
-				WarsmashServer.this.writer.send();
 			}
 		});
 	}
@@ -175,7 +255,6 @@ public class WarsmashServer implements ClientToServerListener {
 			public void run() {
 				WarsmashServer.this.writer.issueImmediateOrder(playerIndex, unitHandleId, abilityHandleId, orderId,
 						queue);
-				WarsmashServer.this.writer.send();
 			}
 		});
 	}
@@ -192,7 +271,6 @@ public class WarsmashServer implements ClientToServerListener {
 			@Override
 			public void run() {
 				WarsmashServer.this.writer.unitCancelTrainingItem(playerIndex, unitHandleId, cancelIndex);
-				WarsmashServer.this.writer.send();
 			}
 		});
 	}
@@ -216,6 +294,7 @@ public class WarsmashServer implements ClientToServerListener {
 			}
 		}
 		if (allDone) {
+			// the orders are only written here, and go out with the finishedTurn
 			for (final Runnable turnAction : this.turnActions) {
 				turnAction.run();
 			}
@@ -239,6 +318,69 @@ public class WarsmashServer implements ClientToServerListener {
 		}
 	}
 
+	@Override
+	public void stateChecksum(final SocketAddress sourceAddress, final long sessionToken, final int gameTurnTick,
+			final long checksum) {
+		final int playerIndex = getPlayerIndex(sourceAddress, sessionToken);
+		if (playerIndex == -1) {
+			return;
+		}
+		final int oldestTurnTick = this.currentTurnTick - STATE_CHECKSUM_MAX_TURN_LAG;
+		dropStateChecksumsBefore(oldestTurnTick);
+		if (gameTurnTick < oldestTurnTick) {
+			// too late, the others' checksums for that turn are gone
+			this.missingStateChecksumReports++;
+			return;
+		}
+		StateChecksumReport report = this.turnToStateChecksum.get(gameTurnTick);
+		if (report == null) {
+			report = new StateChecksumReport(playerIndex, checksum);
+			this.turnToStateChecksum.put(gameTurnTick, report);
+		}
+		else if ((report.checksum != checksum)
+				&& ((this.firstDesyncTurnTick == -1) || (gameTurnTick < this.firstDesyncTurnTick))) {
+			// later mismatches are most likely a consequence of the first one, so only
+			// the earliest is reported
+			this.firstDesyncTurnTick = gameTurnTick;
+			System.err.println("DESYNC at turn " + gameTurnTick + ": player " + playerIndex + " has state checksum "
+					+ Long.toHexString(checksum) + " but player " + report.playerIndex + " has "
+					+ Long.toHexString(report.checksum));
+		}
+		report.reportCount++;
+		if (report.reportCount >= this.socketAddressesKnown.size()) {
+			this.turnToStateChecksum.remove(gameTurnTick);
+		}
+	}
+
+	private void dropStateChecksumsBefore(final int oldestTurnTick) {
+		final Iterator<Map.Entry<Integer, StateChecksumReport>> iterator = this.turnToStateChecksum.entrySet()
+				.iterator();
+		while (iterator.hasNext()) {
+			final Map.Entry<Integer, StateChecksumReport> entry = iterator.next();
+			if (entry.getKey() < oldestTurnTick) {
+				iterator.remove();
+				this.missingStateChecksumReports += Math.max(0,
+						this.socketAddressesKnown.size() - entry.getValue().reportCount);
+			}
+		}
+	}
+
+	/**
+	 * @return how many state checksums clients did not report in time to be
+	 *         compared with the others, so desyncs in those turns went unnoticed
+	 */
+	public long getMissingStateChecksumReports() {
+		return this.missingStateChecksumReports;
+	}
+
+	/**
+	 * @return the first turn where clients reported different simulation states,
+	 *         or -1 if they have always agreed
+	 */
+	public int getFirstDesyncTurnTick() {
+		return this.firstDesyncTurnTick;
+	}
+
 	public static void main(final String[] args) {
 		try {
 			final Map<Long, Integer> sessionTokenToPermittedSlot = new HashMap<>();
@@ -262,4 +404,15 @@ public class WarsmashServer implements ClientToServerListener {
 			e.printStackTrace();
 		}
 	}
+
+	private static final class StateChecksumReport {
+		private final int playerIndex;
+		private final long checksum;
+		private int reportCount;
+
+		public StateChecksumReport(final int playerIndex, final long checksum) {
+			this.playerIndex = playerIndex;
+			this.checksum = checksum;
+		}
+	}
 }
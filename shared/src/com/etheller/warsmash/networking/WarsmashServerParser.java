@@ -1,6 +1,5 @@
 package com.etheller.warsmash.networking;
 
-import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 
@@ -10,7 +9,7 @@ public class WarsmashServerParser implements OrderedUdpServerListener {
 
 	private final ClientToServerListener listener;
 
-	public WarsmashServerParser(final ClientToServerListener clientToServerListener) throws IOException {
+	public WarsmashServerParser(final ClientToServerListener clientToServerListener) {
 		this.listener = clientToServerListener;
 	}
 
@@ -110,6 +109,13 @@ public class WarsmashServerParser implements OrderedUdpServerListener {
 					this.listener.framesSkipped(sessionToken, nFramesSkipped);
 					break;
 				}
+				case ClientToServerProtocol.STATE_CHECKSUM: {
+					final long sessionToken = buffer.getLong();
+					final int gameTurnTick = buffer.getInt();
+					final long checksum = buffer.getLong();
+					this.listener.stateChecksum(sourceAddress, sessionToken, gameTurnTick, checksum);
+					break;
+				}
 
 				default:
 					System.err.println("Got unknown protocol: " + protocol);
@@ -121,9 +127,4 @@ public class WarsmashServerParser implements OrderedUdpServerListener {
 			buffer.position(initialLimit);
 		}
 	}
-
-	@Override
-	public void cantReplay(final SocketAddress sourceAddress, final int seqNo) {
-		throw new IllegalStateException("Cant replay " + seqNo + " to " + sourceAddress + " !");
-	}
 }
@@ -6,12 +6,22 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Set;
 
+import net.warsmash.networking.udp.OrderedUdpCommuncation;
 import net.warsmash.networking.udp.OrderedUdpServer;
 
+/**
+ * Writes messages for the clients into one buffer, which {@link #send()} sends
+ * as one datagram, so that every order of a turn and the finishedTurn after them
+ * usually go out together. When the next message would not fit in a datagram,
+ * the ones before it are sent first; messages are never split.
+ */
 public class WarsmashServerWriter implements ServerToClientListener {
 	private final OrderedUdpServer server;
-	private final ByteBuffer sendBuffer = ByteBuffer.allocate(1024).order(ByteOrder.BIG_ENDIAN);
+	private final ByteBuffer sendBuffer = ByteBuffer.allocate(OrderedUdpCommuncation.MAX_DATA_SIZE)
+			.order(ByteOrder.BIG_ENDIAN);
 	private final Set<SocketAddress> allKnownAddressesToSend;
+	private long datagramsSent;
+	private long bytesSent;
 
 	public WarsmashServerWriter(final OrderedUdpServer server, final Set<SocketAddress> allKnownAddressesToSend) {
 		this.server = server;
@@ -21,8 +31,7 @@ public class WarsmashServerWriter implements ServerToClientListener {
 	@Override
 	public void issueTargetOrder(final int playerIndex, final int unitHandleId, final int abilityHandleId,
 			final int orderId, final int targetHandleId, final boolean queue) {
-		this.sendBuffer.clear();
-		this.sendBuffer.putInt(4 + 4 + 4 + 4 + 4 + 4 + 1);
+		beginMessage(4 + 4 + 4 + 4 + 4 + 4 + 1);
 		this.sendBuffer.putInt(ServerToClientProtocol.ISSUE_TARGET_ORDER);
 		this.sendBuffer.putInt(playerIndex);
 		this.sendBuffer.putInt(unitHandleId);
@@ -35,8 +44,7 @@ public class WarsmashServerWriter implements ServerToClientListener {
 	@Override
 	public void issuePointOrder(final int playerIndex, final int unitHandleId, final int abilityHandleId,
 			final int orderId, final float x, final float y, final boolean queue) {
-		this.sendBuffer.clear();
-		this.sendBuffer.putInt(4 + 4 + 4 + 4 + 4 + 4 + 4 + 1);
+		beginMessage(4 + 4 + 4 + 4 + 4 + 4 + 4 + 1);
 		this.sendBuffer.putInt(ServerToClientProtocol.ISSUE_POINT_ORDER);
 		this.sendBuffer.putInt(playerIndex);
 		this.sendBuffer.putInt(unitHandleId);
@@ -50,8 +58,7 @@ public class WarsmashServerWriter implements ServerToClientListener {
 	@Override
 	public void issueDropItemAtPointOrder(final int playerIndex, final int unitHandleId, final int abilityHandleId,
 			final int orderId, final int targetHandleId, final float x, final float y, final boolean queue) {
-		this.sendBuffer.clear();
-		this.sendBuffer.putInt(4 + 4 + 4 + 4 + 4 + 4 + 4 + 4 + 1);
+		beginMessage(4 + 4 + 4 + 4 + 4 + 4 + 4 + 4 + 1);
 		this.sendBuffer.putInt(ServerToClientProtocol.ISSUE_DROP_ITEM_ORDER);
 		this.sendBuffer.putInt(playerIndex);
 		this.sendBuffer.putInt(unitHandleId);
@@ -66,8 +73,7 @@ public class WarsmashServerWriter implements ServerToClientListener {
 	@Override
 	public void issueDropItemAtTargetOrder(final int playerIndex, final int unitHandleId, final int abilityHandleId,
 			final int orderId, final int targetHandleId, final int targetHeroHandleId, final boolean queue) {
-		this.sendBuffer.clear();
-		this.sendBuffer.putInt(4 + 4 + 4 + 4 + 4 + 4 + 4 + 1);
+		beginMessage(4 + 4 + 4 + 4 + 4 + 4 + 4 + 1);
 		this.sendBuffer.putInt(ServerToClientProtocol.ISSUE_DROP_ITEM_ON_TARGET_ORDER);
 		this.sendBuffer.putInt(playerIndex);
 		this.sendBuffer.putInt(unitHandleId);
@@ -81,8 +87,7 @@ public class WarsmashServerWriter implements ServerToClientListener {
 	@Override
 	public void issueImmediateOrder(final int playerIndex, final int unitHandleId, final int abilityHandleId,
 			final int orderId, final boolean queue) {
-		this.sendBuffer.clear();
-		this.sendBuffer.putInt(4 + 4 + 4 + 4 + 4 + 1);
+		beginMessage(4 + 4 + 4 + 4 + 4 + 1);
 		this.sendBuffer.putInt(ServerToClientProtocol.ISSUE_IMMEDIATE_ORDER);
 		this.sendBuffer.putInt(playerIndex);
 		this.sendBuffer.putInt(unitHandleId);
@@ -93,8 +98,7 @@ public class WarsmashServerWriter implements ServerToClientListener {
 
 	@Override
 	public void unitCancelTrainingItem(final int playerIndex, final int unitHandleId, final int cancelIndex) {
-		this.sendBuffer.clear();
-		this.sendBuffer.putInt(4 + 4 + 4 + 4 + 4 + 1);
+		beginMessage(4 + 4 + 4 + 4);
 		this.sendBuffer.putInt(ServerToClientProtocol.UNIT_CANCEL_TRAINING);
 		this.sendBuffer.putInt(playerIndex);
 		this.sendBuffer.putInt(unitHandleId);
@@ -103,50 +107,64 @@ public class WarsmashServerWriter implements ServerToClientListener {
 
 	@Override
 	public void finishedTurn(final int gameTurnTick) {
-		this.sendBuffer.clear();
-		this.sendBuffer.putInt(4 + 4);
+		beginMessage(4 + 4);
 		this.sendBuffer.putInt(ServerToClientProtocol.FINISHED_TURN);
 		this.sendBuffer.putInt(gameTurnTick);
 	}
 
 	@Override
 	public void heartbeat() {
-		this.sendBuffer.clear();
-		this.sendBuffer.putInt(4);
+		beginMessage(4);
 		this.sendBuffer.putInt(ServerToClientProtocol.HEARTBEAT);
 	}
 
 	@Override
 	public void acceptJoin(final int playerIndex) {
-		this.sendBuffer.clear();
-		this.sendBuffer.putInt(4 + 4);
+		beginMessage(4 + 4);
 		this.sendBuffer.putInt(ServerToClientProtocol.ACCEPT_JOIN);
 		this.sendBuffer.putInt(playerIndex);
 	}
 
 	@Override
 	public void startGame() {
-		this.sendBuffer.clear();
-		this.sendBuffer.putInt(4);
+		beginMessage(4);
 		this.sendBuffer.putInt(ServerToClientProtocol.START_GAME);
 	}
 
+	private void beginMessage(final int length) {
+		if ((4 + length) > this.sendBuffer.remaining()) {
+			send();
+		}
+		this.sendBuffer.putInt(length);
+	}
+
 	public void send(final SocketAddress sourceAddress) {
 		this.sendBuffer.flip();
 		try {
+			this.datagramsSent++;
+			this.bytesSent += this.sendBuffer.remaining();
 			this.server.send(sourceAddress, this.sendBuffer);
 		}
 		catch (final IOException e) {
 			throw new RuntimeException(e);
 		}
+		finally {
+			this.sendBuffer.clear();
+		}
 	}
 
 	public void send() {
 		this.sendBuffer.flip();
+		if (!this.sendBuffer.hasRemaining()) {
+			this.sendBuffer.clear();
+			return;
+		}
 		try {
 			for (final SocketAddress address : this.allKnownAddressesToSend) {
 				final int pos = this.sendBuffer.position();
 				final int limit = this.sendBuffer.limit();
+				this.datagramsSent++;
+				this.bytesSent += limit - pos;
 				this.server.send(address, this.sendBuffer);
 				this.sendBuffer.position(pos);
 				this.sendBuffer.limit(limit);
@@ -155,6 +173,23 @@ public class WarsmashServerWriter implements ServerToClientListener {
 		catch (final IOException e) {
 			throw new RuntimeException(e);
 		}
+		finally {
+			this.sendBuffer.clear();
+		}
+	}
+
+	/**
+	 * @return how many datagrams were sent, counting one per client
+	 */
+	public long getDatagramsSent() {
+		return this.datagramsSent;
+	}
+
+	/**
+	 * @return how many bytes of messages were sent, counting them once per client
+	 */
+	public long getBytesSent() {
+		return this.bytesSent;
 	}
 
 }
@@ -26,6 +26,10 @@ public class OrderedUdpClient extends OrderedUdpCommuncation implements Runnable
 
 	@Override
 	public void run() {
-		this.udpClient.run();
+		this.udpClient.setRunning(true);
+		while (this.udpClient.isRunning()) {
+			this.udpClient.poll(UPDATE_INTERVAL_MILLIS);
+			update();
+		}
 	}
 }
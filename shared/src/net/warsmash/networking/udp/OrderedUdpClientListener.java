@@ -1,5 +1,4 @@
 package net.warsmash.networking.udp;
 
 public interface OrderedUdpClientListener extends UdpClientListener {
-	void cantReplay(int seqNo);
 }
@@ -4,105 +4,316 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayDeque;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Queue;
 
+/**
+ * Reliable, ordered messages over UDP. Every data packet has a sequence number
+ * and carries an acknowledgement of what was received: the next sequence
+ * number expected, and a bit for each of the 64 after it that already arrived
+ * out of order. A packet that is not acknowledged is sent again once its
+ * retransmission timeout, estimated from the round trip times like TCP does,
+ * runs out, or sooner when a packet sent after it is acknowledged first. So the
+ * last packet of a turn is sent again even when nothing comes after it.
+ *
+ * The timeouts are checked by {@link #update()}, which whoever receives the
+ * datagrams should call about every {@link #UPDATE_INTERVAL_MILLIS}.
+ *
+ * Up to {@link #WINDOW_SIZE} packets can wait for an acknowledgement; more are
+ * queued until the window moves. The window is kept in arrays indexed by the
+ * sequence number modulo its size.
+ */
 public abstract class OrderedUdpCommuncation implements UdpClientListener {
-	private static final int MAX_STORED_SENT_DATA_SIZE = 10000;
+	public static final int UPDATE_INTERVAL_MILLIS = 10;
+	private static final int MAX_PACKET_SIZE = 1024;
+	// type, seqNo, ackSeqNo, ackBits
+	private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+	// the largest data that can be sent at once, after the header
+	public static final int MAX_DATA_SIZE = MAX_PACKET_SIZE - HEADER_SIZE;
+	// a power of two
+	private static final int WINDOW_SIZE = 256;
+	private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+	private static final int ACK_BITS = 64;
+
+	private static final long MIN_RETRANSMIT_TIMEOUT_NANOS = 20 * 1000000L;
+	private static final long MAX_RETRANSMIT_TIMEOUT_NANOS = 2000 * 1000000L;
+	private static final long INITIAL_RETRANSMIT_TIMEOUT_NANOS = 200 * 1000000L;
+	private static final int MAX_BACKOFF_SHIFT = 5;
 
 	private static final int ORDERED_UDP_MESSAGE = 'M';
-	private static final int ORDERED_UDP_REPLAY_REQUEST = 'R';
+	private static final int ORDERED_UDP_ACK = 'A';
 
-	private final Map<Integer, ByteBuffer> seqNoToDataSent;
-	private final Map<Integer, ByteBuffer> seqNoToDataReceived;
-	private final Queue<Integer> seqNosStored;
-	private int nextSendSeqNo;
-	private int nextReceiveSeqNo;
 	private final OrderedUdpClientListener delegate;
 	private final ByteBuffer sendBuffer;
 
+	// sent packets, without their header, from sendBaseSeqNo to nextSendSeqNo;
+	// null once acknowledged
+	private final ByteBuffer[] sentData = new ByteBuffer[WINDOW_SIZE];
+	private final long[] sentTimeNanos = new long[WINDOW_SIZE];
+	private final int[] sentCount = new int[WINDOW_SIZE];
+	private final Queue<ByteBuffer> dataWaitingForWindow = new ArrayDeque<>();
+	private int sendBaseSeqNo;
+	private int nextSendSeqNo;
+
+	// packets received ahead of nextReceiveSeqNo
+	private final ByteBuffer[] receivedData = new ByteBuffer[WINDOW_SIZE];
+	private int nextReceiveSeqNo;
+	private boolean ackPending;
+
+	private long smoothedRttNanos = -1;
+	private long rttVariationNanos;
+	private long retransmitTimeoutNanos = INITIAL_RETRANSMIT_TIMEOUT_NANOS;
+	private long retransmitCount;
+	private long latestAcknowledgedSentTimeNanos = Long.MIN_VALUE;
+
 	public OrderedUdpCommuncation(final OrderedUdpClientListener delegate) {
-		this.seqNoToDataSent = new HashMap<>();
-		this.seqNoToDataReceived = new HashMap<>();
-		this.seqNosStored = new ArrayDeque<>();
-		this.sendBuffer = ByteBuffer.allocate(1024).order(ByteOrder.BIG_ENDIAN);
+		this.sendBuffer = ByteBuffer.allocate(MAX_PACKET_SIZE).order(ByteOrder.BIG_ENDIAN);
 		this.delegate = delegate;
 	}
 
-	public void send(final ByteBuffer data) throws IOException {
-		final ByteBuffer writeBuffer = ByteBuffer.allocate(1024).order(ByteOrder.BIG_ENDIAN);
-		writeBuffer.clear();
-		final Integer seqNo = this.nextSendSeqNo; // only autobox once, would be ideal to not box at all
-		writeBuffer.putInt(ORDERED_UDP_MESSAGE);
-		writeBuffer.putInt(seqNo);
-		writeBuffer.put(data);
-		writeBuffer.flip();
-		final int position = writeBuffer.position();
-		trySend(writeBuffer);
-		writeBuffer.position(position);
-		if (this.seqNosStored.size() == MAX_STORED_SENT_DATA_SIZE) {
-			this.seqNoToDataSent.remove(this.seqNosStored.poll());
+	public synchronized void send(final ByteBuffer data) throws IOException {
+		if (data.remaining() > MAX_DATA_SIZE) {
+			throw new IOException("Data of " + data.remaining() + " bytes does not fit in a packet");
+		}
+		final ByteBuffer copy = ByteBuffer.allocate(data.remaining()).order(ByteOrder.BIG_ENDIAN);
+		copy.put(data);
+		copy.flip();
+		if (((this.nextSendSeqNo - this.sendBaseSeqNo) < WINDOW_SIZE) && this.dataWaitingForWindow.isEmpty()) {
+			sendNew(copy);
+		}
+		else {
+			this.dataWaitingForWindow.offer(copy);
+		}
+	}
+
+	/**
+	 * Sends the packets whose retransmission timeout ran out.
+	 */
+	public synchronized void update() {
+		final long currentTimeNanos = currentTimeNanos();
+		for (int seqNo = this.sendBaseSeqNo; (seqNo - this.nextSendSeqNo) < 0; seqNo++) {
+			final int slot = seqNo & WINDOW_MASK;
+			if (this.sentData[slot] != null) {
+				// doubled for every time it was sent again already
+				final long timeoutNanos = this.retransmitTimeoutNanos
+						<< Math.min(this.sentCount[slot] - 1, MAX_BACKOFF_SHIFT);
+				if (((currentTimeNanos - this.sentTimeNanos[slot]) >= timeoutNanos)
+						|| isLost(slot, currentTimeNanos)) {
+					retransmit(seqNo, currentTimeNanos);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return where the data starts in a packet that carries data, or -1 for
+	 *         other packets such as acknowledgements
+	 */
+	public static int getDataPosition(final ByteBuffer packet) {
+		final int position = packet.position();
+		if ((packet.remaining() < HEADER_SIZE) || (packet.getInt(position) != ORDERED_UDP_MESSAGE)) {
+			return -1;
 		}
-		this.seqNosStored.offer(seqNo);
-		this.seqNoToDataSent.put(seqNo, writeBuffer);
-		this.nextSendSeqNo++;
+		return position + HEADER_SIZE;
+	}
+
+	/**
+	 * @return the packets sent again so far, for watching the loss on a
+	 *         connection
+	 */
+	public synchronized long getRetransmitCount() {
+		return this.retransmitCount;
+	}
+
+	/**
+	 * @return the smoothed round trip time, or -1 before it was measured
+	 */
+	public synchronized long getSmoothedRttNanos() {
+		return this.smoothedRttNanos;
 	}
 
 	// it's udp so we're just trying, we don't really know if it'll drop or not
 	protected abstract void trySend(final ByteBuffer data);
 
+	// for running on a simulated clock
+	protected long currentTimeNanos() {
+		return System.nanoTime();
+	}
+
 	@Override
-	public void parse(ByteBuffer readBuffer) {
+	public synchronized void parse(ByteBuffer readBuffer) {
+		if (readBuffer.remaining() < (4 + 4 + 8)) {
+			return;
+		}
 		final int messageType = readBuffer.getInt();
 		switch (messageType) {
 		case ORDERED_UDP_MESSAGE: {
-			final int serverSeqNo = readBuffer.getInt();
-			if (serverSeqNo > this.nextReceiveSeqNo) {
-				// ahead, need to queue it and request replay
-				for (int i = this.nextReceiveSeqNo; i < serverSeqNo; i++) {
-					requestReplay(i);
-				}
-				final ByteBuffer queuedReceivedData = ByteBuffer.allocate(readBuffer.remaining())
-						.order(ByteOrder.BIG_ENDIAN);
-				queuedReceivedData.put(readBuffer);
-				queuedReceivedData.flip();
-				this.seqNoToDataReceived.put(serverSeqNo, queuedReceivedData);
+			if (readBuffer.remaining() < (HEADER_SIZE - 4)) {
+				return;
 			}
-			else if (serverSeqNo < this.nextReceiveSeqNo) {
-				// dup, ignore
-			}
-			else {
-				// exactly equal
+			final int seqNo = readBuffer.getInt();
+			receiveAck(readBuffer.getInt(), readBuffer.getLong());
+			final int distance = seqNo - this.nextReceiveSeqNo;
+			// acknowledged right after the data is handled, unless something sent by
+			// the delegate carried the acknowledgement already
+			this.ackPending = true;
+			if (distance == 0) {
 				do {
-					this.delegate.parse(readBuffer);
+					// counted as received before the delegate sees it, so that what it sends
+					// acknowledges it
 					this.nextReceiveSeqNo++;
+					this.ackPending = true;
+					this.delegate.parse(readBuffer);
+					final int slot = this.nextReceiveSeqNo & WINDOW_MASK;
+					readBuffer = this.receivedData[slot];
+					this.receivedData[slot] = null;
 				}
-				while ((readBuffer = this.seqNoToDataReceived.remove(this.nextReceiveSeqNo)) != null);
+				while (readBuffer != null);
 			}
-			break;
-		}
-		case ORDERED_UDP_REPLAY_REQUEST:
-			final int requestedSeqNo = readBuffer.getInt();
-			final ByteBuffer replayData = this.seqNoToDataSent.get(requestedSeqNo);
-			if (replayData == null) {
-				this.delegate.cantReplay(requestedSeqNo);
+			else if ((distance > 0) && (distance < WINDOW_SIZE)) {
+				// ahead, need to keep it until the ones before it arrive
+				final int slot = seqNo & WINDOW_MASK;
+				if (this.receivedData[slot] == null) {
+					final ByteBuffer queuedReceivedData = ByteBuffer.allocate(readBuffer.remaining())
+							.order(ByteOrder.BIG_ENDIAN);
+					queuedReceivedData.put(readBuffer);
+					queuedReceivedData.flip();
+					this.receivedData[slot] = queuedReceivedData;
+				}
 			}
-			else {
-				System.err.println("Replay requested for packet with seqNo=" + requestedSeqNo + ", we will send it!");
-				final int position = replayData.position();
-				trySend(replayData);
-				replayData.position(position);
+			// otherwise a duplicate, or too far ahead to keep; acknowledged so that the
+			// sender knows where we are
+			if (this.ackPending) {
+				sendAck();
 			}
 			break;
 		}
+		case ORDERED_UDP_ACK:
+			receiveAck(readBuffer.getInt(), readBuffer.getLong());
+			break;
+		}
 	}
 
-	private void requestReplay(final int i) {
+	private void sendNew(final ByteBuffer data) {
+		final int seqNo = this.nextSendSeqNo++;
+		final int slot = seqNo & WINDOW_MASK;
+		this.sentData[slot] = data;
+		this.sentCount[slot] = 0;
+		transmit(seqNo, currentTimeNanos());
+	}
+
+	private void retransmit(final int seqNo, final long currentTimeNanos) {
+		this.retransmitCount++;
+		transmit(seqNo, currentTimeNanos);
+	}
+
+	private void transmit(final int seqNo, final long currentTimeNanos) {
+		final int slot = seqNo & WINDOW_MASK;
+		this.sendBuffer.clear();
+		this.sendBuffer.putInt(ORDERED_UDP_MESSAGE);
+		this.sendBuffer.putInt(seqNo);
+		putAck();
+		this.sendBuffer.put(this.sentData[slot].duplicate());
+		this.sendBuffer.flip();
+		this.sentTimeNanos[slot] = currentTimeNanos;
+		this.sentCount[slot]++;
+		trySend(this.sendBuffer);
+	}
+
+	private void sendAck() {
 		this.sendBuffer.clear();
-		this.sendBuffer.putInt(ORDERED_UDP_REPLAY_REQUEST);
-		this.sendBuffer.putInt(i);
+		this.sendBuffer.putInt(ORDERED_UDP_ACK);
+		putAck();
 		this.sendBuffer.flip();
 		trySend(this.sendBuffer);
 	}
+
+	private void putAck() {
+		long ackBits = 0;
+		for (int i = 0; i < ACK_BITS; i++) {
+			if (this.receivedData[(this.nextReceiveSeqNo + 1 + i) & WINDOW_MASK] != null) {
+				ackBits |= 1L << i;
+			}
+		}
+		this.sendBuffer.putInt(this.nextReceiveSeqNo);
+		this.sendBuffer.putLong(ackBits);
+		this.ackPending = false;
+	}
+
+	private void receiveAck(final int ackSeqNo, final long ackBits) {
+		final int inFlight = this.nextSendSeqNo - this.sendBaseSeqNo;
+		final int acknowledged = ackSeqNo - this.sendBaseSeqNo;
+		if ((acknowledged < 0) || (acknowledged > inFlight)) {
+			// older than what we already know, or not something we sent
+			return;
+		}
+		final long currentTimeNanos = currentTimeNanos();
+		while (this.sendBaseSeqNo != ackSeqNo) {
+			acknowledge(this.sendBaseSeqNo, currentTimeNanos);
+			this.sendBaseSeqNo++;
+		}
+		int highestSelectedSeqNo = ackSeqNo;
+		for (int i = 0; i < ACK_BITS; i++) {
+			if ((ackBits & (1L << i)) != 0) {
+				final int seqNo = ackSeqNo + 1 + i;
+				if ((seqNo - this.nextSendSeqNo) >= 0) {
+					break;
+				}
+				acknowledge(seqNo, currentTimeNanos);
+				highestSelectedSeqNo = seqNo;
+			}
+		}
+		for (int seqNo = ackSeqNo; (seqNo - highestSelectedSeqNo) < 0; seqNo++) {
+			final int slot = seqNo & WINDOW_MASK;
+			if ((this.sentData[slot] != null) && isLost(slot, currentTimeNanos)) {
+				retransmit(seqNo, currentTimeNanos);
+			}
+		}
+		ByteBuffer waitingData;
+		while (((this.nextSendSeqNo - this.sendBaseSeqNo) < WINDOW_SIZE)
+				&& ((waitingData = this.dataWaitingForWindow.poll()) != null)) {
+			sendNew(waitingData);
+		}
+	}
+
+	/**
+	 * A packet is taken as lost without waiting for its timeout when one sent at
+	 * the same time or after it was acknowledged, and it has been a round trip
+	 * and a little more for reordering since it was sent.
+	 */
+	private boolean isLost(final int slot, final long currentTimeNanos) {
+		if (this.smoothedRttNanos == -1) {
+			return false;
+		}
+		return (this.sentTimeNanos[slot] <= this.latestAcknowledgedSentTimeNanos)
+				&& ((currentTimeNanos - this.sentTimeNanos[slot]) >= (this.smoothedRttNanos
+						+ (this.smoothedRttNanos / 4)));
+	}
+
+	private void acknowledge(final int seqNo, final long currentTimeNanos) {
+		final int slot = seqNo & WINDOW_MASK;
+		if (this.sentData[slot] == null) {
+			return;
+		}
+		this.latestAcknowledgedSentTimeNanos = Math.max(this.latestAcknowledgedSentTimeNanos,
+				this.sentTimeNanos[slot]);
+		if (this.sentCount[slot] == 1) {
+			// only packets that were sent once tell the round trip time, since we
+			// cannot know which copy of the others was acknowledged
+			updateRetransmitTimeout(currentTimeNanos - this.sentTimeNanos[slot]);
+		}
+		this.sentData[slot] = null;
+	}
+
+	private void updateRetransmitTimeout(final long rttNanos) {
+		if (this.smoothedRttNanos == -1) {
+			this.smoothedRttNanos = rttNanos;
+			this.rttVariationNanos = rttNanos / 2;
+		}
+		else {
+			this.rttVariationNanos = ((3 * this.rttVariationNanos) + Math.abs(this.smoothedRttNanos - rttNanos)) / 4;
+			this.smoothedRttNanos = ((7 * this.smoothedRttNanos) + rttNanos) / 8;
+		}
+		this.retransmitTimeoutNanos = Math.max(MIN_RETRANSMIT_TIMEOUT_NANOS,
+				Math.min(MAX_RETRANSMIT_TIMEOUT_NANOS, this.smoothedRttNanos + (4 * this.rttVariationNanos)));
+	}
 }
@@ -9,20 +9,37 @@ import java.util.Map;
 
 public class OrderedUdpServer implements UdpServerListener, Runnable {
 	private final OrderedUdpServerListener listener;
+	// null when the datagrams are received by someone else and given to parse
 	private final UdpServer udpServer;
+	private final UdpSender sender;
 	private final Map<SocketAddress, OrderedKnownClient> addrToClient = new HashMap<>();
 
 	public OrderedUdpServer(final int port, final OrderedUdpServerListener listener) throws IOException {
 		this.listener = listener;
 		this.udpServer = new UdpServer(port, this);
+		this.sender = this.udpServer;
+	}
+
+	/**
+	 * For a server that shares its socket, whose owner calls
+	 * {@link #parse(SocketAddress, ByteBuffer)} with the datagrams for it.
+	 */
+	public OrderedUdpServer(final UdpSender sender, final OrderedUdpServerListener listener) {
+		this.listener = listener;
+		this.udpServer = null;
+		this.sender = sender;
 	}
 
 	public int getPort() {
-		return this.udpServer.getPort();
+		final InetSocketAddress localAddress = getLocalAddress();
+		if (localAddress == null) {
+			return -1; // invalid
+		}
+		return localAddress.getPort();
 	}
 
 	public InetSocketAddress getLocalAddress() {
-		return this.udpServer.getLocalAddress();
+		return this.sender.getLocalAddress();
 	}
 
 	@Override
@@ -34,6 +51,16 @@ public class OrderedUdpServer implements UdpServerListener, Runnable {
 		getClient(destination).send(buffer);
 	}
 
+	/**
+	 * Sends again what the clients did not acknowledge in time, see
+	 * {@link OrderedUdpCommuncation#update()}.
+	 */
+	public void update() {
+		for (final OrderedKnownClient client : this.addrToClient.values()) {
+			client.update();
+		}
+	}
+
 	private OrderedKnownClient getClient(final SocketAddress sourceAddress) {
 		OrderedKnownClient orderedKnownClient = this.addrToClient.get(sourceAddress);
 		if (orderedKnownClient == null) {
@@ -55,7 +82,7 @@ public class OrderedUdpServer implements UdpServerListener, Runnable {
 		@Override
 		protected void trySend(final ByteBuffer data) {
 			try {
-				OrderedUdpServer.this.udpServer.send(this.sourceAddress, data);
+				OrderedUdpServer.this.sender.send(this.sourceAddress, data);
 			}
 			catch (final IOException e) {
 				throw new RuntimeException(e);
@@ -76,15 +103,17 @@ public class OrderedUdpServer implements UdpServerListener, Runnable {
 			OrderedUdpServer.this.listener.parse(this.sourceAddress, buffer);
 		}
 
-		@Override
-		public void cantReplay(final int seqNo) {
-			OrderedUdpServer.this.listener.cantReplay(this.sourceAddress, seqNo);
-		}
-
 	}
 
 	@Override
 	public void run() {
-		this.udpServer.run();
+		if (this.udpServer == null) {
+			throw new IllegalStateException("This server does not own its socket");
+		}
+		this.udpServer.setRunning(true);
+		while (this.udpServer.isRunning()) {
+			this.udpServer.poll(OrderedUdpCommuncation.UPDATE_INTERVAL_MILLIS);
+			update();
+		}
 	}
 }
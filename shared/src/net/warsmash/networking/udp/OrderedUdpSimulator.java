@@ -0,0 +1,196 @@
+package net.warsmash.networking.udp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Plays turns between a server and a client {@link OrderedUdpCommuncation} over
+ * a simulated network that loses and delays packets, on a simulated clock, so
+ * that a run with the same seed always gives the same result. The server starts
+ * a turn, the client finishes it 50 ms after hearing about it, and the time the
+ * server waits for that beyond the 50 ms is the latency of the turn. It is
+ * printed for several rates of loss.
+ *
+ * Usage: OrderedUdpSimulator [turns=5000] [seed=1]
+ */
+public class OrderedUdpSimulator {
+	private static final long MILLIS = 1000000L;
+	private static final long ONE_WAY_LATENCY_NANOS = 20 * MILLIS;
+	private static final long JITTER_NANOS = 5 * MILLIS;
+	private static final long TURN_PACING_NANOS = 50 * MILLIS;
+	private static final double[] LOSS_RATES = { 0, 0.01, 0.05, 0.10 };
+
+	public static void main(final String[] args) {
+		final int turns = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		final long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		System.out.println("one way latency " + (ONE_WAY_LATENCY_NANOS / MILLIS) + " ms +/- "
+				+ (JITTER_NANOS / MILLIS) + " ms, " + turns + " turns, seed " + seed);
+		for (final double lossRate : LOSS_RATES) {
+			final Simulation simulation = new Simulation(lossRate, seed);
+			final long[] latencies = simulation.run(turns);
+			Arrays.sort(latencies);
+			System.out.println(String.format(
+					"loss %4.1f%%: turn latency p50 %6.1f ms, p90 %6.1f ms, p99 %6.1f ms, max %6.1f ms; "
+							+ "%d retransmits, %d packets lost",
+					lossRate * 100, percentileMillis(latencies, 50), percentileMillis(latencies, 90),
+					percentileMillis(latencies, 99), latencies[latencies.length - 1] / (double) MILLIS,
+					simulation.server.getRetransmitCount() + simulation.client.getRetransmitCount(),
+					simulation.packetsLost));
+		}
+	}
+
+	private static double percentileMillis(final long[] sorted, final int percentile) {
+		return sorted[Math.min(sorted.length - 1, (sorted.length * percentile) / 100)] / (double) MILLIS;
+	}
+
+	private static final class Simulation {
+		private final double lossRate;
+		private final Random random;
+		private final PriorityQueue<Event> events = new PriorityQueue<>();
+		private final Endpoint server;
+		private final Endpoint client;
+		private long currentTimeNanos;
+		private long nextEventOrder;
+		private long packetsLost;
+		private long turnStartTimeNanos;
+		private int currentTurn;
+		private long[] latencies;
+
+		public Simulation(final double lossRate, final long seed) {
+			this.lossRate = lossRate;
+			this.random = new Random(seed);
+			this.server = new Endpoint(this, new UdpClientListener() {
+				@Override
+				public void parse(final ByteBuffer buffer) {
+					final int finishedTurn = buffer.getInt();
+					if (finishedTurn == Simulation.this.currentTurn) {
+						Simulation.this.latencies[finishedTurn] = Simulation.this.currentTimeNanos
+								- Simulation.this.turnStartTimeNanos - TURN_PACING_NANOS;
+						startTurn(finishedTurn + 1);
+					}
+				}
+			});
+			this.client = new Endpoint(this, new UdpClientListener() {
+				@Override
+				public void parse(final ByteBuffer buffer) {
+					final int turn = buffer.getInt();
+					schedule(TURN_PACING_NANOS, () -> {
+						// an order now and then, in its own packet like a player's click
+						if ((turn % 4) == 3) {
+							Simulation.this.client.sendTurn(-1);
+						}
+						Simulation.this.client.sendTurn(turn);
+					});
+				}
+			});
+			this.server.peer = this.client;
+			this.client.peer = this.server;
+		}
+
+		public long[] run(final int turns) {
+			this.latencies = new long[turns];
+			startTurn(0);
+			scheduleUpdate();
+			while ((this.currentTurn < turns) && !this.events.isEmpty()) {
+				final Event event = this.events.poll();
+				this.currentTimeNanos = event.timeNanos;
+				event.action.run();
+			}
+			return this.latencies;
+		}
+
+		private void startTurn(final int turn) {
+			this.currentTurn = turn;
+			this.turnStartTimeNanos = this.currentTimeNanos;
+			if (turn < this.latencies.length) {
+				this.server.sendTurn(turn);
+			}
+		}
+
+		private void scheduleUpdate() {
+			schedule(OrderedUdpCommuncation.UPDATE_INTERVAL_MILLIS * MILLIS, () -> {
+				this.server.update();
+				this.client.update();
+				scheduleUpdate();
+			});
+		}
+
+		private void deliver(final Endpoint destination, final ByteBuffer data) {
+			if (this.random.nextDouble() < this.lossRate) {
+				this.packetsLost++;
+				return;
+			}
+			final ByteBuffer packet = ByteBuffer.allocate(data.remaining()).order(ByteOrder.BIG_ENDIAN);
+			packet.put(data);
+			packet.flip();
+			final long delayNanos = (ONE_WAY_LATENCY_NANOS - JITTER_NANOS)
+					+ (long) (this.random.nextDouble() * 2 * JITTER_NANOS);
+			schedule(delayNanos, () -> destination.parse(packet));
+		}
+
+		private void schedule(final long delayNanos, final Runnable action) {
+			this.events.offer(new Event(this.currentTimeNanos + delayNanos, this.nextEventOrder++, action));
+		}
+	}
+
+	private static final class Endpoint extends OrderedUdpCommuncation {
+		private final Simulation simulation;
+		private final ByteBuffer turnBuffer = ByteBuffer.allocate(4 + 28).order(ByteOrder.BIG_ENDIAN);
+		private Endpoint peer;
+
+		public Endpoint(final Simulation simulation, final UdpClientListener listener) {
+			super(new OrderedUdpClientListener() {
+				@Override
+				public void parse(final ByteBuffer buffer) {
+					listener.parse(buffer);
+				}
+			});
+			this.simulation = simulation;
+		}
+
+		private void sendTurn(final int turn) {
+			this.turnBuffer.clear();
+			this.turnBuffer.putInt(turn);
+			this.turnBuffer.position(this.turnBuffer.capacity());
+			this.turnBuffer.flip();
+			try {
+				send(this.turnBuffer);
+			}
+			catch (final IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		protected void trySend(final ByteBuffer data) {
+			this.simulation.deliver(this.peer, data);
+		}
+
+		@Override
+		protected long currentTimeNanos() {
+			return this.simulation.currentTimeNanos;
+		}
+	}
+
+	private static final class Event implements Comparable<Event> {
+		private final long timeNanos;
+		private final long order;
+		private final Runnable action;
+
+		public Event(final long timeNanos, final long order, final Runnable action) {
+			this.timeNanos = timeNanos;
+			this.order = order;
+			this.action = action;
+		}
+
+		@Override
+		public int compareTo(final Event other) {
+			final int timeComparison = Long.compare(this.timeNanos, other.timeNanos);
+			return timeComparison != 0 ? timeComparison : Long.compare(this.order, other.order);
+		}
+	}
+}
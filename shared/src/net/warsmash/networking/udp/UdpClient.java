@@ -7,9 +7,12 @@ import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 
 public class UdpClient implements Runnable {
 	private final DatagramChannel channel;
+	private final Selector selector;
 	private final ByteBuffer readBuffer;
 	private boolean running;
 	private final UdpClientListener clientListener;
@@ -17,7 +20,9 @@ public class UdpClient implements Runnable {
 	public UdpClient(final InetAddress serverAddress, final int portNumber, final UdpClientListener clientListener)
 			throws UnknownHostException, IOException {
 		this.channel = DatagramChannel.open().connect(new InetSocketAddress(serverAddress, portNumber));
-		this.channel.configureBlocking(true);
+		this.channel.configureBlocking(false);
+		this.selector = Selector.open();
+		this.channel.register(this.selector, SelectionKey.OP_READ);
 		this.readBuffer = ByteBuffer.allocate(1024);
 		this.clientListener = clientListener;
 		this.readBuffer.order(ByteOrder.BIG_ENDIAN);
@@ -31,20 +36,38 @@ public class UdpClient implements Runnable {
 		this.running = running;
 	}
 
+	public boolean isRunning() {
+		return this.running;
+	}
+
 	@Override
 	public void run() {
 		this.running = true;
 		while (this.running) {
-			try {
+			poll(0);
+		}
+	}
+
+	/**
+	 * Waits up to the given time, or forever for 0, for datagrams and handles the
+	 * ones that arrived.
+	 */
+	public void poll(final long timeoutMillis) {
+		try {
+			this.selector.select(timeoutMillis);
+			this.selector.selectedKeys().clear();
+			while (true) {
 				this.readBuffer.clear();
-				this.channel.receive(this.readBuffer);
+				if (this.channel.receive(this.readBuffer) == null) {
+					break;
+				}
 				this.readBuffer.flip();
 				this.clientListener.parse(this.readBuffer);
 			}
-			catch (final IOException e) {
-				System.err.println("Error reading from channel:");
-				e.printStackTrace();
-			}
+		}
+		catch (final IOException e) {
+			System.err.println("Error reading from channel:");
+			e.printStackTrace();
 		}
 	}
 
@@ -0,0 +1,16 @@
+package net.warsmash.networking.udp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * A bound UDP socket that datagrams can be sent from, whether it has a thread of
+ * its own like {@link UdpServer} or is one of the channels of a selector.
+ */
+public interface UdpSender {
+	void send(SocketAddress destination, ByteBuffer buffer) throws IOException;
+
+	InetSocketAddress getLocalAddress();
+}
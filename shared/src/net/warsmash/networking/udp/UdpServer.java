@@ -12,7 +12,7 @@ import java.nio.channels.Selector;
 import java.util.Iterator;
 import java.util.Set;
 
-public class UdpServer implements Runnable {
+public class UdpServer implements UdpSender, Runnable {
 
 	private final Selector selector;
 	private boolean running;
@@ -26,11 +26,14 @@ public class UdpServer implements Runnable {
 		this.selector = Selector.open();
 		this.channel = DatagramChannel.open(StandardProtocolFamily.INET).bind(new InetSocketAddress(portNumber));
 		this.channel.configureBlocking(false);
-		this.key = this.channel.register(this.selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		// not OP_WRITE, a datagram channel is always writable and would wake the
+		// selector on every select
+		this.key = this.channel.register(this.selector, SelectionKey.OP_READ);
 		this.readBuffer = ByteBuffer.allocate(1024);
 		this.readBuffer.order(ByteOrder.BIG_ENDIAN);
 	}
 
+	@Override
 	public InetSocketAddress getLocalAddress() {
 		try {
 			return ((InetSocketAddress) this.channel.getLocalAddress());
@@ -49,40 +52,53 @@ public class UdpServer implements Runnable {
 		return localAddress.getPort();
 	}
 
+	@Override
 	public void send(final SocketAddress destination, final ByteBuffer buffer) throws IOException {
 		this.channel.send(buffer, destination);
 	}
 
+	public boolean isRunning() {
+		return this.running;
+	}
+
 	@Override
 	public void run() {
 		this.running = true;
 		while (this.running) {
-			try {
-				final int selectedKeyCount = this.selector.select();
-				if (selectedKeyCount > 0) {
-					final Set<SelectionKey> selectedKeys = this.selector.selectedKeys();
+			poll(0);
+		}
+	}
 
-					final Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
+	/**
+	 * Waits up to the given time, or forever for 0, for datagrams and handles the
+	 * ones that arrived.
+	 */
+	public void poll(final long timeoutMillis) {
+		try {
+			final int selectedKeyCount = this.selector.select(timeoutMillis);
+			if (selectedKeyCount > 0) {
+				final Set<SelectionKey> selectedKeys = this.selector.selectedKeys();
 
-					while (keyIterator.hasNext()) {
-						final SelectionKey key = keyIterator.next();
+				final Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
 
-						if (key.isReadable()) {
-							final DatagramChannel channel = (DatagramChannel) key.channel();
-							this.readBuffer.clear();
-							final SocketAddress receiveAddr = channel.receive(this.readBuffer);
-							this.readBuffer.flip();
-							this.serverListener.parse(receiveAddr, this.readBuffer);
-						}
+				while (keyIterator.hasNext()) {
+					final SelectionKey key = keyIterator.next();
 
-						keyIterator.remove();
+					if (key.isReadable()) {
+						final DatagramChannel channel = (DatagramChannel) key.channel();
+						this.readBuffer.clear();
+						final SocketAddress receiveAddr = channel.receive(this.readBuffer);
+						this.readBuffer.flip();
+						this.serverListener.parse(receiveAddr, this.readBuffer);
 					}
+
+					keyIterator.remove();
 				}
 			}
-			catch (final IOException e) {
-				System.err.println("Error reading from channel:");
-				e.printStackTrace();
-			}
+		}
+		catch (final IOException e) {
+			System.err.println("Error reading from channel:");
+			e.printStackTrace();
 		}
 	}
 
@@ -4,10 +4,12 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 import net.warsmash.nio.channels.WritableOutput;
+import net.warsmash.nio.channels.WriteSource;
 
 public class AbstractWriter {
 	private final WritableOutput writableOutput;
 	protected final ByteBuffer writeBuffer;
+	private final ByteBuffer[] writeBufferAndData = new ByteBuffer[2];
 
 	public AbstractWriter(final WritableOutput writableOutput) {
 		this.writableOutput = writableOutput;
@@ -27,12 +29,48 @@ public class AbstractWriter {
 		this.writeBuffer.putInt(length);
 	}
 
+	/**
+	 * Begins a message whose header of the given length is followed by the data
+	 * given to {@link #send(ByteBuffer)}.
+	 */
+	protected final void beginMessage(final int protocol, final int headerLength, final ByteBuffer data) {
+		ensureCapacity(headerLength + 4 + 4);
+		this.writeBuffer.putInt(protocol);
+		this.writeBuffer.putInt(headerLength + data.remaining());
+	}
+
 	protected final void send() {
 		this.writeBuffer.flip();
 		this.writableOutput.write(this.writeBuffer);
 		this.writeBuffer.clear();
 	}
 
+	/**
+	 * Sends the write buffer and then the data in one write, without copying the
+	 * data into the write buffer.
+	 */
+	protected final void send(final ByteBuffer data) {
+		this.writeBuffer.flip();
+		this.writeBufferAndData[0] = this.writeBuffer;
+		this.writeBufferAndData[1] = data;
+		try {
+			this.writableOutput.write(this.writeBufferAndData);
+		}
+		finally {
+			this.writeBufferAndData[1] = null;
+			this.writeBuffer.clear();
+		}
+	}
+
+	/**
+	 * Sends the write buffer, and then the buffers of the source as the output
+	 * can take them.
+	 */
+	protected final void send(final WriteSource source) {
+		send();
+		this.writableOutput.write(source);
+	}
+
 	protected final void close() {
 		this.writableOutput.close();
 	}
@@ -7,8 +7,12 @@ import net.warsmash.networking.udp.UdpServerListener;
 import net.warsmash.nio.channels.tcp.TCPClientParser;
 import net.warsmash.nio.util.ExceptionListener;
 
+/**
+ * For TCP channels, the buffer size is the largest message that can be
+ * received; the buffers of a connection start smaller and grow up to it.
+ */
 public interface ChannelOpener {
-	OpenedChannel openUDPServerChannel(int port, UdpServerListener listener, ExceptionListener exceptionListener,
+	OpenedDatagramChannel openUDPServerChannel(int port, UdpServerListener listener, ExceptionListener exceptionListener,
 			int bufferSize, ByteOrder byteOrder);
 
 	OpenedChannel openTCPServerChannel(int port, SocketChannelCallback callback,
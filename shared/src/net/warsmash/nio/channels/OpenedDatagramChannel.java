@@ -0,0 +1,7 @@
+package net.warsmash.nio.channels;
+
+import net.warsmash.networking.udp.UdpSender;
+
+public interface OpenedDatagramChannel extends OpenedChannel, UdpSender {
+
+}
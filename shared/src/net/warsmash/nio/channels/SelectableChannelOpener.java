@@ -19,6 +19,7 @@ import net.warsmash.nio.channels.tcp.TCPClientKeyAttachment;
 import net.warsmash.nio.channels.tcp.TCPClientParser;
 import net.warsmash.nio.channels.tcp.TCPServerKeyAttachment;
 import net.warsmash.nio.channels.udp.UDPServerKeyAttachment;
+import net.warsmash.nio.util.ByteBufferPool;
 import net.warsmash.nio.util.ExceptionListener;
 
 public class SelectableChannelOpener implements ChannelOpener {
@@ -26,9 +27,23 @@ public class SelectableChannelOpener implements ChannelOpener {
 	private Selector selector;
 	private int openChannelCount;
 	private final ChannelListener channelListener;
+	private final ByteBufferPool bufferPool;
 
 	public SelectableChannelOpener() {
+		this(new ByteBufferPool());
+	}
+
+	public SelectableChannelOpener(final ByteBufferPool bufferPool) {
 		this.channelListener = new ClosedChannelListenerImpl();
+		this.bufferPool = bufferPool;
+	}
+
+	/**
+	 * @return the pool of the TCP connection buffers, for watching how many are in
+	 *         use
+	 */
+	public ByteBufferPool getBufferPool() {
+		return this.bufferPool;
 	}
 
 	private void ensureSelectorOpen() throws IOException {
@@ -38,7 +53,7 @@ public class SelectableChannelOpener implements ChannelOpener {
 	}
 
 	@Override
-	public OpenedChannel openUDPServerChannel(final int port, final UdpServerListener listener,
+	public OpenedDatagramChannel openUDPServerChannel(final int port, final UdpServerListener listener,
 			final ExceptionListener exceptionListener, final int bufferSize, final ByteOrder byteOrder) {
 		try {
 			ensureSelectorOpen();
@@ -48,8 +63,9 @@ public class SelectableChannelOpener implements ChannelOpener {
 			readBuffer.order(byteOrder);
 			final UDPServerKeyAttachment udpServerKeyAttachment = new UDPServerKeyAttachment(readBuffer, listener,
 					channel, exceptionListener, this.channelListener);
-			udpServerKeyAttachment.setKey(channel.register(this.selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE,
-					udpServerKeyAttachment));
+			// not OP_WRITE, a datagram channel is always writable and would wake the
+			// selector on every select
+			udpServerKeyAttachment.setKey(channel.register(this.selector, SelectionKey.OP_READ, udpServerKeyAttachment));
 			this.channelListener.channelOpened();
 			return udpServerKeyAttachment;
 		}
@@ -66,7 +82,7 @@ public class SelectableChannelOpener implements ChannelOpener {
 			final ServerSocketChannel channel = ServerSocketChannel.open().bind(new InetSocketAddress(port));
 			channel.configureBlocking(false);
 			final TCPServerKeyAttachment tcpServerKeyAttachment = new TCPServerKeyAttachment(this.selector, channel,
-					callback, exceptionListener, this.channelListener, bufferSize, byteOrder);
+					callback, exceptionListener, this.channelListener, this.bufferPool, bufferSize, byteOrder);
 			tcpServerKeyAttachment
 					.setKey(channel.register(this.selector, SelectionKey.OP_ACCEPT, tcpServerKeyAttachment));
 			this.channelListener.channelOpened();
@@ -85,10 +101,8 @@ public class SelectableChannelOpener implements ChannelOpener {
 			final SocketChannel channel = SocketChannel.open();
 			final boolean connected = channel.connect(socketAddress);
 			channel.configureBlocking(false);
-			final ByteBuffer readBuffer = ByteBuffer.allocate(bufferSize).order(byteOrder);
-			final ByteBuffer writeBuffer = ByteBuffer.allocate(bufferSize).order(byteOrder);
 			final TCPClientKeyAttachment keyAttachment = new TCPClientKeyAttachment(this.selector, channel,
-					exceptionListener, this.channelListener, readBuffer, writeBuffer);
+					exceptionListener, this.channelListener, this.bufferPool, bufferSize, byteOrder);
 			keyAttachment.setParser(tcpClientParser);
 			if (connected) {
 				final SelectionKey key = channel.register(this.selector,
@@ -4,4 +4,26 @@ import java.nio.ByteBuffer;
 
 public interface WritableOutput extends OpenedChannel {
 	void write(ByteBuffer data);
+
+	/**
+	 * Writes the buffers one after the other, without copying them first where
+	 * the output can.
+	 */
+	default void write(final ByteBuffer[] data) {
+		for (final ByteBuffer buffer : data) {
+			write(buffer);
+		}
+	}
+
+	/**
+	 * Writes all of the buffers of the source, after anything written before it
+	 * and before anything written after it. Where the output can, it asks the
+	 * source for more only as it is able to write it.
+	 */
+	default void write(final WriteSource source) {
+		ByteBuffer[] data;
+		while ((data = source.next()) != null) {
+			write(data);
+		}
+	}
 }
@@ -0,0 +1,16 @@
+package net.warsmash.nio.channels;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Data that is given to a {@link WritableOutput} a few buffers at a time, as the
+ * output can take them, so that it does not need to copy the data it cannot
+ * write yet into a queue.
+ */
+public interface WriteSource {
+	/**
+	 * @return the next buffers to write, in order, or null when there are no more.
+	 *         They are all written before this is called again.
+	 */
+	ByteBuffer[] next();
+}
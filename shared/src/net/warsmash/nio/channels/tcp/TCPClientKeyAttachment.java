@@ -4,39 +4,63 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
 
 import net.warsmash.nio.channels.ChannelListener;
 import net.warsmash.nio.channels.KeyAttachment;
 import net.warsmash.nio.channels.WritableOutput;
 import net.warsmash.nio.channels.WritableSocketOutput;
+import net.warsmash.nio.channels.WriteSource;
+import net.warsmash.nio.util.ByteBufferPool;
 import net.warsmash.nio.util.ExceptionListener;
 
+/**
+ * The read and write buffers come from a {@link ByteBufferPool} and are only
+ * held while they have data in them: the read buffer while part of a message
+ * is waiting for the rest, and a write buffer while writes are queued. They
+ * start small and grow when a message does not fit.
+ *
+ * Writes that the channel cannot take at once are queued in order, and written
+ * when the channel is writable. A {@link WriteSource}, such as a map being
+ * sent, is queued as it is, and only asked for its next buffers when the ones
+ * before have been written, so its data is never copied into a write buffer.
+ */
 public class TCPClientKeyAttachment implements KeyAttachment, WritableSocketOutput {
 	private static final int MAX_MAP_SIZE_ROUGHLY = 256 * 1024 * 1024;
+	private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
 	private TCPClientParser parser;
 	private final Selector selector;
 	private final SocketChannel channel;
 	private final ExceptionListener exceptionListener;
 	private final ChannelListener channelListener;
-	private final ByteBuffer readBuffer;
-	private ByteBuffer writeBuffer;
+	private final ByteBufferPool bufferPool;
+	private final int maxReadBufferSize;
+	private final ByteOrder byteOrder;
+	private ByteBuffer readBuffer;
+	// the writes waiting for the channel, oldest first
+	private final ArrayDeque<WriteSource> queuedWrites = new ArrayDeque<>();
+	// from the write at the head of the queue, not all written yet
+	private ByteBuffer[] writingBuffers;
 	private final Object writeBufferLock = new Object();
 	private SelectionKey key;
-	private boolean queueingWrites = false;
 
+	/**
+	 * @param maxReadBufferSize the largest message that can be received
+	 */
 	public TCPClientKeyAttachment(final Selector selector, final SocketChannel channel,
 			final ExceptionListener exceptionListener, final ChannelListener channelListener,
-			final ByteBuffer readBuffer, final ByteBuffer writeBuffer) {
+			final ByteBufferPool bufferPool, final int maxReadBufferSize, final ByteOrder byteOrder) {
 		this.selector = selector;
 		this.channel = channel;
 		this.exceptionListener = exceptionListener;
 		this.channelListener = channelListener;
-		this.readBuffer = readBuffer;
-		this.readBuffer.clear();
-		this.writeBuffer = writeBuffer;
+		this.bufferPool = bufferPool;
+		this.maxReadBufferSize = maxReadBufferSize;
+		this.byteOrder = byteOrder;
 	}
 
 	public void setParser(final TCPClientParser parser) {
@@ -51,11 +75,20 @@ public class TCPClientKeyAttachment implements KeyAttachment, WritableSocketOutp
 	public void selected() {
 		if (this.key.isReadable()) {
 			try {
+				prepareReadBuffer();
 				final int nRead = this.channel.read(this.readBuffer);
 				if (nRead > 0) {
 					this.readBuffer.flip();
 					this.parser.parse(this.readBuffer);
+					if (this.readBuffer == null) {
+						// closed by the parser
+						return;
+					}
 					this.readBuffer.compact();
+					if (this.readBuffer.position() == 0) {
+						this.bufferPool.release(this.readBuffer);
+						this.readBuffer = null;
+					}
 				}
 				else if (nRead == -1) {
 					this.parser.disconnected();
@@ -83,35 +116,42 @@ public class TCPClientKeyAttachment implements KeyAttachment, WritableSocketOutp
 		}
 		if ((this.key != null) && this.key.isWritable()) {
 			synchronized (this.writeBufferLock) {
-				this.writeBuffer.flip();
-				if (this.writeBuffer.remaining() > 0) {
-					try {
-						final int r = this.writeBuffer.remaining();
-						this.channel.write(this.writeBuffer);
-						final int r2 = this.writeBuffer.remaining();
-						System.err.println("wrote queued " + (r - r2));
-					}
-					catch (final Exception e) {
-						this.parser.disconnected();
-						close();
-						this.exceptionListener.caught(e);
-						return;
-					}
+				final boolean allWritten;
+				try {
+					allWritten = writeQueued();
 				}
-				if (this.writeBuffer.remaining() == 0) {
+				catch (final Exception e) {
+					this.parser.disconnected();
+					close();
+					this.exceptionListener.caught(e);
+					return;
+				}
+				if (allWritten) {
 					try {
 						this.key = this.channel.register(this.selector, SelectionKey.OP_READ, this);
-						this.queueingWrites = false;
 					}
 					catch (final Exception e) {
 						this.exceptionListener.caught(e);
 					}
 				}
-				this.writeBuffer.compact();
 			}
 		}
 	}
 
+	private void prepareReadBuffer() throws IOException {
+		if (this.readBuffer == null) {
+			this.readBuffer = this.bufferPool.acquire(INITIAL_BUFFER_SIZE, this.byteOrder);
+		}
+		else if (!this.readBuffer.hasRemaining()) {
+			// the parser is waiting for the rest of a message that does not fit
+			final int capacity = this.readBuffer.capacity();
+			if (capacity >= this.maxReadBufferSize) {
+				throw new IOException("Received a message larger than " + this.maxReadBufferSize + " bytes");
+			}
+			this.readBuffer = this.bufferPool.grow(this.readBuffer, Math.min(capacity * 2, this.maxReadBufferSize));
+		}
+	}
+
 	@Override
 	public void close() {
 		try {
@@ -124,27 +164,79 @@ public class TCPClientKeyAttachment implements KeyAttachment, WritableSocketOutp
 			this.key = null;
 			this.channel.close();
 			this.channelListener.channelClosed();
+			releaseBuffers();
 		}
 		catch (final IOException e) {
 			this.exceptionListener.caught(e);
 		}
 	}
 
+	private void releaseBuffers() {
+		if (this.readBuffer != null) {
+			this.bufferPool.release(this.readBuffer);
+			this.readBuffer = null;
+		}
+		synchronized (this.writeBufferLock) {
+			for (final WriteSource queuedWrite : this.queuedWrites) {
+				if (queuedWrite instanceof CopiedWrite) {
+					((CopiedWrite) queuedWrite).release();
+				}
+			}
+			this.queuedWrites.clear();
+			this.writingBuffers = null;
+		}
+	}
+
 	@Override
 	public void write(final ByteBuffer data) {
-		final int bytesWanted = data.remaining();
 		try {
 			synchronized (this.writeBufferLock) {
-				if (!this.queueingWrites) {
-					if (this.channel.write(data) < bytesWanted) {
-						putDataInWriteBuffer(data);
-						this.queueingWrites = true;
-						this.key = this.channel.register(this.selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE,
-								this);
+				if (this.queuedWrites.isEmpty()) {
+					this.channel.write(data);
+					if (!data.hasRemaining()) {
+						return;
 					}
+					startQueueing();
 				}
-				else {
-					putDataInWriteBuffer(data);
+				queueCopy(data);
+			}
+		}
+		catch (final IOException e) {
+			this.exceptionListener.caught(e);
+		}
+	}
+
+	@Override
+	public void write(final ByteBuffer[] data) {
+		try {
+			synchronized (this.writeBufferLock) {
+				if (this.queuedWrites.isEmpty()) {
+					this.channel.write(data);
+					if (!hasRemaining(data)) {
+						return;
+					}
+					startQueueing();
+				}
+				for (final ByteBuffer buffer : data) {
+					if (buffer.hasRemaining()) {
+						queueCopy(buffer);
+					}
+				}
+			}
+		}
+		catch (final IOException e) {
+			this.exceptionListener.caught(e);
+		}
+	}
+
+	@Override
+	public void write(final WriteSource source) {
+		try {
+			synchronized (this.writeBufferLock) {
+				final boolean queueing = !this.queuedWrites.isEmpty();
+				this.queuedWrites.addLast(source);
+				if (!queueing && !writeQueued()) {
+					startQueueing();
 				}
 			}
 		}
@@ -153,22 +245,96 @@ public class TCPClientKeyAttachment implements KeyAttachment, WritableSocketOutp
 		}
 	}
 
-	private void putDataInWriteBuffer(final ByteBuffer data) {
+	private void startQueueing() throws IOException {
+		this.key = this.channel.register(this.selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE, this);
+	}
+
+	/**
+	 * Writes as much of the queue as the channel takes.
+	 *
+	 * @return true if all of it was written
+	 */
+	private boolean writeQueued() throws IOException {
+		while (!this.queuedWrites.isEmpty()) {
+			final WriteSource queuedWrite = this.queuedWrites.peekFirst();
+			while (true) {
+				if (this.writingBuffers == null) {
+					this.writingBuffers = queuedWrite.next();
+					if (this.writingBuffers == null) {
+						break;
+					}
+				}
+				this.channel.write(this.writingBuffers);
+				if (hasRemaining(this.writingBuffers)) {
+					return false;
+				}
+				this.writingBuffers = null;
+			}
+			this.queuedWrites.pollFirst();
+		}
+		return true;
+	}
+
+	private static boolean hasRemaining(final ByteBuffer[] data) {
+		for (final ByteBuffer buffer : data) {
+			if (buffer.hasRemaining()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void queueCopy(final ByteBuffer data) {
 		System.err.println("queueing write of " + data.remaining());
-		if (this.writeBuffer.remaining() >= data.remaining()) {
-			this.writeBuffer.put(data);
+		final WriteSource lastWrite = this.queuedWrites.peekLast();
+		if ((lastWrite instanceof CopiedWrite) && !((CopiedWrite) lastWrite).started) {
+			((CopiedWrite) lastWrite).put(data);
 		}
 		else {
-			// NOTE: below is the sub-optimal programming solution to try
-			// to help goobers who play maps that are larger than 8MB in size.
-			// Yes, after this happens, future throttling in writing that needs this
-			// buffer may be slower even for smaller maps. So, if you play a giant
-			// map, it might benefit you to later restart the client.
-			final ByteBuffer newWriteBuffer = ByteBuffer.allocate(this.writeBuffer.capacity() * 2);
-			this.writeBuffer.flip();
-			newWriteBuffer.put(this.writeBuffer);
-			newWriteBuffer.put(data);
-			this.writeBuffer = newWriteBuffer;
+			final CopiedWrite copiedWrite = new CopiedWrite(data.remaining());
+			copiedWrite.put(data);
+			this.queuedWrites.addLast(copiedWrite);
+		}
+	}
+
+	/**
+	 * Bytes copied from writes that the channel could not take at once, which
+	 * more are added to until it starts being written.
+	 */
+	private final class CopiedWrite implements WriteSource {
+		private ByteBuffer buffer;
+		private boolean started = false;
+
+		private CopiedWrite(final int capacity) {
+			this.buffer = TCPClientKeyAttachment.this.bufferPool.acquire(Math.max(INITIAL_BUFFER_SIZE, capacity),
+					TCPClientKeyAttachment.this.byteOrder);
+		}
+
+		private void put(final ByteBuffer data) {
+			if (this.buffer.remaining() < data.remaining()) {
+				this.buffer = TCPClientKeyAttachment.this.bufferPool.grow(this.buffer,
+						this.buffer.position() + data.remaining());
+			}
+			this.buffer.put(data);
+		}
+
+		@Override
+		public ByteBuffer[] next() {
+			if (this.started) {
+				// all written
+				release();
+				return null;
+			}
+			this.started = true;
+			this.buffer.flip();
+			return new ByteBuffer[] { this.buffer };
+		}
+
+		private void release() {
+			if (this.buffer != null) {
+				TCPClientKeyAttachment.this.bufferPool.release(this.buffer);
+				this.buffer = null;
+			}
 		}
 	}
 
@@ -1,7 +1,6 @@
 package net.warsmash.nio.channels.tcp;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
@@ -12,6 +11,7 @@ import net.warsmash.nio.channels.ChannelListener;
 import net.warsmash.nio.channels.KeyAttachment;
 import net.warsmash.nio.channels.OpenedChannel;
 import net.warsmash.nio.channels.SocketChannelCallback;
+import net.warsmash.nio.util.ByteBufferPool;
 import net.warsmash.nio.util.ExceptionListener;
 
 public class TCPServerKeyAttachment implements KeyAttachment, OpenedChannel {
@@ -20,18 +20,21 @@ public class TCPServerKeyAttachment implements KeyAttachment, OpenedChannel {
 	private final ExceptionListener exceptionListener;
 	private final Selector selector;
 	private final ChannelListener channelListener;
+	private final ByteBufferPool bufferPool;
 	private final int bufferSize;
 	private final ByteOrder byteOrder;
 	private SelectionKey key;
 
 	public TCPServerKeyAttachment(final Selector selector, final ServerSocketChannel channel,
 			final SocketChannelCallback callback, final ExceptionListener exceptionListener,
-			final ChannelListener channelListener, final int bufferSize, final ByteOrder byteOrder) {
+			final ChannelListener channelListener, final ByteBufferPool bufferPool, final int bufferSize,
+			final ByteOrder byteOrder) {
 		this.selector = selector;
 		this.channel = channel;
 		this.callback = callback;
 		this.exceptionListener = exceptionListener;
 		this.channelListener = channelListener;
+		this.bufferPool = bufferPool;
 		this.bufferSize = bufferSize;
 		this.byteOrder = byteOrder;
 	}
@@ -46,12 +49,9 @@ public class TCPServerKeyAttachment implements KeyAttachment, OpenedChannel {
 			try {
 				final SocketChannel socketChannel = this.channel.accept();
 				socketChannel.configureBlocking(false);
-				final ByteBuffer readBuffer = ByteBuffer.allocate(this.bufferSize);
-				readBuffer.order(this.byteOrder);
-				final ByteBuffer writeBuffer = ByteBuffer.allocate(this.bufferSize);
-				writeBuffer.order(this.byteOrder);
 				final TCPClientKeyAttachment tcpServerClientKeyAttachment = new TCPClientKeyAttachment(this.selector,
-						socketChannel, this.exceptionListener, this.channelListener, readBuffer, writeBuffer);
+						socketChannel, this.exceptionListener, this.channelListener, this.bufferPool, this.bufferSize,
+						this.byteOrder);
 				final TCPClientParser parser = this.callback.onConnect(tcpServerClientKeyAttachment,
 						socketChannel.getRemoteAddress());
 				tcpServerClientKeyAttachment.setParser(parser);
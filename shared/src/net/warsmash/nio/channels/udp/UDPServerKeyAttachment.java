@@ -1,6 +1,7 @@
 package net.warsmash.nio.channels.udp;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
@@ -9,10 +10,14 @@ import java.nio.channels.SelectionKey;
 import net.warsmash.networking.udp.UdpServerListener;
 import net.warsmash.nio.channels.ChannelListener;
 import net.warsmash.nio.channels.KeyAttachment;
-import net.warsmash.nio.channels.OpenedChannel;
+import net.warsmash.nio.channels.OpenedDatagramChannel;
 import net.warsmash.nio.util.ExceptionListener;
 
-public class UDPServerKeyAttachment implements KeyAttachment, OpenedChannel {
+public class UDPServerKeyAttachment implements KeyAttachment, OpenedDatagramChannel {
+	// datagrams read per selection at most, so that a busy channel does not keep
+	// the selector from the others
+	private static final int MAX_RECEIVES_PER_SELECT = 64;
+
 	private final ByteBuffer readBuffer;
 	private final UdpServerListener serverListener;
 	private final DatagramChannel channel;
@@ -37,12 +42,16 @@ public class UDPServerKeyAttachment implements KeyAttachment, OpenedChannel {
 	@Override
 	public void selected() {
 		if (this.key.isReadable()) {
-			this.readBuffer.clear();
-			SocketAddress receiveAddr;
 			try {
-				receiveAddr = this.channel.receive(this.readBuffer);
-				this.readBuffer.flip();
-				this.serverListener.parse(receiveAddr, this.readBuffer);
+				for (int i = 0; i < MAX_RECEIVES_PER_SELECT; i++) {
+					this.readBuffer.clear();
+					final SocketAddress receiveAddr = this.channel.receive(this.readBuffer);
+					if (receiveAddr == null) {
+						break;
+					}
+					this.readBuffer.flip();
+					this.serverListener.parse(receiveAddr, this.readBuffer);
+				}
 			}
 			catch (final IOException e) {
 				this.exceptionListener.caught(e);
@@ -50,6 +59,22 @@ public class UDPServerKeyAttachment implements KeyAttachment, OpenedChannel {
 		}
 	}
 
+	@Override
+	public void send(final SocketAddress destination, final ByteBuffer buffer) throws IOException {
+		this.channel.send(buffer, destination);
+	}
+
+	@Override
+	public InetSocketAddress getLocalAddress() {
+		try {
+			return (InetSocketAddress) this.channel.getLocalAddress();
+		}
+		catch (final IOException e) {
+			this.exceptionListener.caught(e);
+			return null;
+		}
+	}
+
 	@Override
 	public void close() {
 		try {
@@ -0,0 +1,133 @@
+package net.warsmash.nio.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ * Direct buffers for the channels of a selector, in power of two sizes, so that
+ * a connection only holds a buffer while it has data waiting in it and a
+ * thousand idle connections do not hold a thousand buffers. Buffers that are
+ * given back are kept for the next connection, up to a number of bytes, and
+ * the rest are left to the garbage collector.
+ *
+ * The counters are for watching how full the pool is, see {@link #toString()}.
+ */
+public class ByteBufferPool {
+	public static final int DEFAULT_MIN_BUFFER_SIZE = 4 * 1024;
+	public static final long DEFAULT_MAX_POOLED_BYTES = 64L * 1024 * 1024;
+	// buffers larger than 1 GiB are not pooled
+	private static final int SIZE_CLASS_COUNT = 31;
+
+	private final int minBufferSizeShift;
+	private final long maxPooledBytes;
+	private final ArrayDeque<ByteBuffer>[] sizeClassToFreeBuffers;
+	private int buffersInUse;
+	private long bytesInUse;
+	private long peakBytesInUse;
+	private int buffersPooled;
+	private long bytesPooled;
+	private long bytesAllocated;
+
+	public ByteBufferPool() {
+		this(DEFAULT_MIN_BUFFER_SIZE, DEFAULT_MAX_POOLED_BYTES);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public ByteBufferPool(final int minBufferSize, final long maxPooledBytes) {
+		this.minBufferSizeShift = sizeClass(minBufferSize);
+		this.maxPooledBytes = maxPooledBytes;
+		this.sizeClassToFreeBuffers = new ArrayDeque[SIZE_CLASS_COUNT];
+		for (int i = 0; i < SIZE_CLASS_COUNT; i++) {
+			this.sizeClassToFreeBuffers[i] = new ArrayDeque<>();
+		}
+	}
+
+	/**
+	 * @return a cleared buffer that holds at least the given number of bytes
+	 */
+	public synchronized ByteBuffer acquire(final int minCapacity, final ByteOrder byteOrder) {
+		final int sizeClass = Math.max(this.minBufferSizeShift, sizeClass(minCapacity));
+		ByteBuffer buffer = null;
+		if (sizeClass < SIZE_CLASS_COUNT) {
+			buffer = this.sizeClassToFreeBuffers[sizeClass].poll();
+		}
+		if (buffer != null) {
+			this.buffersPooled--;
+			this.bytesPooled -= buffer.capacity();
+			buffer.clear();
+		}
+		else {
+			buffer = ByteBuffer.allocateDirect(sizeClass < SIZE_CLASS_COUNT ? 1 << sizeClass : minCapacity);
+			this.bytesAllocated += buffer.capacity();
+		}
+		this.buffersInUse++;
+		this.bytesInUse += buffer.capacity();
+		this.peakBytesInUse = Math.max(this.peakBytesInUse, this.bytesInUse);
+		return buffer.order(byteOrder);
+	}
+
+	/**
+	 * @return a buffer of at least the given size with the remaining data of the
+	 *         old one in it, ready to be put into. The old one is given back.
+	 */
+	public ByteBuffer grow(final ByteBuffer buffer, final int minCapacity) {
+		final ByteBuffer newBuffer = acquire(minCapacity, buffer.order());
+		buffer.flip();
+		newBuffer.put(buffer);
+		release(buffer);
+		return newBuffer;
+	}
+
+	public synchronized void release(final ByteBuffer buffer) {
+		final int capacity = buffer.capacity();
+		this.buffersInUse--;
+		this.bytesInUse -= capacity;
+		final int sizeClass = sizeClass(capacity);
+		if ((sizeClass < SIZE_CLASS_COUNT) && ((1 << sizeClass) == capacity)
+				&& ((this.bytesPooled + capacity) <= this.maxPooledBytes)) {
+			this.sizeClassToFreeBuffers[sizeClass].push(buffer);
+			this.buffersPooled++;
+			this.bytesPooled += capacity;
+		}
+	}
+
+	public synchronized int getBuffersInUse() {
+		return this.buffersInUse;
+	}
+
+	public synchronized long getBytesInUse() {
+		return this.bytesInUse;
+	}
+
+	public synchronized long getPeakBytesInUse() {
+		return this.peakBytesInUse;
+	}
+
+	public synchronized int getBuffersPooled() {
+		return this.buffersPooled;
+	}
+
+	public synchronized long getBytesPooled() {
+		return this.bytesPooled;
+	}
+
+	/**
+	 * @return the bytes of every buffer this pool ever allocated, including the
+	 *         ones it has let go of
+	 */
+	public synchronized long getBytesAllocated() {
+		return this.bytesAllocated;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "buffer pool: " + this.buffersInUse + " in use (" + (this.bytesInUse / 1024) + " KiB, peak "
+				+ (this.peakBytesInUse / 1024) + " KiB), " + this.buffersPooled + " pooled ("
+				+ (this.bytesPooled / 1024) + " KiB), " + (this.bytesAllocated / 1024) + " KiB allocated in total";
+	}
+
+	private static int sizeClass(final int capacity) {
+		return capacity <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(capacity - 1);
+	}
+}
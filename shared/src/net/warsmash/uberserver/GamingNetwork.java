@@ -9,9 +9,12 @@ public class GamingNetwork {
 	public static final int MAP_NAME_MAX_LENGTH = 128;
 	public static final int PASSWORD_DATA_MAX_LENGTH = 512;
 	public static final int MESSAGE_MAX_LENGTH = 256;
+	// a SHA-256 of the map file, by which the server stores maps it has been sent
+	public static final String MAP_HASH_ALGORITHM = "SHA-256";
+	public static final int MAP_HASH_LENGTH = 32;
 
 	public static final String GAME_ID_BASE = "WAR3";
 	public static final String GAME_ID_XPAC = "W3XP";
 
-	public static final int GAME_VERSION_DATA = 102202;
+	public static final int GAME_VERSION_DATA = 102203;
 }
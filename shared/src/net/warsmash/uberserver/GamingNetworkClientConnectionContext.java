@@ -1,5 +1,15 @@
 package net.warsmash.uberserver;
 
+import java.nio.ByteBuffer;
+
 public interface GamingNetworkClientConnectionContext extends GamingNetworkServerToClientListener {
     String getAddressString();
+
+	/**
+	 * Sends the map as {@link #beginSendMap()}, {@link #sendMapData} for each
+	 * chunk of at most the given size, and {@link #endSendMap}. The chunks are
+	 * read from the data as the connection can take them, so it must not be
+	 * changed afterwards; a duplicate of a shared buffer is enough.
+	 */
+	void sendMap(ByteBuffer data, int chunkSize);
 }
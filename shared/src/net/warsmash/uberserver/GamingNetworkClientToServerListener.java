@@ -24,7 +24,7 @@ public interface GamingNetworkClientToServerListener extends DisconnectListener
 	void joinGame(long sessionToken, String gameName);
 
 	void createGame(final long sessionToken, final String gameName, final String mapName, final int totalSlots,
-			final LobbyGameSpeed gameSpeed, HostedGameVisibility visibility, long mapChecksum);
+			final LobbyGameSpeed gameSpeed, HostedGameVisibility visibility, long mapChecksum, byte[] mapHash);
 
 	void leaveGame(long sessionToken);
 
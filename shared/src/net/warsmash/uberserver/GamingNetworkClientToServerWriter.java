@@ -131,7 +131,8 @@ public class GamingNetworkClientToServerWriter extends AbstractWriter implements
 
 	@Override
 	public void createGame(final long sessionToken, String gameName, String mapName, final int totalSlots,
-			final LobbyGameSpeed gameSpeed, final HostedGameVisibility visibility, long mapChecksum) {
+			final LobbyGameSpeed gameSpeed, final HostedGameVisibility visibility, long mapChecksum,
+			final byte[] mapHash) {
 		if (gameName.length() > GamingNetwork.CHANNEL_NAME_MAX_LENGTH) {
 			gameName = gameName.substring(0, GamingNetwork.CHANNEL_NAME_MAX_LENGTH);
 		}
@@ -140,7 +141,8 @@ public class GamingNetworkClientToServerWriter extends AbstractWriter implements
 			mapName = mapName.substring(0, GamingNetwork.MAP_NAME_MAX_LENGTH);
 		}
 		final byte[] mapNameBytes = mapName.getBytes(Charset.forName("utf-8"));
-		beginMessage(Protocol.CREATE_GAME, 8 + 4 + channelNameBytes.length + 4 + mapNameBytes.length + 4 + 4 + 4 + 8);
+		beginMessage(Protocol.CREATE_GAME, 8 + 4 + channelNameBytes.length + 4 + mapNameBytes.length + 4 + 4 + 4 + 8
+				+ GamingNetwork.MAP_HASH_LENGTH);
 		this.writeBuffer.putLong(sessionToken);
 		this.writeBuffer.putInt(channelNameBytes.length);
 		this.writeBuffer.put(channelNameBytes);
@@ -150,6 +152,7 @@ public class GamingNetworkClientToServerWriter extends AbstractWriter implements
 		this.writeBuffer.putInt(gameSpeed.ordinal());
 		this.writeBuffer.putInt(visibility.ordinal());
 		this.writeBuffer.putLong(mapChecksum);
+		this.writeBuffer.put(mapHash, 0, GamingNetwork.MAP_HASH_LENGTH);
 		send();
 	}
 
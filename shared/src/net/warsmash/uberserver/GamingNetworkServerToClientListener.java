@@ -37,7 +37,11 @@ public interface GamingNetworkServerToClientListener extends DisconnectListener
 
 	void joinGameFailed(JoinGameFailureReason joinGameFailureReason);
 
-	void gameCreationOk();
+	/**
+	 * @param mapUploadRequired false when the server already has the map, so the
+	 *                          host does not upload it
+	 */
+	void gameCreationOk(boolean mapUploadRequired);
 
 	void gameCreationFailed(GameCreationFailureReason reason);
 
@@ -208,9 +212,9 @@ public interface GamingNetworkServerToClientListener extends DisconnectListener
 		}
 
 		@Override
-		public void gameCreationOk() {
+		public void gameCreationOk(final boolean mapUploadRequired) {
 			for (final GamingNetworkServerToClientListener listener : this.listeners) {
-				listener.gameCreationOk();
+				listener.gameCreationOk(mapUploadRequired);
 			}
 		}
 
@@ -353,7 +357,7 @@ public interface GamingNetworkServerToClientListener extends DisconnectListener
 		}
 
 		@Override
-		public void gameCreationOk() {
+		public void gameCreationOk(boolean mapUploadRequired) {
 		}
 
 		@Override
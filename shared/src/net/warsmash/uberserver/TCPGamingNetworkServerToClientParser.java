@@ -142,7 +142,8 @@ public class TCPGamingNetworkServerToClientParser implements TCPClientParser {
 					break;
 				}
 				case GamingNetworkServerToClientListener.Protocol.GAME_CREATION_OK: {
-					this.listener.gameCreationOk();
+					final boolean mapUploadRequired = data.getInt() != 0;
+					this.listener.gameCreationOk(mapUploadRequired);
 					break;
 				}
 				case GamingNetworkServerToClientListener.Protocol.CHANNEL_SERVER_MESSAGE: {